@@ -0,0 +1,52 @@
+package problem1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the ingestion stage: reading a CSV file of supporters into a CSVProcessor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ParseBenchmark {
+
+  @Param({"10000", "1000000"})
+  private int rows;
+
+  private Path csvFile;
+
+  @Setup(Level.Trial)
+  public void writeDataset() throws IOException {
+    csvFile = Files.createTempFile("supporters", ".csv");
+    SupporterDatasets.writeCsv(csvFile, rows);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteDataset() throws IOException {
+    Files.deleteIfExists(csvFile);
+  }
+
+  @Benchmark
+  public RecordStore csvProcessor() throws IOException {
+    return new CSVProcessor(csvFile.toString()).getRecords();
+  }
+}
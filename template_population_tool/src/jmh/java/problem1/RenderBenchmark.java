@@ -0,0 +1,73 @@
+package problem1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the render stage: populating a template with every row of the data through
+ * TemplateParser, for templates with few to many placeholders per line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class RenderBenchmark {
+
+  @Param({"10000", "1000000"})
+  private int rows;
+
+  @Param({"1", "4", "12"})
+  private int placeholdersPerLine;
+
+  private RecordStore records;
+  private List<String> template;
+
+  @Setup(Level.Trial)
+  public void loadDataset() throws IOException {
+    Path csvFile = Files.createTempFile("supporters", ".csv");
+
+    try {
+      SupporterDatasets.writeCsv(csvFile, rows);
+      records = new CSVProcessor(csvFile.toString()).getRecords();
+    } finally {
+      Files.deleteIfExists(csvFile);
+    }
+
+    template = SupporterDatasets.template(placeholdersPerLine);
+  }
+
+  @Benchmark
+  public List<List<String>> populateModListHolder() {
+    TemplateParser parser = new TemplateParser(template, records);
+    parser.populateModListHolder();
+    return parser.getModListHolder();
+  }
+
+  @Benchmark
+  public List<List<String>> insertDataToKeys() {
+    TemplateParser parser = new TemplateParser(template, records);
+
+    // The rows are inserted in reverse, so the cost of seeking to a row is measured too
+    for (int i = records.size() - 1; i >= 0; i--) {
+      parser.insertDataToKeys(i);
+    }
+    return parser.getModListHolder();
+  }
+}
@@ -0,0 +1,127 @@
+package problem1;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Class holding helpers that create the synthetic supporter data and templates the benchmarks run
+ * over. The data is generated from a fixed seed, so every run sees the same rows.
+ */
+final class SupporterDatasets {
+
+  static final String[] HEADER = {"first_name", "last_name", "company_name", "address", "city",
+      "county", "state", "zip", "phone1", "phone2", "email", "web"};
+
+  private static final String[] FIRST_NAMES = {"James", "Josephine", "Art", "Lenna", "Donette",
+      "Simona", "Mitsue", "Leota", "Sage", "Kris"};
+  private static final String[] LAST_NAMES = {"Butt", "Darakjy", "Venere", "Paprocki", "Foller",
+      "Morasca", "Tollner", "Dilliard", "Wieser", "Marrier"};
+  private static final String[] CITIES = {"New Orleans", "Brighton", "Bridgeport", "Anchorage",
+      "Hamilton", "Ashland", "Chicago", "San Jose", "Sioux Falls", "Baltimore"};
+  private static final String[] STATES = {"LA", "MI", "NJ", "AK", "OH", "OH", "IL", "CA", "SD",
+      "MD"};
+  private static final String PROSE = "Thank you for supporting our work this year";
+  private static final int TEMPLATE_LINES = 8;
+
+  private SupporterDatasets() {
+  }
+
+  /**
+   * Writes a CSV file of synthetic supporters, in the same format as nonprofit-supporters.csv:
+   * every field is quoted, and company names contain commas.
+   *
+   * @param file (Path) The file to be written.
+   * @param rows (int) The number of supporters, not counting the header.
+   * @throws IOException when the file cannot be written.
+   */
+  static void writeCsv(Path file, int rows) throws IOException {
+    Random random = new Random(42);
+
+    try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writeRecord(out, HEADER);
+
+      for (int i = 0; i < rows; i++) {
+        String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        int place = random.nextInt(CITIES.length);
+        String phone = String.format("%03d-%03d-%04d", 200 + random.nextInt(800),
+            random.nextInt(1000), random.nextInt(10000));
+
+        writeRecord(out, new String[]{first, last, last + ", " + first + " Inc",
+            random.nextInt(10000) + " N Main St", CITIES[place], CITIES[place], STATES[place],
+            String.format("%05d", random.nextInt(100000)), phone, phone,
+            first.toLowerCase() + "." + last.toLowerCase() + i + "@example.com",
+            "http://www." + last.toLowerCase() + i + ".com"});
+      }
+    }
+  }
+
+  /**
+   * Creates a template of a fixed number of lines of prose, each followed by a number of
+   * placeholders that cycle through the columns of the header.
+   *
+   * @param placeholdersPerLine (int) The number of placeholders on each line.
+   * @return (List) The lines of the template.
+   */
+  static List<String> template(int placeholdersPerLine) {
+    List<String> lines = new ArrayList<>(TEMPLATE_LINES);
+    int column = 0;
+
+    for (int i = 0; i < TEMPLATE_LINES; i++) {
+      StringBuilder line = new StringBuilder(PROSE);
+
+      for (int j = 0; j < placeholdersPerLine; j++) {
+        line.append(" [[").append(HEADER[column++ % HEADER.length]).append("]]");
+      }
+
+      lines.add(line.toString());
+    }
+
+    return lines;
+  }
+
+  /**
+   * Deletes a directory and everything in it.
+   *
+   * @param dir (Path) The directory to be deleted.
+   * @throws IOException when a file cannot be deleted.
+   */
+  static void deleteRecursively(Path dir) throws IOException {
+    if (!Files.exists(dir)) {
+      return;
+    }
+
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  /**
+   * Helper method to write a record with every field quoted.
+   *
+   * @param out    (BufferedWriter) The writer of the CSV file.
+   * @param fields (String[]) The fields of the record.
+   * @throws IOException when the record cannot be written.
+   */
+  private static void writeRecord(BufferedWriter out, String[] fields) throws IOException {
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) {
+        out.write(',');
+      }
+      out.write('"');
+      out.write(fields[i]);
+      out.write('"');
+    }
+    out.write('\n');
+  }
+}
@@ -0,0 +1,73 @@
+package problem1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the write stage: writing every populated template to the output directory through
+ * TemplateWriter. Each iteration writes into a new, empty directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class WriteBenchmark {
+
+  @Param({"10000", "1000000"})
+  private int rows;
+
+  @Param({"1", "4", "12"})
+  private int placeholdersPerLine;
+
+  private List<List<String>> populated;
+  private Path outputDir;
+
+  @Setup(Level.Trial)
+  public void populateTemplates() throws IOException {
+    Path csvFile = Files.createTempFile("supporters", ".csv");
+
+    try {
+      SupporterDatasets.writeCsv(csvFile, rows);
+      TemplateParser parser = new TemplateParser(SupporterDatasets.template(placeholdersPerLine),
+          new CSVProcessor(csvFile.toString()).getRecords());
+      parser.populateModListHolder();
+      populated = parser.getModListHolder();
+    } finally {
+      Files.deleteIfExists(csvFile);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void createOutputDir() throws IOException {
+    outputDir = Files.createTempDirectory("benchmark-output");
+  }
+
+  @TearDown(Level.Iteration)
+  public void deleteOutputDir() throws IOException {
+    SupporterDatasets.deleteRecursively(outputDir);
+  }
+
+  @Benchmark
+  public void writePopulatedTemplates() throws IOException {
+    new TemplateWriter(populated, outputDir.toString(), "benchmark-template.txt")
+        .writePopulatedTemplates();
+  }
+}
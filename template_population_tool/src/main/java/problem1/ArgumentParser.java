@@ -6,6 +6,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Class to parse command line arguments.
@@ -37,9 +38,144 @@ public class ArgumentParser {
       new Option.OptionBuilder('f', "csv-file", true)
           .acceptsArg(true)
           .description("Directory path to the input CSV data file.")
+          .build(),
+      new Option.OptionBuilder('s', "stream", false)
+          .description("Toggle to read, populate and write one CSV row at a time.")
+          .build(),
+      new Option.OptionBuilder('t', "threads", false)
+          .acceptsArg(true)
+          .description("Number of worker threads used to populate templates.")
+          .build(),
+      new Option.OptionBuilder('m', "mmap", false)
+          .description("Toggle to stream the CSV file through a memory-mapped reader.")
+          .build(),
+      new Option.OptionBuilder('a', "archive", false)
+          .acceptsArg(true)
+          .description("Write all templates into one archive in the output directory: "
+              + "zip, tar or concat.")
+          .build(),
+      new Option.OptionBuilder('S', "stats", false)
+          .description("Toggle to print the time, throughput and memory of each stage.")
+          .build(),
+      new Option.OptionBuilder('j', "stats-file", false)
+          .acceptsArg(true)
+          .description("File path where the statistics of each stage are written as JSON.")
+          .build(),
+      new Option.OptionBuilder('i', "incremental", false)
+          .description("Toggle to only rewrite outputs whose row or template changed since the "
+              + "last run.")
+          .build(),
+      new Option.OptionBuilder('r', "resume", false)
+          .description("Toggle to resume an interrupted run from the checkpoint in the output "
+              + "directory.")
+          .build(),
+      new Option.OptionBuilder('c', "template-cache", false)
+          .acceptsArg(true)
+          .description("Directory where compiled templates are cached between runs.")
+          .build(),
+      new Option.OptionBuilder('w', "write-concurrency", false)
+          .acceptsArg(true)
+          .description("Number of output files created and written at the same time.")
+          .build(),
+      new Option.OptionBuilder('b', "buckets", false)
+          .acceptsArg(true)
+          .description("How output files are spread across subdirectories: flat, hash:256x256 "
+              + "or range:10000.")
+          .build(),
+      new Option.OptionBuilder('n', "name-pattern", false)
+          .acceptsArg(true)
+          .description("Pattern of output file names, from {template}, {row} and {column}.")
+          .build(),
+      new Option.OptionBuilder('x', "shard", false)
+          .acceptsArg(true)
+          .description("Only populate the rows of one of several shards, e.g. 2/8 for the third "
+              + "of eight.")
+          .build(),
+      new Option.OptionBuilder('u', "dedup", false)
+          .acceptsArg(true)
+          .description("Write identical outputs once, and the others as hard links or index "
+              + "entries: link or index.")
+          .build(),
+      new Option.OptionBuilder('B', "memory-budget", false)
+          .acceptsArg(true)
+          .description("Memory kept for parsed rows, e.g. 512m, beyond which rows are spilled to "
+              + "a temporary file.")
+          .build(),
+      new Option.OptionBuilder('C', "checkpoint-interval", false)
+          .acceptsArg(true)
+          .description("Number of rows written between the checkpoints a run can be resumed "
+              + "from.")
+          .build()
+  };
+
+  // Options for running as a daemon that serves jobs submitted to a spool directory
+  static Option[] daemonOptions = {
+      new Option.OptionBuilder('d', "daemon", true)
+          .acceptsArg(true)
+          .description("Directory path where jobs are submitted, as files of arguments.")
+          .build(),
+      new Option.OptionBuilder('t', "threads", false)
+          .acceptsArg(true)
+          .description("Number of jobs run at the same time.")
+          .build(),
+      new Option.OptionBuilder('c', "template-cache", false)
+          .acceptsArg(true)
+          .description("Directory where compiled templates are cached between runs.")
+          .build()
+  };
+
+  // Examples for use with the daemon options
+  static String[] daemonExamples = new String[]{
+      "--daemon /path/to/spool --threads 4",
+      "-d /path/to/spool -c /path/to/template-cache"};
+
+  // Options for checking that the shards of a mailing wrote every output
+  static Option[] mergeOptions = {
+      new Option.OptionBuilder('M', "merge-shards", true)
+          .acceptsArg(true)
+          .description("Directory path holding the manifest of every shard of a mailing.")
+          .build()
+  };
+
+  // Examples for use with the merge options
+  static String[] mergeExamples = new String[]{
+      "--merge-shards /path/to/output",
+      "-M /path/to/output"};
+
+  // Options for running as an HTTP server that populates templates on demand
+  static Option[] serverOptions = {
+      new Option.OptionBuilder('p', "serve", true)
+          .acceptsArg(true)
+          .description("Port the server listens on, on the loopback address.")
+          .build(),
+      new Option.OptionBuilder('T', "template-dir", true)
+          .acceptsArg(true)
+          .description("Directory path to the template files served.")
+          .build(),
+      new Option.OptionBuilder('f', "csv-file", false)
+          .acceptsArg(true)
+          .description("Directory path to the CSV data file whose rows are rendered by key.")
+          .build(),
+      new Option.OptionBuilder('k', "key-column", false)
+          .acceptsArg(true)
+          .description("Column of the CSV data file rows are looked up by.")
+          .build(),
+      new Option.OptionBuilder('t', "threads", false)
+          .acceptsArg(true)
+          .description("Number of requests served at the same time.")
+          .build(),
+      new Option.OptionBuilder('c', "template-cache", false)
+          .acceptsArg(true)
+          .description("Directory where compiled templates are cached between runs.")
           .build()
   };
 
+  // Examples for use with the server options
+  static String[] serverExamples = new String[]{
+      "--serve 8080 --template-dir /path/to/templates --csv-file /path/to/data.csv "
+          + "--key-column email",
+      "-p 8080 -T /path/to/templates -t 8"};
+
   // Default examples for use with non profit supporter data processor
   static String[] defaultExamples = new String[]{
       "--email --email-template /path/to/template.txt --output-dir /path/to/output "
@@ -130,6 +266,90 @@ public class ArgumentParser {
     return params;
   }
 
+  /**
+   * Getter method for a parsed target whose argument is a positive integer.
+   *
+   * @param name         (String) The name of the Option.
+   * @param defaultValue (Integer) The value returned when the Option was not included.
+   * @return (Integer) The integer value of the Option's argument.
+   * @throws ArgumentParserException.InvalidArgumentException when the argument is not a positive
+   *                                                          integer.
+   */
+  public Integer getPositiveIntTarget(String name, Integer defaultValue) {
+    String arg = this.targets.get(name);
+
+    if (arg == null) {
+      return defaultValue;
+    }
+
+    try {
+      int value = Integer.parseInt(arg);
+
+      if (value > 0) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // Handled below, along with non-positive values
+    }
+
+    throw new ArgumentParserException.InvalidArgumentException(name, arg, this.usage);
+  }
+
+  /**
+   * Getter method for a parsed target whose argument is the name of an enum constant, ignoring
+   * case.
+   *
+   * @param name         (String) The name of the Option.
+   * @param type         (Class) The enum class the argument names a constant of.
+   * @param defaultValue (E) The value returned when the Option was not included.
+   * @param <E>          The type of the enum.
+   * @return (E) The enum constant named by the Option's argument.
+   * @throws ArgumentParserException.InvalidArgumentException when the argument does not name a
+   *                                                          constant of the enum.
+   */
+  public <E extends Enum<E>> E getEnumTarget(String name, Class<E> type, E defaultValue) {
+    String arg = this.targets.get(name);
+
+    if (arg == null) {
+      return defaultValue;
+    }
+
+    for (E constant : type.getEnumConstants()) {
+      if (constant.name().equalsIgnoreCase(arg)) {
+        return constant;
+      }
+    }
+
+    throw new ArgumentParserException.InvalidArgumentException(name, arg, this.usage);
+  }
+
+  /**
+   * Getter method for a parsed target whose argument is converted by a function, such as the
+   * setter of a builder.
+   *
+   * @param name         (String) The name of the Option.
+   * @param converter    (Function) Converts the argument, throwing an IllegalArgumentException
+   *                     when it is not valid.
+   * @param defaultValue (T) The value returned when the Option was not included.
+   * @param <T>          The type the argument is converted to.
+   * @return (T) The converted argument of the Option.
+   * @throws ArgumentParserException.InvalidArgumentException when the converter rejects the
+   *                                                          argument.
+   */
+  public <T> T getConvertedTarget(String name, Function<String, T> converter, T defaultValue) {
+    String arg = this.targets.get(name);
+
+    if (arg == null) {
+      return defaultValue;
+    }
+
+    try {
+      return converter.apply(arg);
+    } catch (IllegalArgumentException e) {
+      throw new ArgumentParserException.InvalidArgumentException(name, arg, this.usage);
+    }
+  }
+
   /**
    * Helper method to populate the Option name Set.
    *
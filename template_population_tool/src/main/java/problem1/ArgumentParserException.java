@@ -58,4 +58,15 @@ public abstract class ArgumentParserException extends RuntimeException {
       super("Unrecognized option: '" + optName + "'", usage);
     }
   }
+
+  /**
+   * Class representing an InvalidArgumentException. Thrown when the argument of an Option is not
+   * a valid value for that Option.
+   */
+  public static class InvalidArgumentException extends ArgumentParserException {
+
+    public InvalidArgumentException(String optName, String arg, String usage) {
+      super("Invalid argument: '" + arg + "' for option: '" + optName + "'", usage);
+    }
+  }
 }
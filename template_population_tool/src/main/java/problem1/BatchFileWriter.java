@@ -0,0 +1,314 @@
+package problem1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class representing a writer of many small files. Documents are encoded as UTF-8 into one large,
+ * reusable direct buffer, and the files are only created once the buffer is full (or the writer
+ * is flushed), each with a single write through a FileChannel. The number of system calls
+ * therefore depends on the number of bytes and files written, not on the number of lines.
+ *
+ * <p>A writer given a FileWriterPool hands each full buffer to the pool, whose threads write the
+ * files of the batch concurrently, and goes on encoding into a second buffer. A writer keeps a
+ * single batch in flight: once the second buffer is full too, it waits for the first batch to be
+ * written before reusing its buffer, so that rendering is held back by a slow disk rather than
+ * queueing output without bound.</p>
+ *
+ * <p>Because files are written in batches, an error writing a file may only be reported by a later
+ * call to write, flush or close. Instances are not thread-safe.</p>
+ */
+public class BatchFileWriter implements Closeable {
+
+  static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+  // The longest UTF-8 encoding of a code point, which the encoder needs room for to make progress
+  static final int MIN_BUFFER_SIZE = 4;
+
+  private final int bufferSize;
+  private final FileWriterPool pool;
+  private final CharsetEncoder encoder;
+  private final List<Path> pendingFiles;
+  private final List<Integer> pendingEnds;
+  private ByteBuffer buffer;
+  private ByteBuffer spare;
+  private FileWriterPool.Batch batch;
+  private long bytesWritten;
+
+  /**
+   * Constructor for class BatchFileWriter with the default buffer size.
+   */
+  public BatchFileWriter() {
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Constructor for class BatchFileWriter.
+   *
+   * @param bufferSize (int) The size in bytes of the direct buffer documents are encoded into,
+   *                   of at least MIN_BUFFER_SIZE.
+   */
+  public BatchFileWriter(int bufferSize) {
+    this(bufferSize, null);
+  }
+
+  /**
+   * Constructor for class BatchFileWriter that writes the files of each batch on a pool of
+   * threads.
+   *
+   * @param bufferSize (int) The size in bytes of each direct buffer documents are encoded into,
+   *                   of at least MIN_BUFFER_SIZE.
+   * @param pool       (FileWriterPool) The pool the files are written on, or null to write them
+   *                   on the calling thread.
+   */
+  public BatchFileWriter(int bufferSize, FileWriterPool pool) {
+    if (bufferSize < MIN_BUFFER_SIZE) {
+      throw new IllegalArgumentException("Expected a buffer size of at least " + MIN_BUFFER_SIZE
+          + " bytes, found " + bufferSize + ".");
+    }
+
+    this.bufferSize = bufferSize;
+    this.pool = pool;
+    this.encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.pendingFiles = new ArrayList<>();
+    this.pendingEnds = new ArrayList<>();
+  }
+
+  /**
+   * Queues a document to be written to a new file, replacing the file if it exists. A document
+   * larger than the buffer is written straight away, in buffer-sized pieces.
+   *
+   * @param file     (Path) The file to be written.
+   * @param document (CharSequence) The text of the file.
+   * @throws IOException when a file of the batch cannot be written.
+   */
+  public void write(Path file, CharSequence document) throws IOException {
+    if (this.buffer == null) {
+      this.buffer = ByteBuffer.allocateDirect(this.bufferSize);
+    }
+
+    CharBuffer chars = CharBuffer.wrap(document);
+    FileChannel large = null;
+    long written = 0;
+    int start = this.buffer.position();
+    boolean encoding = true;
+
+    this.encoder.reset();
+
+    try {
+      while (true) {
+        CoderResult result = encoding ? this.encoder.encode(chars, this.buffer, true)
+            : this.encoder.flush(this.buffer);
+
+        if (result.isUnderflow()) {
+          if (!encoding) {
+            break;
+          }
+          encoding = false;
+          continue;
+        }
+
+        if (!this.pendingFiles.isEmpty()) {
+          // Write out the completed documents and keep the start of this one
+          this.writePending(start);
+          start = 0;
+        } else {
+          // This document alone is larger than the buffer
+          if (large == null) {
+            large = open(file);
+          }
+          this.buffer.flip();
+          written += writeFully(large, this.buffer);
+          this.buffer.clear();
+        }
+      }
+
+      if (large != null) {
+        this.buffer.flip();
+        this.bytesWritten += written + writeFully(large, this.buffer);
+        this.buffer.clear();
+        return;
+      }
+    } finally {
+      if (large != null) {
+        large.close();
+      }
+    }
+
+    this.pendingFiles.add(file);
+    this.pendingEnds.add(this.buffer.position());
+    this.bytesWritten += this.buffer.position() - start;
+  }
+
+  /**
+   * Writes every queued document to its file.
+   *
+   * @throws IOException when a file cannot be written.
+   */
+  public void flush() throws IOException {
+    if (this.buffer != null) {
+      this.writePending(this.buffer.position());
+    }
+    this.awaitBatch();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.flush();
+  }
+
+  /**
+   * Gets the number of bytes of every document written or queued so far.
+   *
+   * @return (long) The number of bytes, once encoded as UTF-8.
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * Helper method to write the queued documents, then move the bytes that follow them (the start of
+   * a document still being encoded) to the beginning of the buffer.
+   *
+   * @param end (int) The end of the bytes in the buffer that belong to the queued documents.
+   * @throws IOException when a file cannot be written.
+   */
+  private void writePending(int end) throws IOException {
+    if (this.pool != null) {
+      this.handOffPending(end);
+      return;
+    }
+
+    int start = 0;
+
+    try {
+      for (int i = 0; i < this.pendingFiles.size(); i++) {
+        ByteBuffer slice = this.buffer.duplicate();
+        slice.limit(this.pendingEnds.get(i)).position(start);
+
+        try (FileChannel channel = open(this.pendingFiles.get(i))) {
+          writeFully(channel, slice);
+        } catch (IOException e) {
+          System.err.println(e.getMessage());
+          throw e;
+        }
+
+        start = this.pendingEnds.get(i);
+      }
+    } finally {
+      this.pendingFiles.clear();
+      this.pendingEnds.clear();
+      this.buffer.limit(this.buffer.position()).position(end);
+      this.buffer.compact();
+    }
+  }
+
+  /**
+   * Helper method to hand the queued documents to the pool, then carry on in the spare buffer with
+   * the bytes that follow them (the start of a document still being encoded). The spare buffer is
+   * only reused once the batch previously written from it is over.
+   *
+   * @param end (int) The end of the bytes in the buffer that belong to the queued documents.
+   * @throws IOException when a file of the previous batch could not be written.
+   */
+  private void handOffPending(int end) throws IOException {
+    if (this.pendingFiles.isEmpty()) {
+      return;
+    }
+
+    this.awaitBatch();
+
+    ByteBuffer next = this.spare != null ? this.spare
+        : ByteBuffer.allocateDirect(this.bufferSize);
+    ByteBuffer rest = this.buffer.duplicate();
+    rest.limit(this.buffer.position()).position(end);
+    next.clear();
+    next.put(rest);
+
+    try {
+      this.batch = this.pool.write(this.buffer, new ArrayList<>(this.pendingFiles),
+          new ArrayList<>(this.pendingEnds));
+    } finally {
+      this.pendingFiles.clear();
+      this.pendingEnds.clear();
+      this.spare = this.buffer;
+      this.buffer = next;
+    }
+  }
+
+  /**
+   * Helper method to wait for the batch in flight, if any, to be written.
+   *
+   * @throws IOException when a file of the batch could not be written.
+   */
+  private void awaitBatch() throws IOException {
+    FileWriterPool.Batch inFlight = this.batch;
+
+    if (inFlight != null) {
+      this.batch = null;
+      inFlight.await();
+    }
+  }
+
+  /**
+   * Helper method to open a new file for writing. A file already at the path is deleted and
+   * created again rather than truncated, as it may be a hard link that a deduplicated run made to
+   * other outputs, which truncating would rewrite too.
+   *
+   * @param file (Path) The file to be opened.
+   * @return (FileChannel) A channel positioned at the start of the empty file.
+   * @throws IOException when the file cannot be created.
+   */
+  static FileChannel open(Path file) throws IOException {
+    try {
+      return FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    } catch (FileAlreadyExistsException e) {
+      // A directory is left in place, so that opening it fails as before
+      if (!Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+        Files.deleteIfExists(file);
+      }
+      return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    }
+  }
+
+  /**
+   * Helper method to write every remaining byte of a buffer to a channel.
+   *
+   * @param channel (FileChannel) The channel to write to.
+   * @param bytes   (ByteBuffer) The bytes to be written.
+   * @return (int) The number of bytes written.
+   * @throws IOException when the bytes cannot be written.
+   */
+  static int writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+    int written = 0;
+
+    while (bytes.hasRemaining()) {
+      written += channel.write(bytes);
+    }
+    return written;
+  }
+
+  @Override
+  public String toString() {
+    return "BatchFileWriter{" +
+        "bufferSize=" + bufferSize +
+        ", pendingFiles=" + pendingFiles +
+        '}';
+  }
+}
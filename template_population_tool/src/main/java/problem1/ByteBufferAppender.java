@@ -0,0 +1,165 @@
+package problem1;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Class representing an Appendable that encodes the characters appended to it as UTF-8 straight
+ * into a ByteBuffer, so that a template can be rendered into a direct or heap buffer without an
+ * intermediate String or CharBuffer. Appending never allocates, and the appender can be pointed at
+ * another buffer so that it is reused from document to document.
+ *
+ * <p>As with the encoders of BatchFileWriter, characters that are not part of a valid surrogate
+ * pair are written as '?'. A high surrogate appended last is held until the next character, or
+ * until the appender is flushed.</p>
+ */
+public class ByteBufferAppender implements Appendable {
+
+  private static final byte REPLACEMENT = '?';
+
+  private ByteBuffer buffer;
+  private char highSurrogate;
+
+  /**
+   * Constructor for class ByteBufferAppender.
+   *
+   * @param buffer (ByteBuffer) The buffer characters are encoded into, from its position.
+   */
+  public ByteBufferAppender(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  /**
+   * Points the appender at another buffer, dropping any high surrogate that was held.
+   *
+   * @param buffer (ByteBuffer) The buffer characters are encoded into, from its position.
+   * @return (ByteBufferAppender) This appender, for convenience.
+   */
+  public ByteBufferAppender setBuffer(ByteBuffer buffer) {
+    this.buffer = buffer;
+    this.highSurrogate = 0;
+    return this;
+  }
+
+  /**
+   * Gets the buffer characters are encoded into.
+   *
+   * @return (ByteBuffer) The buffer.
+   */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  public ByteBufferAppender append(CharSequence csq) {
+    return this.append(csq, 0, csq.length());
+  }
+
+  @Override
+  public ByteBufferAppender append(CharSequence csq, int start, int end) {
+    for (int i = start; i < end; i++) {
+      this.append(csq.charAt(i));
+    }
+    return this;
+  }
+
+  /**
+   * Appends a range of a character array.
+   *
+   * @param chars  (char[]) The characters.
+   * @param offset (int) The index of the first character to append.
+   * @param length (int) The number of characters to append.
+   * @return (ByteBufferAppender) This appender, for convenience.
+   * @throws BufferOverflowException when the buffer cannot hold the encoded characters.
+   */
+  public ByteBufferAppender append(char[] chars, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      this.append(chars[i]);
+    }
+    return this;
+  }
+
+  /**
+   * Appends a single character. Either the whole encoding of a character is written, or nothing.
+   *
+   * @param c (char) The character.
+   * @return (ByteBufferAppender) This appender, for convenience.
+   * @throws BufferOverflowException when the buffer cannot hold the encoded character.
+   */
+  @Override
+  public ByteBufferAppender append(char c) {
+    if (this.highSurrogate != 0) {
+      char high = this.highSurrogate;
+
+      if (Character.isLowSurrogate(c)) {
+        this.require(4);
+        this.highSurrogate = 0;
+        int codePoint = Character.toCodePoint(high, c);
+        this.buffer.put((byte) (0xf0 | (codePoint >> 18)))
+            .put((byte) (0x80 | ((codePoint >> 12) & 0x3f)))
+            .put((byte) (0x80 | ((codePoint >> 6) & 0x3f)))
+            .put((byte) (0x80 | (codePoint & 0x3f)));
+        return this;
+      }
+
+      this.require(1);
+      this.highSurrogate = 0;
+      this.buffer.put(REPLACEMENT);
+    }
+
+    if (c < 0x80) {
+      this.require(1);
+      this.buffer.put((byte) c);
+    } else if (c < 0x800) {
+      this.require(2);
+      this.buffer.put((byte) (0xc0 | (c >> 6)))
+          .put((byte) (0x80 | (c & 0x3f)));
+    } else if (Character.isHighSurrogate(c)) {
+      this.highSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      this.require(1);
+      this.buffer.put(REPLACEMENT);
+    } else {
+      this.require(3);
+      this.buffer.put((byte) (0xe0 | (c >> 12)))
+          .put((byte) (0x80 | ((c >> 6) & 0x3f)))
+          .put((byte) (0x80 | (c & 0x3f)));
+    }
+
+    return this;
+  }
+
+  /**
+   * Writes a high surrogate that is still held, with no low surrogate to pair it with, as '?'.
+   *
+   * @return (ByteBufferAppender) This appender, for convenience.
+   * @throws BufferOverflowException when the buffer is full.
+   */
+  public ByteBufferAppender flush() {
+    if (this.highSurrogate != 0) {
+      this.require(1);
+      this.highSurrogate = 0;
+      this.buffer.put(REPLACEMENT);
+    }
+    return this;
+  }
+
+  /**
+   * Helper method to check that the buffer can hold a number of bytes.
+   *
+   * @param bytes (int) The number of bytes.
+   * @throws BufferOverflowException when it cannot.
+   */
+  private void require(int bytes) {
+    if (this.buffer.remaining() < bytes) {
+      throw new BufferOverflowException();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ByteBufferAppender{" +
+        "buffer=" + buffer +
+        '}';
+  }
+}
@@ -1,25 +1,44 @@
 package problem1;
 
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 /**
  * A Class representing a Nonprofit Supporter Processor, which takes a CSV file as its input and
- * creates and returns a HashMap with String keys made from the column headers of the CSV (first
- * line of the file), and List values of all Strings in each of the columns under the headers.
+ * stores its rows in a compact RecordStore, with the column headers of the CSV (first line of the
+ * file) resolved to column indices. The data can also be returned as a HashMap with String keys
+ * made from the column headers, and List values of all Strings in each of the columns.
+ *
+ * <p>A processor can be limited to the columns that the templates reference, in which case the
+ * other columns are skipped by the tokenizer and left out of the RecordStore altogether.</p>
+ *
+ * <p>A processor can also be given a memory budget, for files larger than the heap, in which case
+ * its rows are kept in a SpillingRecordStore that writes the rows beyond the budget to a
+ * temporary file. The caller closes that store once it is done with the rows.</p>
+ *
+ * <p>The RecordStore is stamped with the path, size and modification time of the file, so that a
+ * checkpoint can tell the data apart without hashing every row. A file modified less than
+ * TemplateCache.RACY_MILLIS before it is read is not stamped, as it may change again within the
+ * resolution of its modification time.</p>
  */
 public class CSVProcessor {
 
   private final String filePath;
-  private final List<String> rawData;
-  private final Map<String, List<String>> supporterInfo;
+  private final Collection<String> columns;
+  private final long memoryBudget;
+  private final RecordStore records;
 
   /**
    * Constructor for a Nonprofit Supporter Processor
@@ -29,84 +48,164 @@ public class CSVProcessor {
    * @throws IOException when the processor is not able to properly read the input file.
    */
   public CSVProcessor(String filePath) throws IOException {
+    this(filePath, null);
+  }
+
+  /**
+   * Constructor for a Nonprofit Supporter Processor that only keeps some of the columns.
+   *
+   * @param filePath (String) Represents the file path to the CSV file to be used in creating the
+   *                 HashMap of information.
+   * @param columns  (Collection) The names of the columns to be kept, e.g. the placeholders of the
+   *                 templates, or null to keep every column. Names that are not in the header are
+   *                 ignored.
+   * @throws IOException when the processor is not able to properly read the input file.
+   */
+  public CSVProcessor(String filePath, Collection<String> columns) throws IOException {
+    this(filePath, columns, 0);
+  }
+
+  /**
+   * Constructor for a Nonprofit Supporter Processor that only keeps some of the columns, and keeps
+   * no more than a memory budget of rows on the heap.
+   *
+   * @param filePath     (String) Represents the file path to the CSV file to be used in creating
+   *                     the HashMap of information.
+   * @param columns      (Collection) The names of the columns to be kept, or null to keep every
+   *                     column.
+   * @param memoryBudget (long) The number of bytes of rows kept on the heap, beyond which rows are
+   *                     spilled to a temporary file, or 0 to keep every row on the heap.
+   * @throws IOException when the processor is not able to properly read the input file.
+   */
+  public CSVProcessor(String filePath, Collection<String> columns, long memoryBudget)
+      throws IOException {
     this.filePath = filePath;
-    this.rawData = this.readFile(this.filePath);
-    this.supporterInfo = this.populateInformation(this.rawData);
+    this.columns = columns;
+    this.memoryBudget = memoryBudget;
+
+    // Taken before reading, so that the file changing while it is read changes the stamp
+    File file = new File(filePath);
+    long modified = file.lastModified();
+    long size = file.length();
+    long read = System.currentTimeMillis();
+    this.records = this.readFile(this.filePath);
+
+    if (modified > 0 && modified + TemplateCache.RACY_MILLIS <= read) {
+      this.records.setSourceStamp(OutputManifest.hashTemplate(Arrays.asList(
+          file.getAbsolutePath(), Long.toString(size), Long.toString(modified))));
+    }
   }
 
   /**
-   * Method to read the file and return a List of strings representing all the lines contained in
-   * the file found at the passed file path string
+   * Method to read the file found at the passed file path string in a single pass, returning the
+   * processed information
    *
    * @param filePath (String) The path to the file to be read and processed
-   * @return lines   (List) A list containing all lines in the specified file as strings
+   * @return records (RecordStore) The information of the CSV file, as built by populateInformation
    * @throws IOException when the reader is unable to open the file at the specified path.
    */
-  private List<String> readFile(String filePath) throws IOException {
-    List<String> lines = new ArrayList<>();
-
-    try (BufferedReader inputFile = new BufferedReader(new FileReader(filePath))) {
-      String line;
-
-      while ((line = inputFile.readLine()) != null) {
-        lines.add(line);
-      }
+  private RecordStore readFile(String filePath) throws IOException {
+    try (CSVTokenizer tokenizer = new CSVTokenizer(
+        new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8))) {
+      return this.populateInformation(tokenizer);
     } catch (FileNotFoundException fnfe) {
       throw new FileNotFoundException(fnfe.getMessage());
     } catch (IOException ioe) {
       throw new IOException("Error: Something went wrong : " + ioe.getMessage());
     }
-
-    return lines;
   }
 
   /**
-   * Method to take in a raw list of Strings representing the data from a CSV file, create a Map
-   * with the keys from the first line of the CSV, and populate the Map with the corresponding info
-   * on each of the subsequent lines
+   * Method to take in the records of a CSV file, create a RecordStore with the columns named in
+   * the first record, and populate it with each of the subsequent records. A record with fewer
+   * fields than the header is padded with empty Strings, and fields beyond the header are ignored,
+   * so that the values of every column stay aligned. When the processor is limited to some
+   * columns, the store only has those columns, in the order of the header.
    *
-   * @param lines (List) A list of Strings representing the data from a CSV file
-   * @return supporters (Map) A map representing the information of a CSV file, with keys made from
-   * the information types specified in the first line, and ArrayList values populated with the
-   * corresponding information of each individual in the lines following
+   * @param tokenizer (CSVTokenizer) A tokenizer over the data of a CSV file
+   * @return records (RecordStore) A store holding the information of each individual in the lines
+   * following the header
+   * @throws IOException when the tokenizer is unable to read the file.
    */
-  private Map<String, List<String>> populateInformation(List<String> lines) {
-    // populate the array list values with all the information in the CSV
-    /*
-     * Set up the LinkedHashMap using the header values for the info columns in the CSV as the
-     * name of the keys, with blank ArrayLists to store all the information as the values
-     * Regex splits on (") or (","), causing the first element of the string array to be a blank
-     * String, and therefore start index 1 is used to create keys and add to the ArrayList values
-     */
-    Map<String, List<String>> supporters = new LinkedHashMap<>();
-    String[] keys = lines.get(0).split("(\",)?\"");
-
-    for (int i = 1; i < keys.length; i++) {
-      supporters.put(keys[i], new ArrayList<>());
+  private RecordStore populateInformation(CSVTokenizer tokenizer) throws IOException {
+    if (!tokenizer.next()) {
+      return new RecordStore(Collections.emptyList());
     }
 
-    /*
-     * For each subsequent line in the CSV, add each piece of information for each supporter to
-     * the correct ArrayList value in order of the keys in the LinkedHashMap
-     */
-    for (int i = 1; i < lines.size(); i++) {
-      String[] parts = lines.get(i).split("(\",)?\"");
-
-      for (int j = 1; j < parts.length; j++) {
-        List<String> info = supporters.get(keys[j]);
-
-        if (info == null) {
-          info = new ArrayList<>();
-          info.add(parts[j]);
-          supporters.put(keys[j], info);
-        } else {
-          info.add(parts[j]);
+    List<String> header = Arrays.asList(tokenizer.getFields());
+    boolean[] projection = CSVTokenizer.projection(header, this.columns);
+
+    if (projection == null) {
+      RecordStore supporters = this.newStore(header);
+
+      try {
+        while (tokenizer.next()) {
+          supporters.addRow(tokenizer, tokenizer.getFieldCount());
         }
+      } catch (IOException | RuntimeException e) {
+        close(supporters, e);
+        throw e;
+      }
+      supporters.compact();
+      return supporters;
+    }
+
+    List<String> projectedHeader = new ArrayList<>();
+    int[] sources = new int[header.size()];
+
+    for (int i = 0; i < header.size(); i++) {
+      if (projection[i]) {
+        sources[projectedHeader.size()] = i;
+        projectedHeader.add(header.get(i));
+      }
+    }
+
+    RecordStore supporters = this.newStore(projectedHeader);
+    DataRow projected = new ProjectedRow(tokenizer,
+        Arrays.copyOf(sources, projectedHeader.size()));
+    tokenizer.project(projection);
+
+    try {
+      while (tokenizer.next()) {
+        supporters.addRow(projected, projectedHeader.size());
       }
+    } catch (IOException | RuntimeException e) {
+      close(supporters, e);
+      throw e;
     }
+    supporters.compact();
     return supporters;
   }
 
+  /**
+   * Helper method to create the store the rows are added to, which spills to a temporary file when
+   * the processor has a memory budget.
+   *
+   * @param header (List) The column names of the store.
+   * @return (RecordStore) The empty store.
+   */
+  private RecordStore newStore(List<String> header) {
+    return this.memoryBudget > 0 ? new SpillingRecordStore(header, this.memoryBudget)
+        : new RecordStore(header);
+  }
+
+  /**
+   * Helper method to delete the temporary file of a store whose rows could not all be read.
+   *
+   * @param supporters (RecordStore) The store, which is closed if it spills.
+   * @param e          (Exception) The exception that stopped the reading, to which an exception
+   *                   closing the store is added.
+   */
+  private static void close(RecordStore supporters, Exception e) {
+    if (supporters instanceof SpillingRecordStore) {
+      try {
+        ((SpillingRecordStore) supporters).close();
+      } catch (IOException closing) {
+        e.addSuppressed(closing);
+      }
+    }
+  }
+
   /**
    * Gets the file path to the file containing all the supporter information
    *
@@ -119,21 +218,62 @@ public class CSVProcessor {
   }
 
   /**
-   * Gets the raw data of the specified CSV file in the form of a List of Strings
+   * Gets the raw data of the specified CSV file in the form of a List of Strings, one per record.
+   * The raw text is not kept in memory, so the file is read again each time this is called.
    *
    * @return rawData (List) The raw data of the specified CSV file
+   * @throws UncheckedIOException when the reader is unable to open the file again.
    */
   public List<String> getRawData() {
+    List<String> rawData = new ArrayList<>();
+
+    try (CSVTokenizer tokenizer = new CSVTokenizer(
+        new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8), true)) {
+      while (tokenizer.next()) {
+        rawData.add(tokenizer.getRawRecord());
+      }
+    } catch (IOException ioe) {
+      throw new UncheckedIOException(ioe);
+    }
+
     return rawData;
   }
 
   /**
-   * Gets the HashMap of supporter information
+   * Gets the compact store of supporter information
+   *
+   * @return records (RecordStore) The processed supporter information.
+   */
+  public RecordStore getRecords() {
+    return records;
+  }
+
+  /**
+   * Gets the HashMap of supporter information, built from the RecordStore each time this is
+   * called
    *
    * @return supporterInfo (Map) The HashMap of the processed supporter information.
    */
   public Map<String, List<String>> getSupporterInfo() {
-    return supporterInfo;
+    return records.toColumnMap();
+  }
+
+  /**
+   * Gets the names of the columns the processor is limited to.
+   *
+   * @return (Collection) The names of the columns kept, or null if every column is kept.
+   */
+  public Collection<String> getColumns() {
+    return columns;
+  }
+
+  /**
+   * Gets the memory budget of the processor.
+   *
+   * @return (long) The number of bytes of rows kept on the heap, or 0 if every row is.
+   */
+  public long getMemoryBudget() {
+    return memoryBudget;
   }
 
   @Override
@@ -145,21 +285,61 @@ public class CSVProcessor {
       return false;
     }
     CSVProcessor that = (CSVProcessor) o;
-    return Objects.equals(filePath, that.filePath) && Objects
-        .equals(rawData, that.rawData) && Objects.equals(supporterInfo, that.supporterInfo);
+    return Objects.equals(filePath, that.filePath) && Objects.equals(records, that.records);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(filePath, rawData, supporterInfo);
+    return Objects.hash(filePath, records);
   }
 
   @Override
   public String toString() {
     return "NonprofitSupportersProcessor{" +
         "filePath='" + filePath + '\'' +
-        ", rawData=" + rawData +
-        ", supporterInfo=" + supporterInfo +
+        ", columns=" + columns +
+        ", size=" + records.size() +
         '}';
   }
+
+  /**
+   * Class representing the projected columns of the current record of a tokenizer, addressed by
+   * their index in the projected header.
+   */
+  private static final class ProjectedRow implements DataRow {
+
+    private final CSVTokenizer tokenizer;
+    private final int[] sources;
+
+    /**
+     * Constructor for class ProjectedRow.
+     *
+     * @param tokenizer (CSVTokenizer) The tokenizer whose current record is viewed.
+     * @param sources   (int[]) For each projected column, its index in the header of the file.
+     */
+    private ProjectedRow(CSVTokenizer tokenizer, int[] sources) {
+      this.tokenizer = tokenizer;
+      this.sources = sources;
+    }
+
+    @Override
+    public String getField(int column) {
+      return sources[column] < tokenizer.getFieldCount() ? tokenizer.getField(sources[column])
+          : "";
+    }
+
+    @Override
+    public void appendField(int column, StringBuilder out) {
+      if (sources[column] < tokenizer.getFieldCount()) {
+        tokenizer.appendField(sources[column], out);
+      }
+    }
+
+    @Override
+    public void appendField(int column, Appendable out) throws IOException {
+      if (sources[column] < tokenizer.getFieldCount()) {
+        tokenizer.appendField(sources[column], out);
+      }
+    }
+  }
 }
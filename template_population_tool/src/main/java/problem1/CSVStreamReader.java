@@ -0,0 +1,118 @@
+package problem1;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class representing a reader that streams the rows of a CSV file one at a time, so that only the
+ * header and the current row are ever held in memory.
+ */
+public class CSVStreamReader implements RowReader {
+
+  private final String filePath;
+  private final CSVTokenizer tokenizer;
+  private final List<String> header;
+  private int rowIndex;
+
+  /**
+   * Constructor for class CSVStreamReader. Opens the file and reads its header line.
+   *
+   * @param filePath (String) The path to the CSV file to be streamed.
+   * @throws IOException when the file cannot be opened or read.
+   */
+  public CSVStreamReader(String filePath) throws IOException {
+    this.filePath = filePath;
+    this.tokenizer = new CSVTokenizer(
+        new InputStreamReader(new FileInputStream(filePath), StandardCharsets.UTF_8));
+    this.rowIndex = -1;
+    this.header = this.tokenizer.next()
+        ? Collections.unmodifiableList(Arrays.asList(this.tokenizer.getFields()))
+        : Collections.emptyList();
+  }
+
+  /**
+   * Restricts the columns whose characters are kept to the named ones, so that the fields of
+   * the other columns are skipped by the tokenizer rather than copied.
+   *
+   * @param columns (Collection) The names of the columns to be read.
+   */
+  @Override
+  public void project(Collection<String> columns) {
+    this.tokenizer.project(CSVTokenizer.projection(this.header, columns));
+  }
+
+  @Override
+  public boolean next() throws IOException {
+    if (!this.tokenizer.next()) {
+      return false;
+    }
+
+    this.rowIndex++;
+    return true;
+  }
+
+  /**
+   * Gets the value of a field in the current row. A row with fewer fields than the header is
+   * treated as if it were padded with empty fields.
+   *
+   * @param column (int) The index of the column in the header.
+   * @return (String) The value of the field.
+   */
+  @Override
+  public String getField(int column) {
+    return column < this.tokenizer.getFieldCount() ? this.tokenizer.getField(column) : "";
+  }
+
+  @Override
+  public void appendField(int column, StringBuilder out) {
+    if (column < this.tokenizer.getFieldCount()) {
+      this.tokenizer.appendField(column, out);
+    }
+  }
+
+  @Override
+  public void appendField(int column, Appendable out) throws IOException {
+    if (column < this.tokenizer.getFieldCount()) {
+      this.tokenizer.appendField(column, out);
+    }
+  }
+
+  @Override
+  public List<String> getHeader() {
+    return header;
+  }
+
+  @Override
+  public int getRowIndex() {
+    return rowIndex;
+  }
+
+  /**
+   * Gets the path to the CSV file being streamed.
+   *
+   * @return (String) The path to the CSV file.
+   */
+  public String getFilePath() {
+    return filePath;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.tokenizer.close();
+  }
+
+  @Override
+  public String toString() {
+    return "CSVStreamReader{" +
+        "filePath='" + filePath + '\'' +
+        ", header=" + header +
+        ", rowIndex=" + rowIndex +
+        '}';
+  }
+}
@@ -0,0 +1,350 @@
+package problem1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Class representing a single-pass RFC 4180 tokenizer for CSV data. Records are read one at a time
+ * from a character buffer by a small state machine, which supports quoted and unquoted fields,
+ * escaped quotes ("") and line breaks inside quoted fields.
+ *
+ * <p>The unescaped characters of the current record are kept in one reusable array, and each field
+ * is a view over that array, so reading a record creates no objects unless a field is requested as
+ * a String.</p>
+ *
+ * <p>A tokenizer can be restricted to the columns a caller needs. The fields of the other columns
+ * are still delimited, so that column indices are unchanged, but their characters are skipped
+ * rather than copied, and they read as empty.</p>
+ */
+public class CSVTokenizer implements Closeable, DataRow {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final char DELIMITER = ',';
+  private static final char QUOTE = '"';
+
+  private static final int FIELD_START = 0;
+  private static final int UNQUOTED = 1;
+  private static final int QUOTED = 2;
+  private static final int QUOTE_IN_QUOTED = 3;
+
+  private final Reader reader;
+  private final char[] buffer;
+  private final StringBuilder rawRecord;
+  private int position;
+  private int limit;
+  private boolean skipLineFeed;
+  private char[] record;
+  private int recordLength;
+  private int[] fieldEnds;
+  private int fieldCount;
+  private boolean[] projection;
+  private boolean keepField;
+  private long recordNumber;
+
+  /**
+   * Constructor for class CSVTokenizer.
+   *
+   * @param reader (Reader) The source of the CSV data.
+   */
+  public CSVTokenizer(Reader reader) {
+    this(reader, false);
+  }
+
+  /**
+   * Constructor for class CSVTokenizer that can also keep the raw text of each record.
+   *
+   * @param reader     (Reader) The source of the CSV data.
+   * @param captureRaw (boolean) Whether the raw text of each record should be kept.
+   */
+  public CSVTokenizer(Reader reader, boolean captureRaw) {
+    this.reader = reader;
+    this.buffer = new char[BUFFER_SIZE];
+    this.rawRecord = captureRaw ? new StringBuilder() : null;
+    this.record = new char[256];
+    this.fieldEnds = new int[16];
+  }
+
+  /**
+   * Reads the next record. Blank lines between records are skipped.
+   *
+   * @return (boolean) True if a record was read, false when the end of the data has been reached.
+   * @throws IOException when the data cannot be read, or ends inside a quoted field.
+   */
+  public boolean next() throws IOException {
+    int state = FIELD_START;
+    boolean started = false;
+
+    this.recordLength = 0;
+    this.fieldCount = 0;
+    this.keepField = this.isProjected(0);
+    if (this.rawRecord != null) {
+      this.rawRecord.setLength(0);
+    }
+
+    while (true) {
+      if (this.position == this.limit && !this.fill()) {
+        if (state == QUOTED) {
+          throw new IOException("Unterminated quoted field in record " + (recordNumber + 1));
+        }
+        if (!started) {
+          return false;
+        }
+
+        this.endField();
+        this.recordNumber++;
+        return true;
+      }
+
+      char c = this.buffer[this.position++];
+
+      if (this.skipLineFeed) {
+        this.skipLineFeed = false;
+        if (c == '\n') {
+          continue;
+        }
+      }
+
+      boolean lineBreak = c == '\n' || c == '\r';
+
+      if (this.rawRecord != null && (state == QUOTED || !lineBreak)) {
+        this.rawRecord.append(c);
+      }
+
+      if (lineBreak && state != QUOTED) {
+        this.skipLineFeed = c == '\r';
+
+        if (!started) {
+          continue;
+        }
+
+        this.endField();
+        this.recordNumber++;
+        return true;
+      }
+
+      started = true;
+
+      switch (state) {
+        case FIELD_START:
+          if (c == QUOTE) {
+            state = QUOTED;
+          } else if (c == DELIMITER) {
+            this.endField();
+          } else {
+            this.append(c);
+            state = UNQUOTED;
+          }
+          break;
+        case UNQUOTED:
+          if (c == DELIMITER) {
+            this.endField();
+            state = FIELD_START;
+          } else {
+            this.append(c);
+          }
+          break;
+        case QUOTED:
+          if (c == QUOTE) {
+            state = QUOTE_IN_QUOTED;
+          } else {
+            this.append(c);
+          }
+          break;
+        default:
+          // A quote inside a quoted field is either escaped, or it closes the field
+          if (c == QUOTE) {
+            this.append(c);
+            state = QUOTED;
+          } else if (c == DELIMITER) {
+            this.endField();
+            state = FIELD_START;
+          } else {
+            // Not valid RFC 4180, but kept rather than dropped
+            this.append(c);
+            state = UNQUOTED;
+          }
+          break;
+      }
+    }
+  }
+
+  /**
+   * Restricts the fields whose characters are kept, from the next record on. The fields of the
+   * other columns read as empty.
+   *
+   * @param columns (boolean[]) For each column index, whether its fields are kept, with the columns
+   *                past the end of the array skipped; or null to keep every field.
+   */
+  public void project(boolean[] columns) {
+    this.projection = columns == null ? null : columns.clone();
+  }
+
+  /**
+   * Determines which columns of a header hold the named columns. When a name appears more than
+   * once, only its first column is included, as RecordStore resolves names to their first column.
+   *
+   * @param header  (List) The column names, in column order.
+   * @param columns (Collection) The names of the columns to be kept, or null to keep every column.
+   * @return (boolean[]) For each column of the header, whether it is kept, or null when every
+   * column is.
+   */
+  public static boolean[] projection(List<String> header, Collection<String> columns) {
+    if (columns == null) {
+      return null;
+    }
+
+    boolean[] kept = new boolean[header.size()];
+    Set<String> seen = new HashSet<>();
+
+    for (int i = 0; i < kept.length; i++) {
+      kept[i] = columns.contains(header.get(i)) && seen.add(header.get(i));
+    }
+    return kept;
+  }
+
+  /**
+   * Gets the number of fields in the current record.
+   *
+   * @return (int) The number of fields.
+   */
+  public int getFieldCount() {
+    return fieldCount;
+  }
+
+  @Override
+  public String getField(int column) {
+    int start = this.fieldStart(column);
+    return new String(this.record, start, this.fieldEnds[column] - start);
+  }
+
+  @Override
+  public void appendField(int column, StringBuilder out) {
+    int start = this.fieldStart(column);
+    out.append(this.record, start, this.fieldEnds[column] - start);
+  }
+
+  @Override
+  public void appendField(int column, Appendable out) throws IOException {
+    int start = this.fieldStart(column);
+    DataRow.appendChars(this.record, start, this.fieldEnds[column] - start, out);
+  }
+
+  /**
+   * Gets all fields of the current record.
+   *
+   * @return (String[]) The fields of the current record, in column order.
+   */
+  public String[] getFields() {
+    String[] fields = new String[this.fieldCount];
+
+    for (int i = 0; i < this.fieldCount; i++) {
+      fields[i] = this.getField(i);
+    }
+
+    return fields;
+  }
+
+  /**
+   * Gets the raw text of the current record, without its line terminator.
+   *
+   * @return (String) The raw record, or null if raw records are not being kept.
+   */
+  public String getRawRecord() {
+    return this.rawRecord == null ? null : this.rawRecord.toString();
+  }
+
+  /**
+   * Gets the number of records read so far.
+   *
+   * @return (long) The number of records read.
+   */
+  public long getRecordNumber() {
+    return recordNumber;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.reader.close();
+  }
+
+  /**
+   * Helper method to refill the character buffer from the reader.
+   *
+   * @return (boolean) True if any characters were read.
+   * @throws IOException when the data cannot be read.
+   */
+  private boolean fill() throws IOException {
+    int read = this.reader.read(this.buffer, 0, this.buffer.length);
+
+    this.position = 0;
+    this.limit = Math.max(read, 0);
+    return read > 0;
+  }
+
+  /**
+   * Helper method to append an unescaped character to the current record.
+   *
+   * @param c (char) The character to be appended.
+   */
+  private void append(char c) {
+    if (!this.keepField) {
+      return;
+    }
+    if (this.recordLength == this.record.length) {
+      this.record = Arrays.copyOf(this.record, this.record.length * 2);
+    }
+
+    this.record[this.recordLength++] = c;
+  }
+
+  /**
+   * Helper method to mark the end of the current field.
+   */
+  private void endField() {
+    if (this.fieldCount == this.fieldEnds.length) {
+      this.fieldEnds = Arrays.copyOf(this.fieldEnds, this.fieldEnds.length * 2);
+    }
+
+    this.fieldEnds[this.fieldCount++] = this.recordLength;
+    this.keepField = this.isProjected(this.fieldCount);
+  }
+
+  /**
+   * Helper method to determine if the characters of a column are kept.
+   *
+   * @param column (int) The index of the column.
+   * @return (boolean) True if there is no projection, or the projection includes the column.
+   */
+  private boolean isProjected(int column) {
+    return this.projection == null
+        || column < this.projection.length && this.projection[column];
+  }
+
+  /**
+   * Helper method to get the offset of a field in the current record.
+   *
+   * @param column (int) The index of the field.
+   * @return (int) The offset of the field's first character.
+   */
+  private int fieldStart(int column) {
+    if (column >= this.fieldCount) {
+      throw new IndexOutOfBoundsException("Record " + recordNumber + " has no field " + column);
+    }
+
+    return column == 0 ? 0 : this.fieldEnds[column - 1];
+  }
+
+  @Override
+  public String toString() {
+    return "CSVTokenizer{" +
+        "recordNumber=" + recordNumber +
+        ", fields=" + Arrays.toString(this.getFields()) +
+        '}';
+  }
+}
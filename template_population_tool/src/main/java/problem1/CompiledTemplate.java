@@ -0,0 +1,339 @@
+package problem1;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Class representing a template that has been compiled once into literal chunks and placeholder
+ * slots, so that it can be rendered for any number of rows without scanning the template again.
+ */
+public class CompiledTemplate {
+
+  private static final Pattern KEY = Pattern.compile("\\[{2}([a-zA-Z0-9_-]+)]{2}");
+  private static final int UNBOUND = -1;
+
+  // For each line, the literal chunks surrounding its placeholders (always one more than slots)
+  private final String[][] literals;
+  // For each line, the placeholder index of each slot
+  private final int[][] slots;
+  // The distinct placeholder names, in order of first appearance
+  private final String[] placeholders;
+  // The header column of each placeholder, once the template has been bound
+  private final int[] columns;
+
+  /**
+   * Private constructor for class CompiledTemplate.
+   *
+   * @param literals     (String[][]) The literal chunks of each line.
+   * @param slots        (int[][]) The placeholder index of each slot of each line.
+   * @param placeholders (String[]) The distinct placeholder names.
+   * @param columns      (int[]) The header column of each placeholder.
+   */
+  private CompiledTemplate(String[][] literals, int[][] slots, String[] placeholders,
+      int[] columns) {
+    this.literals = literals;
+    this.slots = slots;
+    this.placeholders = placeholders;
+    this.columns = columns;
+  }
+
+  /**
+   * Compiles the lines of a template into literal chunks and placeholder slots.
+   *
+   * @param template (List) The lines of the template.
+   * @return (CompiledTemplate) The compiled, unbound template.
+   */
+  public static CompiledTemplate compile(List<String> template) {
+    Map<String, Integer> placeholderIndices = new LinkedHashMap<>();
+    String[][] literals = new String[template.size()][];
+    int[][] slots = new int[template.size()][];
+
+    for (int i = 0; i < template.size(); i++) {
+      String line = template.get(i);
+      Matcher match = KEY.matcher(line);
+      List<String> lineLiterals = new ArrayList<>();
+      List<Integer> lineSlots = new ArrayList<>();
+      int last = 0;
+
+      while (match.find()) {
+        lineLiterals.add(line.substring(last, match.start()));
+        lineSlots.add(placeholderIndices
+            .computeIfAbsent(match.group(1), k -> placeholderIndices.size()));
+        last = match.end();
+      }
+
+      lineLiterals.add(line.substring(last));
+      literals[i] = lineLiterals.toArray(new String[0]);
+      slots[i] = lineSlots.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    int[] columns = new int[placeholderIndices.size()];
+    Arrays.fill(columns, UNBOUND);
+
+    return new CompiledTemplate(literals, slots,
+        placeholderIndices.keySet().toArray(new String[0]), columns);
+  }
+
+  /**
+   * Writes the chunks and placeholders of this template in a compact binary form, from which
+   * readFrom compiles the same unbound template without scanning its lines again.
+   *
+   * @param out (DataOutput) The output the template is written to.
+   * @throws IOException when the template cannot be written.
+   */
+  void writeTo(DataOutput out) throws IOException {
+    out.writeInt(placeholders.length);
+    for (String placeholder : placeholders) {
+      writeString(out, placeholder);
+    }
+
+    out.writeInt(literals.length);
+    for (int i = 0; i < literals.length; i++) {
+      out.writeInt(slots[i].length);
+      for (int slot : slots[i]) {
+        out.writeInt(slot);
+      }
+      for (String literal : literals[i]) {
+        writeString(out, literal);
+      }
+    }
+  }
+
+  /**
+   * Reads an unbound template written by writeTo.
+   *
+   * @param in (DataInput) The input the template is read from.
+   * @return (CompiledTemplate) The compiled, unbound template.
+   * @throws IOException when the template cannot be read, or is not valid.
+   */
+  static CompiledTemplate readFrom(DataInput in) throws IOException {
+    String[] placeholders = new String[readCount(in)];
+    for (int i = 0; i < placeholders.length; i++) {
+      placeholders[i] = readString(in);
+    }
+
+    int lines = readCount(in);
+    String[][] literals = new String[lines][];
+    int[][] slots = new int[lines][];
+
+    for (int i = 0; i < lines; i++) {
+      slots[i] = new int[readCount(in)];
+      for (int j = 0; j < slots[i].length; j++) {
+        slots[i][j] = in.readInt();
+        if (slots[i][j] < 0 || slots[i][j] >= placeholders.length) {
+          throw new IOException("Invalid placeholder index in compiled template.");
+        }
+      }
+
+      literals[i] = new String[slots[i].length + 1];
+      for (int j = 0; j < literals[i].length; j++) {
+        literals[i][j] = readString(in);
+      }
+    }
+
+    int[] columns = new int[placeholders.length];
+    Arrays.fill(columns, UNBOUND);
+
+    return new CompiledTemplate(literals, slots, placeholders, columns);
+  }
+
+  /**
+   * Helper method to write a string of any length as its UTF-8 byte count followed by its bytes.
+   *
+   * @param out  (DataOutput) The output the string is written to.
+   * @param text (String) The string to be written.
+   * @throws IOException when the string cannot be written.
+   */
+  private static void writeString(DataOutput out, String text) throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * Helper method to read a string written by writeString.
+   *
+   * @param in (DataInput) The input the string is read from.
+   * @return (String) The string.
+   * @throws IOException when the string cannot be read.
+   */
+  private static String readString(DataInput in) throws IOException {
+    byte[] bytes = new byte[readCount(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Helper method to read the length of an array or string written by writeTo.
+   *
+   * @param in (DataInput) The input the length is read from.
+   * @return (int) The length.
+   * @throws IOException when the length cannot be read, or is negative.
+   */
+  private static int readCount(DataInput in) throws IOException {
+    int count = in.readInt();
+
+    if (count < 0) {
+      throw new IOException("Invalid length in compiled template: " + count);
+    }
+    return count;
+  }
+
+  /**
+   * Resolves every placeholder of this template to the index of its column in a CSV header.
+   *
+   * @param header (List) The column names of the input data, in column order.
+   * @return (CompiledTemplate) A template sharing this template's chunks, bound to the header.
+   * @throws IllegalArgumentException when a placeholder does not name a column of the header.
+   */
+  public CompiledTemplate bind(List<String> header) {
+    int[] resolved = new int[placeholders.length];
+
+    for (int i = 0; i < placeholders.length; i++) {
+      resolved[i] = header.indexOf(placeholders[i]);
+
+      if (resolved[i] == UNBOUND) {
+        throw new IllegalArgumentException("This key was not found.");
+      }
+    }
+
+    return new CompiledTemplate(literals, slots, placeholders, resolved);
+  }
+
+  /**
+   * Appends a single populated line of this template to a buffer.
+   *
+   * @param line (int) The index of the template line.
+   * @param row  (DataRow) The row whose fields are inserted into the placeholders.
+   * @param out  (StringBuilder) The buffer the populated line is appended to.
+   */
+  public void renderLine(int line, DataRow row, StringBuilder out) {
+    String[] lineLiterals = literals[line];
+    int[] lineSlots = slots[line];
+
+    out.append(lineLiterals[0]);
+
+    for (int i = 0; i < lineSlots.length; i++) {
+      row.appendField(columns[lineSlots[i]], out);
+      out.append(lineLiterals[i + 1]);
+    }
+  }
+
+  /**
+   * Appends the whole populated template to a buffer, with each line terminated by a newline.
+   *
+   * @param row (DataRow) The row whose fields are inserted into the placeholders.
+   * @param out (StringBuilder) The buffer the populated template is appended to.
+   */
+  public void render(DataRow row, StringBuilder out) {
+    for (int i = 0; i < literals.length; i++) {
+      renderLine(i, row, out);
+      out.append('\n');
+    }
+  }
+
+  /**
+   * Appends a single populated line of this template to any Appendable. Nothing is allocated when
+   * the destination is a StringBuilder, a CharBuffer or a ByteBufferAppender and the row holds its
+   * fields in a character buffer, as the rows of a RecordStore and of a CSVStreamReader do.
+   *
+   * @param line (int) The index of the template line.
+   * @param row  (DataRow) The row whose fields are inserted into the placeholders.
+   * @param out  (Appendable) The destination the populated line is appended to.
+   * @throws IOException when the destination cannot be appended to.
+   */
+  public void renderLine(int line, DataRow row, Appendable out) throws IOException {
+    String[] lineLiterals = literals[line];
+    int[] lineSlots = slots[line];
+
+    out.append(lineLiterals[0]);
+
+    for (int i = 0; i < lineSlots.length; i++) {
+      row.appendField(columns[lineSlots[i]], out);
+      out.append(lineLiterals[i + 1]);
+    }
+  }
+
+  /**
+   * Appends the whole populated template to any Appendable, with each line terminated by a
+   * newline, e.g. to a CharBuffer, or to a ByteBuffer as UTF-8 through a ByteBufferAppender.
+   *
+   * @param row (DataRow) The row whose fields are inserted into the placeholders.
+   * @param out (Appendable) The destination the populated template is appended to.
+   * @throws IOException when the destination cannot be appended to.
+   * @throws java.nio.BufferOverflowException when the destination is a buffer that is too small.
+   */
+  public void render(DataRow row, Appendable out) throws IOException {
+    for (int i = 0; i < literals.length; i++) {
+      renderLine(i, row, out);
+      out.append('\n');
+    }
+  }
+
+  /**
+   * Gets the number of lines in the template.
+   *
+   * @return (int) The number of lines.
+   */
+  public int getLineCount() {
+    return literals.length;
+  }
+
+  /**
+   * Gets the distinct placeholder names referenced by the template.
+   *
+   * @return (List) The placeholder names, in order of first appearance.
+   */
+  public List<String> getPlaceholders() {
+    return Arrays.asList(placeholders);
+  }
+
+  /**
+   * Checks whether every placeholder of the template has been resolved to a column.
+   *
+   * @return (boolean) True if the template has been bound to a header.
+   */
+  public boolean isBound() {
+    return Arrays.stream(columns).noneMatch(column -> column == UNBOUND);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    CompiledTemplate that = (CompiledTemplate) o;
+    return Arrays.deepEquals(literals, that.literals) && Arrays.deepEquals(slots, that.slots)
+        && Arrays.equals(placeholders, that.placeholders) && Arrays.equals(columns, that.columns);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Objects.hash(Arrays.deepHashCode(literals), Arrays.deepHashCode(slots));
+    result = 31 * result + Arrays.hashCode(placeholders);
+    result = 31 * result + Arrays.hashCode(columns);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "CompiledTemplate{" +
+        "lines=" + literals.length +
+        ", placeholders=" + Arrays.toString(placeholders) +
+        ", columns=" + Arrays.toString(columns) +
+        '}';
+  }
+}
@@ -0,0 +1,69 @@
+package problem1;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * Interface representing a single row of input data, whose fields are addressed by the index of
+ * their column in the CSV header.
+ */
+public interface DataRow {
+
+  /**
+   * Gets the value of a field in this row.
+   *
+   * @param column (int) The index of the column in the header.
+   * @return (String) The value of the field.
+   */
+  String getField(int column);
+
+  /**
+   * Appends the value of a field in this row to a buffer. Rows that hold their fields in a
+   * character buffer override this to append without creating a String.
+   *
+   * @param column (int) The index of the column in the header.
+   * @param out    (StringBuilder) The buffer the value is appended to.
+   */
+  default void appendField(int column, StringBuilder out) {
+    out.append(this.getField(column));
+  }
+
+  /**
+   * Appends the value of a field in this row to any Appendable, such as a CharBuffer, a Writer or
+   * a ByteBufferAppender. Rows that hold their fields in a character buffer override this to
+   * append without creating a String.
+   *
+   * @param column (int) The index of the column in the header.
+   * @param out    (Appendable) The destination the value is appended to.
+   * @throws IOException when the destination cannot be appended to.
+   */
+  default void appendField(int column, Appendable out) throws IOException {
+    out.append(this.getField(column));
+  }
+
+  /**
+   * Appends a range of a character array to an Appendable without allocating, copying in bulk when
+   * the destination is a StringBuilder, a CharBuffer or a ByteBufferAppender, and a character at a
+   * time otherwise, since Appendable can only append a range of a CharSequence by wrapping it.
+   *
+   * @param chars  (char[]) The characters.
+   * @param offset (int) The index of the first character to append.
+   * @param length (int) The number of characters to append.
+   * @param out    (Appendable) The destination the characters are appended to.
+   * @throws IOException when the destination cannot be appended to.
+   */
+  static void appendChars(char[] chars, int offset, int length, Appendable out)
+      throws IOException {
+    if (out instanceof StringBuilder) {
+      ((StringBuilder) out).append(chars, offset, length);
+    } else if (out instanceof CharBuffer) {
+      ((CharBuffer) out).put(chars, offset, length);
+    } else if (out instanceof ByteBufferAppender) {
+      ((ByteBufferAppender) out).append(chars, offset, length);
+    } else {
+      for (int i = offset; i < offset + length; i++) {
+        out.append(chars[i]);
+      }
+    }
+  }
+}
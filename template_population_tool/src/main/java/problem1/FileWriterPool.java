@@ -0,0 +1,163 @@
+package problem1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Class representing a pool of threads that create and write output files concurrently. Writing
+ * many small files is bound by the latency of creating and closing each file rather than by
+ * bandwidth, especially on network storage, so a batch of files is spread across the threads of
+ * the pool instead of being written one after the other. The number of threads caps the number of
+ * files being written at the same time.
+ *
+ * <p>A pool is shared by every BatchFileWriter of a run. Each writer hands its batches to the pool
+ * and only keeps a bounded number of them in flight, so that rendering waits for the files to be
+ * written rather than queueing an unbounded amount of output in memory.</p>
+ */
+public class FileWriterPool implements Closeable {
+
+  static final int DEFAULT_CONCURRENCY = 16;
+
+  private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+  private final int concurrency;
+  private final ExecutorService pool;
+
+  /**
+   * Constructor for class FileWriterPool.
+   *
+   * @param concurrency (int) The number of files written at the same time.
+   */
+  public FileWriterPool(int concurrency) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException(
+          "Expected a write concurrency of at least one, found " + concurrency + ".");
+    }
+
+    int id = POOL_COUNT.incrementAndGet();
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadFactory threads = task -> {
+      Thread thread = new Thread(task,
+          "file-writer-" + id + "-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+
+    this.concurrency = concurrency;
+    this.pool = Executors.newFixedThreadPool(concurrency, threads);
+  }
+
+  /**
+   * Writes a batch of files whose contents lie one after the other in a buffer, each in a task of
+   * its own. The buffer must not be modified until the batch is over.
+   *
+   * @param bytes (ByteBuffer) The buffer holding the contents of the files, from its start.
+   * @param files (List) The files to be written, replaced if they exist.
+   * @param ends  (List) For each file, the position in the buffer where its contents end.
+   * @return (Batch) The batch, which can be waited for.
+   */
+  public Batch write(ByteBuffer bytes, List<Path> files, List<Integer> ends) {
+    Batch batch = new Batch(files.size());
+    int start = 0;
+
+    for (int i = 0; i < files.size(); i++) {
+      ByteBuffer slice = bytes.duplicate();
+      slice.limit(ends.get(i)).position(start);
+      Path file = files.get(i);
+
+      pool.execute(() -> batch.run(file, slice));
+      start = ends.get(i);
+    }
+
+    return batch;
+  }
+
+  /**
+   * Gets the number of files written at the same time.
+   *
+   * @return (int) The write concurrency.
+   */
+  public int getConcurrency() {
+    return concurrency;
+  }
+
+  /**
+   * Stops the threads of the pool once the batches already handed to it are written.
+   */
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+  @Override
+  public String toString() {
+    return "FileWriterPool{" +
+        "concurrency=" + concurrency +
+        '}';
+  }
+
+  /**
+   * Class representing the files of a single batch being written by the pool.
+   */
+  public static final class Batch {
+
+    private final CountDownLatch remaining;
+    private final AtomicReference<IOException> failure;
+
+    /**
+     * Private constructor for class Batch.
+     *
+     * @param files (int) The number of files in the batch.
+     */
+    private Batch(int files) {
+      this.remaining = new CountDownLatch(files);
+      this.failure = new AtomicReference<>();
+    }
+
+    /**
+     * Waits for every file of the batch to be written.
+     *
+     * @throws IOException when a file of the batch could not be written, or the wait was
+     *                     interrupted.
+     */
+    public void await() throws IOException {
+      try {
+        remaining.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while writing templates.", e);
+      }
+
+      if (failure.get() != null) {
+        throw failure.get();
+      }
+    }
+
+    /**
+     * Helper method to write a single file of the batch, recording the first failure.
+     *
+     * @param file  (Path) The file to be written.
+     * @param bytes (ByteBuffer) The contents of the file.
+     */
+    private void run(Path file, ByteBuffer bytes) {
+      try (FileChannel channel = BatchFileWriter.open(file)) {
+        BatchFileWriter.writeFully(channel, bytes);
+      } catch (IOException e) {
+        System.err.println(e.getMessage());
+        failure.compareAndSet(null, e);
+      } finally {
+        remaining.countDown();
+      }
+    }
+  }
+}
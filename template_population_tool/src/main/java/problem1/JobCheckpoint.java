@@ -0,0 +1,515 @@
+package problem1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Class representing the progress of a run that writes each populated template to a file of its
+ * own, so that a run that dies part way can be resumed rather than restarted. The rows of the run
+ * are partitioned into ranges, and for every range and template the checkpoint records the first
+ * row whose output is not yet known to be written, along with the number of bytes written for the
+ * rows before it. The byte counts allow a resumed run to detect output files that were truncated
+ * or lost, and to write them again.
+ *
+ * <p>The checkpoint is a text file named .template-checkpoint in the output directory. Its first
+ * line identifies the format, followed by a line per template (the template's file name and hash),
+ * a line with the number of rows and the hash of the data, and a line per range holding the first
+ * and last row of the range and, for each template, the next row to write and the bytes written.
+ * The file is synced to disk before it replaces the previous checkpoint.</p>
+ *
+ * <p>Each shard of a sharded run keeps a checkpoint of its own, named after the shard, so that
+ * shards sharing an output directory can be resumed independently.</p>
+ */
+public class JobCheckpoint {
+
+  static final String FILE_NAME = ".template-checkpoint";
+
+  private static final String HEADER = "template-checkpoint 1";
+  private static final String TEMPLATE_PREFIX = "template ";
+  private static final String ROWS_PREFIX = "rows ";
+  private static final String RANGE_PREFIX = "range ";
+
+  private final Map<String, Long> templateHashes;
+  private final int rows;
+  private final long dataHash;
+  private final List<Range> ranges;
+
+  /**
+   * Constructor for class JobCheckpoint.
+   *
+   * @param templateHashes (Map) Map of the file name of each template to the hash of its lines, in
+   *                       the order the templates are populated in.
+   * @param rows           (int) The number of rows of the run.
+   * @param dataHash       (long) The hash identifying the columns and rows of the run.
+   * @param ranges         (List) The ranges the rows are partitioned into.
+   */
+  public JobCheckpoint(Map<String, Long> templateHashes, int rows, long dataHash,
+      List<Range> ranges) {
+    this.templateHashes = Collections.unmodifiableMap(new LinkedHashMap<>(templateHashes));
+    this.rows = rows;
+    this.dataHash = dataHash;
+    this.ranges = Collections.unmodifiableList(new ArrayList<>(ranges));
+  }
+
+  /**
+   * Partitions rows into contiguous ranges of about the same size, none of which has been written.
+   *
+   * @param rows      (int) The number of rows.
+   * @param parts     (int) The number of ranges wanted.
+   * @param templates (int) The number of templates populated for each row.
+   * @return (List) The ranges, in row order. There are fewer ranges than wanted when there are
+   * fewer rows, and none when there are no rows.
+   */
+  public static List<Range> partition(int rows, int parts, int templates) {
+    List<Range> ranges = new ArrayList<>();
+    int chunk = (rows + parts - 1) / parts;
+
+    for (int start = 0; start < rows; start += chunk) {
+      ranges.add(new Range(start, Math.min(rows, start + chunk), templates));
+    }
+
+    return ranges;
+  }
+
+  /**
+   * Gets the name of the checkpoint of a run.
+   *
+   * @param shard (Shard) The shard of the run, or null if the run is not sharded.
+   * @return (String) The file name of the checkpoint.
+   */
+  public static String fileName(Shard shard) {
+    return shard == null ? FILE_NAME
+        : FILE_NAME + "-" + shard.getIndex() + "-of-" + shard.getCount();
+  }
+
+  /**
+   * Reads the checkpoint of an output directory.
+   *
+   * @param outputDir (String) Path to the output directory.
+   * @return (JobCheckpoint) The checkpoint, or null if the directory has no checkpoint.
+   * @throws IOException when the checkpoint cannot be read, or is not a valid checkpoint.
+   */
+  public static JobCheckpoint read(String outputDir) throws IOException {
+    return read(outputDir, FILE_NAME);
+  }
+
+  /**
+   * Reads a checkpoint of an output directory by name.
+   *
+   * @param outputDir (String) Path to the output directory.
+   * @param fileName  (String) The file name of the checkpoint.
+   * @return (JobCheckpoint) The checkpoint, or null if the directory has no such checkpoint.
+   * @throws IOException when the checkpoint cannot be read, or is not a valid checkpoint.
+   */
+  public static JobCheckpoint read(String outputDir, String fileName) throws IOException {
+    Path path = Paths.get(outputDir, fileName);
+
+    try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(in.readLine())) {
+        throw new IOException("Not a template checkpoint: " + path);
+      }
+
+      Map<String, Long> templateHashes = new LinkedHashMap<>();
+      String line = in.readLine();
+
+      while (line != null && line.startsWith(TEMPLATE_PREFIX)) {
+        int space = line.lastIndexOf(' ');
+        templateHashes.put(line.substring(TEMPLATE_PREFIX.length(), space),
+            Long.parseUnsignedLong(line.substring(space + 1), 16));
+        line = in.readLine();
+      }
+
+      if (line == null || !line.startsWith(ROWS_PREFIX)) {
+        throw new IOException("Missing row count in template checkpoint: " + path);
+      }
+
+      String[] counts = line.substring(ROWS_PREFIX.length()).split(" ");
+      int rows = Integer.parseInt(counts[0]);
+      long dataHash = Long.parseUnsignedLong(counts[1], 16);
+      List<Range> ranges = new ArrayList<>();
+
+      while ((line = in.readLine()) != null) {
+        ranges.add(Range.parse(line, templateHashes.size(), path));
+      }
+
+      return new JobCheckpoint(templateHashes, rows, dataHash, ranges);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+      throw new IOException("Invalid template checkpoint: " + path, e);
+    }
+  }
+
+  /**
+   * Deletes the checkpoint of an output directory, if it has one.
+   *
+   * @param outputDir (String) Path to the output directory.
+   * @throws IOException when the checkpoint cannot be deleted.
+   */
+  public static void delete(String outputDir) throws IOException {
+    delete(outputDir, FILE_NAME);
+  }
+
+  /**
+   * Deletes a checkpoint of an output directory by name, if it exists.
+   *
+   * @param outputDir (String) Path to the output directory.
+   * @param fileName  (String) The file name of the checkpoint.
+   * @throws IOException when the checkpoint cannot be deleted.
+   */
+  public static void delete(String outputDir, String fileName) throws IOException {
+    Files.deleteIfExists(Paths.get(outputDir, fileName));
+  }
+
+  /**
+   * Records that every output of a range before the given row has been written, then writes the
+   * checkpoint to the output directory.
+   *
+   * @param range     (Range) A range of this checkpoint.
+   * @param next      (int) The first row of the range whose outputs may not be written yet. Rows
+   *                  that a template had already written past are left as they are.
+   * @param bytes     (long[]) For each template, the bytes written for the rows before its next
+   *                  row.
+   * @param outputDir (String) Path to the output directory.
+   * @throws IOException when the checkpoint cannot be written.
+   */
+  public synchronized void advance(Range range, int next, long[] bytes, String outputDir)
+      throws IOException {
+    this.advance(range, next, bytes, outputDir, FILE_NAME);
+  }
+
+  /**
+   * Records that every output of a range before the given row has been written, then writes the
+   * checkpoint to the output directory under the given name.
+   *
+   * @param range     (Range) A range of this checkpoint.
+   * @param next      (int) The first row of the range whose outputs may not be written yet.
+   * @param bytes     (long[]) For each template, the bytes written for the rows before its next
+   *                  row.
+   * @param outputDir (String) Path to the output directory.
+   * @param fileName  (String) The file name of the checkpoint.
+   * @throws IOException when the checkpoint cannot be written.
+   */
+  public synchronized void advance(Range range, int next, long[] bytes, String outputDir,
+      String fileName) throws IOException {
+    for (int i = 0; i < range.next.length; i++) {
+      if (next >= range.next[i]) {
+        range.next[i] = next;
+        range.bytes[i] = bytes[i];
+      }
+    }
+
+    this.write(outputDir, fileName);
+  }
+
+  /**
+   * Writes the checkpoint to an output directory, replacing its previous checkpoint. The checkpoint
+   * is written and synced to a temporary file first, so a run that dies part way never leaves a
+   * truncated checkpoint behind.
+   *
+   * @param outputDir (String) Path to the output directory.
+   * @throws IOException when the checkpoint cannot be written.
+   */
+  public synchronized void write(String outputDir) throws IOException {
+    this.write(outputDir, FILE_NAME);
+  }
+
+  /**
+   * Writes the checkpoint to an output directory under the given name, replacing the previous
+   * checkpoint of that name.
+   *
+   * @param outputDir (String) Path to the output directory.
+   * @param fileName  (String) The file name of the checkpoint.
+   * @throws IOException when the checkpoint cannot be written.
+   */
+  public synchronized void write(String outputDir, String fileName) throws IOException {
+    Path path = Paths.get(outputDir, fileName);
+    Path temp = Paths.get(outputDir, fileName + ".tmp");
+    StringBuilder text = new StringBuilder(HEADER).append('\n');
+
+    for (Map.Entry<String, Long> template : this.templateHashes.entrySet()) {
+      text.append(TEMPLATE_PREFIX).append(template.getKey()).append(' ')
+          .append(Long.toHexString(template.getValue())).append('\n');
+    }
+
+    text.append(ROWS_PREFIX).append(this.rows).append(' ')
+        .append(Long.toHexString(this.dataHash)).append('\n');
+
+    for (Range range : this.ranges) {
+      range.format(text).append('\n');
+    }
+
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+        while (bytes.hasRemaining()) {
+          channel.write(bytes);
+        }
+        channel.force(true);
+      }
+
+      try {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * Determines if a run can be resumed from this checkpoint, i.e. if it populates the same
+   * templates, in the same order, with the same data.
+   *
+   * @param run (JobCheckpoint) A checkpoint describing the run, whose ranges are ignored.
+   * @return (boolean) True if the run can be resumed from this checkpoint.
+   */
+  public boolean matches(JobCheckpoint run) {
+    return run != null
+        && this.rows == run.rows
+        && this.dataHash == run.dataHash
+        && new ArrayList<>(this.templateHashes.entrySet())
+        .equals(new ArrayList<>(run.templateHashes.entrySet()));
+  }
+
+  /**
+   * Gets the hashes of the templates.
+   *
+   * @return (Map) Map of the file name of each template to the hash of its lines.
+   */
+  public Map<String, Long> getTemplateHashes() {
+    return templateHashes;
+  }
+
+  /**
+   * Gets the number of rows of the run.
+   *
+   * @return (int) The number of rows.
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Gets the hash identifying the columns and rows of the run.
+   *
+   * @return (long) The hash of the data.
+   */
+  public long getDataHash() {
+    return dataHash;
+  }
+
+  /**
+   * Gets the ranges the rows are partitioned into.
+   *
+   * @return (List) The ranges, in row order.
+   */
+  public List<Range> getRanges() {
+    return ranges;
+  }
+
+  @Override
+  public synchronized boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    JobCheckpoint that = (JobCheckpoint) o;
+    return rows == that.rows
+        && dataHash == that.dataHash
+        && Objects.equals(templateHashes, that.templateHashes)
+        && Objects.equals(ranges, that.ranges);
+  }
+
+  @Override
+  public synchronized int hashCode() {
+    return Objects.hash(templateHashes, rows, dataHash, ranges);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "JobCheckpoint{" +
+        "templateHashes=" + templateHashes +
+        ", rows=" + rows +
+        ", ranges=" + ranges +
+        '}';
+  }
+
+  /**
+   * Class representing a contiguous range of rows, written by a single thread, and the progress of
+   * each template through it.
+   */
+  public static final class Range {
+
+    private final int from;
+    private final int to;
+    private final int[] next;
+    private final long[] bytes;
+
+    /**
+     * Constructor for a range none of whose rows has been written.
+     *
+     * @param from      (int) The index of the first row of the range.
+     * @param to        (int) The index just past the last row of the range.
+     * @param templates (int) The number of templates populated for each row.
+     */
+    public Range(int from, int to, int templates) {
+      this.from = from;
+      this.to = to;
+      this.next = new int[templates];
+      this.bytes = new long[templates];
+      Arrays.fill(this.next, from);
+    }
+
+    /**
+     * Gets the index of the first row of the range.
+     *
+     * @return (int) The index of the first row.
+     */
+    public int getFrom() {
+      return from;
+    }
+
+    /**
+     * Gets the index just past the last row of the range.
+     *
+     * @return (int) The index just past the last row.
+     */
+    public int getTo() {
+      return to;
+    }
+
+    /**
+     * Gets the first row of the range whose output for a template may not be written yet.
+     *
+     * @param template (int) The index of the template.
+     * @return (int) The index of the next row to write.
+     */
+    public int getNext(int template) {
+      return next[template];
+    }
+
+    /**
+     * Gets the bytes written for a template by the rows of the range before its next row.
+     *
+     * @param template (int) The index of the template.
+     * @return (long) The number of bytes, once encoded as UTF-8.
+     */
+    public long getBytes(int template) {
+      return bytes[template];
+    }
+
+    /**
+     * Marks every row of the range as unwritten for a template, e.g. when one of its output files
+     * turns out to be missing or truncated.
+     *
+     * @param template (int) The index of the template.
+     */
+    public void restart(int template) {
+      next[template] = from;
+      bytes[template] = 0;
+    }
+
+    /**
+     * Helper method to append the range to the text of a checkpoint.
+     *
+     * @param text (StringBuilder) The text of the checkpoint.
+     * @return (StringBuilder) The text, for convenience.
+     */
+    private StringBuilder format(StringBuilder text) {
+      text.append(RANGE_PREFIX).append(from).append(' ').append(to);
+
+      for (int i = 0; i < next.length; i++) {
+        text.append(' ').append(next[i]).append(' ').append(bytes[i]);
+      }
+
+      return text;
+    }
+
+    /**
+     * Helper method to parse a range from a line of a checkpoint.
+     *
+     * @param line      (String) The line of the checkpoint.
+     * @param templates (int) The number of templates of the checkpoint.
+     * @param path      (Path) The path to the checkpoint, for error messages.
+     * @return (Range) The range.
+     * @throws IOException when the line is not a valid range.
+     */
+    private static Range parse(String line, int templates, Path path) throws IOException {
+      String[] fields = line.split(" ");
+
+      if (!line.startsWith(RANGE_PREFIX) || fields.length != 3 + 2 * templates) {
+        throw new IOException("Invalid range in template checkpoint: " + path);
+      }
+
+      Range range = new Range(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), templates);
+
+      for (int i = 0; i < templates; i++) {
+        range.next[i] = Integer.parseInt(fields[3 + 2 * i]);
+        range.bytes[i] = Long.parseLong(fields[4 + 2 * i]);
+
+        if (range.next[i] < range.from || range.next[i] > range.to || range.bytes[i] < 0) {
+          throw new IOException("Invalid range in template checkpoint: " + path);
+        }
+      }
+
+      return range;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Range that = (Range) o;
+      return from == that.from
+          && to == that.to
+          && Arrays.equals(next, that.next)
+          && Arrays.equals(bytes, that.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = Objects.hash(from, to);
+      result = 31 * result + Arrays.hashCode(next);
+      result = 31 * result + Arrays.hashCode(bytes);
+      return result;
+    }
+
+    @Override
+    public String toString() {
+      return "Range{" +
+          "from=" + from +
+          ", to=" + to +
+          ", next=" + Arrays.toString(next) +
+          ", bytes=" + Arrays.toString(bytes) +
+          '}';
+    }
+  }
+}
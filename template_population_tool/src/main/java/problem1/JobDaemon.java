@@ -0,0 +1,318 @@
+package problem1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class representing a long-running process that populates templates for jobs submitted to a spool
+ * directory, so that every job after the first runs on a warm JVM, with its templates compiled and
+ * its CSV file parsed already if an earlier job used them.
+ *
+ * <p>A job is a file named with the .job extension, holding the command line arguments of the job
+ * one per line, e.g. "--csv-file" and "/path/to/data.csv" on lines of their own. Jobs should be
+ * written under another name and then renamed, so that the daemon never reads part of a job. The
+ * daemon claims a job by renaming it with the .running extension, then runs it on a pool of
+ * workers, in the order the jobs were submitted. Once the job is over, its file is replaced by one
+ * with the .done extension, holding the statistics of the run, or the .failed extension, holding
+ * the error that ended it.</p>
+ *
+ * <p>A spool directory is served by a single daemon. Jobs that were running when a daemon died are
+ * submitted again when the next daemon starts.</p>
+ */
+public class JobDaemon implements Closeable {
+
+  static final String JOB_EXTENSION = ".job";
+  static final String RUNNING_EXTENSION = ".running";
+  static final String DONE_EXTENSION = ".done";
+  static final String FAILED_EXTENSION = ".failed";
+  static final long POLL_MILLIS = 500;
+
+  private final Path spoolDir;
+  private final int workers;
+  private final TemplateCache templateCache;
+  private final RecordCache recordCache;
+  private final ExecutorService pool;
+  private volatile boolean running;
+
+  /**
+   * Constructor for class JobDaemon. Jobs left running by a previous daemon are submitted again.
+   *
+   * @param spoolDir      (Path) The directory jobs are submitted to.
+   * @param workers       (int) The number of jobs run at the same time.
+   * @param templateCache (TemplateCache) The cache templates are compiled through.
+   * @param recordCache   (RecordCache) The cache CSV files are parsed through.
+   * @throws IOException when the spool directory cannot be created or read.
+   */
+  public JobDaemon(Path spoolDir, int workers, TemplateCache templateCache,
+      RecordCache recordCache) throws IOException {
+    if (workers < 1) {
+      throw new IllegalArgumentException(
+          "Expected at least one worker, found " + workers + ".");
+    }
+
+    this.spoolDir = spoolDir;
+    this.workers = workers;
+    this.templateCache = templateCache;
+    this.recordCache = recordCache;
+    this.running = true;
+
+    Files.createDirectories(spoolDir);
+
+    for (Path job : this.listJobs(RUNNING_EXTENSION)) {
+      this.rename(job, RUNNING_EXTENSION, JOB_EXTENSION);
+    }
+
+    this.pool = Executors.newFixedThreadPool(workers);
+  }
+
+  /**
+   * Serves the spool directory until the daemon is stopped, then waits for the running jobs to
+   * finish. New jobs are picked up as soon as the directory reports them, and the directory is
+   * also scanned periodically in case an event was missed.
+   *
+   * @throws IOException when the spool directory cannot be watched or read.
+   */
+  public void run() throws IOException {
+    try (WatchService watcher = spoolDir.getFileSystem().newWatchService()) {
+      spoolDir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY);
+
+      while (running) {
+        this.submitPending();
+
+        WatchKey key = watcher.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (key != null) {
+          key.pollEvents();
+          key.reset();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ClosedWatchServiceException e) {
+      // The daemon was stopped while waiting for jobs
+    } finally {
+      this.close();
+    }
+  }
+
+  /**
+   * Claims every job waiting in the spool directory and submits it to the pool of workers, oldest
+   * first.
+   *
+   * @return (int) The number of jobs submitted.
+   * @throws IOException when the spool directory cannot be read.
+   */
+  public int submitPending() throws IOException {
+    List<Path> jobs = this.listJobs(JOB_EXTENSION);
+    int submitted = 0;
+
+    jobs.sort((a, b) -> {
+      int order = Long.compare(a.toFile().lastModified(), b.toFile().lastModified());
+      return order != 0 ? order : a.compareTo(b);
+    });
+
+    for (Path job : jobs) {
+      Path claimed;
+
+      try {
+        claimed = this.rename(job, JOB_EXTENSION, RUNNING_EXTENSION);
+      } catch (NoSuchFileException e) {
+        // Withdrawn before it could be claimed
+        continue;
+      }
+
+      pool.submit(() -> this.runJob(claimed));
+      submitted++;
+    }
+
+    return submitted;
+  }
+
+  /**
+   * Stops serving the spool directory. Jobs already submitted still run.
+   */
+  public void stop() {
+    this.running = false;
+  }
+
+  /**
+   * Stops the daemon and waits for the submitted jobs to finish.
+   */
+  @Override
+  public void close() {
+    this.stop();
+    pool.shutdown();
+
+    try {
+      while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+        System.err.println("Waiting for running jobs to finish.");
+      }
+    } catch (InterruptedException e) {
+      pool.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Gets the directory jobs are submitted to.
+   *
+   * @return (Path) The spool directory.
+   */
+  public Path getSpoolDir() {
+    return spoolDir;
+  }
+
+  /**
+   * Gets the cache templates are compiled through.
+   *
+   * @return (TemplateCache) The template cache.
+   */
+  public TemplateCache getTemplateCache() {
+    return templateCache;
+  }
+
+  /**
+   * Gets the cache CSV files are parsed through.
+   *
+   * @return (RecordCache) The record cache.
+   */
+  public RecordCache getRecordCache() {
+    return recordCache;
+  }
+
+  /**
+   * Helper method to run a claimed job, replacing its file by the outcome of the job.
+   *
+   * @param claimed (Path) The file of the job, with the .running extension.
+   */
+  private void runJob(Path claimed) {
+    String outcome;
+    String extension;
+
+    try {
+      String[] args = Files.readAllLines(claimed, StandardCharsets.UTF_8).stream()
+          .filter(line -> !line.isEmpty())
+          .toArray(String[]::new);
+      ArgumentParser parser = new ArgumentParser.ArgumentParserBuilder(args).build();
+      parser.parse();
+
+      outcome = new PopulationJob(parser).run(templateCache, recordCache).toSummary();
+      extension = DONE_EXTENSION;
+    } catch (Exception e) {
+      // The whole error, e.g. with the usage of the arguments, is left in the outcome file
+      System.err.println(claimed.getFileName() + ": "
+          + String.valueOf(e.getMessage()).split("\n", 2)[0]);
+      outcome = e.toString() + '\n';
+      extension = FAILED_EXTENSION;
+    }
+
+    try {
+      Path temp = claimed.resolveSibling(claimed.getFileName() + ".tmp");
+      Files.write(temp, outcome.getBytes(StandardCharsets.UTF_8));
+      Files.move(temp, this.renamed(claimed, RUNNING_EXTENSION, extension),
+          StandardCopyOption.REPLACE_EXISTING);
+      Files.delete(claimed);
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+    }
+  }
+
+  /**
+   * Helper method to list the files of the spool directory with an extension.
+   *
+   * @param extension (String) The extension, including the dot.
+   * @return (List) The files.
+   * @throws IOException when the spool directory cannot be read.
+   */
+  private List<Path> listJobs(String extension) throws IOException {
+    List<Path> jobs = new ArrayList<>();
+
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(spoolDir, "*" + extension)) {
+      for (Path file : files) {
+        jobs.add(file);
+      }
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw e;
+    }
+
+    return jobs;
+  }
+
+  /**
+   * Helper method to rename a job file, changing its extension.
+   *
+   * @param job  (Path) The job file.
+   * @param from (String) Its current extension.
+   * @param to   (String) Its new extension.
+   * @return (Path) The renamed file.
+   * @throws IOException when the file cannot be renamed, e.g. because it no longer exists.
+   */
+  private Path rename(Path job, String from, String to) throws IOException {
+    Path target = this.renamed(job, from, to);
+
+    try {
+      return Files.move(job, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      return Files.move(job, target);
+    }
+  }
+
+  /**
+   * Helper method to get the name of a job file with another extension.
+   *
+   * @param job  (Path) The job file.
+   * @param from (String) Its current extension.
+   * @param to   (String) The new extension.
+   * @return (Path) The file with the new extension, in the same directory.
+   */
+  private Path renamed(Path job, String from, String to) {
+    String name = job.getFileName().toString();
+    return job.resolveSibling(name.substring(0, name.length() - from.length()) + to);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    JobDaemon that = (JobDaemon) o;
+    return workers == that.workers
+        && Objects.equals(spoolDir, that.spoolDir);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(spoolDir, workers);
+  }
+
+  @Override
+  public String toString() {
+    return "JobDaemon{" +
+        "spoolDir=" + spoolDir +
+        ", workers=" + workers +
+        ", templateCache=" + templateCache +
+        ", recordCache=" + recordCache +
+        '}';
+  }
+}
@@ -0,0 +1,309 @@
+package problem1;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class representing a minimal JSON reader for records, i.e. flat objects whose values are strings,
+ * numbers, booleans or null, and for arrays of such records or of strings. Numbers and booleans are
+ * kept as the text they were written as, and null as an empty string, since every field of a
+ * record is inserted into a template as text. Also writes strings as JSON.
+ */
+public class JsonRecords {
+
+  private final String text;
+  private int position;
+
+  /**
+   * Private constructor for class JsonRecords.
+   *
+   * @param text (String) The JSON text to be read.
+   */
+  private JsonRecords(String text) {
+    this.text = text;
+  }
+
+  /**
+   * Reads a single record.
+   *
+   * @param json (String) The JSON text of an object.
+   * @return (Map) The fields of the record, in the order they were written.
+   * @throws IllegalArgumentException when the text is not a flat JSON object.
+   */
+  public static Map<String, String> parseRecord(String json) {
+    JsonRecords reader = new JsonRecords(json);
+    Map<String, String> record = reader.readRecord();
+    reader.expectEnd();
+    return record;
+  }
+
+  /**
+   * Reads an array whose elements are each a record, or a string.
+   *
+   * @param json (String) The JSON text of an array.
+   * @return (List) The elements of the array: a Map for each record, and a String for each
+   * string.
+   * @throws IllegalArgumentException when the text is not such an array.
+   */
+  public static List<Object> parseArray(String json) {
+    JsonRecords reader = new JsonRecords(json);
+    List<Object> elements = new ArrayList<>();
+
+    reader.expect('[');
+    if (!reader.consume(']')) {
+      do {
+        reader.skipWhitespace();
+        elements.add(reader.peek() == '{' ? reader.readRecord() : reader.readString());
+      } while (reader.consume(','));
+      reader.expect(']');
+    }
+
+    reader.expectEnd();
+    return elements;
+  }
+
+  /**
+   * Appends a string to a buffer as a JSON string, quoted and escaped.
+   *
+   * @param value (CharSequence) The string.
+   * @param out   (StringBuilder) The buffer the JSON string is appended to.
+   * @return (StringBuilder) The buffer, for convenience.
+   */
+  public static StringBuilder quote(CharSequence value, StringBuilder out) {
+    out.append('"');
+
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.append(String.format("\\u%04x", (int) c));
+          } else {
+            out.append(c);
+          }
+      }
+    }
+
+    return out.append('"');
+  }
+
+  /**
+   * Helper method to read an object whose values are all scalars.
+   *
+   * @return (Map) The fields of the object.
+   */
+  private Map<String, String> readRecord() {
+    Map<String, String> record = new LinkedHashMap<>();
+
+    this.expect('{');
+    if (this.consume('}')) {
+      return record;
+    }
+
+    do {
+      this.skipWhitespace();
+      String key = this.readString();
+      this.expect(':');
+      this.skipWhitespace();
+      record.put(key, this.readScalar());
+    } while (this.consume(','));
+
+    this.expect('}');
+    return record;
+  }
+
+  /**
+   * Helper method to read a string, number, boolean or null as text.
+   *
+   * @return (String) The value as text.
+   */
+  private String readScalar() {
+    char c = this.peek();
+
+    if (c == '"') {
+      return this.readString();
+    }
+    if (c == '{' || c == '[') {
+      throw this.error("Expected a string, number, boolean or null");
+    }
+
+    int start = this.position;
+    while (this.position < this.text.length()
+        && "{}[],: \t\r\n\"".indexOf(this.text.charAt(this.position)) < 0) {
+      this.position++;
+    }
+
+    String literal = this.text.substring(start, this.position);
+
+    if (literal.equals("null")) {
+      return "";
+    }
+    if (literal.equals("true") || literal.equals("false")
+        || literal.matches("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?")) {
+      return literal;
+    }
+    throw this.error("Invalid value '" + literal + "'");
+  }
+
+  /**
+   * Helper method to read a quoted string, resolving its escapes.
+   *
+   * @return (String) The string.
+   */
+  private String readString() {
+    this.expect('"');
+    StringBuilder value = new StringBuilder();
+
+    while (true) {
+      if (this.position >= this.text.length()) {
+        throw this.error("Unterminated string");
+      }
+
+      char c = this.text.charAt(this.position++);
+
+      if (c == '"') {
+        return value.toString();
+      }
+      if (c != '\\') {
+        value.append(c);
+        continue;
+      }
+      if (this.position >= this.text.length()) {
+        throw this.error("Unterminated string");
+      }
+
+      char escape = this.text.charAt(this.position++);
+      switch (escape) {
+        case 'b':
+          value.append('\b');
+          break;
+        case 'f':
+          value.append('\f');
+          break;
+        case 'n':
+          value.append('\n');
+          break;
+        case 'r':
+          value.append('\r');
+          break;
+        case 't':
+          value.append('\t');
+          break;
+        case 'u':
+          if (this.position + 4 > this.text.length()) {
+            throw this.error("Invalid unicode escape");
+          }
+          try {
+            value.append((char) Integer.parseInt(
+                this.text.substring(this.position, this.position + 4), 16));
+          } catch (NumberFormatException e) {
+            throw this.error("Invalid unicode escape");
+          }
+          this.position += 4;
+          break;
+        case '"':
+        case '\\':
+        case '/':
+          value.append(escape);
+          break;
+        default:
+          throw this.error("Invalid escape '\\" + escape + "'");
+      }
+    }
+  }
+
+  /**
+   * Helper method to skip whitespace, then consume a character if it is the next one.
+   *
+   * @param c (char) The character.
+   * @return (boolean) True if the character was consumed.
+   */
+  private boolean consume(char c) {
+    this.skipWhitespace();
+
+    if (this.position < this.text.length() && this.text.charAt(this.position) == c) {
+      this.position++;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Helper method to skip whitespace, then consume a character that must be the next one.
+   *
+   * @param c (char) The character.
+   */
+  private void expect(char c) {
+    if (!this.consume(c)) {
+      throw this.error("Expected '" + c + "'");
+    }
+  }
+
+  /**
+   * Helper method to check that only whitespace is left.
+   */
+  private void expectEnd() {
+    this.skipWhitespace();
+
+    if (this.position < this.text.length()) {
+      throw this.error("Unexpected text after the end of the JSON value");
+    }
+  }
+
+  /**
+   * Helper method to get the next character, without consuming it.
+   *
+   * @return (char) The next character.
+   */
+  private char peek() {
+    if (this.position >= this.text.length()) {
+      throw this.error("Unexpected end of the JSON text");
+    }
+    return this.text.charAt(this.position);
+  }
+
+  /**
+   * Helper method to skip whitespace.
+   */
+  private void skipWhitespace() {
+    while (this.position < this.text.length()
+        && Character.isWhitespace(this.text.charAt(this.position))) {
+      this.position++;
+    }
+  }
+
+  /**
+   * Helper method to create the exception reporting invalid JSON at the current position.
+   *
+   * @param message (String) What was wrong.
+   * @return (IllegalArgumentException) The exception to be thrown.
+   */
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException(message + " at offset " + this.position + ".");
+  }
+
+  @Override
+  public String toString() {
+    return "JsonRecords{" +
+        "position=" + position +
+        '}';
+  }
+}
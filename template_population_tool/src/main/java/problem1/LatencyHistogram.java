@@ -0,0 +1,101 @@
+package problem1;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class representing a histogram of latencies, with a bucket per power of two nanoseconds, from
+ * which percentiles can be estimated. A percentile is reported as the upper bound of its bucket,
+ * i.e. it is overestimated by less than a factor of two. Latencies can be recorded from several
+ * threads without locking.
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKETS = 64;
+
+  private final AtomicLongArray counts;
+
+  /**
+   * Constructor for an empty LatencyHistogram.
+   */
+  public LatencyHistogram() {
+    this.counts = new AtomicLongArray(BUCKETS);
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos (long) The latency, in nanoseconds.
+   */
+  public void record(long nanos) {
+    this.counts.incrementAndGet(bucket(nanos));
+  }
+
+  /**
+   * Gets the number of latencies recorded.
+   *
+   * @return (long) The number of latencies.
+   */
+  public long getCount() {
+    long count = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      count += this.counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Estimates a percentile of the recorded latencies.
+   *
+   * @param percentile (double) The percentile, between 0 and 100.
+   * @return (long) The upper bound of the bucket holding the percentile, in nanoseconds, or 0 if
+   * no latency was recorded.
+   */
+  public long getPercentile(double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException(
+          "Expected a percentile between 0 and 100, found " + percentile + ".");
+    }
+
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = this.counts.get(i);
+      count += snapshot[i];
+    }
+
+    long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+
+      if (seen >= rank) {
+        return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Helper method to get the bucket of a latency: bucket i holds the latencies below 2^i
+   * nanoseconds that are not held by a lower bucket.
+   *
+   * @param nanos (long) The latency, in nanoseconds.
+   * @return (int) The index of the bucket.
+   */
+  private static int bucket(long nanos) {
+    return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+  }
+
+  @Override
+  public String toString() {
+    return "LatencyHistogram{" +
+        "count=" + this.getCount() +
+        ", p50=" + this.getPercentile(50) +
+        ", p99=" + this.getPercentile(99) +
+        '}';
+  }
+}
@@ -1,6 +1,8 @@
 package problem1;
 
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 /**
  * Main entry point into application.
@@ -8,20 +10,156 @@ import java.io.IOException;
 public class Main {
 
   public static void main(String[] args) throws IOException {
+    if (isDaemon(args)) {
+      runDaemon(args);
+      return;
+    }
+    if (isServer(args)) {
+      runServer(args);
+      return;
+    }
+    if (isMerge(args)) {
+      runMerge(args);
+      return;
+    }
+
     ArgumentParser parser;
 
     parser = new ArgumentParser.ArgumentParserBuilder(args).build();
     parser.parse();
 
-    CSVProcessor dataProcessor = new CSVProcessor(parser.getTargets().get("csv-file"));
+    RunStats stats = new PopulationJob(parser).run(templateCache(parser), new RecordCache());
+
+    if (parser.getSwitches().containsKey("stats")) {
+      System.out.print(stats.toSummary());
+    }
+  }
+
+  /**
+   * Helper method to determine if the application was started as a daemon.
+   *
+   * @param args (String[]) The command line arguments.
+   * @return (boolean) True if the daemon option was included.
+   */
+  private static boolean isDaemon(String[] args) {
+    return Arrays.asList(args).contains("--daemon") || Arrays.asList(args).contains("-d");
+  }
+
+  /**
+   * Helper method to serve the jobs submitted to a spool directory until the process is stopped.
+   * Jobs that are running when the process is asked to stop are allowed to finish.
+   *
+   * @param args (String[]) The command line arguments, including the daemon option.
+   * @throws IOException when the spool directory cannot be read.
+   */
+  private static void runDaemon(String[] args) throws IOException {
+    ArgumentParser parser = new ArgumentParser.ArgumentParserBuilder(args)
+        .options(ArgumentParser.daemonOptions)
+        .examples(ArgumentParser.daemonExamples)
+        .build();
+    parser.parse();
+
+    JobDaemon daemon = new JobDaemon(Paths.get(parser.getTargets().get("daemon")),
+        parser.getPositiveIntTarget("threads", Runtime.getRuntime().availableProcessors()),
+        templateCache(parser), new RecordCache());
+    Thread main = Thread.currentThread();
+
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+      daemon.stop();
+      try {
+        main.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }));
+
+    daemon.run();
+  }
+
+  /**
+   * Helper method to determine if the application was started as an HTTP server.
+   *
+   * @param args (String[]) The command line arguments.
+   * @return (boolean) True if the serve option was included.
+   */
+  private static boolean isServer(String[] args) {
+    return Arrays.asList(args).contains("--serve") || Arrays.asList(args).contains("-p");
+  }
+
+  /**
+   * Helper method to serve render requests over HTTP until the process is stopped.
+   *
+   * @param args (String[]) The command line arguments, including the serve option.
+   * @throws IOException when the templates or the CSV file cannot be read, or the port cannot be
+   *                     bound.
+   */
+  private static void runServer(String[] args) throws IOException {
+    ArgumentParser parser = new ArgumentParser.ArgumentParserBuilder(args)
+        .options(ArgumentParser.serverOptions)
+        .examples(ArgumentParser.serverExamples)
+        .build();
+    parser.parse();
+
+    RenderServer server = new RenderServer.RenderServerBuilder(
+        parser.getTargets().get("template-dir"))
+        .port(parser.getPositiveIntTarget("serve", 0))
+        .csvPath(parser.getTargets().get("csv-file"))
+        .keyColumn(parser.getTargets().get("key-column"))
+        .threads(parser.getPositiveIntTarget("threads",
+            Runtime.getRuntime().availableProcessors()))
+        .templateCache(templateCache(parser))
+        .build();
+
+    Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+    server.start();
+    System.out.println("Serving templates on http://localhost:" + server.getPort() + "/");
+  }
+
+  /**
+   * Helper method to determine if the application was started to merge the shards of a mailing.
+   *
+   * @param args (String[]) The command line arguments.
+   * @return (boolean) True if the merge-shards option was included.
+   */
+  private static boolean isMerge(String[] args) {
+    return Arrays.asList(args).contains("--merge-shards") || Arrays.asList(args).contains("-M");
+  }
+
+  /**
+   * Helper method to check the manifests of every shard of a mailing against each other. The
+   * process exits with status 1 unless every output was written by exactly one shard.
+   *
+   * @param args (String[]) The command line arguments, including the merge-shards option.
+   * @throws IOException when the manifests cannot be read.
+   */
+  private static void runMerge(String[] args) throws IOException {
+    ArgumentParser parser = new ArgumentParser.ArgumentParserBuilder(args)
+        .options(ArgumentParser.mergeOptions)
+        .examples(ArgumentParser.mergeExamples)
+        .build();
+    parser.parse();
+
+    ShardManifest.Coverage coverage =
+        ShardManifest.merge(parser.getTargets().get("merge-shards"));
 
-    TemplateHandler handler = new TemplateHandler(
-        new String[]{parser.getTargets().get("email-template"),
-            parser.getTargets().get("letter-template")},
-        parser.getTargets().get("output-dir"),
-        dataProcessor.getSupporterInfo()
-    );
+    if (!coverage.isComplete()) {
+      System.err.println(coverage);
+      System.exit(1);
+    }
+    System.out.println(coverage);
+  }
 
-    handler.writeTemplates();
+  /**
+   * Helper method to create the cache templates are compiled through, persisted to the directory
+   * of the template-cache option when it was included.
+   *
+   * @param parser (ArgumentParser) The parsed command line arguments.
+   * @return (TemplateCache) The template cache.
+   */
+  private static TemplateCache templateCache(ArgumentParser parser) {
+    return parser.getTargets().containsKey("template-cache")
+        ? new TemplateCache(TemplateCache.DEFAULT_CAPACITY,
+        Paths.get(parser.getTargets().get("template-cache")))
+        : new TemplateCache();
   }
 }
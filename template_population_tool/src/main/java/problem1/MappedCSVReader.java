@@ -0,0 +1,316 @@
+package problem1;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class representing a reader that streams the rows of a UTF-8 CSV file through a memory-mapped
+ * window of the file. Each row is scanned once for its field boundaries, but a field is only
+ * decoded into characters when it is requested, so columns that no template references are never
+ * decoded at all.
+ */
+public class MappedCSVReader implements RowReader {
+
+  private static final long DEFAULT_WINDOW_SIZE = 1L << 26;
+  private static final byte DELIMITER = ',';
+  private static final byte QUOTE = '"';
+
+  // The states of a field, as in CSVTokenizer
+  private static final int FIELD_START = 0;
+  private static final int UNQUOTED = 1;
+  private static final int QUOTED = 2;
+  private static final int QUOTE_IN_QUOTED = 3;
+
+  private final String filePath;
+  private final FileChannel channel;
+  private final long fileSize;
+  private final List<String> header;
+  private long windowSize;
+  private long windowStart;
+  private MappedByteBuffer window;
+  private int position;
+  private int[] fieldStarts;
+  private int fieldCount;
+  private int recordEnd;
+  private byte[] scratch;
+  private int rowIndex;
+
+  /**
+   * Constructor for class MappedCSVReader. Maps the start of the file and reads its header.
+   *
+   * @param filePath (String) The path to the CSV file to be read.
+   * @throws IOException when the file cannot be opened, mapped or read.
+   */
+  public MappedCSVReader(String filePath) throws IOException {
+    this(filePath, DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Constructor for class MappedCSVReader with a given size of the mapped window.
+   *
+   * @param filePath   (String) The path to the CSV file to be read.
+   * @param windowSize (long) The number of bytes of the file mapped at a time. The window grows
+   *                   when a single record is larger than it.
+   * @throws IOException when the file cannot be opened, mapped or read.
+   */
+  public MappedCSVReader(String filePath, long windowSize) throws IOException {
+    this.filePath = filePath;
+    this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+    this.fileSize = this.channel.size();
+    this.windowSize = windowSize;
+    this.fieldStarts = new int[16];
+    this.scratch = new byte[256];
+    this.rowIndex = -1;
+    this.map(0);
+
+    if (this.scanRecord()) {
+      String[] names = new String[this.fieldCount];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = this.decode(i);
+      }
+      this.header = Collections.unmodifiableList(Arrays.asList(names));
+    } else {
+      this.header = Collections.emptyList();
+    }
+  }
+
+  @Override
+  public boolean next() throws IOException {
+    if (!this.scanRecord()) {
+      return false;
+    }
+
+    this.rowIndex++;
+    return true;
+  }
+
+  /**
+   * Gets the value of a field in the current row, decoding it from the mapped bytes. A row with
+   * fewer fields than the header is treated as if it were padded with empty fields.
+   *
+   * @param column (int) The index of the column in the header.
+   * @return (String) The value of the field.
+   */
+  @Override
+  public String getField(int column) {
+    return column < this.fieldCount ? this.decode(column) : "";
+  }
+
+  @Override
+  public void appendField(int column, StringBuilder out) {
+    if (column >= this.fieldCount) {
+      return;
+    }
+
+    int length = this.copyField(column);
+
+    for (int i = 0; i < length; i++) {
+      if (this.scratch[i] < 0) {
+        // Not plain ASCII, so the field needs to be decoded properly
+        out.append(new String(this.scratch, 0, length, StandardCharsets.UTF_8));
+        return;
+      }
+    }
+
+    for (int i = 0; i < length; i++) {
+      out.append((char) this.scratch[i]);
+    }
+  }
+
+  @Override
+  public List<String> getHeader() {
+    return header;
+  }
+
+  @Override
+  public int getRowIndex() {
+    return rowIndex;
+  }
+
+  /**
+   * Gets the path to the CSV file being read.
+   *
+   * @return (String) The path to the CSV file.
+   */
+  public String getFilePath() {
+    return filePath;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.window = null;
+    this.channel.close();
+  }
+
+  /**
+   * Helper method to map the window of the file starting at an offset.
+   *
+   * @param offset (long) The offset in the file of the start of the window.
+   * @throws IOException when the file cannot be mapped.
+   */
+  private void map(long offset) throws IOException {
+    long size = Math.min(Math.min(this.windowSize, Integer.MAX_VALUE), this.fileSize - offset);
+
+    this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    this.windowStart = offset;
+    this.position = 0;
+  }
+
+  /**
+   * Helper method to find the boundaries of the fields of the next record, without decoding them.
+   * Blank lines are skipped, and line breaks inside quoted fields do not end the record. As in
+   * CSVTokenizer, a quote only opens a quoted field at the start of the field, and is kept as a
+   * character anywhere else outside quotes. When the record runs past the end of the window, the
+   * window is moved to start at the record.
+   *
+   * @return (boolean) True if a record was found, false at the end of the file.
+   * @throws IOException when the file cannot be mapped.
+   */
+  private boolean scanRecord() throws IOException {
+    while (true) {
+      int limit = this.window.limit();
+
+      // Skip the line terminators left by the previous record and any blank lines
+      while (this.position < limit
+          && (this.window.get(this.position) == '\n' || this.window.get(this.position) == '\r')) {
+        this.position++;
+      }
+
+      if (this.position == limit) {
+        if (this.windowStart + limit >= this.fileSize) {
+          return false;
+        }
+        this.map(this.windowStart + limit);
+        continue;
+      }
+
+      int state = FIELD_START;
+      int i = this.position;
+      this.fieldCount = 0;
+      this.addFieldStart(i);
+
+      for (; i < limit; i++) {
+        byte b = this.window.get(i);
+
+        if (state == QUOTED) {
+          if (b == QUOTE) {
+            state = QUOTE_IN_QUOTED;
+          }
+        } else if (b == DELIMITER) {
+          this.addFieldStart(i + 1);
+          state = FIELD_START;
+        } else if (b == '\n' || b == '\r') {
+          break;
+        } else if (b == QUOTE && state != UNQUOTED) {
+          // Opens the field, or is an escaped quote inside it
+          state = QUOTED;
+        } else {
+          state = UNQUOTED;
+        }
+      }
+
+      if (i == limit && this.windowStart + limit < this.fileSize) {
+        // The record continues past the window, so move the window to the start of the record
+        if (this.position == 0) {
+          this.windowSize *= 2;
+        }
+        this.map(this.windowStart + this.position);
+        continue;
+      }
+
+      if (state == QUOTED) {
+        throw new IOException("Unterminated quoted field in record " + (this.rowIndex + 2));
+      }
+
+      this.recordEnd = i;
+      this.position = i;
+      return true;
+    }
+  }
+
+  /**
+   * Helper method to record the offset of the start of a field.
+   *
+   * @param start (int) The offset of the field in the window.
+   */
+  private void addFieldStart(int start) {
+    if (this.fieldCount == this.fieldStarts.length) {
+      this.fieldStarts = Arrays.copyOf(this.fieldStarts, this.fieldStarts.length * 2);
+    }
+
+    this.fieldStarts[this.fieldCount++] = start;
+  }
+
+  /**
+   * Helper method to get the offset just past the end of a field.
+   *
+   * @param column (int) The index of the field.
+   * @return (int) The offset of the delimiter or line break following the field.
+   */
+  private int fieldEnd(int column) {
+    return column + 1 < this.fieldCount ? this.fieldStarts[column + 1] - 1 : this.recordEnd;
+  }
+
+  /**
+   * Helper method to decode a field of the current record from UTF-8.
+   *
+   * @param column (int) The index of the field.
+   * @return (String) The decoded field.
+   */
+  private String decode(int column) {
+    return new String(this.scratch, 0, this.copyField(column), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Helper method to copy the bytes of a field of the current record into the scratch array,
+   * removing its enclosing quotes and collapsing its escaped quotes, the way CSVTokenizer reads
+   * the field.
+   *
+   * @param column (int) The index of the field.
+   * @return (int) The number of bytes copied.
+   */
+  private int copyField(int column) {
+    int start = this.fieldStarts[column];
+    int end = this.fieldEnd(column);
+    int length = 0;
+
+    if (end - start > this.scratch.length) {
+      this.scratch = new byte[Math.max(end - start, this.scratch.length * 2)];
+    }
+
+    int state = FIELD_START;
+
+    for (int i = start; i < end; i++) {
+      byte b = this.window.get(i);
+
+      if (b == QUOTE && (state == FIELD_START || state == QUOTED)) {
+        // Opens the field, or closes it unless the next byte is a quote too
+        state = state == FIELD_START ? QUOTED : QUOTE_IN_QUOTED;
+        continue;
+      }
+
+      this.scratch[length++] = b;
+      if (state != QUOTED) {
+        state = state == QUOTE_IN_QUOTED && b == QUOTE ? QUOTED : UNQUOTED;
+      }
+    }
+
+    return length;
+  }
+
+  @Override
+  public String toString() {
+    return "MappedCSVReader{" +
+        "filePath='" + filePath + '\'' +
+        ", header=" + header +
+        ", rowIndex=" + rowIndex +
+        '}';
+  }
+}
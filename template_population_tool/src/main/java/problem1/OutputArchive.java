@@ -0,0 +1,353 @@
+package problem1;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Abstract class representing a single archive file that every populated template is streamed
+ * into, instead of each template being written to a file of its own. Entries are named like the
+ * files they replace (e.g. email-template0.txt), and are encoded as UTF-8.
+ *
+ * <p>Entries may be added from several threads, but are written one at a time, in the order in
+ * which they are added.</p>
+ */
+public abstract class OutputArchive implements Closeable {
+
+  private static final String ARCHIVE_NAME = "templates";
+
+  private final File file;
+  private final CharsetEncoder encoder;
+  private ByteBuffer bytes;
+
+  /**
+   * Constructor for class OutputArchive.
+   *
+   * @param file (File) The archive file.
+   */
+  private OutputArchive(File file) {
+    this.file = file;
+    this.encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    this.bytes = ByteBuffer.allocate(8192);
+  }
+
+  /**
+   * Creates an archive of the given format in the output directory, replacing any archive of the
+   * same name.
+   *
+   * @param format    (Format) The format of the archive.
+   * @param outputDir (String) Path to the output directory.
+   * @return (OutputArchive) The open archive, to which entries can be added.
+   * @throws IOException when the archive file cannot be created.
+   */
+  public static OutputArchive open(Format format, String outputDir) throws IOException {
+    File file = new File(outputDir, ARCHIVE_NAME + "." + format.getExtension());
+
+    try {
+      switch (format) {
+        case ZIP:
+          return new Zip(file);
+        case TAR:
+          return new Tar(file);
+        default:
+          return new Concat(file, new File(outputDir, ARCHIVE_NAME + ".idx"));
+      }
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * Adds a populated template to the archive.
+   *
+   * @param name     (String) The name of the entry, i.e. the name of the file it replaces.
+   * @param document (CharSequence) The populated template.
+   * @return (int) The number of bytes of the entry, once encoded as UTF-8.
+   * @throws IOException when the entry cannot be written to the archive.
+   */
+  public synchronized int addEntry(String name, CharSequence document) throws IOException {
+    this.encode(document);
+    this.writeEntry(name, this.bytes.array(), this.bytes.position());
+    return this.bytes.position();
+  }
+
+  /**
+   * Gets the archive file.
+   *
+   * @return (File) The archive file.
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Writes an entry to the archive.
+   *
+   * @param name   (String) The name of the entry.
+   * @param data   (byte[]) The array holding the UTF-8 bytes of the entry.
+   * @param length (int) The number of bytes of the entry, starting at index 0.
+   * @throws IOException when the entry cannot be written to the archive.
+   */
+  abstract void writeEntry(String name, byte[] data, int length) throws IOException;
+
+  /**
+   * Helper method to encode a document into the reusable byte buffer, growing it if needed.
+   *
+   * @param document (CharSequence) The document to be encoded.
+   */
+  private void encode(CharSequence document) {
+    CharBuffer chars = CharBuffer.wrap(document);
+    boolean encoding = true;
+
+    this.encoder.reset();
+    this.bytes.clear();
+
+    while (true) {
+      CoderResult result = encoding ? this.encoder.encode(chars, this.bytes, true)
+          : this.encoder.flush(this.bytes);
+
+      if (result.isUnderflow()) {
+        if (!encoding) {
+          return;
+        }
+        encoding = false;
+      } else {
+        ByteBuffer larger = ByteBuffer.allocate(this.bytes.capacity() * 2);
+        this.bytes.flip();
+        this.bytes = larger.put(this.bytes);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" +
+        "file=" + file +
+        '}';
+  }
+
+  /**
+   * Enum representing the supported archive formats.
+   */
+  public enum Format {
+    ZIP("zip"),
+    TAR("tar"),
+    CONCAT("txt");
+
+    private final String extension;
+
+    Format(String extension) {
+      this.extension = extension;
+    }
+
+    /**
+     * Gets the file extension of archives of this format.
+     *
+     * @return (String) The extension, without the dot.
+     */
+    public String getExtension() {
+      return extension;
+    }
+  }
+
+  /**
+   * Class representing a ZIP archive, whose entries are compressed as they are added.
+   */
+  static class Zip extends OutputArchive {
+
+    private final ZipOutputStream out;
+
+    private Zip(File file) throws IOException {
+      super(file);
+      this.out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16),
+          StandardCharsets.UTF_8);
+    }
+
+    @Override
+    void writeEntry(String name, byte[] data, int length) throws IOException {
+      this.out.putNextEntry(new ZipEntry(name));
+      this.out.write(data, 0, length);
+      this.out.closeEntry();
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.out.close();
+    }
+  }
+
+  /**
+   * Class representing an uncompressed POSIX (ustar) TAR archive.
+   */
+  static class Tar extends OutputArchive {
+
+    private static final int BLOCK_SIZE = 512;
+    private static final int MAX_NAME_LENGTH = 100;
+
+    private final OutputStream out;
+    private final byte[] header;
+    private final long modified;
+
+    private Tar(File file) throws IOException {
+      super(file);
+      this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+      this.header = new byte[BLOCK_SIZE];
+      this.modified = System.currentTimeMillis() / 1000;
+    }
+
+    @Override
+    void writeEntry(String name, byte[] data, int length) throws IOException {
+      byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+
+      if (nameBytes.length > MAX_NAME_LENGTH) {
+        throw new IOException("Entry name is too long for a tar archive: " + name);
+      }
+
+      Arrays.fill(this.header, (byte) 0);
+      System.arraycopy(nameBytes, 0, this.header, 0, nameBytes.length);
+      this.putOctal(100, 8, 0644);
+      this.putOctal(108, 8, 0);
+      this.putOctal(116, 8, 0);
+      this.putOctal(124, 12, length);
+      this.putOctal(136, 12, this.modified);
+      this.header[156] = '0';
+      this.putAscii(257, "ustar\0");
+      this.putAscii(263, "00");
+
+      // The checksum is computed with its own field filled with spaces
+      Arrays.fill(this.header, 148, 156, (byte) ' ');
+      int checksum = 0;
+      for (byte b : this.header) {
+        checksum += b & 0xff;
+      }
+      this.putOctal(148, 7, checksum);
+
+      this.out.write(this.header);
+      this.out.write(data, 0, length);
+      this.pad(length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        // A TAR archive ends with two empty blocks
+        this.out.write(new byte[BLOCK_SIZE * 2]);
+      } finally {
+        this.out.close();
+      }
+    }
+
+    /**
+     * Helper method to write zeros after an entry's data, up to the end of its last block.
+     *
+     * @param length (int) The length of the entry's data.
+     * @throws IOException when the padding cannot be written.
+     */
+    private void pad(int length) throws IOException {
+      int remainder = length % BLOCK_SIZE;
+
+      if (remainder != 0) {
+        Arrays.fill(this.header, (byte) 0);
+        this.out.write(this.header, 0, BLOCK_SIZE - remainder);
+      }
+    }
+
+    /**
+     * Helper method to write a zero-padded, NUL-terminated octal number into a header field.
+     *
+     * @param offset (int) The offset of the field in the header.
+     * @param size   (int) The size of the field, including the terminating NUL.
+     * @param value  (long) The number to be written.
+     */
+    private void putOctal(int offset, int size, long value) {
+      String octal = Long.toOctalString(value);
+      int digits = size - 1;
+
+      for (int i = 0; i < digits; i++) {
+        int fromEnd = digits - 1 - i;
+        this.header[offset + i] =
+            (byte) (fromEnd < octal.length() ? octal.charAt(octal.length() - 1 - fromEnd) : '0');
+      }
+      this.header[offset + digits] = 0;
+    }
+
+    /**
+     * Helper method to write ASCII text into a header field.
+     *
+     * @param offset (int) The offset of the field in the header.
+     * @param text   (String) The text to be written.
+     */
+    private void putAscii(int offset, String text) {
+      for (int i = 0; i < text.length(); i++) {
+        this.header[offset + i] = (byte) text.charAt(i);
+      }
+    }
+  }
+
+  /**
+   * Class representing a single file holding every entry one after the other, along with an index
+   * file that lists the name, byte offset and byte length of each entry on a line of its own,
+   * separated by tabs.
+   */
+  static class Concat extends OutputArchive {
+
+    private final OutputStream out;
+    private final OutputStream index;
+    private final File indexFile;
+    private long offset;
+
+    private Concat(File file, File indexFile) throws IOException {
+      super(file);
+      this.indexFile = indexFile;
+      this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+
+      try {
+        this.index = new BufferedOutputStream(new FileOutputStream(indexFile), 1 << 16);
+      } catch (IOException e) {
+        this.out.close();
+        throw e;
+      }
+    }
+
+    @Override
+    void writeEntry(String name, byte[] data, int length) throws IOException {
+      this.out.write(data, 0, length);
+      this.index.write((name + '\t' + this.offset + '\t' + length + '\n')
+          .getBytes(StandardCharsets.UTF_8));
+      this.offset += length;
+    }
+
+    /**
+     * Gets the index file of the archive.
+     *
+     * @return (File) The index file.
+     */
+    public File getIndexFile() {
+      return indexFile;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        this.out.close();
+      } finally {
+        this.index.close();
+      }
+    }
+  }
+}
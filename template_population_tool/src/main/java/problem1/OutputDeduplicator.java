@@ -0,0 +1,286 @@
+package problem1;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class representing the deduplication of the outputs of a run by their contents. Templates that
+ * reference few columns render the same document for many rows, so each populated template is
+ * hashed as it is written, and only the first output with a given body is written in full. Every
+ * later output with the same body is a duplicate, which is either made a hard link to that first
+ * file or recorded in an index of duplicates left in the output directory.
+ *
+ * <p>The first output with a body may still be queued by a writer on another thread when a
+ * duplicate of it is rendered, so duplicates are only materialized by finish, once every writer of
+ * the run is closed. Bodies are identified by their SHA-256 digest, as a collision would give a
+ * reader the document of another row. An instance is shared by every writer of a run and is
+ * thread-safe.</p>
+ *
+ * <p>Hard links share their contents, so every run, deduplicated or not, replaces an output with a
+ * new file rather than truncating it, which would rewrite every output linked to it.</p>
+ */
+public class OutputDeduplicator {
+
+  static final String INDEX_FILE = ".template-duplicates";
+
+  private static final int CHUNK_SIZE = 1 << 13;
+
+  private final Mode mode;
+  private final Map<ByteBuffer, String> firsts;
+  private final Map<String, String> duplicates;
+  private final ThreadLocal<Digester> digesters;
+
+  /**
+   * Enum representing how duplicate outputs are materialized.
+   */
+  public enum Mode {
+    /**
+     * Each duplicate is a hard link to the first output with its body.
+     */
+    LINK,
+    /**
+     * Duplicates are not written, but listed in the index file with the first output with their
+     * body.
+     */
+    INDEX
+  }
+
+  /**
+   * Constructor for class OutputDeduplicator.
+   *
+   * @param mode (Mode) How duplicate outputs are materialized.
+   */
+  public OutputDeduplicator(Mode mode) {
+    this.mode = mode;
+    this.firsts = new ConcurrentHashMap<>();
+    this.duplicates = new ConcurrentHashMap<>();
+    this.digesters = ThreadLocal.withInitial(Digester::new);
+  }
+
+  /**
+   * Gets the name of the index file of a run, which is kept apart for each shard so that shards
+   * can share an output directory.
+   *
+   * @param shard (Shard) The shard of the run, or null if the run populates every row.
+   * @return (String) The name of the index file.
+   */
+  public static String indexFileName(Shard shard) {
+    return shard == null ? INDEX_FILE
+        : INDEX_FILE + "-" + shard.getIndex() + "-of-" + shard.getCount();
+  }
+
+  /**
+   * Claims the body of an output. The first output with a given body is to be written; every later
+   * output with the same body is recorded as a duplicate of it.
+   *
+   * @param name     (String) The path of the output, relative to the output directory.
+   * @param document (CharSequence) The populated template.
+   * @return (String) The path of the first output with the same body, or null if this output is
+   * the first and is to be written.
+   */
+  public String claim(String name, CharSequence document) {
+    String first = firsts.putIfAbsent(digesters.get().digest(document), name);
+
+    if (first == null || first.equals(name)) {
+      return null;
+    }
+
+    duplicates.put(name, first);
+    return first;
+  }
+
+  /**
+   * Materializes every duplicate claimed so far, once the outputs they duplicate are written. In
+   * LINK mode, a duplicate that cannot be linked, because the file system has no hard links or the
+   * first output has as many links as it may, is copied instead, and later duplicates are linked
+   * to the copy. In INDEX mode, any file left at the path of a duplicate by an earlier run is
+   * removed, as it no longer holds the output.
+   *
+   * @param outputDir (String) Path to the output directory.
+   * @param shard     (Shard) The shard of the run, or null if the run populates every row.
+   * @throws IOException when a duplicate or the index cannot be written.
+   */
+  public void finish(String outputDir, Shard shard) throws IOException {
+    Path directory = Paths.get(outputDir);
+    Path index = directory.resolve(indexFileName(shard));
+    Map<String, String> sorted = new TreeMap<>(duplicates);
+
+    try {
+      if (mode == Mode.INDEX) {
+        for (String name : sorted.keySet()) {
+          Files.deleteIfExists(directory.resolve(name));
+        }
+        writeIndex(index, sorted);
+        return;
+      }
+
+      Map<String, String> targets = new HashMap<>();
+
+      for (Map.Entry<String, String> duplicate : sorted.entrySet()) {
+        Path link = directory.resolve(duplicate.getKey());
+        Path target = directory.resolve(
+            targets.getOrDefault(duplicate.getValue(), duplicate.getValue()));
+
+        Files.deleteIfExists(link);
+        try {
+          Files.createLink(link, target);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+          Files.copy(target, link);
+          targets.put(duplicate.getValue(), duplicate.getKey());
+        }
+      }
+
+      // An index left by an earlier run no longer describes the outputs
+      Files.deleteIfExists(index);
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the index of duplicates left in an output directory.
+   *
+   * @param path (Path) The index file.
+   * @return (Map) Map of the path of each duplicate to the path of the first output with the same
+   * body, sorted by the path of the duplicate.
+   * @throws IOException when the index cannot be read, or a line of it is not an entry.
+   */
+  public static Map<String, String> readIndex(Path path) throws IOException {
+    Map<String, String> entries = new TreeMap<>();
+    List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+
+    for (String line : lines) {
+      int tab = line.indexOf('\t');
+
+      if (tab < 1 || tab == line.length() - 1) {
+        throw new IOException("Invalid entry in " + path + ": " + line);
+      }
+      entries.put(line.substring(0, tab), line.substring(tab + 1));
+    }
+
+    return entries;
+  }
+
+  /**
+   * Helper method to write the index of duplicates, one tab-separated entry per line, replacing
+   * the index of an earlier run in a single move.
+   *
+   * @param index      (Path) The index file.
+   * @param duplicates (Map) Map of the path of each duplicate to the path of the first output with
+   *                   the same body.
+   * @throws IOException when the index cannot be written.
+   */
+  private static void writeIndex(Path index, Map<String, String> duplicates) throws IOException {
+    Path temp = Paths.get(index + ".tmp");
+
+    try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+      for (Map.Entry<String, String> duplicate : duplicates.entrySet()) {
+        out.write(duplicate.getKey() + '\t' + duplicate.getValue() + '\n');
+      }
+    }
+
+    Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Gets how duplicate outputs are materialized.
+   *
+   * @return (Mode) The mode.
+   */
+  public Mode getMode() {
+    return mode;
+  }
+
+  /**
+   * Gets the number of distinct bodies claimed so far.
+   *
+   * @return (int) The number of outputs written in full.
+   */
+  public int getUnique() {
+    return firsts.size();
+  }
+
+  /**
+   * Gets the number of duplicate outputs claimed so far.
+   *
+   * @return (int) The number of outputs that are not written in full.
+   */
+  public int getDuplicates() {
+    return duplicates.size();
+  }
+
+  @Override
+  public String toString() {
+    return "OutputDeduplicator{" +
+        "mode=" + mode +
+        ", unique=" + firsts.size() +
+        ", duplicates=" + duplicates.size() +
+        '}';
+  }
+
+  /**
+   * Class holding the encoder and digest of one thread, which hash a document as UTF-8, the way
+   * it is written, a chunk at a time.
+   */
+  private static final class Digester {
+
+    private final CharsetEncoder encoder;
+    private final MessageDigest digest;
+    private final ByteBuffer chunk;
+
+    private Digester() {
+      this.encoder = StandardCharsets.UTF_8.newEncoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      try {
+        this.digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        // Every Java platform is required to support SHA-256
+        throw new IllegalStateException(e);
+      }
+      this.chunk = ByteBuffer.allocate(CHUNK_SIZE);
+    }
+
+    private ByteBuffer digest(CharSequence document) {
+      CharBuffer chars = CharBuffer.wrap(document);
+      boolean encoding = true;
+
+      this.encoder.reset();
+
+      while (true) {
+        boolean done = encoding ? this.encoder.encode(chars, this.chunk, true).isUnderflow()
+            : this.encoder.flush(this.chunk).isUnderflow();
+
+        this.digest.update(this.chunk.array(), 0, this.chunk.position());
+        this.chunk.clear();
+
+        if (done) {
+          if (!encoding) {
+            break;
+          }
+          encoding = false;
+        }
+      }
+
+      return ByteBuffer.wrap(this.digest.digest());
+    }
+  }
+}
@@ -0,0 +1,606 @@
+package problem1;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class representing the layout of the output directory: the name of the file each populated
+ * template is written to, and the subdirectory it is written in.
+ *
+ * <p>File names are made from a pattern in which {template} stands for the name of the template
+ * file without its extension, {row} for the index of the row, and any other name in braces for
+ * the value of that column of the row. Column values are reduced to letters, digits, '-', '_'
+ * and '@', so that they can never name another directory. The default pattern,
+ * "{template}{row}.txt", names the files as they have always been named. A pattern that names
+ * columns but not the row can give two rows the same name, when their values are equal or only
+ * differ in the characters replaced, so a layout bound for a run remembers every name it gives
+ * out and fails the run on the second row given a name already taken.</p>
+ *
+ * <p>Files can be spread across subdirectories, so that no directory holds more entries than
+ * directory lookups, listings and backup tools cope with. Hashed buckets, e.g. 256x256, place a
+ * file by the FNV-1a hash of its name, one level of directories per bucket count, and are all
+ * created ahead of time. Ranges place consecutive rows in the same directory, e.g. rows 0 to 9999
+ * in "0" for ranges of 10000, and each directory is created when its first row is written.</p>
+ */
+public class OutputLayout {
+
+  public static final String DEFAULT_NAME_PATTERN = "{template}{row}.txt";
+  public static final OutputLayout FLAT = new OutputLayoutBuilder().build();
+
+  static final int CREATE_THREADS = 16;
+  // Every directory of hashed buckets is created up front, so their number is capped
+  static final int MAX_DIRECTORIES = 1 << 20;
+
+  private static final String TEMPLATE = "template";
+  private static final String ROW = "row";
+  private static final int TEMPLATE_TOKEN = -1;
+  private static final int ROW_TOKEN = -2;
+  private static final int UNBOUND = -3;
+
+  private final String namePattern;
+  private final String[] literals;
+  private final String[] tokens;
+  private final int[] columns;
+  private final Scheme scheme;
+  private final int[] buckets;
+  private final Map<String, Integer> claimed;
+
+  /**
+   * Private constructor for class OutputLayout.
+   *
+   * @param builder (OutputLayoutBuilder) An OutputLayoutBuilder instance from which to construct
+   *                the OutputLayout.
+   */
+  private OutputLayout(OutputLayoutBuilder builder) {
+    this.namePattern = builder.namePattern;
+    this.scheme = builder.scheme;
+    this.buckets = builder.buckets;
+
+    List<String> literalList = new ArrayList<>();
+    List<String> tokenList = new ArrayList<>();
+    int start = 0;
+    int open;
+
+    while ((open = namePattern.indexOf('{', start)) >= 0) {
+      int close = namePattern.indexOf('}', open);
+      literalList.add(namePattern.substring(start, open));
+      tokenList.add(namePattern.substring(open + 1, close));
+      start = close + 1;
+    }
+    literalList.add(namePattern.substring(start));
+
+    this.claimed = null;
+    this.literals = literalList.toArray(new String[0]);
+    this.tokens = tokenList.toArray(new String[0]);
+    this.columns = new int[this.tokens.length];
+
+    for (int i = 0; i < this.tokens.length; i++) {
+      this.columns[i] = TEMPLATE.equals(this.tokens[i]) ? TEMPLATE_TOKEN
+          : ROW.equals(this.tokens[i]) ? ROW_TOKEN : UNBOUND;
+    }
+  }
+
+  /**
+   * Private constructor for a layout sharing another layout's pattern and buckets, with its
+   * columns resolved to indices.
+   *
+   * @param layout  (OutputLayout) The layout.
+   * @param columns (int[]) For each token of the pattern, its column index or kind.
+   */
+  private OutputLayout(OutputLayout layout, int[] columns) {
+    this.namePattern = layout.namePattern;
+    this.literals = layout.literals;
+    this.tokens = layout.tokens;
+    this.columns = columns;
+    this.scheme = layout.scheme;
+    this.buckets = layout.buckets;
+    this.claimed = this.usesColumns() && Arrays.stream(columns).noneMatch(c -> c == ROW_TOKEN)
+        ? new ConcurrentHashMap<>() : null;
+  }
+
+  /**
+   * Resolves every column named by the file-name pattern to its index in a CSV header.
+   *
+   * @param header (List) The column names of the input data, in column order.
+   * @return (OutputLayout) A layout like this one, bound to the header, which is used for a single
+   * run as it remembers the names claimed by the run.
+   * @throws IllegalArgumentException when the pattern names a column that is not in the header.
+   */
+  public OutputLayout bind(List<String> header) {
+    int[] resolved = this.columns.clone();
+
+    for (int i = 0; i < this.tokens.length; i++) {
+      if (resolved[i] >= 0 || resolved[i] == UNBOUND) {
+        resolved[i] = header.indexOf(this.tokens[i]);
+
+        if (resolved[i] < 0) {
+          throw new IllegalArgumentException(
+              "The file-name pattern names a column that was not found: " + this.tokens[i]);
+        }
+      }
+    }
+
+    return new OutputLayout(this, resolved);
+  }
+
+  /**
+   * Gets the names of the columns the file-name pattern uses.
+   *
+   * @return (Set) The names of the columns, in the order they appear in the pattern.
+   */
+  public Set<String> getColumns() {
+    Set<String> names = new LinkedHashSet<>();
+
+    for (int i = 0; i < this.tokens.length; i++) {
+      if (this.columns[i] != TEMPLATE_TOKEN && this.columns[i] != ROW_TOKEN) {
+        names.add(this.tokens[i]);
+      }
+    }
+
+    return names;
+  }
+
+  /**
+   * Determines if the file names depend on the columns of the rows, and not only on their index.
+   *
+   * @return (boolean) True if the pattern names a column.
+   */
+  public boolean usesColumns() {
+    return !this.getColumns().isEmpty();
+  }
+
+  /**
+   * Gets the path of the file a populated template is written to, relative to the output
+   * directory, with '/' between directories.
+   *
+   * @param template (String) The name of the template file without its extension.
+   * @param index    (int) The index of the row the template was populated from.
+   * @param row      (DataRow) The row, or null if the pattern names no column.
+   * @return (String) The path of the file.
+   * @throws IllegalStateException when the pattern names a column, and the layout is not bound or
+   *                               no row was given.
+   */
+  public String getPath(String template, int index, DataRow row) {
+    String name = this.getName(template, index, row);
+    String directory = this.getDirectory(name, index);
+
+    return directory.isEmpty() ? name : directory + '/' + name;
+  }
+
+  /**
+   * Claims the path of a file for an output of the run, so that no two outputs of a run are
+   * written to the same file. Only the names given by a bound layout whose pattern names columns
+   * but not the row are remembered, as every other pattern gives each row a name of its own.
+   *
+   * @param path  (String) The path of the file, as given by getPath.
+   * @param index (int) The index of the row the output was populated from.
+   * @throws IOException when another output of the run was already written to the path.
+   */
+  public void claim(String path, int index) throws IOException {
+    Integer first = this.claimed == null ? null : this.claimed.putIfAbsent(path, index);
+
+    if (first != null) {
+      throw new IOException("The file-name pattern " + this.namePattern + " gives the outputs of"
+          + " rows " + first + " and " + index + " the same name, " + path
+          + "; add {row} to the pattern.");
+    }
+  }
+
+  /**
+   * Gets the name of the file a populated template is written to.
+   *
+   * @param template (String) The name of the template file without its extension.
+   * @param index    (int) The index of the row the template was populated from.
+   * @param row      (DataRow) The row, or null if the pattern names no column.
+   * @return (String) The name of the file.
+   * @throws IllegalStateException when the pattern names a column, and the layout is not bound or
+   *                               no row was given.
+   */
+  public String getName(String template, int index, DataRow row) {
+    StringBuilder name = new StringBuilder(this.literals[0]);
+
+    for (int i = 0; i < this.tokens.length; i++) {
+      if (this.columns[i] == TEMPLATE_TOKEN) {
+        name.append(template);
+      } else if (this.columns[i] == ROW_TOKEN) {
+        name.append(index);
+      } else if (this.columns[i] == UNBOUND || row == null) {
+        throw new IllegalStateException(
+            "The file-name pattern needs the columns of the row: " + this.namePattern);
+      } else {
+        int start = name.length();
+        row.appendField(this.columns[i], name);
+        sanitize(name, start);
+      }
+
+      name.append(this.literals[i + 1]);
+    }
+
+    return name.toString();
+  }
+
+  /**
+   * Gets the subdirectory a file is written in.
+   *
+   * @param name  (String) The name of the file.
+   * @param index (int) The index of the row the file was populated from.
+   * @return (String) The subdirectory, with '/' between directories, or an empty String when the
+   * file is written to the output directory itself.
+   */
+  public String getDirectory(String name, int index) {
+    if (this.scheme == Scheme.RANGE) {
+      return Integer.toString(index / this.buckets[0]);
+    }
+    if (this.scheme == Scheme.FLAT) {
+      return "";
+    }
+
+    long hash = OutputManifest.FNV_OFFSET_BASIS;
+    for (int i = 0; i < name.length(); i++) {
+      hash = (hash ^ name.charAt(i)) * OutputManifest.FNV_PRIME;
+    }
+
+    StringBuilder directory = new StringBuilder();
+
+    for (int count : this.buckets) {
+      if (directory.length() > 0) {
+        directory.append('/');
+      }
+      appendBucket(directory, (int) Long.remainderUnsigned(hash, count), count);
+      hash = Long.divideUnsigned(hash, count);
+    }
+
+    return directory.toString();
+  }
+
+  /**
+   * Gets every subdirectory of hashed buckets. Ranges of rows have no fixed set of directories.
+   *
+   * @return (List) The subdirectories, parents before their children, or an empty List unless the
+   * files are spread across hashed buckets.
+   */
+  public List<String> getDirectories() {
+    if (this.scheme != Scheme.HASH) {
+      return Collections.emptyList();
+    }
+
+    List<String> directories = new ArrayList<>();
+    List<String> level = Collections.singletonList("");
+
+    for (int count : this.buckets) {
+      List<String> next = new ArrayList<>();
+
+      for (String parent : level) {
+        for (int i = 0; i < count; i++) {
+          StringBuilder directory = new StringBuilder(parent);
+          if (!parent.isEmpty()) {
+            directory.append('/');
+          }
+          next.add(appendBucket(directory, i, count).toString());
+        }
+      }
+
+      directories.addAll(next);
+      level = next;
+    }
+
+    return directories;
+  }
+
+  /**
+   * Gets the number of directories of hashed buckets.
+   *
+   * @return (long) The number of directories holding files, or 0 unless the files are spread
+   * across hashed buckets.
+   */
+  public long getBucketCount() {
+    if (this.scheme != Scheme.HASH) {
+      return 0;
+    }
+
+    long count = 1;
+    for (int bucket : this.buckets) {
+      count *= bucket;
+    }
+    return count;
+  }
+
+  /**
+   * Gets the scheme files are spread across subdirectories with.
+   *
+   * @return (Scheme) The scheme.
+   */
+  public Scheme getScheme() {
+    return scheme;
+  }
+
+  /**
+   * Gets the file-name pattern.
+   *
+   * @return (String) The pattern.
+   */
+  public String getNamePattern() {
+    return namePattern;
+  }
+
+  /**
+   * Creates subdirectories of an output directory on a pool of threads, level by level, so that
+   * parents exist before their children. Directories that exist already are left as they are.
+   *
+   * @param root        (Path) The output directory.
+   * @param directories (Collection) The subdirectories, with '/' between directories.
+   * @throws IOException when a directory cannot be created.
+   */
+  public static void createDirectories(Path root, Collection<String> directories)
+      throws IOException {
+    List<Set<String>> levels = new ArrayList<>();
+
+    for (String directory : directories) {
+      String[] parts = directory.split("/");
+      StringBuilder path = new StringBuilder();
+
+      for (int i = 0; i < parts.length; i++) {
+        if (levels.size() == i) {
+          levels.add(new TreeSet<>());
+        }
+        path.append(i == 0 ? "" : "/").append(parts[i]);
+        levels.get(i).add(path.toString());
+      }
+    }
+
+    if (levels.isEmpty()) {
+      return;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(CREATE_THREADS);
+
+    try {
+      for (Set<String> level : levels) {
+        List<String> paths = new ArrayList<>(level);
+        List<Future<Void>> tasks = new ArrayList<>();
+        int chunk = (paths.size() + CREATE_THREADS - 1) / CREATE_THREADS;
+
+        for (int from = 0; from < paths.size(); from += chunk) {
+          List<String> part = paths.subList(from, Math.min(from + chunk, paths.size()));
+          tasks.add(pool.submit(() -> {
+            for (String path : part) {
+              Files.createDirectories(root.resolve(path));
+            }
+            return null;
+          }));
+        }
+
+        awaitAll(tasks);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Helper method to wait for every task to finish, rethrowing the first failure.
+   *
+   * @param tasks (List) The submitted tasks.
+   * @throws IOException when a directory could not be created, or the wait was interrupted.
+   */
+  private static void awaitAll(List<Future<Void>> tasks) throws IOException {
+    try {
+      for (Future<Void> task : tasks) {
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while creating output directories.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        System.err.println(e.getCause().getMessage());
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Helper method to append the name of a bucket, in hexadecimal, padded to the width of the
+   * largest bucket of its level.
+   *
+   * @param out    (StringBuilder) The buffer the name is appended to.
+   * @param bucket (int) The bucket.
+   * @param count  (int) The number of buckets of the level.
+   * @return (StringBuilder) The buffer, for convenience.
+   */
+  private static StringBuilder appendBucket(StringBuilder out, int bucket, int count) {
+    String hex = Integer.toHexString(bucket);
+
+    for (int i = hex.length(); i < Integer.toHexString(count - 1).length(); i++) {
+      out.append('0');
+    }
+    return out.append(hex);
+  }
+
+  /**
+   * Helper method to replace the characters of a column value that are not safe in a file name.
+   *
+   * @param name  (StringBuilder) The file name being built.
+   * @param start (int) The offset of the column value in the name.
+   */
+  private static void sanitize(StringBuilder name, int start) {
+    for (int i = start; i < name.length(); i++) {
+      char c = name.charAt(i);
+
+      if (!Character.isLetterOrDigit(c) && c != '-' && c != '_' && c != '@') {
+        name.setCharAt(i, '_');
+      }
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    OutputLayout that = (OutputLayout) o;
+    return Objects.equals(namePattern, that.namePattern)
+        && scheme == that.scheme
+        && Arrays.equals(buckets, that.buckets);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Objects.hash(namePattern, scheme);
+    result = 31 * result + Arrays.hashCode(buckets);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "OutputLayout{" +
+        "namePattern='" + namePattern + '\'' +
+        ", scheme=" + scheme +
+        ", buckets=" + Arrays.toString(buckets) +
+        '}';
+  }
+
+  /**
+   * Enum representing the ways files can be spread across subdirectories.
+   */
+  public enum Scheme {
+    FLAT,
+    HASH,
+    RANGE
+  }
+
+  /**
+   * Builder class for enclosing OutputLayout class.
+   */
+  public static class OutputLayoutBuilder {
+
+    private String namePattern = DEFAULT_NAME_PATTERN;
+    private Scheme scheme = Scheme.FLAT;
+    private int[] buckets = new int[0];
+
+    /**
+     * Creates a new OutputLayoutBuilder that names files after a pattern.
+     *
+     * @param namePattern (String) The pattern, in which {template}, {row} and {column} stand for
+     *                    the template name, the row index and the value of a column.
+     * @return (OutputLayoutBuilder) New OutputLayoutBuilder with the specified pattern.
+     * @throws IllegalArgumentException when the braces do not pair up around a name, the pattern
+     *                                  holds a directory separator, or it names neither the row
+     *                                  nor a column, so that every row would be written to one
+     *                                  file.
+     */
+    public OutputLayoutBuilder namePattern(String namePattern) {
+      boolean perRow = false;
+      int open = -1;
+
+      if (namePattern.contains("/") || namePattern.contains("\\")) {
+        throw new IllegalArgumentException(
+            "A file-name pattern cannot hold directories: " + namePattern);
+      }
+
+      for (int i = 0; i < namePattern.length(); i++) {
+        char c = namePattern.charAt(i);
+
+        if (c == '{' && open < 0) {
+          open = i;
+        } else if (c == '}' && open >= 0 && i > open + 1) {
+          perRow |= !TEMPLATE.equals(namePattern.substring(open + 1, i));
+          open = -1;
+        } else if (c == '{' || c == '}') {
+          throw new IllegalArgumentException("Invalid file-name pattern: " + namePattern);
+        }
+      }
+
+      if (open >= 0) {
+        throw new IllegalArgumentException("Invalid file-name pattern: " + namePattern);
+      }
+      if (!perRow) {
+        throw new IllegalArgumentException(
+            "A file-name pattern must name the row or a column: " + namePattern);
+      }
+
+      this.namePattern = namePattern;
+      return this;
+    }
+
+    /**
+     * Creates a new OutputLayoutBuilder that spreads files across subdirectories.
+     *
+     * @param buckets (String) "flat" to write every file to the output directory, "hash:" and
+     *                the bucket count of each level separated by 'x', e.g. "hash:256x256", or
+     *                "range:" and the number of rows per directory, e.g. "range:10000".
+     * @return (OutputLayoutBuilder) New OutputLayoutBuilder with the specified buckets.
+     * @throws IllegalArgumentException when the buckets are not in one of these forms, a count
+     *                                  is not positive, or hashed buckets make more than
+     *                                  MAX_DIRECTORIES directories.
+     */
+    public OutputLayoutBuilder buckets(String buckets) {
+      String spec = buckets.trim().toLowerCase(Locale.ROOT);
+
+      try {
+        if (spec.equals("flat")) {
+          this.scheme = Scheme.FLAT;
+          this.buckets = new int[0];
+        } else if (spec.startsWith("hash:")) {
+          this.buckets = Arrays.stream(spec.substring(5).split("x"))
+              .mapToInt(Integer::parseInt)
+              .toArray();
+          this.scheme = Scheme.HASH;
+        } else if (spec.startsWith("range:")) {
+          this.buckets = new int[]{Integer.parseInt(spec.substring(6))};
+          this.scheme = Scheme.RANGE;
+        } else {
+          throw new IllegalArgumentException("Unknown output buckets: " + buckets);
+        }
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid output buckets: " + buckets, e);
+      }
+
+      if (Arrays.stream(this.buckets).anyMatch(count -> count < 1)) {
+        throw new IllegalArgumentException("Output bucket counts must be positive: " + buckets);
+      }
+
+      long directories = 1;
+      for (int count : this.buckets) {
+        directories *= count;
+        if (this.scheme == Scheme.HASH && directories > MAX_DIRECTORIES) {
+          throw new IllegalArgumentException("Output buckets make more than " + MAX_DIRECTORIES
+              + " directories: " + buckets);
+        }
+      }
+
+      return this;
+    }
+
+    /**
+     * Generates a new OutputLayout with state mirroring that of the OutputLayoutBuilder.
+     *
+     * @return (OutputLayout) The new OutputLayout instance built from the OutputLayoutBuilder's
+     * state.
+     */
+    public OutputLayout build() {
+      return new OutputLayout(this);
+    }
+  }
+}
@@ -0,0 +1,279 @@
+package problem1;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Class representing the manifest of an output directory, which records a hash of every template
+ * and a hash of the data of every row that the templates were last populated with. Comparing the
+ * manifest of a run with the manifest of the previous run tells which outputs are still up to
+ * date, so that only the outputs whose template or row changed need to be rendered and written
+ * again.
+ *
+ * <p>The manifest is a text file named .template-manifest in the output directory. Its first line
+ * identifies the format, followed by a line per template (the template's file name and hash), a
+ * line with the number of rows, and a line per row with the row's hash. Hashes are 64-bit FNV-1a
+ * hashes, written in hexadecimal.</p>
+ *
+ * <p>A manifest may also name the columns its row hashes cover, in a line per column after the
+ * templates, in which case its first line is that of version 2 of the format. A manifest without
+ * them covers every column of the data.</p>
+ */
+public class OutputManifest {
+
+  static final String FILE_NAME = ".template-manifest";
+  static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  static final long FNV_PRIME = 0x100000001b3L;
+
+  private static final String HEADER = "template-manifest 1";
+  private static final String COLUMNS_HEADER = "template-manifest 2";
+  private static final String TEMPLATE_PREFIX = "template ";
+  private static final String COLUMN_PREFIX = "column ";
+  private static final String ROWS_PREFIX = "rows ";
+
+  private final Map<String, Long> templateHashes;
+  private final long[] rowHashes;
+  private final List<String> columns;
+
+  /**
+   * Constructor for class OutputManifest, for row hashes covering every column of the data.
+   *
+   * @param templateHashes (Map) Map of the file name of each template to the hash of its lines.
+   * @param rowHashes      (long[]) The hash of the data of each row.
+   */
+  public OutputManifest(Map<String, Long> templateHashes, long[] rowHashes) {
+    this(templateHashes, rowHashes, null);
+  }
+
+  /**
+   * Constructor for class OutputManifest.
+   *
+   * @param templateHashes (Map) Map of the file name of each template to the hash of its lines.
+   * @param rowHashes      (long[]) The hash of the data of each row.
+   * @param columns        (List) The names of the columns the row hashes cover, in the order they
+   *                       were hashed, or null if they cover every column.
+   */
+  public OutputManifest(Map<String, Long> templateHashes, long[] rowHashes,
+      List<String> columns) {
+    this.templateHashes = Collections.unmodifiableMap(new LinkedHashMap<>(templateHashes));
+    this.rowHashes = rowHashes;
+    this.columns = columns == null ? null : Collections.unmodifiableList(new ArrayList<>(columns));
+  }
+
+  /**
+   * Reads the manifest of an output directory.
+   *
+   * @param outputDir (String) Path to the output directory.
+   * @return (OutputManifest) The manifest, or null if the directory has no manifest.
+   * @throws IOException when the manifest cannot be read, or is not a valid manifest.
+   */
+  public static OutputManifest read(String outputDir) throws IOException {
+    Path path = Paths.get(outputDir, FILE_NAME);
+
+    try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      String header = in.readLine();
+      if (!HEADER.equals(header) && !COLUMNS_HEADER.equals(header)) {
+        throw new IOException("Not a template manifest: " + path);
+      }
+
+      Map<String, Long> templateHashes = new LinkedHashMap<>();
+      String line = in.readLine();
+
+      while (line != null && line.startsWith(TEMPLATE_PREFIX)) {
+        int space = line.lastIndexOf(' ');
+        templateHashes.put(line.substring(TEMPLATE_PREFIX.length(), space),
+            Long.parseUnsignedLong(line.substring(space + 1), 16));
+        line = in.readLine();
+      }
+
+      List<String> columns = COLUMNS_HEADER.equals(header) ? new ArrayList<>() : null;
+
+      while (columns != null && line != null && line.startsWith(COLUMN_PREFIX)) {
+        columns.add(line.substring(COLUMN_PREFIX.length()));
+        line = in.readLine();
+      }
+
+      if (line == null || !line.startsWith(ROWS_PREFIX)) {
+        throw new IOException("Missing row count in template manifest: " + path);
+      }
+
+      long[] rowHashes = new long[Integer.parseInt(line.substring(ROWS_PREFIX.length()))];
+
+      for (int i = 0; i < rowHashes.length; i++) {
+        line = in.readLine();
+        if (line == null) {
+          throw new IOException("Truncated template manifest: " + path);
+        }
+        rowHashes[i] = Long.parseUnsignedLong(line, 16);
+      }
+
+      return new OutputManifest(templateHashes, rowHashes, columns);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+      throw new IOException("Invalid template manifest: " + path, e);
+    }
+  }
+
+  /**
+   * Writes the manifest to an output directory, replacing its previous manifest. The manifest is
+   * written to a temporary file first, so a run that fails part way never leaves a truncated
+   * manifest behind.
+   *
+   * @param outputDir (String) Path to the output directory.
+   * @throws IOException when the manifest cannot be written.
+   */
+  public void write(String outputDir) throws IOException {
+    Path path = Paths.get(outputDir, FILE_NAME);
+    Path temp = Paths.get(outputDir, FILE_NAME + ".tmp");
+
+    try {
+      try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        out.write(this.columns == null ? HEADER : COLUMNS_HEADER);
+        out.write('\n');
+
+        for (Map.Entry<String, Long> template : this.templateHashes.entrySet()) {
+          out.write(TEMPLATE_PREFIX + template.getKey() + ' '
+              + Long.toHexString(template.getValue()) + '\n');
+        }
+
+        if (this.columns != null) {
+          for (String column : this.columns) {
+            out.write(COLUMN_PREFIX + column + '\n');
+          }
+        }
+
+        out.write(ROWS_PREFIX + this.rowHashes.length + '\n');
+
+        for (long hash : this.rowHashes) {
+          out.write(Long.toHexString(hash));
+          out.write('\n');
+        }
+      }
+
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * Determines if the output of a template for a row is unchanged since a previous manifest, i.e.
+   * if both the template and the data of the row have the same hashes in both manifests.
+   *
+   * @param previous (OutputManifest) The manifest of the previous run.
+   * @param template (String) The file name of the template.
+   * @param row      (int) The index of the row.
+   * @return (boolean) True if the output does not need to be rendered again.
+   */
+  public boolean isUnchanged(OutputManifest previous, String template, int row) {
+    if (previous == null || row >= previous.rowHashes.length
+        || previous.rowHashes[row] != this.rowHashes[row]) {
+      return false;
+    }
+
+    Long hash = this.templateHashes.get(template);
+    return hash != null && hash.equals(previous.templateHashes.get(template));
+  }
+
+  /**
+   * Gets the hashes of the templates.
+   *
+   * @return (Map) Map of the file name of each template to the hash of its lines.
+   */
+  public Map<String, Long> getTemplateHashes() {
+    return templateHashes;
+  }
+
+  /**
+   * Gets the names of the columns the row hashes cover.
+   *
+   * @return (List) The names of the columns, in the order they were hashed, or null if the row
+   * hashes cover every column.
+   */
+  public List<String> getColumns() {
+    return columns;
+  }
+
+  /**
+   * Gets the number of rows in the manifest.
+   *
+   * @return (int) The number of rows.
+   */
+  public int getRowCount() {
+    return rowHashes.length;
+  }
+
+  /**
+   * Gets the hash of the data of a row.
+   *
+   * @param row (int) The index of the row.
+   * @return (long) The hash of the row.
+   */
+  public long getRowHash(int row) {
+    return rowHashes[row];
+  }
+
+  /**
+   * Computes the hash of a template, from its lines and the line breaks between them.
+   *
+   * @param lines (Iterable) The lines of the template.
+   * @return (long) The 64-bit FNV-1a hash of the template.
+   */
+  public static long hashTemplate(Iterable<String> lines) {
+    long hash = FNV_OFFSET_BASIS;
+
+    for (String line : lines) {
+      for (int i = 0; i < line.length(); i++) {
+        hash = (hash ^ line.charAt(i)) * FNV_PRIME;
+      }
+      hash = (hash ^ '\n') * FNV_PRIME;
+    }
+
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    OutputManifest that = (OutputManifest) o;
+    return Objects.equals(templateHashes, that.templateHashes)
+        && Arrays.equals(rowHashes, that.rowHashes)
+        && Objects.equals(columns, that.columns);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Objects.hash(templateHashes, columns);
+    result = 31 * result + Arrays.hashCode(rowHashes);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "OutputManifest{" +
+        "templateHashes=" + templateHashes +
+        ", rows=" + rowHashes.length +
+        '}';
+  }
+}
@@ -0,0 +1,211 @@
+package problem1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Class representing a single run populating templates, as described by parsed command line
+ * arguments. A job can be run once from the command line, or many times over by a JobDaemon that
+ * keeps its compiled templates and parsed CSV files between jobs.
+ */
+public class PopulationJob {
+
+  private final ArgumentParser parser;
+
+  /**
+   * Constructor for class PopulationJob.
+   *
+   * @param parser (ArgumentParser) The parsed command line arguments of the job.
+   */
+  public PopulationJob(ArgumentParser parser) {
+    this.parser = parser;
+  }
+
+  /**
+   * Runs the job, populating its templates with its CSV file and writing them to its output
+   * directory. The statistics are written as JSON when the stats-file option was included.
+   *
+   * @param templateCache (TemplateCache) The cache the templates are compiled through.
+   * @param recordCache   (RecordCache) The cache the CSV file is parsed through, unless the job
+   *                      streams it.
+   * @return (RunStats) The statistics of the run, which has finished.
+   * @throws IOException when the CSV or template files cannot be read, or the output cannot be
+   *                     written.
+   */
+  public RunStats run(TemplateCache templateCache, RecordCache recordCache) throws IOException {
+    // Only the templates whose options were included are populated
+    String[] templatePaths = Arrays.stream(new String[]{
+        parser.getTargets().get("email-template"),
+        parser.getTargets().get("letter-template")})
+        .filter(Objects::nonNull)
+        .toArray(String[]::new);
+
+    // A memory-mapped CSV file is only useful when rows are rendered straight from the mapping
+    boolean memoryMapped = parser.getSwitches().containsKey("mmap");
+    OutputArchive.Format archiveFormat =
+        parser.getEnumTarget("archive", OutputArchive.Format.class, null);
+    String csvPath = parser.getTargets().get("csv-file");
+    RunStats stats = new RunStats();
+
+    // Incremental and resumed runs compare every row with the manifest or checkpoint, so they need
+    // the whole data set
+    boolean incremental = parser.getSwitches().containsKey("incremental");
+    boolean resume = parser.getSwitches().containsKey("resume");
+    int writeConcurrency = parser.getPositiveIntTarget("write-concurrency", 1);
+    int threads = parser.getPositiveIntTarget("threads", 1);
+    int checkpointInterval = parser.getPositiveIntTarget("checkpoint-interval",
+        TemplateHandler.DEFAULT_CHECKPOINT_INTERVAL);
+
+    OutputLayout.OutputLayoutBuilder layoutBuilder = new OutputLayout.OutputLayoutBuilder();
+    parser.getConvertedTarget("name-pattern", layoutBuilder::namePattern, layoutBuilder);
+    parser.getConvertedTarget("buckets", layoutBuilder::buckets, layoutBuilder);
+    OutputLayout layout = layoutBuilder.build();
+    Shard shard = parser.getConvertedTarget("shard", Shard::parse, null);
+    OutputDeduplicator.Mode dedup =
+        parser.getEnumTarget("dedup", OutputDeduplicator.Mode.class, null);
+    long memoryBudget =
+        parser.getConvertedTarget("memory-budget", SpillingRecordStore::parseBudget, 0L);
+
+    boolean streamed = memoryMapped || parser.getSwitches().containsKey("stream");
+
+    // Rather than silently reading the whole file onto the heap of a run asked to stream it
+    if (streamed && (incremental || resume)) {
+      throw new IllegalArgumentException(
+          "Incremental and resumed runs need the whole data set, so they cannot stream the CSV "
+              + "file.");
+    }
+
+    if (streamed) {
+      new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+          parser.getTargets().get("output-dir"), csvPath)
+          .memoryMapped(memoryMapped)
+          .archiveFormat(archiveFormat)
+          .writeConcurrency(writeConcurrency)
+          .outputLayout(layout)
+          .shard(shard)
+          .deduplicate(dedup)
+          // Only pipelined when threads were asked for, so that one row is in memory by default
+          .renderThreads(parser.getTargets().containsKey("threads") ? threads : 0)
+          .templateCache(templateCache)
+          .stats(stats)
+          .build()
+          .writeTemplates();
+      return this.finish(stats);
+    }
+
+    // Only the columns the templates reference are parsed
+    Set<String> columns = new HashSet<>();
+    for (String templatePath : templatePaths) {
+      columns.addAll(templateCache.get(templatePath).getTemplate().getPlaceholders());
+    }
+    columns.addAll(layout.getColumns());
+
+    RecordStore records = memoryBudget > 0 ? this.parse(csvPath, columns, memoryBudget, stats)
+        : recordCache.get(csvPath, columns, stats);
+    stats.recordPeakHeap(RunStats.Stage.PARSE);
+
+    TemplateHandler handler = new TemplateHandler.TemplateHandlerBuilder(
+        templatePaths,
+        parser.getTargets().get("output-dir"),
+        records)
+        .workers(threads)
+        .archiveFormat(archiveFormat)
+        .incremental(incremental)
+        .resume(resume)
+        .checkpointInterval(checkpointInterval)
+        .writeConcurrency(writeConcurrency)
+        .outputLayout(layout)
+        .shard(shard)
+        .deduplicate(dedup)
+        .templateCache(templateCache)
+        .stats(stats)
+        .build();
+
+    try {
+      handler.writeTemplates();
+    } finally {
+      if (records instanceof SpillingRecordStore) {
+        ((SpillingRecordStore) records).close();
+      }
+    }
+    return this.finish(stats);
+  }
+
+  /**
+   * Helper method to parse a CSV file into a store that spills beyond a memory budget. The store
+   * is not cached, as it is closed once the run is done with it, and its rows would not fit in
+   * memory alongside the other cached files anyway.
+   *
+   * @param csvPath      (String) Path to the CSV file.
+   * @param columns      (Set) The names of the columns to be kept.
+   * @param memoryBudget (long) The number of bytes of rows kept on the heap.
+   * @param stats        (RunStats) The statistics of the run.
+   * @return (RecordStore) The rows of the file.
+   * @throws IOException when the CSV file cannot be read.
+   */
+  private RecordStore parse(String csvPath, Set<String> columns, long memoryBudget,
+      RunStats stats) throws IOException {
+    long start = System.nanoTime();
+    RecordStore records = new CSVProcessor(csvPath, columns, memoryBudget).getRecords();
+
+    stats.addTime(RunStats.Stage.PARSE, System.nanoTime() - start);
+    stats.addRows(RunStats.Stage.PARSE, records.size());
+    stats.addBytesRead(RunStats.Stage.PARSE, new File(csvPath).length());
+    return records;
+  }
+
+  /**
+   * Gets the parsed command line arguments of the job.
+   *
+   * @return (ArgumentParser) The parsed arguments.
+   */
+  public ArgumentParser getParser() {
+    return parser;
+  }
+
+  /**
+   * Helper method to end the run, and to write its statistics as JSON when the stats-file option
+   * was included.
+   *
+   * @param stats (RunStats) The statistics of the run.
+   * @return (RunStats) The statistics, for convenience.
+   * @throws IOException when the JSON file cannot be written.
+   */
+  private RunStats finish(RunStats stats) throws IOException {
+    stats.finish();
+
+    if (parser.getTargets().containsKey("stats-file")) {
+      stats.writeJson(parser.getTargets().get("stats-file"));
+    }
+
+    return stats;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    PopulationJob that = (PopulationJob) o;
+    return Objects.equals(parser, that.parser);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(parser);
+  }
+
+  @Override
+  public String toString() {
+    return "PopulationJob{" +
+        "args=" + Arrays.toString(parser.getArgs()) +
+        '}';
+  }
+}
@@ -0,0 +1,239 @@
+package problem1;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Class representing a cache of parsed CSV files, keyed by the path of the file and validated
+ * against its modification time and size, so that a process populating templates again and again
+ * from the same data does not parse it every time. As with TemplateCache, a file changed shortly
+ * after it was parsed is always parsed again, since its modification time cannot be trusted.
+ *
+ * <p>Files can be parsed for some of their columns only. A file cached with a set of columns serves
+ * every request for a subset of them, and is parsed again when more columns are needed.</p>
+ *
+ * <p>The cache holds a bounded number of files, evicting the least recently used one. The cached
+ * records are shared by every caller, which must only read them. Instances are thread-safe.</p>
+ */
+public class RecordCache {
+
+  static final int DEFAULT_CAPACITY = 4;
+
+  private final int capacity;
+  private final LinkedHashMap<String, CachedRecords> entries;
+  private long hits;
+  private long misses;
+
+  /**
+   * Constructor for a cache with the default capacity.
+   */
+  public RecordCache() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Constructor for class RecordCache.
+   *
+   * @param capacity (int) The largest number of parsed files held in memory.
+   * @throws IllegalArgumentException when the capacity is less than one.
+   */
+  public RecordCache(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException(
+          "Expected a capacity of at least one file, found " + capacity + ".");
+    }
+
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<String, CachedRecords>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedRecords> eldest) {
+        return size() > RecordCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Gets the records of a CSV file, parsing the file only if it is not cached, or changed since it
+   * was cached. When the file is parsed, the time spent, the rows and the bytes read are added to
+   * the parse stage of the statistics.
+   *
+   * @param csvPath (String) The path to the CSV file.
+   * @param stats   (RunStats) The statistics of the run.
+   * @return (RecordStore) The records of the file.
+   * @throws IOException when the file does not exist or cannot be read.
+   */
+  public RecordStore get(String csvPath, RunStats stats) throws IOException {
+    return this.get(csvPath, null, stats);
+  }
+
+  /**
+   * Gets the records of some of the columns of a CSV file, parsing the file only if it is not
+   * cached with those columns, or changed since it was cached. When the file is parsed, the time
+   * spent, the rows and the bytes read are added to the parse stage of the statistics.
+   *
+   * @param csvPath (String) The path to the CSV file.
+   * @param columns (Collection) The names of the columns needed, or null for every column.
+   * @param stats   (RunStats) The statistics of the run.
+   * @return (RecordStore) The records of the file, with at least the columns needed.
+   * @throws IOException when the file does not exist or cannot be read.
+   */
+  public RecordStore get(String csvPath, Collection<String> columns, RunStats stats)
+      throws IOException {
+    if (csvPath == null) {
+      throw new IllegalArgumentException("Expected a filename, found null argument.");
+    }
+
+    Path path = Paths.get(csvPath).toAbsolutePath().normalize();
+    String key = path.toString();
+    BasicFileAttributes attributes;
+
+    try {
+      attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      System.err.println("File could not be found");
+      throw e;
+    }
+
+    long modified = attributes.lastModifiedTime().toMillis();
+    long size = attributes.size();
+
+    synchronized (this) {
+      CachedRecords cached = this.entries.get(key);
+
+      if (cached != null && cached.modified == modified && cached.size == size
+          && cached.modified + TemplateCache.RACY_MILLIS <= cached.checked
+          && cached.covers(columns)) {
+        this.hits++;
+        return cached.records;
+      }
+    }
+
+    long checked = System.currentTimeMillis();
+    long start = System.nanoTime();
+    RecordStore records = new CSVProcessor(csvPath, columns).getRecords();
+    stats.addTime(RunStats.Stage.PARSE, System.nanoTime() - start);
+    stats.addRows(RunStats.Stage.PARSE, records.size());
+    stats.addBytesRead(RunStats.Stage.PARSE, new File(csvPath).length());
+
+    synchronized (this) {
+      this.misses++;
+      this.entries.put(key, new CachedRecords(records, columns, modified, size, checked));
+    }
+
+    return records;
+  }
+
+  /**
+   * Removes every parsed file from the cache.
+   */
+  public synchronized void clear() {
+    this.entries.clear();
+  }
+
+  /**
+   * Gets the number of parsed files held in the cache.
+   *
+   * @return (int) The number of files.
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Gets the largest number of parsed files held in the cache.
+   *
+   * @return (int) The capacity of the cache.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets the number of files served from the cache without being parsed.
+   *
+   * @return (long) The number of hits.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of files that had to be parsed.
+   *
+   * @return (long) The number of misses.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  @Override
+  public String toString() {
+    return "RecordCache{" +
+        "capacity=" + capacity +
+        ", size=" + this.size() +
+        '}';
+  }
+
+  /**
+   * Class representing the records of a parsed file, and the state of the file when it was parsed.
+   */
+  private static final class CachedRecords {
+
+    private final RecordStore records;
+    private final Set<String> columns;
+    private final long modified;
+    private final long size;
+    private final long checked;
+
+    private CachedRecords(RecordStore records, Collection<String> columns, long modified,
+        long size, long checked) {
+      this.records = records;
+      this.columns = columns == null ? null : new HashSet<>(columns);
+      this.modified = modified;
+      this.size = size;
+      this.checked = checked;
+    }
+
+    /**
+     * Determines if the records hold every column needed.
+     *
+     * @param needed (Collection) The names of the columns needed, or null for every column.
+     * @return (boolean) True if every column was parsed, or the columns parsed include those
+     * needed.
+     */
+    private boolean covers(Collection<String> needed) {
+      return this.columns == null || needed != null && this.columns.containsAll(needed);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CachedRecords that = (CachedRecords) o;
+      return modified == that.modified
+          && size == that.size
+          && Objects.equals(records, that.records)
+          && Objects.equals(columns, that.columns);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(records, columns, modified, size);
+    }
+  }
+}
@@ -0,0 +1,777 @@
+package problem1;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Class representing a compact, row-oriented store of CSV data. The characters of every field are
+ * packed one after the other into a single char arena, and a single int array holds the offset at
+ * which each field ends, so a row costs one offset per column instead of a String per field.
+ * Fields are addressed by row and column index, with the column indices resolved once from the
+ * header.
+ *
+ * <p>Columns whose values repeat, such as a state or a county, are dictionary-encoded instead: each
+ * distinct value is stored once in the Dictionary of the column, and a row holds the int code of
+ * its value, so a field costs four bytes however long its value is. Every column starts out
+ * encoded, and a column is moved into the arena for good once its dictionary holds more than
+ * DICTIONARY_MAX_VALUES values and its values repeat fewer than DICTIONARY_MIN_REPEATS times on
+ * average, which copies the rows stored so far once. Once the last row is added, compact settles
+ * the encoding of every column by its repeats alone, and trims the arrays to their contents.</p>
+ */
+public class RecordStore {
+
+  static final int DICTIONARY_MAX_VALUES = 1 << 12;
+  static final int DICTIONARY_MIN_REPEATS = 4;
+
+  private final List<String> header;
+  private final Map<String, Integer> columnIndices;
+  private final int columnCount;
+  private final StringBuilder scratch;
+  private final Dictionary[] dictionaries;
+  private final int[] arenaColumns;
+  private int arenaColumnCount;
+  private char[] arena;
+  private int arenaLength;
+  private int[] fieldEnds;
+  private int size;
+  private Long sourceStamp;
+
+  /**
+   * Constructor for class RecordStore.
+   *
+   * @param header (List) The column names, in column order.
+   */
+  public RecordStore(List<String> header) {
+    this.header = Collections.unmodifiableList(new ArrayList<>(header));
+    this.columnIndices = new HashMap<>();
+    this.columnCount = header.size();
+    this.scratch = new StringBuilder();
+    this.dictionaries = new Dictionary[this.columnCount];
+    this.arenaColumns = new int[this.columnCount];
+    this.arena = new char[1024];
+    this.fieldEnds = new int[16];
+
+    for (int i = 0; i < this.columnCount; i++) {
+      this.columnIndices.putIfAbsent(header.get(i), i);
+      this.dictionaries[i] = new Dictionary();
+      this.arenaColumns[i] = -1;
+    }
+  }
+
+  /**
+   * Creates a RecordStore from CSV data held as one List of values per column. Columns shorter
+   * than the longest column are padded with empty Strings.
+   *
+   * @param columns (Map) Map of column names to the List of values in that column.
+   * @return (RecordStore) A RecordStore holding the same data.
+   */
+  public static RecordStore fromColumns(Map<String, List<String>> columns) {
+    RecordStore store = new RecordStore(new ArrayList<>(columns.keySet()));
+    List<List<String>> values = new ArrayList<>(columns.values());
+    int rows = values.stream().mapToInt(List::size).max().orElse(0);
+
+    for (int i = 0; i < rows; i++) {
+      int row = i;
+      store.addRow(column -> row < values.get(column).size() ? values.get(column).get(row) : "",
+          store.columnCount);
+    }
+
+    return store;
+  }
+
+  /**
+   * Appends a row to the store. A row with fewer fields than the header is padded with empty
+   * fields, and fields beyond the header are ignored.
+   *
+   * @param row        (DataRow) The row to be copied into the store.
+   * @param fieldCount (int) The number of fields the row has.
+   */
+  public void addRow(DataRow row, int fieldCount) {
+    int copied = Math.min(fieldCount, this.columnCount);
+
+    if ((this.size + 1) * this.arenaColumnCount > this.fieldEnds.length) {
+      this.fieldEnds = Arrays.copyOf(this.fieldEnds,
+          Math.max(this.fieldEnds.length * 2, (this.size + 1) * this.arenaColumnCount));
+    }
+
+    for (int i = 0; i < this.columnCount; i++) {
+      this.scratch.setLength(0);
+      if (i < copied) {
+        row.appendField(i, this.scratch);
+      }
+
+      if (this.dictionaries[i] != null) {
+        this.dictionaries[i].add(this.size, this.scratch);
+        continue;
+      }
+
+      this.ensureArenaCapacity(this.scratch.length());
+      this.scratch.getChars(0, this.scratch.length(), this.arena, this.arenaLength);
+      this.arenaLength += this.scratch.length();
+      this.fieldEnds[this.size * this.arenaColumnCount + this.arenaColumns[i]] =
+          this.arenaLength;
+    }
+
+    this.size++;
+
+    boolean[] moved = null;
+
+    for (int i = 0; i < this.columnCount; i++) {
+      Dictionary dictionary = this.dictionaries[i];
+
+      if (dictionary != null && dictionary.size() > DICTIONARY_MAX_VALUES
+          && (long) dictionary.size() * DICTIONARY_MIN_REPEATS > this.size) {
+        if (moved == null) {
+          moved = new boolean[this.columnCount];
+        }
+        moved[i] = true;
+      }
+    }
+
+    if (moved != null) {
+      this.moveToArena(moved);
+    }
+  }
+
+  /**
+   * Settles the encoding of the store once its last row is added: every dictionary-encoded column
+   * whose values repeat fewer than DICTIONARY_MIN_REPEATS times on average is moved into the
+   * arena, however few values it has, and every array is trimmed to its contents. Rows can still
+   * be added afterwards.
+   */
+  public void compact() {
+    boolean[] moved = new boolean[this.columnCount];
+    boolean moving = false;
+
+    for (int i = 0; i < this.columnCount; i++) {
+      Dictionary dictionary = this.dictionaries[i];
+
+      if (dictionary != null && (long) dictionary.size() * DICTIONARY_MIN_REPEATS > this.size) {
+        moved[i] = moving = true;
+      }
+    }
+
+    if (moving) {
+      this.moveToArena(moved);
+    }
+
+    this.arena = Arrays.copyOf(this.arena, this.arenaLength);
+    this.fieldEnds = Arrays.copyOf(this.fieldEnds, this.size * this.arenaColumnCount);
+    for (Dictionary dictionary : this.dictionaries) {
+      if (dictionary != null) {
+        dictionary.trim(this.size);
+      }
+    }
+  }
+
+  /**
+   * Estimates the memory that the rows of the store take, from the size of its arrays.
+   *
+   * @return (long) The number of bytes of the arrays of the store.
+   */
+  long memoryBytes() {
+    long bytes = 2L * this.arena.length + 4L * this.fieldEnds.length;
+
+    for (Dictionary dictionary : this.dictionaries) {
+      if (dictionary != null) {
+        bytes += dictionary.memoryBytes();
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Gets the number of rows in the store.
+   *
+   * @return (int) The number of rows.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the column names of the store.
+   *
+   * @return (List) The column names, in column order.
+   */
+  public List<String> getHeader() {
+    return header;
+  }
+
+  /**
+   * Gets the index of a column from its name.
+   *
+   * @param name (String) The name of the column.
+   * @return (int) The index of the column, or -1 if there is no column with that name.
+   */
+  public int getColumnIndex(String name) {
+    return this.columnIndices.getOrDefault(name, -1);
+  }
+
+  /**
+   * Gets the stamp of the file the store was read from, which identifies its data without hashing
+   * every row.
+   *
+   * @return (Long) A hash of the path, size and modification time of the file, or null if the store
+   * was not read from a file, or the file may have changed without a new modification time.
+   */
+  public Long getSourceStamp() {
+    return sourceStamp;
+  }
+
+  /**
+   * Sets the stamp of the file the store was read from.
+   *
+   * @param sourceStamp (Long) A hash of the path, size and modification time of the file.
+   */
+  void setSourceStamp(Long sourceStamp) {
+    this.sourceStamp = sourceStamp;
+  }
+
+  /**
+   * Determines if a column is dictionary-encoded.
+   *
+   * @param column (int) The index of the column.
+   * @return (boolean) True if each distinct value of the column is stored once, and each row holds
+   * the code of its value.
+   */
+  public boolean isDictionaryEncoded(int column) {
+    return this.dictionaries[column] != null;
+  }
+
+  /**
+   * Gets the value of a field.
+   *
+   * @param row    (int) The index of the row.
+   * @param column (int) The index of the column.
+   * @return (String) The value of the field.
+   */
+  public String getField(int row, int column) {
+    this.checkField(row, column);
+    Dictionary dictionary = this.dictionaries[column];
+
+    if (dictionary != null) {
+      int code = dictionary.codes[row];
+      int start = dictionary.start(code);
+      return new String(dictionary.chars, start, dictionary.ends[code] - start);
+    }
+
+    int field = this.fieldIndex(row, column);
+    int start = this.fieldStart(field);
+    return new String(this.arena, start, this.fieldEnds[field] - start);
+  }
+
+  /**
+   * Appends the value of a field to a buffer, without creating a String.
+   *
+   * @param row    (int) The index of the row.
+   * @param column (int) The index of the column.
+   * @param out    (StringBuilder) The buffer the value is appended to.
+   */
+  public void appendField(int row, int column, StringBuilder out) {
+    this.checkField(row, column);
+    Dictionary dictionary = this.dictionaries[column];
+
+    if (dictionary != null) {
+      int code = dictionary.codes[row];
+      int start = dictionary.start(code);
+      out.append(dictionary.chars, start, dictionary.ends[code] - start);
+      return;
+    }
+
+    int field = this.fieldIndex(row, column);
+    int start = this.fieldStart(field);
+    out.append(this.arena, start, this.fieldEnds[field] - start);
+  }
+
+  /**
+   * Appends the value of a field to any Appendable, without creating a String.
+   *
+   * @param row    (int) The index of the row.
+   * @param column (int) The index of the column.
+   * @param out    (Appendable) The destination the value is appended to.
+   * @throws IOException when the destination cannot be appended to.
+   */
+  public void appendField(int row, int column, Appendable out) throws IOException {
+    this.checkField(row, column);
+    Dictionary dictionary = this.dictionaries[column];
+
+    if (dictionary != null) {
+      int code = dictionary.codes[row];
+      int start = dictionary.start(code);
+      DataRow.appendChars(dictionary.chars, start, dictionary.ends[code] - start, out);
+      return;
+    }
+
+    int field = this.fieldIndex(row, column);
+    int start = this.fieldStart(field);
+    DataRow.appendChars(this.arena, start, this.fieldEnds[field] - start, out);
+  }
+
+  /**
+   * Computes a hash of the data of a row, from the characters of each of its fields and the
+   * boundaries between them.
+   *
+   * @param row (int) The index of the row.
+   * @return (long) The 64-bit FNV-1a hash of the row.
+   */
+  public long hashRow(int row) {
+    if (row < 0 || row >= this.size) {
+      throw new IndexOutOfBoundsException("No row " + row);
+    }
+
+    long hash = OutputManifest.FNV_OFFSET_BASIS;
+
+    for (int i = 0; i < this.columnCount; i++) {
+      hash = this.hashField(hash, row, i);
+    }
+
+    return hash;
+  }
+
+  /**
+   * Computes a hash of some of the fields of a row, so that the hash only changes with the columns
+   * a run uses, however many more columns the store holds. Hashing every column, in order, gives
+   * the same hash as hashRow.
+   *
+   * @param row     (int) The index of the row.
+   * @param columns (int[]) The indices of the columns hashed, in the order they are hashed.
+   * @return (long) The 64-bit FNV-1a hash of the fields.
+   */
+  public long hashRow(int row, int[] columns) {
+    if (row < 0 || row >= this.size) {
+      throw new IndexOutOfBoundsException("No row " + row);
+    }
+
+    long hash = OutputManifest.FNV_OFFSET_BASIS;
+
+    for (int column : columns) {
+      this.checkField(row, column);
+      hash = this.hashField(hash, row, column);
+    }
+
+    return hash;
+  }
+
+  /**
+   * Helper method to add the characters of a field to a hash, followed by a separator.
+   *
+   * @param hash   (long) The hash of the fields before it.
+   * @param row    (int) The index of the row.
+   * @param column (int) The index of the column.
+   * @return (long) The hash including the field.
+   */
+  private long hashField(long hash, int row, int column) {
+    Dictionary dictionary = this.dictionaries[column];
+    char[] chars = this.arena;
+    int start;
+    int end;
+
+    if (dictionary != null) {
+      int code = dictionary.codes[row];
+      chars = dictionary.chars;
+      start = dictionary.start(code);
+      end = dictionary.ends[code];
+    } else {
+      int field = this.fieldIndex(row, column);
+      start = this.fieldStart(field);
+      end = this.fieldEnds[field];
+    }
+
+    for (int j = start; j < end; j++) {
+      hash = (hash ^ chars[j]) * OutputManifest.FNV_PRIME;
+    }
+
+    // A separator, so that moving characters from one field to the next changes the hash
+    return (hash ^ 0x1f) * OutputManifest.FNV_PRIME;
+  }
+
+  /**
+   * Creates a view of a row of the store, which can be moved from row to row.
+   *
+   * @param index (int) The index of the row the view starts at.
+   * @return (Row) The view of the row.
+   */
+  public Row row(int index) {
+    Row row = new Row();
+    row.moveTo(index);
+    return row;
+  }
+
+  /**
+   * Creates a Map of column names to the List of values in each column, as produced by
+   * CSVProcessor.getSupporterInfo.
+   *
+   * @return (Map) A new Map holding a copy of the data of the store.
+   */
+  public Map<String, List<String>> toColumnMap() {
+    Map<String, List<String>> columns = new LinkedHashMap<>();
+
+    for (int i = 0; i < this.columnCount; i++) {
+      List<String> values = new ArrayList<>(this.size());
+
+      for (int j = 0; j < this.size(); j++) {
+        values.add(this.getField(j, i));
+      }
+
+      columns.putIfAbsent(this.header.get(i), values);
+    }
+
+    return columns;
+  }
+
+  /**
+   * Helper method to grow the arena so that it can hold more characters.
+   *
+   * @param extra (int) The number of characters about to be appended.
+   */
+  private void ensureArenaCapacity(int extra) {
+    if (this.arenaLength + extra > this.arena.length) {
+      this.arena = Arrays.copyOf(this.arena,
+          Math.max(this.arena.length * 2, this.arenaLength + extra));
+    }
+  }
+
+  /**
+   * Helper method to move dictionary-encoded columns into the arena, once their values turn out
+   * not to repeat enough for their dictionaries to save memory. The rows stored so far are copied
+   * into a new arena and offset array, with the columns in their place among the other arena
+   * columns.
+   *
+   * @param moved (boolean[]) For each column, whether it is moved into the arena.
+   */
+  private void moveToArena(boolean[] moved) {
+    Dictionary[] oldDictionaries = Arrays.copyOf(this.dictionaries, this.columnCount);
+    int[] oldColumns = Arrays.copyOf(this.arenaColumns, this.columnCount);
+    int oldCount = this.arenaColumnCount;
+    char[] oldArena = this.arena;
+    int[] oldEnds = this.fieldEnds;
+    long length = this.arenaLength;
+
+    for (int j = 0; j < this.columnCount; j++) {
+      if (moved[j]) {
+        Dictionary dictionary = oldDictionaries[j];
+        for (int i = 0; i < this.size; i++) {
+          int code = dictionary.codes[i];
+          length += dictionary.ends[code] - dictionary.start(code);
+        }
+        this.dictionaries[j] = null;
+      }
+    }
+    if (length > Integer.MAX_VALUE - 8) {
+      throw new OutOfMemoryError("The fields of the CSV file do not fit in a single arena.");
+    }
+
+    this.arenaColumnCount = 0;
+    for (int i = 0; i < this.columnCount; i++) {
+      this.arenaColumns[i] = this.dictionaries[i] == null ? this.arenaColumnCount++ : -1;
+    }
+
+    this.arena = new char[Math.max(1024, (int) length)];
+    this.fieldEnds = new int[Math.max(16, this.size * this.arenaColumnCount * 2)];
+    this.arenaLength = 0;
+    int oldStart = 0;
+
+    for (int i = 0; i < this.size; i++) {
+      for (int j = 0; j < this.columnCount; j++) {
+        if (moved[j]) {
+          Dictionary dictionary = oldDictionaries[j];
+          int code = dictionary.codes[i];
+          int start = dictionary.start(code);
+          int valueLength = dictionary.ends[code] - start;
+          System.arraycopy(dictionary.chars, start, this.arena, this.arenaLength, valueLength);
+          this.arenaLength += valueLength;
+        } else if (oldColumns[j] >= 0) {
+          int oldEnd = oldEnds[i * oldCount + oldColumns[j]];
+          System.arraycopy(oldArena, oldStart, this.arena, this.arenaLength, oldEnd - oldStart);
+          this.arenaLength += oldEnd - oldStart;
+          oldStart = oldEnd;
+        } else {
+          continue;
+        }
+
+        this.fieldEnds[i * this.arenaColumnCount + this.arenaColumns[j]] = this.arenaLength;
+      }
+    }
+  }
+
+  /**
+   * Helper method to check that a field is in the store.
+   *
+   * @param row    (int) The index of the row.
+   * @param column (int) The index of the column.
+   */
+  private void checkField(int row, int column) {
+    if (row < 0 || row >= this.size || column < 0 || column >= this.columnCount) {
+      throw new IndexOutOfBoundsException("No field at row " + row + ", column " + column);
+    }
+  }
+
+  /**
+   * Helper method to get the position of a field of a column stored in the arena in the offset
+   * array.
+   *
+   * @param row    (int) The index of the row.
+   * @param column (int) The index of the column.
+   * @return (int) The position of the field's end offset.
+   */
+  private int fieldIndex(int row, int column) {
+    return row * this.arenaColumnCount + this.arenaColumns[column];
+  }
+
+  /**
+   * Helper method to get the offset in the arena at which a field starts.
+   *
+   * @param field (int) The position of the field's end offset.
+   * @return (int) The offset of the field's first character.
+   */
+  private int fieldStart(int field) {
+    return field == 0 ? 0 : this.fieldEnds[field - 1];
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof RecordStore)) {
+      return false;
+    }
+    RecordStore that = (RecordStore) o;
+    if (this.size() != that.size() || !Objects.equals(header, that.header)) {
+      return false;
+    }
+
+    // Compared field by field, as equal data may be encoded differently
+    for (int i = 0; i < this.size(); i++) {
+      for (int j = 0; j < columnCount; j++) {
+        if (!this.getField(i, j).equals(that.getField(i, j))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Objects.hash(header, this.size());
+    for (int i = 0; i < this.size(); i++) {
+      result = 31 * result + Long.hashCode(this.hashRow(i));
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "RecordStore{" +
+        "header=" + header +
+        ", size=" + this.size() +
+        '}';
+  }
+
+  /**
+   * Class representing the dictionary of a column: the characters of each distinct value packed
+   * into an arena of their own, the code of the value of each row, and an open-addressing table
+   * from the characters of a value to its code, so that no String is created while loading.
+   */
+  private static final class Dictionary {
+
+    private char[] chars = new char[256];
+    private int charCount;
+    private int[] ends = new int[16];
+    private int[] codes = new int[16];
+    private int[] table = new int[32];
+    private int size;
+
+    /**
+     * Sets the value of a row, adding the value to the dictionary unless it is there already.
+     *
+     * @param row   (int) The index of the row, which is the next row of the store.
+     * @param value (StringBuilder) The characters of the value.
+     */
+    private void add(int row, StringBuilder value) {
+      if (row >= this.codes.length) {
+        this.codes = Arrays.copyOf(this.codes, Math.max(16, row * 2));
+      }
+      this.codes[row] = this.encode(value);
+    }
+
+    /**
+     * Gets the code of a value, adding the value to the dictionary if it is new.
+     *
+     * @param value (StringBuilder) The characters of the value.
+     * @return (int) The code of the value.
+     */
+    private int encode(StringBuilder value) {
+      int length = value.length();
+      int hash = 0;
+      for (int i = 0; i < length; i++) {
+        hash = 31 * hash + value.charAt(i);
+      }
+
+      int mask = this.table.length - 1;
+      int slot = (hash ^ hash >>> 16) & mask;
+
+      // Each slot holds one more than the code of its value, or 0 when it is free
+      while (this.table[slot] != 0) {
+        int code = this.table[slot] - 1;
+        if (this.matches(code, value)) {
+          return code;
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      if (this.charCount + length > this.chars.length) {
+        this.chars = Arrays.copyOf(this.chars,
+            Math.max(this.chars.length * 2, this.charCount + length));
+      }
+      if (this.size == this.ends.length) {
+        this.ends = Arrays.copyOf(this.ends, Math.max(16, this.size * 2));
+      }
+
+      value.getChars(0, length, this.chars, this.charCount);
+      this.charCount += length;
+      this.ends[this.size] = this.charCount;
+      this.table[slot] = ++this.size;
+
+      // Kept at most half full, so that probes stay short
+      if (this.size * 2 > this.table.length) {
+        this.rehash();
+      }
+      return this.size - 1;
+    }
+
+    /**
+     * Determines if a value of the dictionary has the given characters.
+     *
+     * @param code  (int) The code of the value.
+     * @param value (StringBuilder) The characters.
+     * @return (boolean) True if the value has exactly these characters.
+     */
+    private boolean matches(int code, StringBuilder value) {
+      int start = this.start(code);
+
+      if (this.ends[code] - start != value.length()) {
+        return false;
+      }
+      for (int i = 0; i < value.length(); i++) {
+        if (this.chars[start + i] != value.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Doubles the table, placing every value again.
+     */
+    private void rehash() {
+      int[] table = new int[this.table.length * 2];
+      int mask = table.length - 1;
+
+      for (int code = 0; code < this.size; code++) {
+        int hash = 0;
+        for (int i = this.start(code); i < this.ends[code]; i++) {
+          hash = 31 * hash + this.chars[i];
+        }
+
+        int slot = (hash ^ hash >>> 16) & mask;
+        while (table[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = code + 1;
+      }
+
+      this.table = table;
+    }
+
+    /**
+     * Trims the arrays of the dictionary to its values and the codes of the given rows.
+     *
+     * @param rows (int) The number of rows of the store.
+     */
+    private void trim(int rows) {
+      this.chars = Arrays.copyOf(this.chars, this.charCount);
+      this.ends = Arrays.copyOf(this.ends, this.size);
+      this.codes = Arrays.copyOf(this.codes, rows);
+    }
+
+    /**
+     * Estimates the memory that the dictionary takes, from the size of its arrays.
+     *
+     * @return (long) The number of bytes of its arrays.
+     */
+    private long memoryBytes() {
+      return 2L * this.chars.length
+          + 4L * (this.ends.length + this.codes.length + this.table.length);
+    }
+
+    /**
+     * Gets the offset at which a value starts.
+     *
+     * @param code (int) The code of the value.
+     * @return (int) The offset of the value's first character.
+     */
+    private int start(int code) {
+      return code == 0 ? 0 : this.ends[code - 1];
+    }
+
+    /**
+     * Gets the number of distinct values.
+     *
+     * @return (int) The number of values.
+     */
+    private int size() {
+      return this.size;
+    }
+  }
+
+  /**
+   * Class representing a movable view of one row of the enclosing RecordStore.
+   */
+  public class Row implements DataRow {
+
+    private int index;
+
+    /**
+     * Moves the view to another row.
+     *
+     * @param index (int) The index of the row.
+     */
+    public void moveTo(int index) {
+      this.index = index;
+    }
+
+    /**
+     * Gets the index of the row the view is on.
+     *
+     * @return (int) The index of the row.
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    @Override
+    public String getField(int column) {
+      return RecordStore.this.getField(this.index, column);
+    }
+
+    @Override
+    public void appendField(int column, StringBuilder out) {
+      RecordStore.this.appendField(this.index, column, out);
+    }
+
+    @Override
+    public void appendField(int column, Appendable out) throws IOException {
+      RecordStore.this.appendField(this.index, column, out);
+    }
+  }
+}
@@ -0,0 +1,486 @@
+package problem1;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Class representing the stages of a streaming run as a pipeline, so that the CSV file is read,
+ * the templates are rendered and the output is written at the same time rather than one after the
+ * other. A reader thread copies batches of rows into compact RecordStores, a number of renderer
+ * threads populate every template for each batch, and the calling thread writes the populated
+ * templates through the TemplateWriters, which may in turn hand the files to a FileWriterPool.
+ *
+ * <p>The stages are connected by bounded RingBuffers, so a stage that falls behind makes the
+ * stages before it wait instead of letting batches pile up in memory. Rendered batches are written
+ * in the order of their rows, so the output, including the order of the entries of an archive, is
+ * the same as when the rows are streamed one at a time. The metrics of both queues are added to
+ * the statistics of the run.</p>
+ *
+ * <p>Batches rendered ahead of an earlier, slower batch wait for it outside of the queues, so the
+ * reader also takes a permit for each batch it creates, which the writer gives back once the batch
+ * is written. With as many permits as both queues and the renderers hold, the batches in memory
+ * stay bounded however far one batch falls behind.</p>
+ */
+public class RenderPipeline {
+
+  static final int BATCH_ROWS = 256;
+  static final int QUEUE_CAPACITY = 16;
+
+  private final int renderThreads;
+  private final int batchRows;
+  private final RunStats stats;
+  private final RingBuffer<RowBatch> parsed;
+  private final RingBuffer<RenderedBatch> rendered;
+  private final int maxInFlight;
+  private final Semaphore inFlight;
+  private final AtomicReference<Throwable> failure;
+  private int maxPending;
+
+  /**
+   * Constructor for class RenderPipeline.
+   *
+   * @param renderThreads (int) The number of threads rendering templates.
+   * @param stats         (RunStats) The statistics the stages and queues are added to.
+   */
+  public RenderPipeline(int renderThreads, RunStats stats) {
+    this(renderThreads, BATCH_ROWS, QUEUE_CAPACITY, stats);
+  }
+
+  /**
+   * Constructor for class RenderPipeline with batches and queues of a given size.
+   *
+   * @param renderThreads (int) The number of threads rendering templates.
+   * @param batchRows     (int) The number of rows read into each batch.
+   * @param queueCapacity (int) The number of batches each queue holds, a power of two.
+   * @param stats         (RunStats) The statistics the stages and queues are added to.
+   * @throws IllegalArgumentException when there is not at least one render thread and one row per
+   *                                  batch, or the capacity is not a power of two.
+   */
+  public RenderPipeline(int renderThreads, int batchRows, int queueCapacity, RunStats stats) {
+    if (renderThreads < 1) {
+      throw new IllegalArgumentException(
+          "Expected at least one render thread, found " + renderThreads + ".");
+    }
+    if (batchRows < 1) {
+      throw new IllegalArgumentException(
+          "Expected at least one row per batch, found " + batchRows + ".");
+    }
+
+    this.renderThreads = renderThreads;
+    this.batchRows = batchRows;
+    this.stats = stats;
+    this.parsed = new RingBuffer<>("parsed", queueCapacity);
+    this.rendered = new RingBuffer<>("rendered", queueCapacity);
+    this.maxInFlight = 2 * queueCapacity + renderThreads;
+    this.inFlight = new Semaphore(this.maxInFlight);
+    this.failure = new AtomicReference<>();
+  }
+
+  /**
+   * Reads every remaining row, renders every template for each row and writes the populated
+   * templates, returning once they have all been handed to the writers. A pipeline is run once.
+   *
+   * @param rows      (RowReader) The reader of the CSV file, positioned before its first row. It is
+   *                  only read by the reader thread until this returns.
+   * @param columns   (Collection) The names of the columns the templates reference, or null to
+   *                  copy every column into the batches.
+   * @param templates (CompiledTemplate[]) The compiled templates, not yet bound to the header.
+   * @param writers   (TemplateWriter[]) The writer of each template.
+   * @throws IOException when the CSV file cannot be read, or the output cannot be written.
+   */
+  public void run(RowReader rows, Collection<String> columns, CompiledTemplate[] templates,
+      TemplateWriter[] writers) throws IOException {
+    List<Thread> threads = new ArrayList<>();
+    AtomicInteger renderers = new AtomicInteger(renderThreads);
+
+    threads.add(new Thread(() -> this.read(rows, columns, templates), "pipeline-reader"));
+    for (int i = 0; i < renderThreads; i++) {
+      threads.add(new Thread(() -> this.render(templates.length, renderers),
+          "pipeline-renderer-" + (i + 1)));
+    }
+
+    try {
+      for (Thread thread : threads) {
+        thread.setDaemon(true);
+        thread.start();
+      }
+
+      this.write(writers);
+    } catch (IOException | RuntimeException | Error e) {
+      this.fail(e);
+    } finally {
+      this.join(threads);
+      stats.addQueue(parsed.getMetrics());
+      stats.addQueue(rendered.getMetrics());
+    }
+
+    this.rethrow();
+  }
+
+  /**
+   * Gets the number of threads rendering templates.
+   *
+   * @return (int) The number of render threads.
+   */
+  public int getRenderThreads() {
+    return renderThreads;
+  }
+
+  /**
+   * Gets the number of batches that may be read but not yet written at any time.
+   *
+   * @return (int) The number of batches in flight.
+   */
+  int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  /**
+   * Gets the largest number of rendered batches that waited for an earlier batch during the run.
+   *
+   * @return (int) The largest number of waiting batches.
+   */
+  int getMaxPending() {
+    return maxPending;
+  }
+
+  /**
+   * Helper method run by the reader thread, copying the columns the templates reference from each
+   * row into batches, with the other columns left empty. The templates are bound to the header
+   * once the first row has been read, so that a CSV file without rows never fails on a missing
+   * key.
+   *
+   * @param rows      (RowReader) The reader of the CSV file.
+   * @param columns   (Collection) The names of the columns to be copied, or null for every column.
+   * @param templates (CompiledTemplate[]) The compiled templates, not yet bound.
+   */
+  private void read(RowReader rows, Collection<String> columns, CompiledTemplate[] templates) {
+    long nanos = 0;
+
+    try {
+      List<String> header = rows.getHeader();
+      ProjectedRow projected = new ProjectedRow(rows,
+          CSVTokenizer.projection(header, columns));
+      CompiledTemplate[] bound = null;
+      RowBatch batch = null;
+      long sequence = 0;
+      long start = System.nanoTime();
+
+      while (this.failure.get() == null && rows.next()) {
+        if (bound == null) {
+          bound = new CompiledTemplate[templates.length];
+          for (int i = 0; i < templates.length; i++) {
+            bound[i] = templates[i].bind(header);
+          }
+        }
+        if (batch == null) {
+          this.inFlight.acquire();
+          batch = new RowBatch(sequence++, new int[this.batchRows], new RecordStore(header),
+              bound);
+        }
+
+        // The index of each row is kept, as the rows of a shard are not consecutive
+        batch.indices[batch.rows.size()] = rows.getRowIndex();
+        batch.rows.addRow(projected, header.size());
+
+        if (batch.rows.size() == this.batchRows) {
+          nanos += System.nanoTime() - start;
+          if (!this.parsed.put(batch)) {
+            return;
+          }
+          batch = null;
+          start = System.nanoTime();
+        }
+      }
+
+      nanos += System.nanoTime() - start;
+      if (batch != null) {
+        this.parsed.put(batch);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      this.fail(e);
+    } catch (IOException | RuntimeException | Error e) {
+      this.fail(e);
+    } finally {
+      this.parsed.close();
+      stats.addTime(RunStats.Stage.PARSE, nanos);
+      stats.addRows(RunStats.Stage.PARSE, rows.getRowIndex() + 1);
+    }
+  }
+
+  /**
+   * Helper method run by each renderer thread, populating every template for each row of the
+   * batches it takes. The last renderer to finish closes the queue of rendered batches.
+   *
+   * @param templateCount (int) The number of templates.
+   * @param renderers     (AtomicInteger) The number of renderers that have not finished.
+   */
+  private void render(int templateCount, AtomicInteger renderers) {
+    long nanos = 0;
+    long count = 0;
+
+    try {
+      RowBatch batch;
+
+      while ((batch = this.parsed.take()) != null && this.failure.get() == null) {
+        this.beforeRender(batch.sequence);
+        long start = System.nanoTime();
+        int size = batch.rows.size();
+        RenderedBatch out = new RenderedBatch(batch.sequence, batch.indices, batch.rows,
+            templateCount);
+        RecordStore.Row row = batch.rows.row(0);
+
+        for (int i = 0; i < size; i++) {
+          row.moveTo(i);
+          for (int t = 0; t < templateCount; t++) {
+            batch.templates[t].render(row, out.text);
+            out.ends[i * templateCount + t] = out.text.length();
+          }
+        }
+
+        count += (long) size * templateCount;
+        nanos += System.nanoTime() - start;
+
+        if (!this.rendered.put(out)) {
+          break;
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      this.fail(e);
+    } finally {
+      stats.addTime(RunStats.Stage.RENDER, nanos);
+      stats.addRows(RunStats.Stage.RENDER, count);
+
+      if (renderers.decrementAndGet() == 0) {
+        this.rendered.close();
+      }
+    }
+  }
+
+  /**
+   * Hook called by a renderer thread before it renders a batch, which does nothing. Tests override
+   * it to hold a batch back.
+   *
+   * @param sequence (long) The position of the batch among the batches of the run.
+   */
+  void beforeRender(long sequence) {
+  }
+
+  /**
+   * Helper method run by the calling thread, handing the populated templates to their writers in
+   * the order of their rows. Batches rendered ahead of an earlier batch wait until it arrives.
+   *
+   * @param writers (TemplateWriter[]) The writer of each template.
+   * @throws IOException when the output cannot be written.
+   */
+  private void write(TemplateWriter[] writers) throws IOException {
+    Map<Long, RenderedBatch> pending = new HashMap<>();
+    long next = 0;
+    long nanos = 0;
+    long count = 0;
+
+    try {
+      RenderedBatch batch;
+
+      while ((batch = this.rendered.take()) != null && this.failure.get() == null) {
+        pending.put(batch.sequence, batch);
+        this.maxPending = Math.max(this.maxPending, pending.size());
+
+        while ((batch = pending.remove(next)) != null) {
+          long start = System.nanoTime();
+          int size = batch.rows.size();
+          RecordStore.Row row = batch.rows.row(0);
+          int documentStart = 0;
+
+          for (int i = 0; i < size; i++) {
+            row.moveTo(i);
+            for (int t = 0; t < writers.length; t++) {
+              int documentEnd = batch.ends[i * writers.length + t];
+              writers[t].writeTemplate(batch.indices[i], row,
+                  CharBuffer.wrap(batch.text, documentStart, documentEnd));
+              documentStart = documentEnd;
+            }
+          }
+
+          count += (long) size * writers.length;
+          nanos += System.nanoTime() - start;
+          next++;
+          this.inFlight.release();
+        }
+      }
+    } finally {
+      stats.addTime(RunStats.Stage.WRITE, nanos);
+      stats.addRows(RunStats.Stage.WRITE, count);
+    }
+  }
+
+  /**
+   * Helper method to record the first failure of any stage and stop the others, by closing the
+   * queues they wait on and letting the reader take a permit.
+   *
+   * @param e (Throwable) The failure.
+   */
+  private void fail(Throwable e) {
+    this.failure.compareAndSet(null, e);
+    this.parsed.close();
+    this.rendered.close();
+    this.inFlight.release(this.maxInFlight);
+  }
+
+  /**
+   * Helper method to wait for the reader and renderer threads to finish.
+   *
+   * @param threads (List) The threads.
+   * @throws IOException when the wait is interrupted.
+   */
+  private void join(List<Thread> threads) throws IOException {
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      this.fail(e);
+      throw new IOException("Interrupted while populating templates.", e);
+    }
+  }
+
+  /**
+   * Helper method to throw the first failure of any stage, if there was one.
+   *
+   * @throws IOException when a stage failed to read or write.
+   */
+  private void rethrow() throws IOException {
+    Throwable e = this.failure.get();
+
+    if (e instanceof IOException) {
+      throw (IOException) e;
+    }
+    if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    }
+    if (e instanceof Error) {
+      throw (Error) e;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RenderPipeline{" +
+        "renderThreads=" + renderThreads +
+        ", batchRows=" + batchRows +
+        ", parsed=" + parsed +
+        ", rendered=" + rendered +
+        '}';
+  }
+
+  /**
+   * Class representing a batch of rows read from the CSV file.
+   */
+  private static final class RowBatch {
+
+    private final long sequence;
+    private final int[] indices;
+    private final RecordStore rows;
+    private final CompiledTemplate[] templates;
+
+    /**
+     * Constructor for class RowBatch.
+     *
+     * @param sequence  (long) The position of the batch among the batches of the run.
+     * @param indices   (int[]) The index of each row of the batch in the CSV file.
+     * @param rows      (RecordStore) The rows, holding the columns the templates reference.
+     * @param templates (CompiledTemplate[]) The templates, bound to the header of the rows.
+     */
+    private RowBatch(long sequence, int[] indices, RecordStore rows,
+        CompiledTemplate[] templates) {
+      this.sequence = sequence;
+      this.indices = indices;
+      this.rows = rows;
+      this.templates = templates;
+    }
+  }
+
+  /**
+   * Class representing the populated templates of a batch of rows, one after the other in a
+   * single buffer, row by row and template by template within each row. The rows are kept for the
+   * file names that use their columns.
+   */
+  private static final class RenderedBatch {
+
+    private final long sequence;
+    private final int[] indices;
+    private final RecordStore rows;
+    private final StringBuilder text;
+    private final int[] ends;
+
+    /**
+     * Constructor for class RenderedBatch.
+     *
+     * @param sequence  (long) The position of the batch among the batches of the run.
+     * @param indices   (int[]) The index of each row of the batch in the CSV file.
+     * @param rows      (RecordStore) The rows of the batch.
+     * @param templates (int) The number of templates populated for each row.
+     */
+    private RenderedBatch(long sequence, int[] indices, RecordStore rows, int templates) {
+      this.sequence = sequence;
+      this.indices = indices;
+      this.rows = rows;
+      this.text = new StringBuilder();
+      this.ends = new int[rows.size() * templates];
+    }
+  }
+
+  /**
+   * Class representing the current row of a reader with only the columns the templates reference,
+   * so that the other columns are neither decoded nor copied, and read as empty.
+   */
+  private static final class ProjectedRow implements DataRow {
+
+    private final RowReader rows;
+    private final boolean[] projection;
+
+    /**
+     * Constructor for class ProjectedRow.
+     *
+     * @param rows       (RowReader) The reader whose current row is viewed.
+     * @param projection (boolean[]) For each column, whether it is read, or null to read every
+     *                   column.
+     */
+    private ProjectedRow(RowReader rows, boolean[] projection) {
+      this.rows = rows;
+      this.projection = projection;
+    }
+
+    @Override
+    public String getField(int column) {
+      return this.isProjected(column) ? rows.getField(column) : "";
+    }
+
+    @Override
+    public void appendField(int column, StringBuilder out) {
+      if (this.isProjected(column)) {
+        rows.appendField(column, out);
+      }
+    }
+
+    /**
+     * Helper method to determine if a column is read.
+     *
+     * @param column (int) The index of the column.
+     * @return (boolean) True if there is no projection, or the projection includes the column.
+     */
+    private boolean isProjected(int column) {
+      return projection == null || projection[column];
+    }
+  }
+}
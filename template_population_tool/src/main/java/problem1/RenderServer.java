@@ -0,0 +1,525 @@
+package problem1;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class representing an embedded HTTP server that populates templates on demand, for a single
+ * record or a batch of records, and returns the populated text instead of writing it to files.
+ * Every template of a directory is compiled when the server starts, and, when a CSV file is given,
+ * bound to its header, so that a request only looks up its record and renders it.
+ *
+ * <p>The server listens on the loopback address, and serves:</p>
+ * <ul>
+ *   <li>GET /render/{template}?key={value}: the template populated with the row of the CSV file
+ *   whose key column holds the value.</li>
+ *   <li>POST /render/{template}: the template populated with the JSON object in the body, e.g.
+ *   {"first_name": "James", "email": "jbutt@gmail.com"}.</li>
+ *   <li>POST /render/{template}/batch: a JSON array of the template populated with each element
+ *   of the JSON array in the body, each of which is either a JSON object or the key of a row.</li>
+ *   <li>GET /stats: the number of renders, and the 50th and 99th percentile render time.</li>
+ * </ul>
+ *
+ * <p>Templates are identified by the name of their file without its extension, e.g.
+ * email-template for email-template.txt.</p>
+ */
+public class RenderServer implements Closeable {
+
+  static final String RENDER_PATH = "/render/";
+  static final String BATCH_SUFFIX = "/batch";
+  static final String STATS_PATH = "/stats";
+
+  private static final String TEXT_TYPE = "text/plain; charset=utf-8";
+  private static final String JSON_TYPE = "application/json; charset=utf-8";
+
+  private final Map<String, CompiledTemplate> templates;
+  private final Map<String, CompiledTemplate> boundTemplates;
+  private final RecordStore records;
+  private final Map<String, Integer> rowsByKey;
+  private final String keyColumn;
+  private final LatencyHistogram latencies;
+  private final HttpServer server;
+  private final ExecutorService pool;
+
+  /**
+   * Private constructor for class RenderServer.
+   *
+   * @param builder (RenderServerBuilder) A RenderServerBuilder instance from which to construct
+   *                the RenderServer.
+   * @throws IOException when a template or the CSV file cannot be read, or the port cannot be
+   *                     bound.
+   */
+  private RenderServer(RenderServerBuilder builder) throws IOException {
+    this.templates = new HashMap<>();
+    this.boundTemplates = new HashMap<>();
+    this.rowsByKey = new HashMap<>();
+    this.keyColumn = builder.keyColumn;
+    this.latencies = new LatencyHistogram();
+
+    File[] files = new File(builder.templateDir).listFiles(File::isFile);
+    if (files == null) {
+      throw new IOException("Not a directory: " + builder.templateDir);
+    }
+
+    Set<String> columns = new HashSet<>();
+
+    for (File file : files) {
+      TemplateCache.CachedTemplate template = builder.templateCache.get(file.getPath());
+      this.templates.put(templateId(template.getFilename()), template.getTemplate());
+      columns.addAll(template.getTemplate().getPlaceholders());
+    }
+
+    String key = builder.csvPath == null ? null : this.keyColumn(builder.csvPath);
+    columns.add(key);
+    this.records = builder.csvPath == null ? null
+        : new CSVProcessor(builder.csvPath, columns).getRecords();
+
+    if (this.records != null) {
+      // Templates that do not fit the CSV file can still render inline records
+      for (Map.Entry<String, CompiledTemplate> template : this.templates.entrySet()) {
+        try {
+          this.boundTemplates.put(template.getKey(),
+              template.getValue().bind(this.records.getHeader()));
+        } catch (IllegalArgumentException e) {
+          System.err.println("Template " + template.getKey() + " does not match the CSV header.");
+        }
+      }
+
+      int column = this.records.getColumnIndex(key);
+
+      if (column < 0 && (this.keyColumn != null || this.records.size() > 0)) {
+        throw new IllegalArgumentException("Key column not found: " + this.keyColumn);
+      }
+
+      for (int i = 0; i < this.records.size(); i++) {
+        this.rowsByKey.putIfAbsent(this.records.getField(i, column), i);
+      }
+    }
+
+    this.server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port), 0);
+    this.pool = Executors.newFixedThreadPool(builder.threads);
+    this.server.setExecutor(this.pool);
+    this.server.createContext(RENDER_PATH, this::handleRender);
+    this.server.createContext(STATS_PATH, this::handleStats);
+  }
+
+  /**
+   * Starts serving requests, on background threads.
+   */
+  public void start() {
+    this.server.start();
+  }
+
+  /**
+   * Stops serving requests, letting the requests being served finish for up to a second.
+   */
+  @Override
+  public void close() {
+    this.server.stop(1);
+    this.pool.shutdownNow();
+  }
+
+  /**
+   * Gets the port the server listens on, e.g. the port picked when it was built with port 0.
+   *
+   * @return (int) The port.
+   */
+  public int getPort() {
+    return this.server.getAddress().getPort();
+  }
+
+  /**
+   * Gets the render times of the requests served so far.
+   *
+   * @return (LatencyHistogram) The render times.
+   */
+  public LatencyHistogram getLatencies() {
+    return latencies;
+  }
+
+  /**
+   * Populates a template with a row of the CSV file.
+   *
+   * @param templateId (String) The id of the template.
+   * @param key        (String) The value of the key column of the row.
+   * @param out        (StringBuilder) The buffer the populated template is appended to.
+   * @throws IllegalArgumentException when the template cannot render rows of the CSV file.
+   * @throws IllegalStateException    when there is no such template or row.
+   */
+  public void renderRow(String templateId, String key, StringBuilder out) {
+    CompiledTemplate template = this.boundTemplates.get(templateId);
+    if (template == null) {
+      this.getTemplate(templateId);
+      throw new IllegalArgumentException(
+          "Template " + templateId + " cannot render rows of the CSV file.");
+    }
+
+    Integer row = this.rowsByKey.get(key);
+    if (row == null) {
+      throw new IllegalStateException("No row has the key " + key + ".");
+    }
+
+    template.render(this.records.row(row), out);
+  }
+
+  /**
+   * Populates a template with a record.
+   *
+   * @param templateId (String) The id of the template.
+   * @param record     (Map) The fields of the record.
+   * @param out        (StringBuilder) The buffer the populated template is appended to.
+   * @throws IllegalArgumentException when a placeholder of the template is not a field of the
+   *                                  record.
+   * @throws IllegalStateException    when there is no such template.
+   */
+  public void renderRecord(String templateId, Map<String, String> record, StringBuilder out) {
+    List<String> header = new ArrayList<>(record.keySet());
+    List<String> fields = new ArrayList<>(record.values());
+
+    this.getTemplate(templateId).bind(header).render(fields::get, out);
+  }
+
+  /**
+   * Helper method to serve the render endpoints.
+   *
+   * @param exchange (HttpExchange) The request and its response.
+   * @throws IOException when the response cannot be sent.
+   */
+  private void handleRender(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath().substring(RENDER_PATH.length());
+    String method = exchange.getRequestMethod();
+    boolean batch = path.endsWith(BATCH_SUFFIX);
+    String templateId = batch ? path.substring(0, path.length() - BATCH_SUFFIX.length()) : path;
+    StringBuilder out = new StringBuilder();
+
+    try {
+      if (batch && method.equals("POST")) {
+        long start = System.nanoTime();
+        List<Object> elements = JsonRecords.parseArray(readBody(exchange));
+        out.append('[');
+
+        StringBuilder document = new StringBuilder();
+        for (int i = 0; i < elements.size(); i++) {
+          document.setLength(0);
+          this.render(templateId, elements.get(i), document);
+          JsonRecords.quote(document, i == 0 ? out : out.append(','));
+        }
+
+        out.append(']');
+        this.latencies.record(System.nanoTime() - start);
+        send(exchange, 200, JSON_TYPE, out);
+      } else if (!batch && method.equals("POST")) {
+        long start = System.nanoTime();
+        this.renderRecord(templateId, JsonRecords.parseRecord(readBody(exchange)), out);
+        this.latencies.record(System.nanoTime() - start);
+        send(exchange, 200, TEXT_TYPE, out);
+      } else if (!batch && method.equals("GET")) {
+        String key = queryParameter(exchange, "key");
+        if (key == null) {
+          throw new IllegalArgumentException("Missing key parameter.");
+        }
+
+        long start = System.nanoTime();
+        this.renderRow(templateId, key, out);
+        this.latencies.record(System.nanoTime() - start);
+        send(exchange, 200, TEXT_TYPE, out);
+      } else {
+        send(exchange, 405, TEXT_TYPE, "Method not allowed.\n");
+      }
+    } catch (IllegalStateException e) {
+      send(exchange, 404, TEXT_TYPE, e.getMessage() + '\n');
+    } catch (IllegalArgumentException e) {
+      send(exchange, 400, TEXT_TYPE, e.getMessage() + '\n');
+    }
+  }
+
+  /**
+   * Helper method to serve the statistics endpoint.
+   *
+   * @param exchange (HttpExchange) The request and its response.
+   * @throws IOException when the response cannot be sent.
+   */
+  private void handleStats(HttpExchange exchange) throws IOException {
+    send(exchange, 200, JSON_TYPE, "{\"renders\": " + this.latencies.getCount()
+        + ", \"p50Nanos\": " + this.latencies.getPercentile(50)
+        + ", \"p99Nanos\": " + this.latencies.getPercentile(99) + "}\n");
+  }
+
+  /**
+   * Helper method to render an element of a batch, which is either a record or the key of a row.
+   *
+   * @param templateId (String) The id of the template.
+   * @param element    (Object) A Map holding a record, or a String holding a key.
+   * @param out        (StringBuilder) The buffer the populated template is appended to.
+   */
+  @SuppressWarnings("unchecked")
+  private void render(String templateId, Object element, StringBuilder out) {
+    if (element instanceof String) {
+      this.renderRow(templateId, (String) element, out);
+    } else {
+      this.renderRecord(templateId, (Map<String, String>) element, out);
+    }
+  }
+
+  /**
+   * Helper method to get the name of the column rows are looked up by, which is the first column
+   * of the CSV file unless a key column was given.
+   *
+   * @param csvPath (String) Path to the CSV data file.
+   * @return (String) The name of the key column, or null if the file is empty.
+   * @throws IOException when the header of the CSV file cannot be read.
+   */
+  private String keyColumn(String csvPath) throws IOException {
+    if (this.keyColumn != null) {
+      return this.keyColumn;
+    }
+
+    try (CSVStreamReader reader = new CSVStreamReader(csvPath)) {
+      return reader.getHeader().isEmpty() ? null : reader.getHeader().get(0);
+    }
+  }
+
+  /**
+   * Helper method to get a template by id.
+   *
+   * @param templateId (String) The id of the template.
+   * @return (CompiledTemplate) The compiled, unbound template.
+   * @throws IllegalStateException when there is no such template.
+   */
+  private CompiledTemplate getTemplate(String templateId) {
+    CompiledTemplate template = this.templates.get(templateId);
+
+    if (template == null) {
+      throw new IllegalStateException("No template has the id " + templateId + ".");
+    }
+    return template;
+  }
+
+  /**
+   * Helper method to get the id of a template from the name of its file.
+   *
+   * @param filename (String) The name of the template file.
+   * @return (String) The name without its extension.
+   */
+  static String templateId(String filename) {
+    int dot = filename.lastIndexOf('.');
+    return dot > 0 ? filename.substring(0, dot) : filename;
+  }
+
+  /**
+   * Helper method to read the body of a request as UTF-8 text.
+   *
+   * @param exchange (HttpExchange) The request.
+   * @return (String) The body.
+   * @throws IOException when the body cannot be read.
+   */
+  private static String readBody(HttpExchange exchange) throws IOException {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+
+    try (InputStream in = exchange.getRequestBody()) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        body.write(buffer, 0, read);
+      }
+    }
+
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Helper method to get a parameter of the query string of a request.
+   *
+   * @param exchange (HttpExchange) The request.
+   * @param name     (String) The name of the parameter.
+   * @return (String) The decoded value of the first parameter with the name, or null if there is
+   * none.
+   * @throws IOException when the value cannot be decoded.
+   */
+  private static String queryParameter(HttpExchange exchange, String name) throws IOException {
+    String query = exchange.getRequestURI().getRawQuery();
+
+    if (query == null) {
+      return null;
+    }
+
+    for (String parameter : query.split("&")) {
+      int equals = parameter.indexOf('=');
+      String key = equals < 0 ? parameter : parameter.substring(0, equals);
+
+      if (URLDecoder.decode(key, "UTF-8").equals(name)) {
+        return equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), "UTF-8");
+      }
+    }
+
+    return null;
+  }
+
+  /**
+   * Helper method to send a response, encoded as UTF-8.
+   *
+   * @param exchange    (HttpExchange) The request and its response.
+   * @param status      (int) The HTTP status code.
+   * @param contentType (String) The content type of the response.
+   * @param body        (CharSequence) The body of the response.
+   * @throws IOException when the response cannot be sent.
+   */
+  private static void send(HttpExchange exchange, int status, String contentType,
+      CharSequence body) throws IOException {
+    byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+    exchange.getResponseHeaders().set("Content-Type", contentType);
+    exchange.sendResponseHeaders(status, bytes.length);
+
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    RenderServer that = (RenderServer) o;
+    return Objects.equals(templates, that.templates)
+        && Objects.equals(records, that.records)
+        && Objects.equals(keyColumn, that.keyColumn)
+        && this.getPort() == that.getPort();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(templates, records, keyColumn, this.getPort());
+  }
+
+  @Override
+  public String toString() {
+    return "RenderServer{" +
+        "templates=" + new TreeMap<>(templates).keySet() +
+        ", rows=" + (records == null ? 0 : records.size()) +
+        ", keyColumn='" + keyColumn + '\'' +
+        ", port=" + this.getPort() +
+        '}';
+  }
+
+  /**
+   * Builder class for enclosing RenderServer class.
+   */
+  public static class RenderServerBuilder {
+
+    private final String templateDir;
+    private int port = 0;
+    private String csvPath = null;
+    private String keyColumn = null;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private TemplateCache templateCache = new TemplateCache();
+
+    /**
+     * Constructor for class RenderServerBuilder.
+     *
+     * @param templateDir (String) Path to the directory holding the templates.
+     */
+    public RenderServerBuilder(String templateDir) {
+      this.templateDir = templateDir;
+    }
+
+    /**
+     * Creates a new RenderServerBuilder that listens on a port.
+     *
+     * @param port (int) The port, or 0 to pick a free port.
+     * @return (RenderServerBuilder) New RenderServerBuilder with the specified port.
+     */
+    public RenderServerBuilder port(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /**
+     * Creates a new RenderServerBuilder whose rows can be rendered by key.
+     *
+     * @param csvPath (String) Path to the CSV data file, or null to only render inline records.
+     * @return (RenderServerBuilder) New RenderServerBuilder with the specified CSV file.
+     */
+    public RenderServerBuilder csvPath(String csvPath) {
+      this.csvPath = csvPath;
+      return this;
+    }
+
+    /**
+     * Creates a new RenderServerBuilder whose rows are looked up by the value of a column.
+     *
+     * @param keyColumn (String) The name of the key column, or null for the first column.
+     * @return (RenderServerBuilder) New RenderServerBuilder with the specified key column.
+     */
+    public RenderServerBuilder keyColumn(String keyColumn) {
+      this.keyColumn = keyColumn;
+      return this;
+    }
+
+    /**
+     * Creates a new RenderServerBuilder that serves requests on a number of threads.
+     *
+     * @param threads (int) The number of threads.
+     * @return (RenderServerBuilder) New RenderServerBuilder with the specified threads.
+     */
+    public RenderServerBuilder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Creates a new RenderServerBuilder that compiles its templates through a cache.
+     *
+     * @param templateCache (TemplateCache) The cache of compiled templates.
+     * @return (RenderServerBuilder) New RenderServerBuilder with the specified cache.
+     */
+    public RenderServerBuilder templateCache(TemplateCache templateCache) {
+      this.templateCache = templateCache;
+      return this;
+    }
+
+    /**
+     * Generates a new RenderServer with state mirroring that of the RenderServerBuilder. The
+     * server is not started.
+     *
+     * @return (RenderServer) The new RenderServer instance built from the RenderServerBuilder's
+     * state.
+     * @throws IOException when a template or the CSV file cannot be read, or the port cannot be
+     *                     bound.
+     * @throws IllegalArgumentException when the number of threads is less than one, or the key
+     *                                  column is not a column of the CSV file.
+     */
+    public RenderServer build() throws IOException {
+      if (threads < 1) {
+        throw new IllegalArgumentException(
+            "Expected at least one thread, found " + threads + ".");
+      }
+      return new RenderServer(this);
+    }
+  }
+}
@@ -0,0 +1,415 @@
+package problem1;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class representing a bounded queue between the stages of a pipeline, held in a ring of slots
+ * that any number of threads can add to and take from without locking. Each slot carries a
+ * sequence number that tells a producer when the slot is free and a consumer when it is full, so
+ * that threads only contend on a single compare-and-set of the head or tail of the ring.
+ *
+ * <p>A thread that finds the ring full or empty spins briefly, then parks for short periods until
+ * it can go on. The time spent waiting either way is measured, along with the depth of the ring
+ * each time an item is added, so that the stage holding a pipeline back can be seen: a ring that
+ * is always full has a slow consumer, and a ring that is always empty has a slow producer.</p>
+ *
+ * @param <T> The type of the items in the ring.
+ */
+public class RingBuffer<T> {
+
+  private static final int SPINS = 64;
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+  private final String name;
+  private final Object[] slots;
+  private final AtomicLongArray sequences;
+  private final int mask;
+  private final AtomicLong head;
+  private final AtomicLong tail;
+  private final AtomicLong puts;
+  private final AtomicLong depthTotal;
+  private final AtomicLong maxDepth;
+  private final AtomicLong fullNanos;
+  private final AtomicLong emptyNanos;
+  private volatile boolean closed;
+
+  /**
+   * Constructor for class RingBuffer.
+   *
+   * @param name     (String) The name of the ring, as shown in the statistics of a run.
+   * @param capacity (int) The number of items the ring holds, a power of two of at least 2, as
+   *                 the sequence of a single slot could not tell a full ring from an empty one.
+   * @throws IllegalArgumentException when the capacity is not a power of two of at least 2.
+   */
+  public RingBuffer(String name, int capacity) {
+    if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException(
+          "Expected a capacity that is a power of two of at least 2, found " + capacity + ".");
+    }
+
+    this.name = name;
+    this.slots = new Object[capacity];
+    this.sequences = new AtomicLongArray(capacity);
+    this.mask = capacity - 1;
+    this.head = new AtomicLong();
+    this.tail = new AtomicLong();
+    this.puts = new AtomicLong();
+    this.depthTotal = new AtomicLong();
+    this.maxDepth = new AtomicLong();
+    this.fullNanos = new AtomicLong();
+    this.emptyNanos = new AtomicLong();
+
+    for (int i = 0; i < capacity; i++) {
+      this.sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds an item to the ring if it is not full.
+   *
+   * @param item (T) The item, which must not be null.
+   * @return (boolean) True if the item was added, false if the ring was full.
+   */
+  public boolean offer(T item) {
+    Objects.requireNonNull(item);
+    long position = this.head.get();
+
+    while (true) {
+      int slot = (int) position & this.mask;
+      long available = this.sequences.get(slot) - position;
+
+      if (available == 0) {
+        if (this.head.compareAndSet(position, position + 1)) {
+          this.slots[slot] = item;
+          this.sequences.set(slot, position + 1);
+          this.recordDepth(position + 1 - this.tail.get());
+          return true;
+        }
+        position = this.head.get();
+      } else if (available < 0) {
+        return false;
+      } else {
+        position = this.head.get();
+      }
+    }
+  }
+
+  /**
+   * Takes the oldest item from the ring if it is not empty.
+   *
+   * @return (T) The item, or null if the ring was empty.
+   */
+  @SuppressWarnings("unchecked")
+  public T poll() {
+    long position = this.tail.get();
+
+    while (true) {
+      int slot = (int) position & this.mask;
+      long available = this.sequences.get(slot) - (position + 1);
+
+      if (available == 0) {
+        if (this.tail.compareAndSet(position, position + 1)) {
+          T item = (T) this.slots[slot];
+          this.slots[slot] = null;
+          this.sequences.set(slot, position + this.slots.length);
+          return item;
+        }
+        position = this.tail.get();
+      } else if (available < 0) {
+        return null;
+      } else {
+        position = this.tail.get();
+      }
+    }
+  }
+
+  /**
+   * Adds an item to the ring, waiting while it is full.
+   *
+   * @param item (T) The item, which must not be null.
+   * @return (boolean) True if the item was added, false if the ring was closed first.
+   */
+  public boolean put(T item) {
+    if (this.closed) {
+      return false;
+    }
+    if (this.offer(item)) {
+      return true;
+    }
+
+    long start = System.nanoTime();
+
+    try {
+      for (int spins = 0; !this.closed; spins++) {
+        if (this.offer(item)) {
+          return true;
+        }
+        idle(spins);
+      }
+      return false;
+    } finally {
+      this.fullNanos.addAndGet(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Takes the oldest item from the ring, waiting while it is empty. Items added before the ring
+   * was closed are still taken.
+   *
+   * @return (T) The item, or null once the ring is closed and empty.
+   */
+  public T take() {
+    T item = this.poll();
+
+    if (item != null) {
+      return item;
+    }
+
+    long start = System.nanoTime();
+
+    try {
+      for (int spins = 0; ; spins++) {
+        // Read before polling, so that an item added just before the ring was closed is not missed
+        boolean wasClosed = this.closed;
+        item = this.poll();
+
+        if (item != null || wasClosed) {
+          return item;
+        }
+        idle(spins);
+      }
+    } finally {
+      this.emptyNanos.addAndGet(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Closes the ring, so that no more items are added and consumers stop once it is empty.
+   */
+  public void close() {
+    this.closed = true;
+  }
+
+  /**
+   * Determines if the ring has been closed.
+   *
+   * @return (boolean) True if the ring has been closed.
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Gets the name of the ring.
+   *
+   * @return (String) The name of the ring.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Gets the number of items the ring holds.
+   *
+   * @return (int) The capacity of the ring.
+   */
+  public int getCapacity() {
+    return slots.length;
+  }
+
+  /**
+   * Gets the number of items in the ring, which may already have changed.
+   *
+   * @return (int) The number of items.
+   */
+  public int size() {
+    long size = this.head.get() - this.tail.get();
+    return (int) Math.max(0, Math.min(size, this.slots.length));
+  }
+
+  /**
+   * Gets the metrics of the ring so far.
+   *
+   * @return (Metrics) A snapshot of the metrics.
+   */
+  public Metrics getMetrics() {
+    long count = this.puts.get();
+    double meanDepth = count == 0 ? 0 : (double) this.depthTotal.get() / count;
+
+    return new Metrics(name, slots.length, count, meanDepth, maxDepth.get(), fullNanos.get(),
+        emptyNanos.get());
+  }
+
+  /**
+   * Helper method to record the depth of the ring once an item has been added.
+   *
+   * @param depth (long) The number of items in the ring, including the one added.
+   */
+  private void recordDepth(long depth) {
+    long clamped = Math.max(1, Math.min(depth, this.slots.length));
+
+    this.puts.incrementAndGet();
+    this.depthTotal.addAndGet(clamped);
+    this.maxDepth.accumulateAndGet(clamped, Math::max);
+  }
+
+  /**
+   * Helper method to wait a little before trying again, spinning at first and then parking.
+   *
+   * @param spins (int) The number of times the caller has already waited.
+   */
+  private static void idle(int spins) {
+    if (spins < SPINS) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RingBuffer{" +
+        "name='" + name + '\'' +
+        ", capacity=" + slots.length +
+        ", size=" + this.size() +
+        ", closed=" + closed +
+        '}';
+  }
+
+  /**
+   * Class representing a snapshot of the metrics of a ring.
+   */
+  public static final class Metrics {
+
+    private final String name;
+    private final int capacity;
+    private final long puts;
+    private final double meanDepth;
+    private final long maxDepth;
+    private final long fullNanos;
+    private final long emptyNanos;
+
+    /**
+     * Constructor for class Metrics.
+     *
+     * @param name       (String) The name of the ring.
+     * @param capacity   (int) The number of items the ring holds.
+     * @param puts       (long) The number of items added to the ring.
+     * @param meanDepth  (double) The mean number of items in the ring when one was added.
+     * @param maxDepth   (long) The largest number of items in the ring.
+     * @param fullNanos  (long) The time producers spent waiting for the ring not to be full.
+     * @param emptyNanos (long) The time consumers spent waiting for the ring not to be empty.
+     */
+    public Metrics(String name, int capacity, long puts, double meanDepth, long maxDepth,
+        long fullNanos, long emptyNanos) {
+      this.name = name;
+      this.capacity = capacity;
+      this.puts = puts;
+      this.meanDepth = meanDepth;
+      this.maxDepth = maxDepth;
+      this.fullNanos = fullNanos;
+      this.emptyNanos = emptyNanos;
+    }
+
+    /**
+     * Gets the name of the ring.
+     *
+     * @return (String) The name of the ring.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Gets the number of items the ring holds.
+     *
+     * @return (int) The capacity of the ring.
+     */
+    public int getCapacity() {
+      return capacity;
+    }
+
+    /**
+     * Gets the number of items added to the ring.
+     *
+     * @return (long) The number of items.
+     */
+    public long getPuts() {
+      return puts;
+    }
+
+    /**
+     * Gets the mean number of items in the ring when one was added.
+     *
+     * @return (double) The mean depth, or 0 if no item was added.
+     */
+    public double getMeanDepth() {
+      return meanDepth;
+    }
+
+    /**
+     * Gets the largest number of items in the ring.
+     *
+     * @return (long) The largest depth.
+     */
+    public long getMaxDepth() {
+      return maxDepth;
+    }
+
+    /**
+     * Gets the time producers spent waiting for the ring not to be full.
+     *
+     * @return (long) The time, in nanoseconds, summed over every producer.
+     */
+    public long getFullNanos() {
+      return fullNanos;
+    }
+
+    /**
+     * Gets the time consumers spent waiting for the ring not to be empty.
+     *
+     * @return (long) The time, in nanoseconds, summed over every consumer.
+     */
+    public long getEmptyNanos() {
+      return emptyNanos;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Metrics that = (Metrics) o;
+      return capacity == that.capacity
+          && puts == that.puts
+          && Double.compare(meanDepth, that.meanDepth) == 0
+          && maxDepth == that.maxDepth
+          && fullNanos == that.fullNanos
+          && emptyNanos == that.emptyNanos
+          && Objects.equals(name, that.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(name, capacity, puts, meanDepth, maxDepth, fullNanos, emptyNanos);
+    }
+
+    @Override
+    public String toString() {
+      return "Metrics{" +
+          "name='" + name + '\'' +
+          ", capacity=" + capacity +
+          ", puts=" + puts +
+          ", meanDepth=" + meanDepth +
+          ", maxDepth=" + maxDepth +
+          '}';
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package problem1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Interface representing a reader that moves through the rows of a CSV file one at a time. The
+ * reader itself is a view of the current row.
+ */
+public interface RowReader extends Closeable, DataRow {
+
+  /**
+   * Advances the reader to the next row of the file.
+   *
+   * @return (boolean) True if a row was read, false when the end of the file has been reached.
+   * @throws IOException when the file cannot be read.
+   */
+  boolean next() throws IOException;
+
+  /**
+   * Gets the column names read from the first line of the file.
+   *
+   * @return (List) The column names, in column order.
+   */
+  List<String> getHeader();
+
+  /**
+   * Gets the zero-based index of the current row, not counting the header line.
+   *
+   * @return (int) The index of the current row, or -1 before the first call to next().
+   */
+  int getRowIndex();
+
+  /**
+   * Restricts the columns that are read to the named ones, before the first row is read. The
+   * fields of the other columns read as empty. Readers that only decode the fields they are asked
+   * for ignore this.
+   *
+   * @param columns (Collection) The names of the columns to be read.
+   */
+  default void project(Collection<String> columns) {
+  }
+}
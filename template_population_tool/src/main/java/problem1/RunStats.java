@@ -0,0 +1,389 @@
+package problem1;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Class representing the statistics of a run, broken down by stage: the time spent, the number of
+ * rows processed, the bytes read and written, and the peak heap usage.
+ *
+ * <p>When rows are rendered and written one at a time, or by several threads, the time of a stage
+ * is the sum of the time spent in it by every row and thread, and the stages that were interleaved
+ * share the same peak heap usage. Statistics can be added from several threads.</p>
+ *
+ * <p>When the stages run as a pipeline, the metrics of the queues between them are kept as well,
+ * to show which stage the others were waiting for.</p>
+ */
+public class RunStats {
+
+  private static final double NANOS_PER_SECOND = 1e9;
+  private static final double NANOS_PER_MILLI = 1e6;
+
+  private final AtomicLongArray nanos;
+  private final AtomicLongArray rows;
+  private final AtomicLongArray bytesRead;
+  private final AtomicLongArray bytesWritten;
+  private final AtomicLongArray peakHeap;
+  private final List<MemoryPoolMXBean> pools;
+  private final List<RingBuffer.Metrics> queues;
+  private final long startNanos;
+  private long wallNanos;
+
+  /**
+   * Constructor for class RunStats. The wall time of the run is measured from here, and the peak
+   * heap usage is reset.
+   */
+  public RunStats() {
+    int stages = Stage.values().length;
+
+    this.nanos = new AtomicLongArray(stages);
+    this.rows = new AtomicLongArray(stages);
+    this.bytesRead = new AtomicLongArray(stages);
+    this.bytesWritten = new AtomicLongArray(stages);
+    this.peakHeap = new AtomicLongArray(stages);
+    this.pools = ManagementFactory.getMemoryPoolMXBeans();
+    this.queues = Collections.synchronizedList(new ArrayList<>());
+    this.wallNanos = -1;
+    this.resetPeakHeap();
+    this.startNanos = System.nanoTime();
+  }
+
+  /**
+   * Adds time spent in a stage.
+   *
+   * @param stage (Stage) The stage.
+   * @param nanos (long) The time spent, in nanoseconds.
+   */
+  public void addTime(Stage stage, long nanos) {
+    this.nanos.addAndGet(stage.ordinal(), nanos);
+  }
+
+  /**
+   * Adds rows processed by a stage. A row populating several templates is counted once per
+   * template by the render and write stages.
+   *
+   * @param stage (Stage) The stage.
+   * @param rows  (long) The number of rows.
+   */
+  public void addRows(Stage stage, long rows) {
+    this.rows.addAndGet(stage.ordinal(), rows);
+  }
+
+  /**
+   * Adds bytes read by a stage.
+   *
+   * @param stage (Stage) The stage.
+   * @param bytes (long) The number of bytes.
+   */
+  public void addBytesRead(Stage stage, long bytes) {
+    this.bytesRead.addAndGet(stage.ordinal(), bytes);
+  }
+
+  /**
+   * Adds bytes written by a stage.
+   *
+   * @param stage (Stage) The stage.
+   * @param bytes (long) The number of bytes.
+   */
+  public void addBytesWritten(Stage stage, long bytes) {
+    this.bytesWritten.addAndGet(stage.ordinal(), bytes);
+  }
+
+  /**
+   * Adds the metrics of a queue between stages, once the stages are over.
+   *
+   * @param queue (RingBuffer.Metrics) The metrics of the queue.
+   */
+  public void addQueue(RingBuffer.Metrics queue) {
+    this.queues.add(queue);
+  }
+
+  /**
+   * Records the peak heap usage since the last time it was recorded (or reset) as the peak of the
+   * given stages, then resets it. Called when the stages end.
+   *
+   * @param stages (Stage[]) The stages that ran since the peak was last recorded.
+   */
+  public void recordPeakHeap(Stage... stages) {
+    long peak = 0;
+
+    for (MemoryPoolMXBean pool : this.pools) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+
+    for (Stage stage : stages) {
+      int i = stage.ordinal();
+      long previous = this.peakHeap.get(i);
+
+      while (peak > previous && !this.peakHeap.compareAndSet(i, previous, peak)) {
+        previous = this.peakHeap.get(i);
+      }
+    }
+
+    this.resetPeakHeap();
+  }
+
+  /**
+   * Resets the peak heap usage to the current heap usage, e.g. before a stage starts.
+   */
+  public void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : this.pools) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * Ends the run, fixing its wall time. Statistics added afterwards are still counted.
+   */
+  public void finish() {
+    this.wallNanos = System.nanoTime() - this.startNanos;
+  }
+
+  /**
+   * Gets the time spent in a stage.
+   *
+   * @param stage (Stage) The stage.
+   * @return (long) The time spent, in nanoseconds.
+   */
+  public long getNanos(Stage stage) {
+    return this.nanos.get(stage.ordinal());
+  }
+
+  /**
+   * Gets the number of rows processed by a stage.
+   *
+   * @param stage (Stage) The stage.
+   * @return (long) The number of rows.
+   */
+  public long getRows(Stage stage) {
+    return this.rows.get(stage.ordinal());
+  }
+
+  /**
+   * Gets the number of rows processed per second spent in a stage.
+   *
+   * @param stage (Stage) The stage.
+   * @return (double) The number of rows per second, or 0 if no time was spent in the stage.
+   */
+  public double getRowsPerSecond(Stage stage) {
+    long time = this.getNanos(stage);
+    return time == 0 ? 0 : this.getRows(stage) * NANOS_PER_SECOND / time;
+  }
+
+  /**
+   * Gets the number of bytes read by a stage.
+   *
+   * @param stage (Stage) The stage.
+   * @return (long) The number of bytes.
+   */
+  public long getBytesRead(Stage stage) {
+    return this.bytesRead.get(stage.ordinal());
+  }
+
+  /**
+   * Gets the number of bytes written by a stage.
+   *
+   * @param stage (Stage) The stage.
+   * @return (long) The number of bytes.
+   */
+  public long getBytesWritten(Stage stage) {
+    return this.bytesWritten.get(stage.ordinal());
+  }
+
+  /**
+   * Gets the peak heap usage recorded for a stage.
+   *
+   * @param stage (Stage) The stage.
+   * @return (long) The peak heap usage, in bytes.
+   */
+  public long getPeakHeap(Stage stage) {
+    return this.peakHeap.get(stage.ordinal());
+  }
+
+  /**
+   * Gets the metrics of the queues between stages, in the order they were added.
+   *
+   * @return (List) The metrics of each queue, or an empty List if the stages did not run as a
+   * pipeline.
+   */
+  public List<RingBuffer.Metrics> getQueues() {
+    synchronized (this.queues) {
+      return new ArrayList<>(this.queues);
+    }
+  }
+
+  /**
+   * Gets the wall time of the run, up to the call to finish, or up to now if the run has not
+   * finished.
+   *
+   * @return (long) The wall time, in nanoseconds.
+   */
+  public long getWallNanos() {
+    return this.wallNanos < 0 ? System.nanoTime() - this.startNanos : this.wallNanos;
+  }
+
+  /**
+   * Creates a human-readable summary of the statistics, with a line per stage, followed by a line
+   * per queue if the stages ran as a pipeline.
+   *
+   * @return (String) The summary.
+   */
+  public String toSummary() {
+    StringBuilder summary = new StringBuilder();
+
+    summary.append(String.format(Locale.ROOT, "%-8s %12s %12s %14s %14s %14s %14s%n", "stage",
+        "time (ms)", "rows", "rows/s", "read (B)", "written (B)", "peak heap (MB)"));
+
+    for (Stage stage : Stage.values()) {
+      summary.append(String.format(Locale.ROOT, "%-8s %12.1f %12d %14.1f %14d %14d %14.1f%n",
+          stage.getName(), this.getNanos(stage) / NANOS_PER_MILLI, this.getRows(stage),
+          this.getRowsPerSecond(stage), this.getBytesRead(stage), this.getBytesWritten(stage),
+          this.getPeakHeap(stage) / (1024.0 * 1024.0)));
+    }
+
+    summary.append(String.format(Locale.ROOT, "%-8s %12.1f%n", "total",
+        this.getWallNanos() / NANOS_PER_MILLI));
+
+    List<RingBuffer.Metrics> queues = this.getQueues();
+
+    if (!queues.isEmpty()) {
+      summary.append(String.format(Locale.ROOT, "%-8s %12s %12s %14s %14s %14s %14s%n", "queue",
+          "capacity", "items", "mean depth", "max depth", "full (ms)", "empty (ms)"));
+
+      for (RingBuffer.Metrics queue : queues) {
+        summary.append(String.format(Locale.ROOT, "%-8s %12d %12d %14.1f %14d %14.1f %14.1f%n",
+            queue.getName(), queue.getCapacity(), queue.getPuts(), queue.getMeanDepth(),
+            queue.getMaxDepth(), queue.getFullNanos() / NANOS_PER_MILLI,
+            queue.getEmptyNanos() / NANOS_PER_MILLI));
+      }
+    }
+
+    return summary.toString();
+  }
+
+  /**
+   * Creates a JSON object holding the statistics, with an object per stage, and one per queue if
+   * the stages ran as a pipeline.
+   *
+   * @return (String) The JSON text.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder();
+
+    json.append("{\n  \"wallTimeMillis\": ")
+        .append(formatDouble(this.getWallNanos() / NANOS_PER_MILLI))
+        .append(",\n  \"stages\": {");
+
+    for (Stage stage : Stage.values()) {
+      json.append(stage.ordinal() == 0 ? "\n" : ",\n")
+          .append("    \"").append(stage.getName()).append("\": {")
+          .append("\"timeMillis\": ").append(formatDouble(this.getNanos(stage) / NANOS_PER_MILLI))
+          .append(", \"rows\": ").append(this.getRows(stage))
+          .append(", \"rowsPerSecond\": ").append(formatDouble(this.getRowsPerSecond(stage)))
+          .append(", \"bytesRead\": ").append(this.getBytesRead(stage))
+          .append(", \"bytesWritten\": ").append(this.getBytesWritten(stage))
+          .append(", \"peakHeapBytes\": ").append(this.getPeakHeap(stage))
+          .append('}');
+    }
+
+    json.append("\n  }");
+
+    List<RingBuffer.Metrics> queues = this.getQueues();
+
+    if (!queues.isEmpty()) {
+      json.append(",\n  \"queues\": {");
+
+      for (int i = 0; i < queues.size(); i++) {
+        RingBuffer.Metrics queue = queues.get(i);
+        json.append(i == 0 ? "\n" : ",\n")
+            .append("    \"").append(queue.getName()).append("\": {")
+            .append("\"capacity\": ").append(queue.getCapacity())
+            .append(", \"items\": ").append(queue.getPuts())
+            .append(", \"meanDepth\": ").append(formatDouble(queue.getMeanDepth()))
+            .append(", \"maxDepth\": ").append(queue.getMaxDepth())
+            .append(", \"fullMillis\": ")
+            .append(formatDouble(queue.getFullNanos() / NANOS_PER_MILLI))
+            .append(", \"emptyMillis\": ")
+            .append(formatDouble(queue.getEmptyNanos() / NANOS_PER_MILLI))
+            .append('}');
+      }
+
+      json.append("\n  }");
+    }
+
+    return json.append("\n}\n").toString();
+  }
+
+  /**
+   * Writes the statistics to a file as JSON, replacing the file if it exists.
+   *
+   * @param path (String) The path to the file.
+   * @throws IOException when the file cannot be written.
+   */
+  public void writeJson(String path) throws IOException {
+    try (Writer out = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
+      out.write(this.toJson());
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * Helper method to format a number for JSON, with a fixed number of decimals.
+   *
+   * @param value (double) The number.
+   * @return (String) The formatted number.
+   */
+  private static String formatDouble(double value) {
+    return String.format(Locale.ROOT, "%.3f", value);
+  }
+
+  @Override
+  public String toString() {
+    return "RunStats{" +
+        "wallNanos=" + this.getWallNanos() +
+        ", nanos=" + nanos +
+        ", rows=" + rows +
+        '}';
+  }
+
+  /**
+   * Enum representing the stages of a run.
+   */
+  public enum Stage {
+    PARSE("parse"),
+    RENDER("render"),
+    WRITE("write");
+
+    private final String name;
+
+    Stage(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Gets the name of the stage, as used in the summary and the JSON.
+     *
+     * @return (String) The name of the stage.
+     */
+    public String getName() {
+      return name;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package problem1;
+
+import java.util.Objects;
+
+/**
+ * Class representing one of a number of disjoint slices of the rows of a CSV file, so that a
+ * mailing can be split across several hosts, each populating the templates for its own shard.
+ *
+ * <p>Row i belongs to shard i mod N, which depends on nothing but the index of the row. Every
+ * host therefore agrees on which shard writes each output without knowing the number of rows up
+ * front, so streamed runs can be sharded as well, and the outputs keep the names of an unsharded
+ * run. Interleaving the rows also spreads any slow part of the file across every shard.</p>
+ */
+public class Shard {
+
+  private final int index;
+  private final int count;
+
+  /**
+   * Constructor for class Shard.
+   *
+   * @param index (int) The index of the shard, from 0 to count - 1.
+   * @param count (int) The number of shards.
+   * @throws IllegalArgumentException when the count is not positive, or the index is not one of
+   *                                  the shards.
+   */
+  public Shard(int index, int count) {
+    if (count < 1 || index < 0 || index >= count) {
+      throw new IllegalArgumentException(
+          "Expected a shard from 0 to one less than a positive count, found " + index + "/"
+              + count + ".");
+    }
+
+    this.index = index;
+    this.count = count;
+  }
+
+  /**
+   * Parses a shard written as its index and the number of shards, e.g. "2/8".
+   *
+   * @param spec (String) The shard.
+   * @return (Shard) The shard.
+   * @throws IllegalArgumentException when the shard is not in this form, or is not valid.
+   */
+  public static Shard parse(String spec) {
+    int slash = spec.indexOf('/');
+
+    try {
+      return new Shard(Integer.parseInt(spec.substring(0, slash).trim()),
+          Integer.parseInt(spec.substring(slash + 1).trim()));
+    } catch (NumberFormatException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Expected a shard such as 2/8, found " + spec + ".", e);
+    }
+  }
+
+  /**
+   * Determines if a row belongs to the shard.
+   *
+   * @param row (int) The index of the row.
+   * @return (boolean) True if the shard populates the templates for the row.
+   */
+  public boolean contains(int row) {
+    return row % count == index;
+  }
+
+  /**
+   * Counts the rows of the shard among the first rows of a file.
+   *
+   * @param rows (int) The number of rows of the file.
+   * @return (int) The number of rows belonging to the shard.
+   */
+  public int countRows(int rows) {
+    return rows <= index ? 0 : (rows - index - 1) / count + 1;
+  }
+
+  /**
+   * Counts the rows of the shard in a range of rows.
+   *
+   * @param from (int) The first row of the range.
+   * @param to   (int) The row after the last row of the range.
+   * @return (int) The number of rows of the range belonging to the shard.
+   */
+  public int countRows(int from, int to) {
+    return this.countRows(to) - this.countRows(from);
+  }
+
+  /**
+   * Gets the index of the shard.
+   *
+   * @return (int) The index, from 0 to the number of shards - 1.
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  /**
+   * Gets the number of shards.
+   *
+   * @return (int) The number of shards.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    Shard shard = (Shard) o;
+    return index == shard.index && count == shard.count;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(index, count);
+  }
+
+  @Override
+  public String toString() {
+    return index + "/" + count;
+  }
+}
@@ -0,0 +1,491 @@
+package problem1;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Class representing the manifest a shard of a run leaves in its output directory once every one
+ * of its outputs has been written. It records the shard, the templates and data it was run with,
+ * and the number of outputs it wrote for each template, so that the manifests of every shard of a
+ * mailing can be checked together to prove that each output was written by exactly one shard.
+ *
+ * <p>The manifest is a text file named .template-shard-i-of-N. Its first line identifies the
+ * format, followed by a line with the shard, a line per template (the template's file name and
+ * hash), a line with the number of rows and the hash of the data, and a line per template with the
+ * number of outputs written. The hash of the data covers the names and values of the columns the
+ * templates and file names use, for every row of the file, so that it is the same whether the
+ * file was streamed or read whole, and whichever shard computed it.</p>
+ */
+public class ShardManifest {
+
+  static final String FILE_PREFIX = ".template-shard-";
+
+  private static final String HEADER = "template-shard 1";
+  private static final String SHARD_PREFIX = "shard ";
+  private static final String TEMPLATE_PREFIX = "template ";
+  private static final String ROWS_PREFIX = "rows ";
+  private static final String OUTPUTS_PREFIX = "outputs ";
+
+  private final Shard shard;
+  private final Map<String, Long> templateHashes;
+  private final int rows;
+  private final long dataHash;
+  private final Map<String, Long> outputs;
+
+  /**
+   * Constructor for class ShardManifest.
+   *
+   * @param shard          (Shard) The shard.
+   * @param templateHashes (Map) Map of the file name of each template to the hash of its lines.
+   * @param rows           (int) The number of rows of the whole file.
+   * @param dataHash       (long) The hash of the data, as computed by a DataHash.
+   * @param outputs        (Map) Map of the file name of each template to the number of outputs
+   *                       the shard wrote for it.
+   */
+  public ShardManifest(Shard shard, Map<String, Long> templateHashes, int rows, long dataHash,
+      Map<String, Long> outputs) {
+    this.shard = shard;
+    this.templateHashes = Collections.unmodifiableMap(new LinkedHashMap<>(templateHashes));
+    this.rows = rows;
+    this.dataHash = dataHash;
+    this.outputs = Collections.unmodifiableMap(new LinkedHashMap<>(outputs));
+  }
+
+  /**
+   * Gets the name of the manifest of a shard.
+   *
+   * @param shard (Shard) The shard.
+   * @return (String) The file name of the manifest.
+   */
+  public static String fileName(Shard shard) {
+    return FILE_PREFIX + shard.getIndex() + "-of-" + shard.getCount();
+  }
+
+  /**
+   * Reads a manifest.
+   *
+   * @param path (Path) Path to the manifest.
+   * @return (ShardManifest) The manifest.
+   * @throws IOException when the manifest cannot be read, or is not a valid manifest.
+   */
+  public static ShardManifest read(Path path) throws IOException {
+    try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(in.readLine())) {
+        throw new IOException("Not a shard manifest: " + path);
+      }
+
+      String line = in.readLine();
+      if (line == null || !line.startsWith(SHARD_PREFIX)) {
+        throw new IOException("Missing shard in shard manifest: " + path);
+      }
+      Shard shard = Shard.parse(line.substring(SHARD_PREFIX.length()));
+
+      Map<String, Long> templateHashes = new LinkedHashMap<>();
+      line = in.readLine();
+
+      while (line != null && line.startsWith(TEMPLATE_PREFIX)) {
+        int space = line.lastIndexOf(' ');
+        templateHashes.put(line.substring(TEMPLATE_PREFIX.length(), space),
+            Long.parseUnsignedLong(line.substring(space + 1), 16));
+        line = in.readLine();
+      }
+
+      if (line == null || !line.startsWith(ROWS_PREFIX)) {
+        throw new IOException("Missing row count in shard manifest: " + path);
+      }
+
+      String[] counts = line.substring(ROWS_PREFIX.length()).split(" ");
+      int rows = Integer.parseInt(counts[0]);
+      long dataHash = Long.parseUnsignedLong(counts[1], 16);
+      Map<String, Long> outputs = new LinkedHashMap<>();
+
+      while ((line = in.readLine()) != null && line.startsWith(OUTPUTS_PREFIX)) {
+        int space = line.lastIndexOf(' ');
+        outputs.put(line.substring(OUTPUTS_PREFIX.length(), space),
+            Long.parseLong(line.substring(space + 1)));
+      }
+
+      return new ShardManifest(shard, templateHashes, rows, dataHash, outputs);
+    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+      throw new IOException("Invalid shard manifest: " + path, e);
+    }
+  }
+
+  /**
+   * Writes the manifest to an output directory, replacing any previous manifest of the same
+   * shard. The manifest is written to a temporary file first, so that a shard that fails while
+   * writing it never leaves a truncated manifest behind.
+   *
+   * @param outputDir (String) Path to the output directory.
+   * @throws IOException when the manifest cannot be written.
+   */
+  public void write(String outputDir) throws IOException {
+    Path path = Paths.get(outputDir, fileName(shard));
+    Path temp = Paths.get(outputDir, fileName(shard) + ".tmp");
+
+    try {
+      try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+        out.write(HEADER + '\n');
+        out.write(SHARD_PREFIX + shard + '\n');
+
+        for (Map.Entry<String, Long> template : this.templateHashes.entrySet()) {
+          out.write(TEMPLATE_PREFIX + template.getKey() + ' '
+              + Long.toHexString(template.getValue()) + '\n');
+        }
+
+        out.write(ROWS_PREFIX + this.rows + ' ' + Long.toHexString(this.dataHash) + '\n');
+
+        for (Map.Entry<String, Long> output : this.outputs.entrySet()) {
+          out.write(OUTPUTS_PREFIX + output.getKey() + ' ' + output.getValue() + '\n');
+        }
+      }
+
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * Checks the manifests of every shard of a mailing, gathered in one directory, against each
+   * other. The mailing is complete when there is a manifest for every shard, every shard was run
+   * with the same templates and data, and every shard wrote an output of each template for each of
+   * its rows.
+   *
+   * @param directory (String) Path to the directory holding the manifests.
+   * @return (Coverage) The shards found, and what keeps them from covering every output.
+   * @throws IOException when the directory or a manifest cannot be read.
+   */
+  public static Coverage merge(String directory) throws IOException {
+    Map<Integer, ShardManifest> shards = new TreeMap<>();
+    List<String> problems = new ArrayList<>();
+    int count = 0;
+
+    try (DirectoryStream<Path> paths =
+        Files.newDirectoryStream(Paths.get(directory), FILE_PREFIX + "*-of-*[0-9]")) {
+      for (Path path : paths) {
+        ShardManifest manifest = read(path);
+
+        if (count != 0 && manifest.shard.getCount() != count) {
+          problems.add("Shard " + manifest.shard + " was run with " + manifest.shard.getCount()
+              + " shards rather than " + count + ".");
+          continue;
+        }
+        count = manifest.shard.getCount();
+        shards.put(manifest.shard.getIndex(), manifest);
+      }
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw e;
+    }
+
+    if (shards.isEmpty()) {
+      problems.add("No shard manifests were found in " + directory + ".");
+      return new Coverage(0, 0, 0, problems);
+    }
+
+    ShardManifest first = shards.values().iterator().next();
+    long outputs = 0;
+
+    for (int i = 0; i < count; i++) {
+      ShardManifest manifest = shards.get(i);
+
+      if (manifest == null) {
+        problems.add("Shard " + new Shard(i, count) + " has no manifest, so it did not finish.");
+        continue;
+      }
+      if (!manifest.templateHashes.equals(first.templateHashes)) {
+        problems.add("Shard " + manifest.shard + " was run with other templates than shard "
+            + first.shard + ".");
+        continue;
+      }
+      if (manifest.rows != first.rows || manifest.dataHash != first.dataHash) {
+        problems.add("Shard " + manifest.shard + " was run with other data than shard "
+            + first.shard + ".");
+        continue;
+      }
+
+      long expected = manifest.shard.countRows(manifest.rows);
+
+      for (String template : manifest.templateHashes.keySet()) {
+        long written = manifest.outputs.getOrDefault(template, 0L);
+
+        if (written != expected) {
+          problems.add("Shard " + manifest.shard + " wrote " + written + " of its " + expected
+              + " outputs of " + template + ".");
+        }
+        outputs += written;
+      }
+    }
+
+    return new Coverage(count, first.rows, outputs, problems);
+  }
+
+  /**
+   * Gets the shard.
+   *
+   * @return (Shard) The shard.
+   */
+  public Shard getShard() {
+    return shard;
+  }
+
+  /**
+   * Gets the hashes of the templates.
+   *
+   * @return (Map) Map of the file name of each template to the hash of its lines.
+   */
+  public Map<String, Long> getTemplateHashes() {
+    return templateHashes;
+  }
+
+  /**
+   * Gets the number of rows of the whole file.
+   *
+   * @return (int) The number of rows.
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  /**
+   * Gets the hash of the data.
+   *
+   * @return (long) The hash of the data.
+   */
+  public long getDataHash() {
+    return dataHash;
+  }
+
+  /**
+   * Gets the number of outputs the shard wrote for each template.
+   *
+   * @return (Map) Map of the file name of each template to the number of outputs.
+   */
+  public Map<String, Long> getOutputs() {
+    return outputs;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    ShardManifest that = (ShardManifest) o;
+    return rows == that.rows
+        && dataHash == that.dataHash
+        && Objects.equals(shard, that.shard)
+        && Objects.equals(templateHashes, that.templateHashes)
+        && Objects.equals(outputs, that.outputs);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(shard, templateHashes, rows, dataHash, outputs);
+  }
+
+  @Override
+  public String toString() {
+    return "ShardManifest{" +
+        "shard=" + shard +
+        ", templateHashes=" + templateHashes +
+        ", rows=" + rows +
+        ", outputs=" + outputs +
+        '}';
+  }
+
+  /**
+   * Class representing the hash of the data of a run, built up one row at a time. Only the
+   * columns the templates and file names use are hashed, in the order of the header.
+   */
+  public static final class DataHash {
+
+    private final int[] columns;
+    private final StringBuilder field;
+    private long value;
+    private int rows;
+
+    /**
+     * Constructor for class DataHash.
+     *
+     * @param header  (List) The column names of the data, in column order.
+     * @param columns (Collection) The names of the columns hashed. Names that are not in the
+     *                header are ignored.
+     */
+    public DataHash(List<String> header, Collection<String> columns) {
+      boolean[] hashed = CSVTokenizer.projection(header, columns);
+      List<String> names = new ArrayList<>();
+      int[] indices = new int[header.size()];
+
+      for (int i = 0; i < header.size(); i++) {
+        if (hashed[i]) {
+          indices[names.size()] = i;
+          names.add(header.get(i));
+        }
+      }
+
+      this.columns = Arrays.copyOf(indices, names.size());
+      this.field = new StringBuilder();
+      this.value = OutputManifest.hashTemplate(names);
+    }
+
+    /**
+     * Adds the next row of the data to the hash.
+     *
+     * @param row (DataRow) The row.
+     */
+    public void add(DataRow row) {
+      long hash = OutputManifest.FNV_OFFSET_BASIS;
+
+      for (int column : this.columns) {
+        this.field.setLength(0);
+        row.appendField(column, this.field);
+
+        for (int i = 0; i < this.field.length(); i++) {
+          hash = (hash ^ this.field.charAt(i)) * OutputManifest.FNV_PRIME;
+        }
+        // A separator, so that moving characters from one field to the next changes the hash
+        hash = (hash ^ 0x1f) * OutputManifest.FNV_PRIME;
+      }
+
+      this.value = (this.value ^ hash) * OutputManifest.FNV_PRIME;
+      this.rows++;
+    }
+
+    /**
+     * Gets the hash of the rows added so far.
+     *
+     * @return (long) The hash.
+     */
+    public long getValue() {
+      return value;
+    }
+
+    /**
+     * Gets the number of rows added so far.
+     *
+     * @return (int) The number of rows.
+     */
+    public int getRows() {
+      return rows;
+    }
+  }
+
+  /**
+   * Class representing how far the shards of a mailing cover its outputs.
+   */
+  public static final class Coverage {
+
+    private final int shards;
+    private final int rows;
+    private final long outputs;
+    private final List<String> problems;
+
+    /**
+     * Constructor for class Coverage.
+     *
+     * @param shards   (int) The number of shards of the mailing.
+     * @param rows     (int) The number of rows of the data.
+     * @param outputs  (long) The number of outputs the shards wrote.
+     * @param problems (List) What keeps the shards from covering every output.
+     */
+    public Coverage(int shards, int rows, long outputs, List<String> problems) {
+      this.shards = shards;
+      this.rows = rows;
+      this.outputs = outputs;
+      this.problems = Collections.unmodifiableList(new ArrayList<>(problems));
+    }
+
+    /**
+     * Determines if every output of the mailing was written by exactly one shard.
+     *
+     * @return (boolean) True if nothing keeps the shards from covering every output.
+     */
+    public boolean isComplete() {
+      return problems.isEmpty();
+    }
+
+    /**
+     * Gets the number of shards of the mailing.
+     *
+     * @return (int) The number of shards.
+     */
+    public int getShards() {
+      return shards;
+    }
+
+    /**
+     * Gets the number of rows of the data.
+     *
+     * @return (int) The number of rows.
+     */
+    public int getRows() {
+      return rows;
+    }
+
+    /**
+     * Gets the number of outputs the shards wrote.
+     *
+     * @return (long) The number of outputs.
+     */
+    public long getOutputs() {
+      return outputs;
+    }
+
+    /**
+     * Gets what keeps the shards from covering every output.
+     *
+     * @return (List) A description of each problem, empty when the mailing is complete.
+     */
+    public List<String> getProblems() {
+      return problems;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Coverage that = (Coverage) o;
+      return shards == that.shards
+          && rows == that.rows
+          && outputs == that.outputs
+          && Objects.equals(problems, that.problems);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(shards, rows, outputs, problems);
+    }
+
+    @Override
+    public String toString() {
+      return isComplete()
+          ? "The " + shards + " shards wrote all " + outputs + " outputs of " + rows + " rows."
+          : String.join("\n", problems);
+    }
+  }
+}
@@ -0,0 +1,507 @@
+package problem1;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Class representing a RecordStore that holds no more than a memory budget of rows on the heap,
+ * for CSV files larger than the heap. Rows are stored in pages of PAGE_ROWS rows, each a compacted
+ * RecordStore of its own. Once the pages in memory take more than the budget, the least recently
+ * used pages are written to a temporary file, one after the other, and dropped from the heap. A
+ * page is read back whole the next time one of its rows is needed, so walking the rows in order,
+ * as every pass over the templates does, reads the file sequentially, and random lookups cost at
+ * most one read.
+ *
+ * <p>A page is only written to the file the first time it is evicted, as pages never change once
+ * full. The page being filled while loading is not counted against the budget until it is full,
+ * and the page last used is never evicted, so the budget can be exceeded by up to two pages. A
+ * budget of fewer pages than there are threads reading rows makes the threads read their pages
+ * back in turn.</p>
+ *
+ * <p>Rows can be read from several threads at once, as long as no row is added at the same time.
+ * The temporary file is deleted when the store is closed, after which the rows that were spilled
+ * can no longer be read.</p>
+ */
+public class SpillingRecordStore extends RecordStore implements Closeable {
+
+  static final int PAGE_ROWS = 1 << 14;
+
+  private final long memoryBudget;
+  private final Path spillDirectory;
+  private final List<Page> pages;
+  private RecordStore filling;
+  private FileChannel spill;
+  private long spillLength;
+  private long residentBytes;
+  private long clock;
+  private long pageReads;
+  private int size;
+
+  /**
+   * Constructor for class SpillingRecordStore, spilling to the default temporary directory.
+   *
+   * @param header       (List) The column names, in column order.
+   * @param memoryBudget (long) The number of bytes the pages held in memory may take.
+   * @throws IllegalArgumentException when the budget is not positive.
+   */
+  public SpillingRecordStore(List<String> header, long memoryBudget) {
+    this(header, memoryBudget, Paths.get(System.getProperty("java.io.tmpdir")));
+  }
+
+  /**
+   * Constructor for class SpillingRecordStore.
+   *
+   * @param header         (List) The column names, in column order.
+   * @param memoryBudget   (long) The number of bytes the pages held in memory may take.
+   * @param spillDirectory (Path) The directory the temporary file is created in, once the first
+   *                       page is spilled.
+   * @throws IllegalArgumentException when the budget is not positive.
+   */
+  public SpillingRecordStore(List<String> header, long memoryBudget, Path spillDirectory) {
+    super(header);
+
+    if (memoryBudget < 1) {
+      throw new IllegalArgumentException(
+          "Expected a memory budget of at least one byte, found " + memoryBudget + ".");
+    }
+
+    this.memoryBudget = memoryBudget;
+    this.spillDirectory = spillDirectory;
+    this.pages = new ArrayList<>();
+  }
+
+  /**
+   * Parses a number of bytes, optionally followed by a unit of k, m or g (powers of 1024), such as
+   * 512m.
+   *
+   * @param budget (String) The number of bytes.
+   * @return (long) The number of bytes.
+   * @throws IllegalArgumentException when the budget is not a positive number of bytes.
+   */
+  public static long parseBudget(String budget) {
+    String value = budget.trim().toLowerCase(Locale.ROOT);
+    int shift = 0;
+
+    if (value.endsWith("k") || value.endsWith("m") || value.endsWith("g")) {
+      shift = "kmg".indexOf(value.charAt(value.length() - 1)) * 10 + 10;
+      value = value.substring(0, value.length() - 1);
+    }
+
+    try {
+      long bytes = Long.parseLong(value);
+
+      if (bytes < 1 || bytes > Long.MAX_VALUE >> shift) {
+        throw new NumberFormatException();
+      }
+      return bytes << shift;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "Expected a memory budget such as 512m, found " + budget + ".", e);
+    }
+  }
+
+  @Override
+  public void addRow(DataRow row, int fieldCount) {
+    if (this.filling == null) {
+      this.filling = this.reopen();
+    }
+
+    this.filling.addRow(row, fieldCount);
+    this.size++;
+
+    if (this.filling.size() == PAGE_ROWS) {
+      this.seal();
+    }
+  }
+
+  /**
+   * Seals the page being filled, so that every page is compacted and can be spilled.
+   */
+  @Override
+  public void compact() {
+    if (this.filling != null && this.filling.size() > 0) {
+      this.seal();
+    }
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isDictionaryEncoded(int column) {
+    return this.size == 0 ? super.isDictionaryEncoded(column)
+        : this.page(0).isDictionaryEncoded(column);
+  }
+
+  @Override
+  public String getField(int row, int column) {
+    return this.page(row).getField(row % PAGE_ROWS, column);
+  }
+
+  @Override
+  public void appendField(int row, int column, StringBuilder out) {
+    this.page(row).appendField(row % PAGE_ROWS, column, out);
+  }
+
+  @Override
+  public void appendField(int row, int column, Appendable out) throws IOException {
+    this.page(row).appendField(row % PAGE_ROWS, column, out);
+  }
+
+  @Override
+  public long hashRow(int row) {
+    return this.page(row).hashRow(row % PAGE_ROWS);
+  }
+
+  @Override
+  public long hashRow(int row, int[] columns) {
+    return this.page(row).hashRow(row % PAGE_ROWS, columns);
+  }
+
+  @Override
+  long memoryBytes() {
+    return this.residentBytes + (this.filling == null ? 0 : this.filling.memoryBytes());
+  }
+
+  /**
+   * Gets the number of pages of rows, including the page being filled.
+   *
+   * @return (int) The number of pages.
+   */
+  public int getPageCount() {
+    return this.pages.size() + (this.filling == null ? 0 : 1);
+  }
+
+  /**
+   * Gets the number of bytes written to the temporary file.
+   *
+   * @return (long) The number of bytes spilled, or 0 if every page fits in the budget.
+   */
+  public synchronized long getSpilledBytes() {
+    return spillLength;
+  }
+
+  /**
+   * Gets the number of times a spilled page was read back from the temporary file.
+   *
+   * @return (long) The number of page reads.
+   */
+  public synchronized long getPageReads() {
+    return pageReads;
+  }
+
+  /**
+   * Gets the memory budget of the store.
+   *
+   * @return (long) The number of bytes the pages held in memory may take.
+   */
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * Deletes the temporary file, if any page was spilled.
+   *
+   * @throws IOException when the file cannot be closed.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (this.spill != null) {
+      this.spill.close();
+      this.spill = null;
+    }
+  }
+
+  /**
+   * Helper method to get the page holding a row, reading it back from the temporary file if it was
+   * spilled.
+   *
+   * @param row (int) The index of the row.
+   * @return (RecordStore) The page, whose rows are numbered from 0.
+   */
+  private RecordStore page(int row) {
+    if (row < 0 || row >= this.size) {
+      throw new IndexOutOfBoundsException("No row " + row);
+    }
+
+    int index = row / PAGE_ROWS;
+    if (index == this.pages.size()) {
+      return this.filling;
+    }
+
+    Page page = this.pages.get(index);
+    RecordStore records = page.records;
+    // Racy, but a stale use only makes the page a little more likely to be evicted
+    page.lastUse = ++this.clock;
+
+    return records != null ? records : this.load(page);
+  }
+
+  /**
+   * Helper method to get a page to add rows to: the last page, if compact sealed it before it was
+   * full, or else a new page.
+   *
+   * @return (RecordStore) The page to fill.
+   */
+  private RecordStore reopen() {
+    if (this.size % PAGE_ROWS == 0) {
+      return new RecordStore(this.getHeader());
+    }
+
+    RecordStore records = this.page(this.size - 1);
+    Page last = this.pages.get(this.pages.size() - 1);
+
+    synchronized (this) {
+      if (last.records != null) {
+        this.residentBytes -= last.bytes;
+      }
+      this.pages.remove(this.pages.size() - 1);
+    }
+    return records;
+  }
+
+  /**
+   * Helper method to add the page being filled to the pages of the store, compacted, then evict
+   * pages until the budget is met.
+   */
+  private void seal() {
+    this.filling.compact();
+
+    Page page = new Page(this.filling, this.pages.size() * (long) PAGE_ROWS);
+    page.lastUse = ++this.clock;
+    this.filling = null;
+
+    synchronized (this) {
+      this.pages.add(page);
+      this.residentBytes += page.bytes;
+      this.evict(page);
+    }
+  }
+
+  /**
+   * Helper method to read a spilled page back from the temporary file, then evict other pages
+   * until the budget is met.
+   *
+   * @param page (Page) The page.
+   * @return (RecordStore) The rows of the page.
+   */
+  private synchronized RecordStore load(Page page) {
+    if (page.records != null) {
+      return page.records;
+    }
+
+    if (this.spill == null) {
+      throw new IllegalStateException("The spilled rows were deleted when the store was closed.");
+    }
+
+    ByteBuffer bytes = ByteBuffer.allocate(page.length);
+
+    try {
+      while (bytes.hasRemaining()) {
+        if (this.spill.read(bytes, page.offset + bytes.position()) < 0) {
+          throw new IOException("The spilled rows end before the page at row " + page.firstRow
+              + ".");
+        }
+      }
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw new UncheckedIOException(e);
+    }
+
+    bytes.flip();
+    RecordStore records = this.decode(bytes, page.rows);
+    page.records = records;
+    page.bytes = records.memoryBytes();
+    this.residentBytes += page.bytes;
+    this.pageReads++;
+    this.evict(page);
+
+    return records;
+  }
+
+  /**
+   * Helper method to drop the least recently used pages from memory until the budget is met,
+   * writing each to the temporary file the first time it is dropped.
+   *
+   * @param keep (Page) The page in use, which is kept whatever the budget.
+   */
+  private void evict(Page keep) {
+    while (this.residentBytes > this.memoryBudget) {
+      Page eldest = null;
+
+      for (Page page : this.pages) {
+        if (page != keep && page.records != null
+            && (eldest == null || page.lastUse < eldest.lastUse)) {
+          eldest = page;
+        }
+      }
+
+      if (eldest == null) {
+        return;
+      }
+      if (eldest.offset < 0) {
+        this.write(eldest);
+      }
+
+      eldest.records = null;
+      this.residentBytes -= eldest.bytes;
+    }
+  }
+
+  /**
+   * Helper method to append a page to the end of the temporary file, creating the file first if
+   * no page was spilled yet. A page is written as the length of each field, then the characters
+   * of every field.
+   *
+   * @param page (Page) The page, which is in memory.
+   */
+  private void write(Page page) {
+    RecordStore records = page.records;
+    int columns = records.getHeader().size();
+    StringBuilder chars = new StringBuilder();
+    int[] lengths = new int[records.size() * columns];
+
+    for (int i = 0; i < records.size(); i++) {
+      for (int j = 0; j < columns; j++) {
+        int start = chars.length();
+        records.appendField(i, j, chars);
+        lengths[i * columns + j] = chars.length() - start;
+      }
+    }
+
+    ByteBuffer bytes = ByteBuffer.allocate(4 * lengths.length + 2 * chars.length());
+    bytes.asIntBuffer().put(lengths);
+    bytes.position(4 * lengths.length);
+    bytes.asCharBuffer().put(CharBuffer.wrap(chars));
+    bytes.clear();
+
+    try {
+      if (this.spill == null) {
+        Path file = Files.createTempFile(this.spillDirectory, "records", ".spill");
+        this.spill = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+      }
+
+      page.offset = this.spillLength;
+      page.length = bytes.remaining();
+      while (bytes.hasRemaining()) {
+        this.spill.write(bytes, page.offset + bytes.position());
+      }
+      this.spillLength += page.length;
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Helper method to rebuild the rows of a page from the bytes it was spilled as.
+   *
+   * @param bytes (ByteBuffer) The bytes of the page.
+   * @param rows  (int) The number of rows of the page.
+   * @return (RecordStore) The rows of the page, compacted.
+   */
+  private RecordStore decode(ByteBuffer bytes, int rows) {
+    int columns = this.getHeader().size();
+    int[] lengths = new int[rows * columns];
+
+    bytes.asIntBuffer().get(lengths);
+    bytes.position(4 * lengths.length);
+    char[] chars = new char[bytes.remaining() / 2];
+    bytes.asCharBuffer().get(chars);
+
+    RecordStore records = new RecordStore(this.getHeader());
+    SpilledRow row = new SpilledRow(chars, lengths, columns);
+
+    for (int i = 0; i < rows; i++) {
+      row.next();
+      records.addRow(row, columns);
+    }
+
+    records.compact();
+    return records;
+  }
+
+  @Override
+  public String toString() {
+    return "SpillingRecordStore{" +
+        "header=" + this.getHeader() +
+        ", size=" + size +
+        ", memoryBudget=" + memoryBudget +
+        '}';
+  }
+
+  /**
+   * Class representing a full page of rows, and where it was spilled to.
+   */
+  private static final class Page {
+
+    private final long firstRow;
+    private final int rows;
+    private volatile RecordStore records;
+    private long bytes;
+    private long offset = -1;
+    private int length;
+    private long lastUse;
+
+    private Page(RecordStore records, long firstRow) {
+      this.records = records;
+      this.firstRow = firstRow;
+      this.rows = records.size();
+      this.bytes = records.memoryBytes();
+    }
+  }
+
+  /**
+   * Class representing the rows of a spilled page as they are read back, one row at a time.
+   */
+  private static final class SpilledRow implements DataRow {
+
+    private final char[] chars;
+    private final int[] lengths;
+    private final int[] starts;
+    private int field;
+    private int offset;
+
+    private SpilledRow(char[] chars, int[] lengths, int columns) {
+      this.chars = chars;
+      this.lengths = lengths;
+      this.starts = new int[columns];
+    }
+
+    private void next() {
+      for (int i = 0; i < this.starts.length; i++) {
+        this.starts[i] = this.offset;
+        this.offset += this.lengths[this.field + i];
+      }
+      this.field += this.starts.length;
+    }
+
+    private int length(int column) {
+      return this.lengths[this.field - this.starts.length + column];
+    }
+
+    @Override
+    public String getField(int column) {
+      return new String(this.chars, this.starts[column], this.length(column));
+    }
+
+    @Override
+    public void appendField(int column, StringBuilder out) {
+      out.append(this.chars, this.starts[column], this.length(column));
+    }
+  }
+}
@@ -0,0 +1,581 @@
+package problem1;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Class representing a template handler that streams the CSV file, rendering and writing each row
+ * before the next one is read. Unlike TemplateHandler, the peak memory used does not depend on the
+ * number of rows in the CSV file.
+ *
+ * <p>With render threads, the rows are instead read, rendered and written by the stages of a
+ * RenderPipeline running at the same time, in batches whose number is bounded.</p>
+ *
+ * <p>A run limited to one Shard still reads every row, to hash the data for its ShardManifest,
+ * but only renders and writes the rows of its shard.</p>
+ *
+ * <p>When deduplicated, the outputs duplicating an earlier output are materialized by an
+ * OutputDeduplicator once the last row is written.</p>
+ */
+public class StreamingTemplateHandler {
+
+  private final String[] templatePaths;
+  private final String outputDir;
+  private final String csvPath;
+  private final boolean memoryMapped;
+  private final OutputArchive.Format archiveFormat;
+  private final int writeConcurrency;
+  private final int renderThreads;
+  private final OutputLayout layout;
+  private final Shard shard;
+  private final OutputDeduplicator.Mode dedup;
+  private final TemplateCache templateCache;
+  private final RunStats stats;
+
+  /**
+   * Constructor for class StreamingTemplateHandler.
+   *
+   * @param templatePaths (String[]) The paths to the templates.
+   * @param outputDir     (String) Path to the output directory.
+   * @param csvPath       (String) Path to the CSV data file.
+   */
+  public StreamingTemplateHandler(String[] templatePaths, String outputDir, String csvPath) {
+    this(templatePaths, outputDir, csvPath, false);
+  }
+
+  /**
+   * Constructor for class StreamingTemplateHandler that can read the CSV file through a
+   * memory-mapped reader.
+   *
+   * @param templatePaths (String[]) The paths to the templates.
+   * @param outputDir     (String) Path to the output directory.
+   * @param csvPath       (String) Path to the CSV data file.
+   * @param memoryMapped  (boolean) Whether the CSV file is read by a MappedCSVReader, which only
+   *                      decodes the columns that the templates reference.
+   */
+  public StreamingTemplateHandler(String[] templatePaths, String outputDir, String csvPath,
+      boolean memoryMapped) {
+    this(templatePaths, outputDir, csvPath, memoryMapped, null);
+  }
+
+  /**
+   * Constructor for class StreamingTemplateHandler that can write every populated template into a
+   * single archive in the output directory.
+   *
+   * @param templatePaths (String[]) The paths to the templates.
+   * @param outputDir     (String) Path to the output directory.
+   * @param csvPath       (String) Path to the CSV data file.
+   * @param memoryMapped  (boolean) Whether the CSV file is read by a MappedCSVReader.
+   * @param archiveFormat (OutputArchive.Format) The format of the archive, or null to write each
+   *                      populated template to a file of its own.
+   */
+  public StreamingTemplateHandler(String[] templatePaths, String outputDir, String csvPath,
+      boolean memoryMapped, OutputArchive.Format archiveFormat) {
+    this(new StreamingTemplateHandlerBuilder(templatePaths, outputDir, csvPath)
+        .memoryMapped(memoryMapped)
+        .archiveFormat(archiveFormat));
+  }
+
+  /**
+   * Private constructor for class StreamingTemplateHandler.
+   *
+   * @param builder (StreamingTemplateHandlerBuilder) A StreamingTemplateHandlerBuilder instance
+   *                from which to construct the StreamingTemplateHandler.
+   */
+  private StreamingTemplateHandler(StreamingTemplateHandlerBuilder builder) {
+    if (builder.writeConcurrency < 1) {
+      throw new IllegalArgumentException(
+          "Expected a write concurrency of at least one, found " + builder.writeConcurrency
+              + ".");
+    }
+    if (builder.renderThreads < 0) {
+      throw new IllegalArgumentException(
+          "Expected a non-negative number of render threads, found " + builder.renderThreads
+              + ".");
+    }
+    if (builder.dedup != null && builder.archiveFormat != null) {
+      throw new IllegalArgumentException(
+          "Only new runs writing every output to a file of its own can be deduplicated.");
+    }
+
+    this.templatePaths = builder.templatePaths;
+    this.outputDir = builder.outputDir;
+    this.csvPath = builder.csvPath;
+    this.memoryMapped = builder.memoryMapped;
+    this.archiveFormat = builder.archiveFormat;
+    this.writeConcurrency = builder.writeConcurrency;
+    this.renderThreads = builder.renderThreads;
+    this.layout = builder.layout;
+    this.shard = builder.shard;
+    this.dedup = builder.dedup;
+    this.templateCache = builder.templateCache;
+    this.stats = builder.stats;
+  }
+
+  /**
+   * Gets the statistics that the parse, render and write stages are added to.
+   *
+   * @return (RunStats) The statistics of the run.
+   */
+  public RunStats getStats() {
+    return stats;
+  }
+
+  /**
+   * Streams the rows of the CSV file and writes every template populated with each row to the
+   * output directory. When each populated template is written to a file of its own and the write
+   * concurrency is above one, the files are created and written on a pool of that many threads.
+   *
+   * @throws IOException when the CSV or template files cannot be read, or the output cannot be
+   *                     written.
+   */
+  public void writeTemplates() throws IOException {
+    if (archiveFormat == null) {
+      try (FileWriterPool writerPool = writeConcurrency > 1
+          ? new FileWriterPool(writeConcurrency) : null) {
+        this.writeTemplates(null, writerPool);
+      }
+      return;
+    }
+
+    try (OutputArchive archive = OutputArchive.open(archiveFormat, outputDir)) {
+      this.writeTemplates(archive, null);
+    }
+  }
+
+  /**
+   * Helper method to stream the rows of the CSV file to the output directory or to an archive.
+   *
+   * @param archive    (OutputArchive) The archive templates are added to, or null to write each
+   *                   populated template to a file of its own.
+   * @param writerPool (FileWriterPool) The pool output files are written on, or null to write
+   *                   them on the thread that renders them.
+   * @throws IOException when the CSV or template files cannot be read, or the output cannot be
+   *                     written.
+   */
+  private void writeTemplates(OutputArchive archive, FileWriterPool writerPool)
+      throws IOException {
+    try (RowReader reader = memoryMapped ? new MappedCSVReader(csvPath)
+        : new CSVStreamReader(csvPath)) {
+      CompiledTemplate[] templates = new CompiledTemplate[templatePaths.length];
+      TemplateWriter[] writers = new TemplateWriter[templatePaths.length];
+      // A file without a header has no rows, so its files are never named
+      OutputLayout boundLayout = reader.getHeader().isEmpty() ? layout
+          : layout.bind(reader.getHeader());
+
+      Set<String> columns = new HashSet<>(layout.getColumns());
+      Map<String, Long> templateHashes = new LinkedHashMap<>();
+      OutputDeduplicator deduplicator = dedup == null ? null : new OutputDeduplicator(dedup);
+
+      for (int i = 0; i < templatePaths.length; i++) {
+        TemplateCache.CachedTemplate template = templateCache.get(templatePaths[i]);
+        templates[i] = template.getTemplate();
+        templateHashes.put(template.getFilename(), template.getHash());
+        writers[i] = new TemplateWriter(outputDir, template.getFilename(), archive, writerPool,
+            boundLayout, deduplicator);
+        columns.addAll(templates[i].getPlaceholders());
+      }
+
+      // The number of rows is not known up front, so every bucket is created
+      if (archive == null) {
+        long start = System.nanoTime();
+        OutputLayout.createDirectories(new File(outputDir).toPath(), layout.getDirectories());
+        stats.addTime(RunStats.Stage.WRITE, System.nanoTime() - start);
+      }
+
+      // Only the columns the templates reference are read
+      reader.project(columns);
+      ShardedRows sharded = shard == null ? null : new ShardedRows(reader, shard, columns);
+      RowReader rows = sharded == null ? reader : sharded;
+
+      try {
+        if (renderThreads > 0) {
+          new RenderPipeline(renderThreads, stats).run(rows, columns, templates, writers);
+        } else {
+          this.writeRows(rows, templates, writers);
+        }
+      } finally {
+        long start = System.nanoTime();
+        for (TemplateWriter writer : writers) {
+          writer.close();
+          stats.addBytesWritten(RunStats.Stage.WRITE, writer.getBytesWritten());
+        }
+        stats.addTime(RunStats.Stage.WRITE, System.nanoTime() - start);
+      }
+
+      stats.addBytesRead(RunStats.Stage.PARSE, new File(csvPath).length());
+      stats.recordPeakHeap(RunStats.Stage.PARSE, RunStats.Stage.RENDER, RunStats.Stage.WRITE);
+
+      if (deduplicator != null) {
+        long start = System.nanoTime();
+        deduplicator.finish(outputDir, shard);
+        stats.addTime(RunStats.Stage.WRITE, System.nanoTime() - start);
+      }
+
+      if (sharded != null) {
+        sharded.manifest(templateHashes).write(outputDir);
+      }
+    }
+  }
+
+  /**
+   * Helper method to render and queue every template for each remaining row, adding the time spent
+   * reading, rendering and writing each row to the statistics.
+   *
+   * @param rows      (RowReader) The reader of the CSV file, positioned before its first row.
+   * @param templates (CompiledTemplate[]) The compiled templates, not yet bound to the header.
+   * @param writers   (TemplateWriter[]) The writer of each template.
+   * @throws IOException when the CSV file cannot be read, or the output cannot be written.
+   */
+  private void writeRows(RowReader rows, CompiledTemplate[] templates, TemplateWriter[] writers)
+      throws IOException {
+    StringBuilder document = new StringBuilder();
+    long parseNanos = 0;
+    long renderNanos = 0;
+    long writeNanos = 0;
+    long rendered = 0;
+    long start = System.nanoTime();
+
+    try {
+      while (rows.next()) {
+        long parsed = System.nanoTime();
+        parseNanos += parsed - start;
+
+        // Bound on the first row so that a CSV file without rows never fails on a missing key
+        if (rendered++ == 0) {
+          for (int i = 0; i < templates.length; i++) {
+            templates[i] = templates[i].bind(rows.getHeader());
+          }
+        }
+
+        for (int i = 0; i < templates.length; i++) {
+          long renderStart = System.nanoTime();
+          document.setLength(0);
+          templates[i].render(rows, document);
+          long renderEnd = System.nanoTime();
+          writers[i].writeTemplate(rows.getRowIndex(), rows, document);
+          renderNanos += renderEnd - renderStart;
+          writeNanos += System.nanoTime() - renderEnd;
+        }
+
+        start = System.nanoTime();
+      }
+      parseNanos += System.nanoTime() - start;
+    } finally {
+      stats.addTime(RunStats.Stage.PARSE, parseNanos);
+      stats.addRows(RunStats.Stage.PARSE, rows.getRowIndex() + 1);
+      stats.addTime(RunStats.Stage.RENDER, renderNanos);
+      stats.addRows(RunStats.Stage.RENDER, rendered * templates.length);
+      stats.addTime(RunStats.Stage.WRITE, writeNanos);
+      stats.addRows(RunStats.Stage.WRITE, rendered * templates.length);
+    }
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    StreamingTemplateHandler that = (StreamingTemplateHandler) o;
+    return Arrays.equals(templatePaths, that.templatePaths)
+        && Objects.equals(outputDir, that.outputDir)
+        && Objects.equals(csvPath, that.csvPath)
+        && memoryMapped == that.memoryMapped
+        && archiveFormat == that.archiveFormat
+        && writeConcurrency == that.writeConcurrency
+        && renderThreads == that.renderThreads
+        && Objects.equals(layout, that.layout)
+        && Objects.equals(shard, that.shard)
+        && dedup == that.dedup;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = Objects.hash(outputDir, csvPath, memoryMapped, archiveFormat, writeConcurrency,
+        renderThreads, layout, shard, dedup);
+    result = 31 * result + Arrays.hashCode(templatePaths);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "StreamingTemplateHandler{" +
+        "templatePaths=" + Arrays.toString(templatePaths) +
+        ", outputDir='" + outputDir + '\'' +
+        ", csvPath='" + csvPath + '\'' +
+        ", memoryMapped=" + memoryMapped +
+        ", archiveFormat=" + archiveFormat +
+        '}';
+  }
+
+  /**
+   * Builder class for enclosing StreamingTemplateHandler class.
+   */
+  public static class StreamingTemplateHandlerBuilder {
+
+    private final String[] templatePaths;
+    private final String outputDir;
+    private final String csvPath;
+    private boolean memoryMapped = false;
+    private OutputArchive.Format archiveFormat = null;
+    private int writeConcurrency = 1;
+    private int renderThreads = 0;
+    private OutputLayout layout = OutputLayout.FLAT;
+    private Shard shard = null;
+    private OutputDeduplicator.Mode dedup = null;
+    private TemplateCache templateCache = new TemplateCache();
+    private RunStats stats = new RunStats();
+
+    /**
+     * Constructor for class StreamingTemplateHandlerBuilder.
+     *
+     * @param templatePaths (String[]) The paths to the templates.
+     * @param outputDir     (String) Path to the output directory.
+     * @param csvPath       (String) Path to the CSV data file.
+     */
+    public StreamingTemplateHandlerBuilder(String[] templatePaths, String outputDir,
+        String csvPath) {
+      this.templatePaths = templatePaths;
+      this.outputDir = outputDir;
+      this.csvPath = csvPath;
+    }
+
+    /**
+     * Creates a new StreamingTemplateHandlerBuilder that reads the CSV file through a
+     * memory-mapped reader.
+     *
+     * @param memoryMapped (boolean) Whether the CSV file is read by a MappedCSVReader.
+     * @return (StreamingTemplateHandlerBuilder) New StreamingTemplateHandlerBuilder with the
+     * specified reader.
+     */
+    public StreamingTemplateHandlerBuilder memoryMapped(boolean memoryMapped) {
+      this.memoryMapped = memoryMapped;
+      return this;
+    }
+
+    /**
+     * Creates a new StreamingTemplateHandlerBuilder that writes every populated template into a
+     * single archive.
+     *
+     * @param archiveFormat (OutputArchive.Format) The format of the archive, or null to write each
+     *                      populated template to a file of its own.
+     * @return (StreamingTemplateHandlerBuilder) New StreamingTemplateHandlerBuilder with the
+     * specified archive format.
+     */
+    public StreamingTemplateHandlerBuilder archiveFormat(OutputArchive.Format archiveFormat) {
+      this.archiveFormat = archiveFormat;
+      return this;
+    }
+
+    /**
+     * Creates a new StreamingTemplateHandlerBuilder that writes up to a number of output files at
+     * the same time, on a pool of threads of its own. Reading and rendering wait whenever the pool
+     * falls behind.
+     *
+     * @param writeConcurrency (int) The number of output files written at the same time, or 1 to
+     *                         write them on the thread that renders them.
+     * @return (StreamingTemplateHandlerBuilder) New StreamingTemplateHandlerBuilder with the
+     * specified write concurrency.
+     */
+    public StreamingTemplateHandlerBuilder writeConcurrency(int writeConcurrency) {
+      this.writeConcurrency = writeConcurrency;
+      return this;
+    }
+
+    /**
+     * Creates a new StreamingTemplateHandlerBuilder that reads, renders and writes the rows in a
+     * pipeline, with a reader thread, a number of render threads and the calling thread writing.
+     *
+     * @param renderThreads (int) The number of render threads, or 0 to read, render and write
+     *                      each row in turn on the calling thread.
+     * @return (StreamingTemplateHandlerBuilder) New StreamingTemplateHandlerBuilder with the
+     * specified number of render threads.
+     */
+    public StreamingTemplateHandlerBuilder renderThreads(int renderThreads) {
+      this.renderThreads = renderThreads;
+      return this;
+    }
+
+    /**
+     * Creates a new StreamingTemplateHandlerBuilder that names and places the output files by a
+     * layout. The directories of hashed buckets are all created before the first row is read.
+     *
+     * @param layout (OutputLayout) The layout of the output directory.
+     * @return (StreamingTemplateHandlerBuilder) New StreamingTemplateHandlerBuilder with the
+     * specified layout.
+     */
+    public StreamingTemplateHandlerBuilder outputLayout(OutputLayout layout) {
+      this.layout = layout;
+      return this;
+    }
+
+    /**
+     * Creates a new StreamingTemplateHandlerBuilder that only populates the templates for the rows
+     * of one shard.
+     *
+     * @param shard (Shard) The shard, or null to populate the templates for every row.
+     * @return (StreamingTemplateHandlerBuilder) New StreamingTemplateHandlerBuilder with the
+     * specified shard.
+     */
+    public StreamingTemplateHandlerBuilder shard(Shard shard) {
+      this.shard = shard;
+      return this;
+    }
+
+    /**
+     * Creates a new StreamingTemplateHandlerBuilder that writes each distinct output body once,
+     * and materializes the outputs duplicating it as hard links or index entries.
+     *
+     * @param dedup (OutputDeduplicator.Mode) How duplicate outputs are materialized, or null to
+     *              write every output in full.
+     * @return (StreamingTemplateHandlerBuilder) New StreamingTemplateHandlerBuilder with the
+     * specified mode.
+     */
+    public StreamingTemplateHandlerBuilder deduplicate(OutputDeduplicator.Mode dedup) {
+      this.dedup = dedup;
+      return this;
+    }
+
+    /**
+     * Creates a new StreamingTemplateHandlerBuilder that gets the compiled templates from a
+     * cache, which may be shared with other handlers so that templates populated again are not
+     * read and compiled again.
+     *
+     * @param templateCache (TemplateCache) The cache of compiled templates.
+     * @return (StreamingTemplateHandlerBuilder) New StreamingTemplateHandlerBuilder with the
+     * specified cache.
+     */
+    public StreamingTemplateHandlerBuilder templateCache(TemplateCache templateCache) {
+      this.templateCache = templateCache;
+      return this;
+    }
+
+    /**
+     * Creates a new StreamingTemplateHandlerBuilder that adds the statistics of the parse, render
+     * and write stages to the given RunStats.
+     *
+     * @param stats (RunStats) The statistics of the run.
+     * @return (StreamingTemplateHandlerBuilder) New StreamingTemplateHandlerBuilder with the
+     * specified statistics.
+     */
+    public StreamingTemplateHandlerBuilder stats(RunStats stats) {
+      this.stats = stats;
+      return this;
+    }
+
+    /**
+     * Generates a new StreamingTemplateHandler with state mirroring that of the
+     * StreamingTemplateHandlerBuilder.
+     *
+     * @return (StreamingTemplateHandler) The new StreamingTemplateHandler instance built from the
+     * StreamingTemplateHandlerBuilder's state.
+     * @throws IllegalArgumentException when the write concurrency is less than one, or the
+     *                                  number of render threads is negative, or
+     *                                  deduplication is combined with an archive.
+     */
+    public StreamingTemplateHandler build() {
+      return new StreamingTemplateHandler(this);
+    }
+  }
+
+  /**
+   * Class representing the rows of a shard of a reader. Every row of the reader is still read and
+   * added to the hash of the data, so that the manifest of each shard holds the same hash, but
+   * only the rows of the shard are handed on.
+   */
+  private static final class ShardedRows implements RowReader {
+
+    private final RowReader rows;
+    private final Shard shard;
+    private final ShardManifest.DataHash data;
+    private long shardRows;
+
+    /**
+     * Constructor for class ShardedRows.
+     *
+     * @param rows    (RowReader) The reader of the CSV file, positioned before its first row.
+     * @param shard   (Shard) The shard whose rows are handed on.
+     * @param columns (Collection) The names of the columns the templates and file names use.
+     */
+    private ShardedRows(RowReader rows, Shard shard, Collection<String> columns) {
+      this.rows = rows;
+      this.shard = shard;
+      this.data = new ShardManifest.DataHash(rows.getHeader(), columns);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+      while (rows.next()) {
+        data.add(rows);
+
+        if (shard.contains(rows.getRowIndex())) {
+          shardRows++;
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Creates the manifest of the shard once every row has been read, and every template
+     * populated and written for each row of the shard.
+     *
+     * @param templateHashes (Map) Map of the file name of each template to the hash of its lines.
+     * @return (ShardManifest) The manifest of the shard.
+     */
+    private ShardManifest manifest(Map<String, Long> templateHashes) {
+      Map<String, Long> outputs = new LinkedHashMap<>();
+      for (String filename : templateHashes.keySet()) {
+        outputs.put(filename, shardRows);
+      }
+
+      return new ShardManifest(shard, templateHashes, data.getRows(), data.getValue(), outputs);
+    }
+
+    @Override
+    public List<String> getHeader() {
+      return rows.getHeader();
+    }
+
+    @Override
+    public int getRowIndex() {
+      return rows.getRowIndex();
+    }
+
+    @Override
+    public void project(Collection<String> columns) {
+      rows.project(columns);
+    }
+
+    @Override
+    public String getField(int column) {
+      return rows.getField(column);
+    }
+
+    @Override
+    public void appendField(int column, StringBuilder out) {
+      rows.appendField(column, out);
+    }
+
+    @Override
+    public void appendField(int column, Appendable out) throws IOException {
+      rows.appendField(column, out);
+    }
+
+    @Override
+    public void close() throws IOException {
+      rows.close();
+    }
+  }
+}
@@ -0,0 +1,459 @@
+package problem1;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Class representing a cache of compiled templates, keyed by the path of the template file and
+ * validated against its modification time, size and content hash, so that templates populated
+ * again and again are not read and compiled every time.
+ *
+ * <p>A template whose modification time and size are unchanged is served without reading its
+ * file. Otherwise the file is read and hashed, and it is only compiled again if its content
+ * changed. Because file systems record modification times with a limited precision, the
+ * modification time of a file changed shortly after it was cached is not trusted, and its content
+ * is checked instead.</p>
+ *
+ * <p>The cache holds a bounded number of templates, evicting the least recently used one. It can
+ * also persist the compiled templates to a directory, so that they outlive the process: a template
+ * missing from memory is then looked up on disk before its file is read. Instances are
+ * thread-safe.</p>
+ */
+public class TemplateCache {
+
+  static final int DEFAULT_CAPACITY = 64;
+  static final long RACY_MILLIS = 2000;
+
+  private static final int MAGIC = 0x54504c43;
+  private static final int VERSION = 1;
+  private static final String ENTRY_EXTENSION = ".tpl";
+
+  private final int capacity;
+  private final Path directory;
+  private final LinkedHashMap<String, CachedTemplate> entries;
+  private long hits;
+  private long diskHits;
+  private long misses;
+
+  /**
+   * Constructor for an in-memory cache with the default capacity.
+   */
+  public TemplateCache() {
+    this(DEFAULT_CAPACITY, null);
+  }
+
+  /**
+   * Constructor for class TemplateCache.
+   *
+   * @param capacity  (int) The largest number of templates held in memory.
+   * @param directory (Path) The directory compiled templates are persisted to, or null to only
+   *                  hold them in memory.
+   * @throws IllegalArgumentException when the capacity is less than one.
+   */
+  public TemplateCache(int capacity, Path directory) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException(
+          "Expected a capacity of at least one template, found " + capacity + ".");
+    }
+
+    this.capacity = capacity;
+    this.directory = directory;
+    this.entries = new LinkedHashMap<String, CachedTemplate>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedTemplate> eldest) {
+        return size() > TemplateCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * Gets the compiled form of a template file, reading and compiling the file only if it is not
+   * cached, or changed since it was cached.
+   *
+   * @param filepath (String) The path to the template file.
+   * @return (CachedTemplate) The compiled, unbound template, with the file name and hash of the
+   * template.
+   * @throws IOException when the template file does not exist or cannot be read.
+   */
+  public CachedTemplate get(String filepath) throws IOException {
+    if (filepath == null) {
+      throw new IllegalArgumentException("Expected a filename, found null argument.");
+    }
+
+    Path path = Paths.get(filepath).toAbsolutePath().normalize();
+    String key = path.toString();
+    BasicFileAttributes attributes;
+
+    try {
+      attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      System.err.println("File could not be found");
+      throw e;
+    }
+
+    long modified = attributes.lastModifiedTime().toMillis();
+    long size = attributes.size();
+    CachedTemplate cached;
+
+    synchronized (this) {
+      cached = this.entries.get(key);
+    }
+
+    if (cached != null && cached.isFresh(modified, size)) {
+      return this.hit(key, cached, false);
+    }
+
+    if (cached == null && this.directory != null) {
+      cached = this.readEntry(key);
+
+      if (cached != null && cached.isFresh(modified, size)) {
+        return this.hit(key, cached, true);
+      }
+    }
+
+    // The file changed, or was changed too recently for its modification time to be trusted
+    long checked = System.currentTimeMillis();
+    TemplateReader reader = new TemplateReader(filepath);
+    long hash = OutputManifest.hashTemplate(reader.getTemplate());
+    CachedTemplate entry;
+
+    if (cached != null && cached.hash == hash) {
+      entry = new CachedTemplate(key, reader.getFilename(), hash, modified, size, checked,
+          cached.template);
+    } else {
+      entry = new CachedTemplate(key, reader.getFilename(), hash, modified, size, checked,
+          CompiledTemplate.compile(reader.getTemplate()));
+    }
+
+    synchronized (this) {
+      this.misses++;
+      this.entries.put(key, entry);
+    }
+
+    if (this.directory != null) {
+      this.writeEntry(entry);
+    }
+
+    return entry;
+  }
+
+  /**
+   * Removes every template from memory. Templates persisted to disk are kept.
+   */
+  public synchronized void clear() {
+    this.entries.clear();
+  }
+
+  /**
+   * Gets the number of templates held in memory.
+   *
+   * @return (int) The number of templates.
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * Gets the largest number of templates held in memory.
+   *
+   * @return (int) The capacity of the cache.
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Gets the directory compiled templates are persisted to.
+   *
+   * @return (Path) The directory, or null if templates are only held in memory.
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Gets the number of templates served from memory without reading their file.
+   *
+   * @return (long) The number of hits.
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of templates served from disk without reading their file.
+   *
+   * @return (long) The number of disk hits.
+   */
+  public synchronized long getDiskHits() {
+    return diskHits;
+  }
+
+  /**
+   * Gets the number of templates whose file had to be read.
+   *
+   * @return (long) The number of misses.
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Helper method to count a template served from the cache, holding it in memory.
+   *
+   * @param key   (String) The absolute path of the template file.
+   * @param entry (CachedTemplate) The cached template.
+   * @param disk  (boolean) Whether the template was served from disk.
+   * @return (CachedTemplate) The cached template, for convenience.
+   */
+  private synchronized CachedTemplate hit(String key, CachedTemplate entry, boolean disk) {
+    if (disk) {
+      this.diskHits++;
+      this.entries.put(key, entry);
+    } else {
+      this.hits++;
+    }
+    return entry;
+  }
+
+  /**
+   * Helper method to get the file a template is persisted to, named after the hash of its path.
+   *
+   * @param key (String) The absolute path of the template file.
+   * @return (Path) The file in the cache directory.
+   */
+  private Path entryFile(String key) {
+    return this.directory.resolve(
+        Long.toHexString(OutputManifest.hashTemplate(Collections.singletonList(key)))
+            + ENTRY_EXTENSION);
+  }
+
+  /**
+   * Helper method to read a template persisted to disk. A file that is not a valid entry for the
+   * template, e.g. one left by another version or truncated, is ignored.
+   *
+   * @param key (String) The absolute path of the template file.
+   * @return (CachedTemplate) The persisted template, or null if there is none.
+   */
+  private CachedTemplate readEntry(String key) {
+    byte[] bytes;
+
+    try {
+      bytes = Files.readAllBytes(this.entryFile(key));
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      return null;
+    }
+
+    // The body is only parsed once its checksum shows it was written whole
+    if (bytes.length < 8) {
+      return null;
+    }
+
+    long checksum = hashBytes(bytes, bytes.length - 8);
+    long expected = 0;
+    for (int i = bytes.length - 8; i < bytes.length; i++) {
+      expected = (expected << 8) | (bytes[i] & 0xff);
+    }
+    if (checksum != expected) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(
+        new ByteArrayInputStream(bytes, 0, bytes.length - 8))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF())) {
+        return null;
+      }
+
+      String filename = in.readUTF();
+      long hash = in.readLong();
+      long modified = in.readLong();
+      long size = in.readLong();
+      long checked = in.readLong();
+
+      return new CachedTemplate(key, filename, hash, modified, size, checked,
+          CompiledTemplate.readFrom(in));
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Helper method to persist a template to disk, replacing the file of its previous version. The
+   * file is written to a temporary file first, so that a concurrent reader never sees part of it.
+   *
+   * @param entry (CachedTemplate) The template to be persisted.
+   * @throws IOException when the cache directory or file cannot be written.
+   */
+  private void writeEntry(CachedTemplate entry) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(entry.key);
+      out.writeUTF(entry.filename);
+      out.writeLong(entry.hash);
+      out.writeLong(entry.modified);
+      out.writeLong(entry.size);
+      out.writeLong(entry.checked);
+      entry.template.writeTo(out);
+      out.flush();
+      out.writeLong(hashBytes(bytes.toByteArray(), bytes.size()));
+    }
+
+    Path file = this.entryFile(entry.key);
+
+    try {
+      Files.createDirectories(this.directory);
+      Path temp = Files.createTempFile(this.directory, file.getFileName().toString(), ".tmp");
+
+      try {
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+        Files.deleteIfExists(temp);
+        throw e;
+      }
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      throw e;
+    }
+  }
+
+  /**
+   * Helper method to compute the 64-bit FNV-1a hash of the start of a byte array.
+   *
+   * @param bytes  (byte[]) The bytes to be hashed.
+   * @param length (int) The number of bytes to hash, starting at index 0.
+   * @return (long) The hash.
+   */
+  private static long hashBytes(byte[] bytes, int length) {
+    long hash = OutputManifest.FNV_OFFSET_BASIS;
+
+    for (int i = 0; i < length; i++) {
+      hash = (hash ^ (bytes[i] & 0xff)) * OutputManifest.FNV_PRIME;
+    }
+
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return "TemplateCache{" +
+        "capacity=" + capacity +
+        ", directory=" + directory +
+        ", size=" + this.size() +
+        '}';
+  }
+
+  /**
+   * Class representing a cached template: its compiled, unbound form, and the state of its file
+   * when it was compiled.
+   */
+  public static final class CachedTemplate {
+
+    private final String key;
+    private final String filename;
+    private final long hash;
+    private final long modified;
+    private final long size;
+    private final long checked;
+    private final CompiledTemplate template;
+
+    private CachedTemplate(String key, String filename, long hash, long modified, long size,
+        long checked, CompiledTemplate template) {
+      this.key = key;
+      this.filename = filename;
+      this.hash = hash;
+      this.modified = modified;
+      this.size = size;
+      this.checked = checked;
+      this.template = template;
+    }
+
+    /**
+     * Gets the compiled, unbound template.
+     *
+     * @return (CompiledTemplate) The compiled template.
+     */
+    public CompiledTemplate getTemplate() {
+      return template;
+    }
+
+    /**
+     * Gets the name of the template file, without its directory.
+     *
+     * @return (String) The file name.
+     */
+    public String getFilename() {
+      return filename;
+    }
+
+    /**
+     * Gets the hash of the lines of the template, as computed by OutputManifest.hashTemplate.
+     *
+     * @return (long) The hash of the template.
+     */
+    public long getHash() {
+      return hash;
+    }
+
+    /**
+     * Helper method to determine if the template file is known to be unchanged since it was read,
+     * from its modification time and size alone.
+     *
+     * @param modified (long) The current modification time of the file, in milliseconds.
+     * @param size     (long) The current size of the file.
+     * @return (boolean) True if the cached template can be used without reading the file.
+     */
+    private boolean isFresh(long modified, long size) {
+      return this.modified == modified && this.size == size
+          && this.modified + RACY_MILLIS <= this.checked;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CachedTemplate that = (CachedTemplate) o;
+      return hash == that.hash
+          && Objects.equals(key, that.key)
+          && Objects.equals(filename, that.filename)
+          && Objects.equals(template, that.template);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(key, filename, hash, template);
+    }
+
+    @Override
+    public String toString() {
+      return "CachedTemplate{" +
+          "path='" + key + '\'' +
+          ", hash=" + Long.toHexString(hash) +
+          ", template=" + template +
+          '}';
+    }
+  }
+}
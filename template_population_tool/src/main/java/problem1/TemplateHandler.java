@@ -1,23 +1,62 @@
 package problem1;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Class representing an umbrella template handler, that includes the individual template
- * parser/reader/write components in one.
+ * parser/reader/write components in one. The records are walked once, with every template rendered
+ * and written for a row before moving on to the next.
+ *
+ * <p>When each populated template is written to a file of its own, the progress of the run is
+ * periodically recorded in a JobCheckpoint, so that a run that dies part way can be resumed from
+ * the last checkpoint instead of from the first row. The checkpoint is removed once every output is
+ * written.</p>
+ *
+ * <p>The files are named and placed by an OutputLayout. The directories of hashed buckets that the
+ * run writes to are created on a pool of threads before the first template is rendered.</p>
+ *
+ * <p>A run can be limited to one Shard of the rows, so that a mailing is split across several
+ * hosts. Outputs keep the names they have in an unsharded run, each shard keeps a checkpoint of its
+ * own, and a ShardManifest is left in the output directory once the shard is written.</p>
+ *
+ * <p>When deduplicated, only the first output with each body is written in full, and the outputs
+ * duplicating it are materialized by an OutputDeduplicator once every output is written. As that
+ * is only at the end of the run, deduplicated runs keep no checkpoint.</p>
  */
 public class TemplateHandler {
 
+  static final int DEFAULT_CHECKPOINT_INTERVAL = 1000;
+
   private final String outputDir;
   private final String[] templatePaths;
-  private final Map<String, List<String>> inputData;
-  private TemplateReader reader;
-  private TemplateParser parser;
-  private TemplateWriter writer;
+  private final RecordStore records;
+  private final Integer workers;
+  private final OutputArchive.Format archiveFormat;
+  private final boolean incremental;
+  private final boolean resume;
+  private final int checkpointInterval;
+  private final int writeConcurrency;
+  private final OutputLayout layout;
+  private final Shard shard;
+  private final OutputDeduplicator.Mode dedup;
+  private final TemplateCache templateCache;
+  private final RunStats stats;
 
   /**
    * Constructor for template handler.
@@ -28,24 +67,696 @@ public class TemplateHandler {
    */
   public TemplateHandler(String[] templatePaths, String outputDir,
       Map<String, List<String>> inputData) {
-    this.templatePaths = templatePaths;
-    this.outputDir = outputDir;
-    this.inputData = inputData;
+    this(templatePaths, outputDir, inputData, 1);
+  }
+
+  /**
+   * Constructor for template handler that populates templates on several worker threads.
+   *
+   * @param templatePaths (String[]) The paths to the template.
+   * @param outputDir     (String) Path to the output directory.
+   * @param inputData     (Map) The parsed CSV data.
+   * @param workers       (Integer) The number of worker threads rows are partitioned across.
+   */
+  public TemplateHandler(String[] templatePaths, String outputDir,
+      Map<String, List<String>> inputData, Integer workers) {
+    this(templatePaths, outputDir, RecordStore.fromColumns(inputData), workers);
+  }
+
+  /**
+   * Constructor for template handler that populates templates on several worker threads.
+   *
+   * @param templatePaths (String[]) The paths to the template.
+   * @param outputDir     (String) Path to the output directory.
+   * @param records       (RecordStore) The parsed CSV data.
+   * @param workers       (Integer) The number of worker threads rows are partitioned across.
+   */
+  public TemplateHandler(String[] templatePaths, String outputDir, RecordStore records,
+      Integer workers) {
+    this(templatePaths, outputDir, records, workers, null);
+  }
+
+  /**
+   * Constructor for template handler that can write every populated template into a single
+   * archive in the output directory.
+   *
+   * @param templatePaths (String[]) The paths to the template.
+   * @param outputDir     (String) Path to the output directory.
+   * @param records       (RecordStore) The parsed CSV data.
+   * @param workers       (Integer) The number of worker threads rows are partitioned across.
+   * @param archiveFormat (OutputArchive.Format) The format of the archive, or null to write each
+   *                      populated template to a file of its own.
+   */
+  public TemplateHandler(String[] templatePaths, String outputDir, RecordStore records,
+      Integer workers, OutputArchive.Format archiveFormat) {
+    this(new TemplateHandlerBuilder(templatePaths, outputDir, records)
+        .workers(workers)
+        .archiveFormat(archiveFormat));
+  }
+
+  /**
+   * Private constructor for template handler.
+   *
+   * @param builder (TemplateHandlerBuilder) A TemplateHandlerBuilder instance from which to
+   *                construct the TemplateHandler.
+   */
+  private TemplateHandler(TemplateHandlerBuilder builder) {
+    if (builder.workers < 1) {
+      throw new IllegalArgumentException(
+          "Expected at least one worker, found " + builder.workers + ".");
+    }
+    if (builder.incremental && builder.archiveFormat != null) {
+      throw new IllegalArgumentException("Incremental output cannot be written to an archive.");
+    }
+    if (builder.resume && (builder.archiveFormat != null || builder.incremental)) {
+      throw new IllegalArgumentException(
+          "Only runs writing every output to a file of its own can be resumed.");
+    }
+    if (builder.checkpointInterval < 1) {
+      throw new IllegalArgumentException(
+          "Expected a checkpoint interval of at least one row, found "
+              + builder.checkpointInterval + ".");
+    }
+    if (builder.writeConcurrency < 1) {
+      throw new IllegalArgumentException(
+          "Expected a write concurrency of at least one, found " + builder.writeConcurrency
+              + ".");
+    }
+    if (builder.incremental && builder.layout.usesColumns()) {
+      throw new IllegalArgumentException(
+          "Incremental output cannot name files after the columns of the rows.");
+    }
+    if (builder.incremental && builder.shard != null) {
+      throw new IllegalArgumentException(
+          "Incremental output cannot be sharded, as its manifest covers every row.");
+    }
+    if (builder.dedup != null
+        && (builder.archiveFormat != null || builder.incremental || builder.resume)) {
+      throw new IllegalArgumentException(
+          "Only new runs writing every output to a file of its own can be deduplicated.");
+    }
+
+    this.templatePaths = builder.templatePaths;
+    this.outputDir = builder.outputDir;
+    this.records = builder.records;
+    this.workers = builder.workers;
+    this.archiveFormat = builder.archiveFormat;
+    this.incremental = builder.incremental;
+    this.resume = builder.resume;
+    this.checkpointInterval = builder.checkpointInterval;
+    this.writeConcurrency = builder.writeConcurrency;
+    this.layout = builder.layout;
+    this.shard = builder.shard;
+    this.dedup = builder.dedup;
+    this.templateCache = builder.templateCache;
+    this.stats = builder.stats;
+  }
+
+  /**
+   * Gets the statistics that the render and write stages are added to.
+   *
+   * @return (RunStats) The statistics of the run.
+   */
+  public RunStats getStats() {
+    return stats;
   }
 
   /**
-   * Writes the templates to the output directory.
+   * Writes the templates to the output directory. When each populated template is written to a
+   * file of its own and the write concurrency is above one, the files are created and written on
+   * a pool of that many threads, shared by every worker.
    *
    * @throws IOException when the writer is unable to write to the specified output path.
    */
   public void writeTemplates() throws IOException {
-    // Read a template
+    if (archiveFormat == null) {
+      try (FileWriterPool writerPool = writeConcurrency > 1
+          ? new FileWriterPool(writeConcurrency) : null) {
+        this.writeTemplates(null, writerPool);
+      }
+      return;
+    }
+
+    try (OutputArchive archive = OutputArchive.open(archiveFormat, outputDir)) {
+      this.writeTemplates(archive, null);
+    }
+  }
+
+  /**
+   * Helper method to write the templates to the output directory or to an archive. Every template
+   * is compiled and bound to the header once, then the rows are walked a single time, with every
+   * template rendered and written for a row before moving on to the next.
+   *
+   * <p>In incremental mode, the outputs whose template and row are unchanged since the manifest of
+   * the previous run, and whose file still exists, are skipped. The files of rows and templates
+   * that are no longer part of the run are removed, and the new manifest is written once every
+   * output is up to date.</p>
+   *
+   * <p>Otherwise, when each populated template is written to a file of its own, the rows are
+   * partitioned into the ranges of a checkpoint, which is either new or, when resuming, read from
+   * the output directory.</p>
+   *
+   * @param archive    (OutputArchive) The archive templates are added to, or null to write each
+   *                   populated template to a file of its own.
+   * @param writerPool (FileWriterPool) The pool output files are written on, or null to write
+   *                   them on the threads that render them.
+   * @throws IOException when the writer is unable to write to the specified output path.
+   */
+  private void writeTemplates(OutputArchive archive, FileWriterPool writerPool)
+      throws IOException {
+    int rows = records.size();
+    // Bound only when there are rows, so that empty data never fails on a missing column
+    Pass pass = new Pass(templatePaths.length, archive, writerPool,
+        rows > 0 ? layout.bind(records.getHeader()) : layout,
+        dedup == null ? null : new OutputDeduplicator(dedup));
+    Map<String, Long> templateHashes = new LinkedHashMap<>();
+
+    // Read and compile every template, unless it is cached and unchanged
     for (int i = 0; i < templatePaths.length; i++) {
-      reader = new TemplateReader(templatePaths[i]);
-      parser = new TemplateParser(reader.getTemplate(), inputData);
-      parser.populateModListHolder();
-      writer = new TemplateWriter(parser.getModListHolder(), outputDir, reader.getFilename());
-      writer.writePopulatedTemplates();
+      TemplateCache.CachedTemplate template = templateCache.get(templatePaths[i]);
+      pass.templates[i] = template.getTemplate();
+      pass.filenames[i] = template.getFilename();
+      templateHashes.put(template.getFilename(), template.getHash());
+    }
+
+    List<JobCheckpoint.Range> ranges =
+        JobCheckpoint.partition(rows, workers, templatePaths.length);
+    // Only the columns the run uses are hashed, as a cached store may hold more
+    int[] hashed = this.hashedColumns(this.usedColumns(pass));
+
+    if (archive == null && !incremental && dedup == null) {
+      pass.checkpoint = this.openCheckpoint(templateHashes, ranges, pass.filenames, pass.layout,
+          hashed);
+      ranges = pass.checkpoint.getRanges();
+    }
+
+    if (incremental) {
+      pass.manifest = new OutputManifest(templateHashes, this.hashRows(hashed),
+          this.columnNames(hashed));
+      pass.previous = OutputManifest.read(outputDir);
+      pass.compared = this.comparedManifest(pass.manifest, pass.previous);
+    }
+
+    // Bound only when there are rows, so that empty data never fails on a missing key
+    if (rows > 0) {
+      for (int i = 0; i < pass.templates.length; i++) {
+        pass.templates[i] = pass.templates[i].bind(records.getHeader());
+      }
+
+      if (archive == null) {
+        long start = System.nanoTime();
+        OutputLayout.createDirectories(new File(outputDir).toPath(), this.directories(pass));
+        stats.addTime(RunStats.Stage.WRITE, System.nanoTime() - start);
+      }
+
+      if (workers > 1 && ranges.size() > 1) {
+        this.writeTemplatesInParallel(ranges, pass);
+      } else {
+        for (JobCheckpoint.Range range : ranges) {
+          this.writeRows(range, pass);
+        }
+      }
+
+      stats.recordPeakHeap(RunStats.Stage.RENDER, RunStats.Stage.WRITE);
+    }
+
+    if (pass.checkpoint != null) {
+      JobCheckpoint.delete(outputDir, JobCheckpoint.fileName(shard));
+    }
+
+    if (pass.dedup != null) {
+      long start = System.nanoTime();
+      pass.dedup.finish(outputDir, shard);
+      stats.addTime(RunStats.Stage.WRITE, System.nanoTime() - start);
+    }
+
+    if (incremental) {
+      this.removeOrphans(pass.manifest, pass.previous, pass.layout);
+      pass.manifest.write(outputDir);
+    }
+
+    if (shard != null) {
+      this.shardManifest(pass, templateHashes).write(outputDir);
+    }
+  }
+
+  /**
+   * Helper method to create the manifest of the shard of a run once every one of its outputs is
+   * written.
+   *
+   * @param pass           (Pass) The templates and outputs of the run.
+   * @param templateHashes (Map) Map of the file name of each template to the hash of its lines.
+   * @return (ShardManifest) The manifest of the shard.
+   */
+  private ShardManifest shardManifest(Pass pass, Map<String, Long> templateHashes) {
+    ShardManifest.DataHash data =
+        new ShardManifest.DataHash(records.getHeader(), this.usedColumns(pass));
+    RecordStore.Row row = records.row(0);
+    Map<String, Long> outputs = new LinkedHashMap<>();
+
+    for (int i = 0; i < records.size(); i++) {
+      row.moveTo(i);
+      data.add(row);
+    }
+    for (int i = 0; i < pass.filenames.length; i++) {
+      outputs.put(pass.filenames[i], pass.outputs.get(i));
+    }
+
+    return new ShardManifest(shard, templateHashes, records.size(), data.getValue(), outputs);
+  }
+
+  /**
+   * Helper method to get the names of the columns the templates and file names of a run use.
+   *
+   * @param pass (Pass) The templates and outputs of the run.
+   * @return (Set) The names of the columns, some of which may not be in the header.
+   */
+  private Set<String> usedColumns(Pass pass) {
+    Set<String> columns = new LinkedHashSet<>(pass.layout.getColumns());
+    for (CompiledTemplate template : pass.templates) {
+      columns.addAll(template.getPlaceholders());
+    }
+    return columns;
+  }
+
+  /**
+   * Helper method to resolve the columns a run uses to their indices in the header of the records,
+   * in the order of the header, so that a store parsed for only those columns hashes its rows
+   * the same way as a store holding every column.
+   *
+   * @param columns (Set) The names of the columns the run uses.
+   * @return (int[]) The indices of the columns in the header of the records.
+   */
+  private int[] hashedColumns(Set<String> columns) {
+    boolean[] used = CSVTokenizer.projection(records.getHeader(), columns);
+    int[] indices = new int[used.length];
+    int count = 0;
+
+    for (int i = 0; i < used.length; i++) {
+      if (used[i]) {
+        indices[count++] = i;
+      }
+    }
+    return Arrays.copyOf(indices, count);
+  }
+
+  /**
+   * Helper method to get the names of columns of the records.
+   *
+   * @param columns (int[]) The indices of the columns in the header of the records.
+   * @return (List) The names of the columns, in the same order.
+   */
+  private List<String> columnNames(int[] columns) {
+    List<String> names = new ArrayList<>();
+    for (int column : columns) {
+      names.add(records.getHeader().get(column));
+    }
+    return names;
+  }
+
+  /**
+   * Helper method to hash some columns of every row of the records.
+   *
+   * @param columns (int[]) The indices of the columns to hash, in the order they are hashed.
+   * @return (long[]) The hash of each row.
+   */
+  private long[] hashRows(int[] columns) {
+    long[] hashes = new long[records.size()];
+    for (int i = 0; i < hashes.length; i++) {
+      hashes[i] = records.hashRow(i, columns);
+    }
+    return hashes;
+  }
+
+  /**
+   * Helper method to get the manifest the rows of an incremental run are compared with the manifest
+   * of the previous run by. Rows are compared over the columns the previous run hashed, so that
+   * adding or dropping a template does not render the other templates again: a template that is
+   * unchanged since the previous run uses none but those columns.
+   *
+   * @param manifest (OutputManifest) The manifest of the run.
+   * @param previous (OutputManifest) The manifest of the previous run, or null if there is none.
+   * @return (OutputManifest) The manifest to compare, or null if every output is rendered again,
+   * as a column the previous run hashed is no longer in the header.
+   */
+  private OutputManifest comparedManifest(OutputManifest manifest, OutputManifest previous) {
+    if (previous == null || manifest.getColumns().equals(previous.getColumns())) {
+      return manifest;
+    }
+
+    // A manifest that names no columns covers every column
+    List<String> names = previous.getColumns() == null ? records.getHeader()
+        : previous.getColumns();
+    int[] columns = new int[names.size()];
+
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = records.getColumnIndex(names.get(i));
+      if (columns[i] < 0) {
+        return null;
+      }
+    }
+
+    return new OutputManifest(manifest.getTemplateHashes(), this.hashRows(columns), names);
+  }
+
+  /**
+   * Helper method to create the checkpoint of a run. When resuming, the checkpoint left in the
+   * output directory by the run being resumed is used instead, provided it was made for the same
+   * templates and data; the output files it records as written are checked against the byte counts
+   * of the checkpoint, and the templates with a missing or truncated file start their range over.
+   *
+   * @param templateHashes (Map) Map of the file name of each template to the hash of its lines.
+   * @param ranges         (List) The ranges the rows of a new run are partitioned into.
+   * @param filenames      (String[]) The file name of each template.
+   * @param layout         (OutputLayout) The layout of the output directory, bound to the header.
+   * @param hashed         (int[]) The indices of the columns the run uses.
+   * @return (JobCheckpoint) The checkpoint the progress of the run is recorded in.
+   * @throws IOException when the checkpoint of the output directory cannot be read or removed.
+   */
+  private JobCheckpoint openCheckpoint(Map<String, Long> templateHashes,
+      List<JobCheckpoint.Range> ranges, String[] filenames, OutputLayout layout, int[] hashed)
+      throws IOException {
+    JobCheckpoint run = new JobCheckpoint(templateHashes, records.size(),
+        this.hashRecords(hashed), ranges);
+
+    if (resume) {
+      JobCheckpoint previous = JobCheckpoint.read(outputDir, JobCheckpoint.fileName(shard));
+
+      if (previous != null && previous.matches(run)) {
+        this.verifyCheckpoint(previous, filenames, layout);
+        return previous;
+      }
+
+      if (previous != null) {
+        System.err.println("The checkpoint in " + outputDir
+            + " does not match the templates or data, writing every row again.");
+      }
+    }
+
+    JobCheckpoint.delete(outputDir, JobCheckpoint.fileName(shard));
+    return run;
+  }
+
+  /**
+   * Helper method to check that the output files a checkpoint records as written all exist and
+   * hold the recorded number of bytes. A template whose files of a range do not is marked as not
+   * having written any row of the range.
+   *
+   * @param checkpoint (JobCheckpoint) The checkpoint of the run being resumed.
+   * @param filenames  (String[]) The file name of each template.
+   * @param layout     (OutputLayout) The layout of the output directory, bound to the header.
+   */
+  private void verifyCheckpoint(JobCheckpoint checkpoint, String[] filenames,
+      OutputLayout layout) {
+    RecordStore.Row row = records.row(0);
+
+    for (int j = 0; j < filenames.length; j++) {
+      TemplateWriter writer = new TemplateWriter(outputDir, filenames[j], null, null, layout);
+
+      for (JobCheckpoint.Range range : checkpoint.getRanges()) {
+        long bytes = 0;
+        boolean complete = true;
+
+        for (int i = range.getFrom(); i < range.getNext(j) && complete; i++) {
+          if (shard != null && !shard.contains(i)) {
+            continue;
+          }
+          row.moveTo(i);
+          File file = writer.getOutputFile(i, row);
+          complete = file.isFile();
+          bytes += file.length();
+        }
+
+        if (!complete || bytes != range.getBytes(j)) {
+          System.err.println("Incomplete output of " + filenames[j] + " for rows "
+              + range.getFrom() + " to " + range.getNext(j) + ", writing them again.");
+          range.restart(j);
+        }
+      }
+    }
+  }
+
+  /**
+   * Helper method to get the subdirectories of the output directory that the run writes to. When
+   * there are fewer outputs than hashed buckets, only the buckets of the outputs are created.
+   *
+   * @param pass (Pass) The templates and outputs of the run.
+   * @return (Collection) The subdirectories, with '/' between directories.
+   */
+  private Collection<String> directories(Pass pass) {
+    int rows = shard == null ? records.size() : shard.countRows(records.size());
+
+    if ((long) rows * pass.filenames.length >= pass.layout.getBucketCount()) {
+      return pass.layout.getDirectories();
+    }
+
+    Set<String> directories = new LinkedHashSet<>();
+    RecordStore.Row row = records.row(0);
+
+    for (String filename : pass.filenames) {
+      TemplateWriter writer = new TemplateWriter(outputDir, filename, null, null, pass.layout);
+
+      for (int i = 0; i < records.size(); i++) {
+        if (shard != null && !shard.contains(i)) {
+          continue;
+        }
+        row.moveTo(i);
+        String name = writer.getOutputName(i, row);
+        directories.add(name.substring(0, Math.max(0, name.lastIndexOf('/'))));
+      }
+    }
+
+    directories.remove("");
+    return directories;
+  }
+
+  /**
+   * Helper method to hash the columns the run uses, names and values, so that a checkpoint is
+   * only resumed with the data it was made for. Records read from a file are identified by the
+   * stamp of the file instead of by hashing every row, which would take a pass over the rows
+   * before the first output is written.
+   *
+   * @param hashed (int[]) The indices of the columns the run uses.
+   * @return (long) The hash of the records.
+   */
+  private long hashRecords(int[] hashed) {
+    long hash = OutputManifest.hashTemplate(this.columnNames(hashed));
+
+    if (records.getSourceStamp() != null) {
+      return (hash ^ records.getSourceStamp()) * OutputManifest.FNV_PRIME;
+    }
+
+    for (int i = 0; i < records.size(); i++) {
+      hash = (hash ^ records.hashRow(i, hashed)) * OutputManifest.FNV_PRIME;
+    }
+
+    return hash;
+  }
+
+  /**
+   * Writes the templates to the output directory, with the ranges of rows populated and written by
+   * a pool of worker threads. Each output file is still named after the index of its row, so the
+   * output is the same as when written by a single thread, except for the order of the entries of
+   * an archive.
+   *
+   * @param ranges (List) The contiguous ranges the rows are partitioned into.
+   * @param pass   (Pass) The templates and outputs of the run.
+   * @throws IOException when the writer is unable to write to the specified output path.
+   */
+  private void writeTemplatesInParallel(List<JobCheckpoint.Range> ranges, Pass pass)
+      throws IOException {
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, ranges.size()));
+    List<Future<Void>> tasks = new ArrayList<>();
+
+    try {
+      for (JobCheckpoint.Range range : ranges) {
+        tasks.add(pool.submit(() -> {
+          this.writeRows(range, pass);
+          return null;
+        }));
+      }
+
+      awaitAll(tasks);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Helper method to render and write every template for each row of a range, visiting each row
+   * once, and starting each template at the next row the checkpoint records for it. When the run
+   * has a checkpoint, the writers are flushed and the checkpoint advanced every checkpointInterval
+   * rows, and once the range is written. The time spent rendering and writing is added to the
+   * statistics.
+   *
+   * @param range (JobCheckpoint.Range) The range of rows.
+   * @param pass  (Pass) The templates and outputs of the run.
+   * @throws IOException when the writer is unable to write to the specified output path.
+   */
+  private void writeRows(JobCheckpoint.Range range, Pass pass) throws IOException {
+    TemplateWriter[] writers = new TemplateWriter[pass.templates.length];
+    int[] first = new int[writers.length];
+    long[] base = new long[writers.length];
+    int start = range.getTo();
+
+    for (int i = 0; i < writers.length; i++) {
+      first[i] = range.getNext(i);
+      base[i] = range.getBytes(i);
+      start = Math.min(start, first[i]);
+    }
+
+    // Outputs written before the run was resumed count towards the manifest of the shard
+    if (shard != null) {
+      for (int j = 0; j < writers.length; j++) {
+        pass.outputs.addAndGet(j, shard.countRows(range.getFrom(), first[j]));
+      }
+    }
+
+    if (start == range.getTo()) {
+      return;
+    }
+
+    RecordStore.Row row = records.row(start);
+    StringBuilder document = new StringBuilder();
+    long renderNanos = 0;
+    long writeNanos = 0;
+    long written = 0;
+    long[] outputs = new long[writers.length];
+
+    for (int i = 0; i < writers.length; i++) {
+      writers[i] = new TemplateWriter(outputDir, pass.filenames[i], pass.archive,
+          pass.writerPool, pass.layout, pass.dedup);
+    }
+
+    try {
+      for (int i = start; i < range.getTo(); i++) {
+        row.moveTo(i);
+
+        for (int j = 0; j < writers.length; j++) {
+          if (i < first[j] || shard != null && !shard.contains(i)) {
+            continue;
+          }
+          if (pass.compared != null
+              && pass.compared.isUnchanged(pass.previous, pass.filenames[j], i)
+              && writers[j].getOutputFile(i, row).exists()) {
+            continue;
+          }
+
+          long renderStart = System.nanoTime();
+          document.setLength(0);
+          pass.templates[j].render(row, document);
+          long rendered = System.nanoTime();
+          writers[j].writeTemplate(i, row, document);
+          renderNanos += rendered - renderStart;
+          writeNanos += System.nanoTime() - rendered;
+          written++;
+          outputs[j]++;
+        }
+
+        if (pass.checkpoint != null && (i + 1 - range.getFrom()) % checkpointInterval == 0
+            && i + 1 < range.getTo()) {
+          long checkpointStart = System.nanoTime();
+          this.advanceCheckpoint(pass.checkpoint, range, i + 1, writers, base);
+          writeNanos += System.nanoTime() - checkpointStart;
+        }
+      }
+    } finally {
+      long closeStart = System.nanoTime();
+      for (TemplateWriter writer : writers) {
+        writer.close();
+        stats.addBytesWritten(RunStats.Stage.WRITE, writer.getBytesWritten());
+      }
+      writeNanos += System.nanoTime() - closeStart;
+    }
+
+    if (pass.checkpoint != null) {
+      long checkpointStart = System.nanoTime();
+      this.advanceCheckpoint(pass.checkpoint, range, range.getTo(), writers, base);
+      writeNanos += System.nanoTime() - checkpointStart;
+    }
+
+    for (int j = 0; j < writers.length; j++) {
+      pass.outputs.addAndGet(j, outputs[j]);
+    }
+
+    stats.addTime(RunStats.Stage.RENDER, renderNanos);
+    stats.addRows(RunStats.Stage.RENDER, written);
+    stats.addTime(RunStats.Stage.WRITE, writeNanos);
+    stats.addRows(RunStats.Stage.WRITE, written);
+  }
+
+  /**
+   * Helper method to flush the writers of a range, then record in the checkpoint that every output
+   * of the range before the given row is written.
+   *
+   * @param checkpoint (JobCheckpoint) The checkpoint of the run.
+   * @param range      (JobCheckpoint.Range) The range of rows.
+   * @param next       (int) The first row of the range whose outputs are not written yet.
+   * @param writers    (TemplateWriter[]) The writer of each template.
+   * @param base       (long[]) For each template, the bytes written for the range before its
+   *                   writer was created.
+   * @throws IOException when an output or the checkpoint cannot be written.
+   */
+  private void advanceCheckpoint(JobCheckpoint checkpoint, JobCheckpoint.Range range, int next,
+      TemplateWriter[] writers, long[] base) throws IOException {
+    long[] bytes = new long[writers.length];
+
+    for (int j = 0; j < writers.length; j++) {
+      writers[j].flush();
+      bytes[j] = base[j] + writers[j].getBytesWritten();
+    }
+
+    checkpoint.advance(range, next, bytes, outputDir, JobCheckpoint.fileName(shard));
+  }
+
+  /**
+   * Helper method to delete the output files that the previous run wrote but this run did not:
+   * those of rows past the last row, and those of templates that are no longer populated.
+   *
+   * @param manifest (OutputManifest) The manifest of this run.
+   * @param previous (OutputManifest) The manifest of the previous run, or null if there was none.
+   * @param layout   (OutputLayout) The layout of the output directory, whose file names do not
+   *                 use columns.
+   * @throws IOException when an output file cannot be deleted.
+   */
+  private void removeOrphans(OutputManifest manifest, OutputManifest previous,
+      OutputLayout layout) throws IOException {
+    if (previous == null) {
+      return;
+    }
+
+    for (String filename : previous.getTemplateHashes().keySet()) {
+      TemplateWriter writer = new TemplateWriter(outputDir, filename, null, null, layout);
+      int first = manifest.getTemplateHashes().containsKey(filename) ? manifest.getRowCount() : 0;
+
+      for (int i = first; i < previous.getRowCount(); i++) {
+        Files.deleteIfExists(writer.getOutputFile(i).toPath());
+      }
+    }
+  }
+
+  /**
+   * Helper method to wait for every task to finish, rethrowing the first failure.
+   *
+   * @param tasks (List) The submitted tasks.
+   * @throws IOException when a task was unable to write to the output path.
+   */
+  private static void awaitAll(List<Future<Void>> tasks) throws IOException {
+    try {
+      for (Future<Void> task : tasks) {
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing templates.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
     }
   }
 
@@ -60,16 +771,241 @@ public class TemplateHandler {
     TemplateHandler that = (TemplateHandler) o;
     return Objects.equals(outputDir, that.outputDir)
         && Arrays.equals(templatePaths, that.templatePaths)
-        && Objects.equals(inputData, that.inputData)
-        && Objects.equals(reader, that.reader)
-        && Objects.equals(parser, that.parser)
-        && Objects.equals(writer, that.writer);
+        && Objects.equals(records, that.records)
+        && Objects.equals(workers, that.workers)
+        && archiveFormat == that.archiveFormat
+        && incremental == that.incremental
+        && resume == that.resume
+        && checkpointInterval == that.checkpointInterval
+        && writeConcurrency == that.writeConcurrency
+        && Objects.equals(layout, that.layout)
+        && Objects.equals(shard, that.shard)
+        && dedup == that.dedup;
   }
 
   @Override
   public int hashCode() {
-    int result = Objects.hash(outputDir, inputData, reader, parser, writer);
+    int result = Objects.hash(outputDir, records, workers, archiveFormat, incremental, resume,
+        checkpointInterval, writeConcurrency, layout, shard, dedup);
     result = 31 * result + Arrays.hashCode(templatePaths);
     return result;
   }
+
+  /**
+   * Class holding the templates and outputs of a single run of writeTemplates, shared by every
+   * range of rows.
+   */
+  private static final class Pass {
+
+    private final CompiledTemplate[] templates;
+    private final String[] filenames;
+    private final OutputArchive archive;
+    private final FileWriterPool writerPool;
+    private final OutputLayout layout;
+    private final AtomicLongArray outputs;
+    private final OutputDeduplicator dedup;
+    private OutputManifest manifest;
+    private OutputManifest previous;
+    private OutputManifest compared;
+    private JobCheckpoint checkpoint;
+
+    private Pass(int templateCount, OutputArchive archive, FileWriterPool writerPool,
+        OutputLayout layout, OutputDeduplicator dedup) {
+      this.templates = new CompiledTemplate[templateCount];
+      this.filenames = new String[templateCount];
+      this.archive = archive;
+      this.writerPool = writerPool;
+      this.layout = layout;
+      this.outputs = new AtomicLongArray(templateCount);
+      this.dedup = dedup;
+    }
+  }
+
+  /**
+   * Builder class for enclosing TemplateHandler class.
+   */
+  public static class TemplateHandlerBuilder {
+
+    private final String[] templatePaths;
+    private final String outputDir;
+    private final RecordStore records;
+    private Integer workers = 1;
+    private OutputArchive.Format archiveFormat = null;
+    private boolean incremental = false;
+    private boolean resume = false;
+    private int checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+    private int writeConcurrency = 1;
+    private OutputLayout layout = OutputLayout.FLAT;
+    private Shard shard = null;
+    private OutputDeduplicator.Mode dedup = null;
+    private TemplateCache templateCache = new TemplateCache();
+    private RunStats stats = new RunStats();
+
+    /**
+     * Constructor for class TemplateHandlerBuilder.
+     *
+     * @param templatePaths (String[]) The paths to the template.
+     * @param outputDir     (String) Path to the output directory.
+     * @param records       (RecordStore) The parsed CSV data.
+     */
+    public TemplateHandlerBuilder(String[] templatePaths, String outputDir, RecordStore records) {
+      this.templatePaths = templatePaths;
+      this.outputDir = outputDir;
+      this.records = records;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder with a number of worker threads specified.
+     *
+     * @param workers (Integer) The number of worker threads rows are partitioned across.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified number of
+     * workers.
+     */
+    public TemplateHandlerBuilder workers(Integer workers) {
+      this.workers = workers;
+      return this;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder that writes every populated template into a single
+     * archive.
+     *
+     * @param archiveFormat (OutputArchive.Format) The format of the archive, or null to write each
+     *                      populated template to a file of its own.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified archive
+     * format.
+     */
+    public TemplateHandlerBuilder archiveFormat(OutputArchive.Format archiveFormat) {
+      this.archiveFormat = archiveFormat;
+      return this;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder that only rewrites the outputs whose template or row
+     * changed since the previous run, as recorded by the manifest in the output directory.
+     *
+     * @param incremental (boolean) Whether the output is regenerated incrementally.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified mode.
+     */
+    public TemplateHandlerBuilder incremental(boolean incremental) {
+      this.incremental = incremental;
+      return this;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder that resumes the run whose checkpoint was left in the
+     * output directory, if it was made for the same templates and data.
+     *
+     * @param resume (boolean) Whether the run resumes from the checkpoint of the output directory.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified mode.
+     */
+    public TemplateHandlerBuilder resume(boolean resume) {
+      this.resume = resume;
+      return this;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder that records the progress of each range of rows in the
+     * checkpoint every given number of rows.
+     *
+     * @param checkpointInterval (int) The number of rows between checkpoints.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified interval.
+     */
+    public TemplateHandlerBuilder checkpointInterval(int checkpointInterval) {
+      this.checkpointInterval = checkpointInterval;
+      return this;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder that writes up to a number of output files at the same
+     * time, on a pool of threads of its own. Rendering waits whenever the pool falls behind.
+     *
+     * @param writeConcurrency (int) The number of output files written at the same time, or 1 to
+     *                         write them on the threads that render them.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified write
+     * concurrency.
+     */
+    public TemplateHandlerBuilder writeConcurrency(int writeConcurrency) {
+      this.writeConcurrency = writeConcurrency;
+      return this;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder that names and places the output files by a layout.
+     *
+     * @param layout (OutputLayout) The layout of the output directory.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified layout.
+     */
+    public TemplateHandlerBuilder outputLayout(OutputLayout layout) {
+      this.layout = layout;
+      return this;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder that only populates the templates for the rows of one
+     * shard.
+     *
+     * @param shard (Shard) The shard, or null to populate the templates for every row.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified shard.
+     */
+    public TemplateHandlerBuilder shard(Shard shard) {
+      this.shard = shard;
+      return this;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder that writes each distinct output body once, and
+     * materializes the outputs duplicating it as hard links or index entries.
+     *
+     * @param dedup (OutputDeduplicator.Mode) How duplicate outputs are materialized, or null to
+     *              write every output in full.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified mode.
+     */
+    public TemplateHandlerBuilder deduplicate(OutputDeduplicator.Mode dedup) {
+      this.dedup = dedup;
+      return this;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder that gets the compiled templates from a cache, which may
+     * be shared with other handlers so that templates populated again are not read and compiled
+     * again.
+     *
+     * @param templateCache (TemplateCache) The cache of compiled templates.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified
+     * cache.
+     */
+    public TemplateHandlerBuilder templateCache(TemplateCache templateCache) {
+      this.templateCache = templateCache;
+      return this;
+    }
+
+    /**
+     * Creates a new TemplateHandlerBuilder that adds the statistics of the render and write stages
+     * to the given RunStats.
+     *
+     * @param stats (RunStats) The statistics of the run.
+     * @return (TemplateHandlerBuilder) New TemplateHandlerBuilder with the specified statistics.
+     */
+    public TemplateHandlerBuilder stats(RunStats stats) {
+      this.stats = stats;
+      return this;
+    }
+
+    /**
+     * Generates a new TemplateHandler with state mirroring that of the TemplateHandlerBuilder.
+     *
+     * @return (TemplateHandler) The new TemplateHandler instance built from the
+     * TemplateHandlerBuilder's state.
+     * @throws IllegalArgumentException when the number of workers, the checkpoint interval or the
+     *                                  write concurrency is less than one, or when incremental
+     *                                  output or resuming is combined with an archive, or with
+     *                                  each other, or incremental output with file names made of
+     *                                  columns or with a shard, or deduplication with an
+     *                                  archive, incremental output or resuming.
+     */
+    public TemplateHandler build() {
+      return new TemplateHandler(this);
+    }
+  }
 }
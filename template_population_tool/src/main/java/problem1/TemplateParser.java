@@ -4,8 +4,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Class representing a parser for an input template.
@@ -14,10 +12,12 @@ public class TemplateParser {
 
   private final List<String> templateInput;
   private final List<List<String>> modListHolder;
-  private final Map<String, List<String>> inputData;
-  private final String pattern = "\\[{2}([a-zA-Z0-9_-]+)]{2}";
-  private final Pattern key = Pattern.compile(this.pattern);
+  private final RecordStore records;
+  private final CompiledTemplate template;
   private final Integer index;
+  private final StringBuilder lineBuffer;
+  private CompiledTemplate boundTemplate;
+  private RecordStore.Row row;
 
 
   /**
@@ -27,49 +27,55 @@ public class TemplateParser {
    * @param inputData     (Map) The data for insertion.
    */
   public TemplateParser(List<String> templateInput, Map<String, List<String>> inputData) {
+    this(templateInput, RecordStore.fromColumns(inputData));
+  }
+
+  /**
+   * Constructor for template parser to read and replace keys in template
+   *
+   * @param templateInput (List) The lines from base template.
+   * @param records       (RecordStore) The data for insertion.
+   */
+  public TemplateParser(List<String> templateInput, RecordStore records) {
     this.templateInput = templateInput;
-    this.inputData = inputData;
+    this.records = records;
+    this.template = CompiledTemplate.compile(templateInput);
     this.index = 0;
     this.modListHolder = new ArrayList<>();
+    this.lineBuffer = new StringBuilder();
   }
 
   /**
    * Builds the template and replaces key words with desired data adding the templates to a list for
    * writing.
+   *
+   * @param index (int) The row of the input data to insert into the template.
    */
   public void insertDataToKeys(int index) {
-    List<String> modList = new ArrayList<>();
-
-    for (String line : this.templateInput) {
-      Matcher match = key.matcher(line);
+    this.bindTemplate();
+    this.row.moveTo(index);
 
-      while (match.find()) {
-        String info = match.group(1);
-        String inputData = getDataFromHash(info, index);
-        line = line.replace(match.group(), inputData);
-      }
+    List<String> modList = new ArrayList<>(this.boundTemplate.getLineCount());
 
-      modList.add(line);
+    for (int i = 0; i < this.boundTemplate.getLineCount(); i++) {
+      this.lineBuffer.setLength(0);
+      this.boundTemplate.renderLine(i, this.row, this.lineBuffer);
+      modList.add(this.lineBuffer.toString());
     }
     modListHolder.add(modList);
   }
 
   /**
-   * Grabs the data from hashmap
+   * Resolves the template's placeholders to the columns of the input data. This is done once, the
+   * first time a row is inserted, rather than once per row.
    *
-   * @param keyWord (String) Used to grab data
-   * @param index   (Integer) Links data from arraylists within the hashmap
-   * @return (String) The data to be inserted.
+   * @throws IllegalArgumentException when a key of the template was not found in the input data.
    */
-  private String getDataFromHash(String keyWord, Integer index) {
-    String inputData;
-    // This throws a NullPointer exception if the key does not exist
-    if (!keyExists(keyWord)) {
-      throw new IllegalArgumentException("This key was not found.");
+  private void bindTemplate() {
+    if (this.boundTemplate == null) {
+      this.boundTemplate = this.template.bind(this.records.getHeader());
+      this.row = this.records.row(0);
     }
-    // Add a check for key exists
-    inputData = this.inputData.get(keyWord).get(index);
-    return inputData;
   }
 
   /**
@@ -82,53 +88,49 @@ public class TemplateParser {
   }
 
   /**
-   * This method goes through and compiles a populated template for each list in the map.
+   * This method goes through and compiles a populated template for each row of the data.
    */
   public void populateModListHolder() {
-    int size = 0;
-    // Go through each data point in arraylist for key
-    for (List<String> value : inputData.values()) {
-      size = value.size();
-    }
-
-    for (int i = 0; i < size; i++) {
+    for (int i = 0; i < records.size(); i++) {
       insertDataToKeys(i);
     }
   }
 
   /**
-   * Checks to see if a key exists in the map data.
+   * Getter method for the separated template input.
    *
-   * @param key (String) The key to be checked against the map's keys.
-   * @return (Boolean) Returns true if the key exists in the map.
+   * @return (List) A List of Strings containing the lines of the parsed template.
    */
-  private boolean keyExists(String key) {
-    for (String k : inputData.keySet()) {
-      if (k.equals(key)) {
-        return true;
-      }
-    }
-
-    return false;
+  public List<String> getTemplateInput() {
+    return templateInput;
   }
 
   /**
-   * Getter method for the separated template input.
+   * Getter method for the compiled template.
    *
-   * @return (List) A List of Strings containing the lines of the parsed template.
+   * @return (CompiledTemplate) The template compiled into literal chunks and placeholder slots.
    */
-  public List<String> getTemplateInput() {
-    return templateInput;
+  public CompiledTemplate getTemplate() {
+    return template;
   }
 
   /**
    * Getter method for the processed data from the input file.
    *
    * @return (Map) A Map of String keys and Lists representing the different row values associated
-   * with that key.
+   * with that key, built from the RecordStore each time this is called.
    */
   public Map<String, List<String>> getInputData() {
-    return inputData;
+    return records.toColumnMap();
+  }
+
+  /**
+   * Getter method for the processed data from the input file.
+   *
+   * @return (RecordStore) The compact store of the rows to be inserted.
+   */
+  public RecordStore getRecords() {
+    return records;
   }
 
   @Override
@@ -142,13 +144,13 @@ public class TemplateParser {
     TemplateParser that = (TemplateParser) o;
     return Objects.equals(templateInput, that.templateInput)
         && Objects.equals(modListHolder, that.modListHolder)
-        && Objects.equals(inputData, that.inputData)
+        && Objects.equals(records, that.records)
         && Objects.equals(index, that.index);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(templateInput, modListHolder, inputData, index);
+    return Objects.hash(templateInput, modListHolder, records, index);
   }
 
   @Override
@@ -156,9 +158,8 @@ public class TemplateParser {
     return "TemplateParser{" +
         "templateInput=" + templateInput +
         ", modListHolder=" + modListHolder +
-        ", inputData=" + inputData +
-        ", pattern='" + pattern + '\'' +
-        ", key=" + key +
+        ", records=" + records +
+        ", template=" + template +
         ", index=" + index +
         '}';
   }
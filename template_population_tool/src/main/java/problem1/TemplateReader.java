@@ -1,9 +1,11 @@
 package problem1;
 
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -54,7 +56,8 @@ public class TemplateReader {
   private List<String> readFile(String path) throws IOException {
     List<String> lines = new ArrayList<>();
 
-    try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(new FileInputStream(path), StandardCharsets.UTF_8))) {
       String line;
 
       while ((line = reader.readLine()) != null) {
@@ -1,19 +1,40 @@
 package problem1;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
 /**
- * Class representing a template writer.
+ * Class representing a template writer. Populated templates are encoded as UTF-8 and written in
+ * batches through a BatchFileWriter, so a writer must be flushed or closed once the last template
+ * has been queued. A writer can instead add the populated templates to an OutputArchive, as entries
+ * named like the files they would otherwise be written to.
+ *
+ * <p>The name and subdirectory of each file are given by an OutputLayout. When the layout spreads
+ * files across ranges of rows, the writer creates the directory of each range as it reaches it;
+ * the directories of hashed buckets are created ahead of time by the handler.</p>
+ *
+ * <p>A writer given an OutputDeduplicator only writes the first output with each body, and leaves
+ * every later output with the same body to the deduplicator.</p>
  */
-public class TemplateWriter {
+public class TemplateWriter implements Closeable {
 
   private final List<List<String>> templates;
   private final String dest;
   private final String filename;
+  private final String outputPrefix;
+  private final BatchFileWriter batch;
+  private final OutputArchive archive;
+  private final OutputLayout layout;
+  private final OutputDeduplicator dedup;
+  private Path directory;
+  private long archivedBytes;
 
   /**
    * Constructor for a new template writer
@@ -23,13 +44,132 @@ public class TemplateWriter {
    * @param filename  (String) The name of the files to write.
    */
   public TemplateWriter(List<List<String>> templates, String dest, String filename) {
+    this(templates, dest, filename, null);
+  }
+
+  /**
+   * Constructor for a new template writer that adds the populated templates to an archive. The
+   * archive is shared, so it is not closed when the writer is.
+   *
+   * @param templates (List) Template data in the form of strings.
+   * @param dest      (String) The location to write files.
+   * @param filename  (String) The name of the files to write.
+   * @param archive   (OutputArchive) The archive templates are added to, or null to write each
+   *                  template to a file of its own.
+   */
+  public TemplateWriter(List<List<String>> templates, String dest, String filename,
+      OutputArchive archive) {
+    this(templates, dest, filename, archive, null, OutputLayout.FLAT, null);
+  }
+
+  /**
+   * Private constructor for a new template writer.
+   *
+   * @param templates (List) Template data in the form of strings.
+   * @param dest      (String) The location to write files.
+   * @param filename  (String) The name of the files to write.
+   * @param archive   (OutputArchive) The archive templates are added to, or null to write each
+   *                  template to a file of its own.
+   * @param pool      (FileWriterPool) The pool files are written on, or null to write them on the
+   *                  calling thread.
+   * @param layout    (OutputLayout) The layout of the output directory, bound to the CSV header if
+   *                  its file names use columns.
+   * @param dedup     (OutputDeduplicator) The deduplicator claiming the body of each output, or
+   *                  null to write every output in full.
+   */
+  private TemplateWriter(List<List<String>> templates, String dest, String filename,
+      OutputArchive archive, FileWriterPool pool, OutputLayout layout, OutputDeduplicator dedup) {
     this.templates = templates;
     this.dest = dest;
     this.filename = filename;
+    this.outputPrefix = filename.split("\\.")[0];
+    this.batch = new BatchFileWriter(BatchFileWriter.DEFAULT_BUFFER_SIZE, pool);
+    this.archive = archive;
+    this.layout = layout;
+    this.dedup = dedup;
+  }
+
+  /**
+   * Constructor for a new template writer that writes populated templates as they are rendered,
+   * rather than from a list of previously populated templates.
+   *
+   * @param dest     (String) The location to write files.
+   * @param filename (String) The name of the files to write.
+   */
+  public TemplateWriter(String dest, String filename) {
+    this(Collections.emptyList(), dest, filename);
+  }
+
+  /**
+   * Constructor for a new template writer that adds populated templates to an archive as they are
+   * rendered.
+   *
+   * @param dest     (String) The location to write files.
+   * @param filename (String) The name of the files to write.
+   * @param archive  (OutputArchive) The archive templates are added to, or null to write each
+   *                 template to a file of its own.
+   */
+  public TemplateWriter(String dest, String filename, OutputArchive archive) {
+    this(Collections.emptyList(), dest, filename, archive);
   }
 
   /**
-   * This method takes a list of strings and writes them to a file.
+   * Constructor for a new template writer that writes populated templates as they are rendered,
+   * with the files of each batch written concurrently on a pool of threads. The pool is shared, so
+   * it is not closed when the writer is.
+   *
+   * @param dest     (String) The location to write files.
+   * @param filename (String) The name of the files to write.
+   * @param archive  (OutputArchive) The archive templates are added to, or null to write each
+   *                 template to a file of its own.
+   * @param pool     (FileWriterPool) The pool files are written on, or null to write them on the
+   *                 calling thread.
+   */
+  public TemplateWriter(String dest, String filename, OutputArchive archive,
+      FileWriterPool pool) {
+    this(dest, filename, archive, pool, OutputLayout.FLAT);
+  }
+
+  /**
+   * Constructor for a new template writer that writes populated templates as they are rendered,
+   * naming and placing each file by an output layout.
+   *
+   * @param dest     (String) The location to write files.
+   * @param filename (String) The name of the template file the files are named after.
+   * @param archive  (OutputArchive) The archive templates are added to, or null to write each
+   *                 template to a file of its own.
+   * @param pool     (FileWriterPool) The pool files are written on, or null to write them on the
+   *                 calling thread.
+   * @param layout   (OutputLayout) The layout of the output directory, bound to the CSV header if
+   *                 its file names use columns.
+   */
+  public TemplateWriter(String dest, String filename, OutputArchive archive,
+      FileWriterPool pool, OutputLayout layout) {
+    this(Collections.emptyList(), dest, filename, archive, pool, layout, null);
+  }
+
+  /**
+   * Constructor for a new template writer that writes populated templates as they are rendered,
+   * writing only the first output with each body in full.
+   *
+   * @param dest     (String) The location to write files.
+   * @param filename (String) The name of the template file the files are named after.
+   * @param archive  (OutputArchive) The archive templates are added to, or null to write each
+   *                 template to a file of its own.
+   * @param pool     (FileWriterPool) The pool files are written on, or null to write them on the
+   *                 calling thread.
+   * @param layout   (OutputLayout) The layout of the output directory, bound to the CSV header if
+   *                 its file names use columns.
+   * @param dedup    (OutputDeduplicator) The deduplicator shared by the writers of the run, or
+   *                 null to write every output in full. Archive entries are never deduplicated.
+   */
+  public TemplateWriter(String dest, String filename, OutputArchive archive,
+      FileWriterPool pool, OutputLayout layout, OutputDeduplicator dedup) {
+    this(Collections.emptyList(), dest, filename, archive, pool, layout, dedup);
+  }
+
+  /**
+   * This method takes a list of strings and writes them to a file straight away.
    *
    * @param curTemplate (List) The current populated template to write.
    * @param curDest     (String) The location of the directory to write the file to.
@@ -37,29 +177,158 @@ public class TemplateWriter {
    */
   public int writeTemplate(List<String> curTemplate, String curDest) throws IOException {
     // Throws an exception if destination directory is not found.
-    try (FileWriter writer = new FileWriter(curDest)) {
-      for (String line : curTemplate) {
-        writer.write(line);
-        writer.write("\n");
-      }
+    batch.write(Paths.get(curDest), joinLines(curTemplate, new StringBuilder()));
+    batch.flush();
+
+    return 0;
+  }
+
+  /**
+   * This method queues a single already populated template, whose lines are each terminated by a
+   * newline, to be written to the file for the given row.
+   *
+   * @param index    (int) The row index the template was populated from.
+   * @param document (CharSequence) The populated template.
+   * @throws IOException when a queued template cannot be written to the destination directory.
+   */
+  public void writeTemplate(int index, CharSequence document) throws IOException {
+    this.writeTemplate(index, null, document);
+  }
+
+  /**
+   * This method queues a single already populated template, whose lines are each terminated by a
+   * newline, to be written to the file the layout names for the given row.
+   *
+   * @param index    (int) The row index the template was populated from.
+   * @param row      (DataRow) The row, or null if the file names do not use columns.
+   * @param document (CharSequence) The populated template.
+   * @throws IOException when a queued template cannot be written to the destination directory, or
+   *                     another output of the run was given the same name.
+   */
+  public void writeTemplate(int index, DataRow row, CharSequence document) throws IOException {
+    String name = getOutputName(index, row);
+    layout.claim(name, index);
+
+    if (archive != null) {
+      archivedBytes += archive.addEntry(name, document);
+      return;
+    }
+
+    Path file = new File(dest, name).toPath();
 
-      return 0;
-    } catch (IOException e) {
-      System.err.println(e.getMessage());
-      throw e;
+    if (layout.getScheme() == OutputLayout.Scheme.RANGE
+        && !file.getParent().equals(this.directory)) {
+      this.directory = Files.createDirectories(file.getParent());
     }
+
+    if (dedup != null && dedup.claim(name, document) != null) {
+      return;
+    }
+
+    batch.write(file, document);
   }
 
   /**
    * This method will iterate through the modified lists and print out the personalized emails
+   *
+   * @throws IOException when the destination directory cannot be found.
    */
   public void writePopulatedTemplates() throws IOException {
-    String tempFilename = filename.split("\\.")[0];
+    StringBuilder document = new StringBuilder();
 
     for (int i = 0; i < templates.size(); i++) {
-      File f = new File(dest, tempFilename.concat(i + ".txt"));
-      writeTemplate(templates.get(i), f.getAbsolutePath());
+      document.setLength(0);
+      writeTemplate(i, joinLines(templates.get(i), document));
+    }
+
+    batch.flush();
+  }
+
+  /**
+   * Writes every queued template to its file.
+   *
+   * @throws IOException when a template cannot be written to the destination directory.
+   */
+  public void flush() throws IOException {
+    batch.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    batch.close();
+  }
+
+  /**
+   * Gets the number of bytes of the populated templates written or queued so far.
+   *
+   * @return (long) The number of bytes, once encoded as UTF-8.
+   */
+  public long getBytesWritten() {
+    return batch.getBytesWritten() + archivedBytes;
+  }
+
+  /**
+   * Gets the file that the populated template for the given row is written to.
+   *
+   * @param index (int) The row index the template was populated from.
+   * @return (File) The output file, named after the template file and the row index.
+   */
+  public File getOutputFile(int index) {
+    return getOutputFile(index, null);
+  }
+
+  /**
+   * Gets the file that the populated template for the given row is written to.
+   *
+   * @param index (int) The row index the template was populated from.
+   * @param row   (DataRow) The row, or null if the file names do not use columns.
+   * @return (File) The output file, as named and placed by the layout.
+   */
+  public File getOutputFile(int index, DataRow row) {
+    return new File(dest, getOutputName(index, row));
+  }
+
+  /**
+   * Gets the name of the file or archive entry that the populated template for the given row is
+   * written to, when the file names do not use columns.
+   *
+   * @param index (int) The row index the template was populated from.
+   * @return (String) The name, made of the template file's name and the row index, and placed in
+   * a subdirectory if the layout has buckets.
+   */
+  public String getOutputName(int index) {
+    return getOutputName(index, null);
+  }
+
+  /**
+   * Gets the path, relative to the destination directory, of the file or archive entry that the
+   * populated template for the given row is written to.
+   *
+   * @param index (int) The row index the template was populated from.
+   * @param row   (DataRow) The row, or null if the file names do not use columns.
+   * @return (String) The path, with '/' between directories.
+   */
+  public String getOutputName(int index, DataRow row) {
+    if (layout == OutputLayout.FLAT) {
+      return outputPrefix + index + ".txt";
     }
+
+    return layout.getPath(outputPrefix, index, row);
+  }
+
+  /**
+   * Helper method to join the lines of a populated template, terminating each with a newline.
+   *
+   * @param lines    (List) The lines of the populated template.
+   * @param document (StringBuilder) The buffer the lines are appended to.
+   * @return (StringBuilder) The buffer, for convenience.
+   */
+  private static StringBuilder joinLines(List<String> lines, StringBuilder document) {
+    for (String line : lines) {
+      document.append(line).append('\n');
+    }
+
+    return document;
   }
 
   @Override
@@ -73,12 +342,13 @@ public class TemplateWriter {
     TemplateWriter that = (TemplateWriter) o;
     return Objects.equals(templates, that.templates)
         && Objects.equals(dest, that.dest)
-        && Objects.equals(filename, that.filename);
+        && Objects.equals(filename, that.filename)
+        && Objects.equals(layout, that.layout);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(templates, dest, filename);
+    return Objects.hash(templates, dest, filename, layout);
   }
 
   @Override
@@ -107,6 +107,144 @@ public class ArgumentParserTest {
     assertTrue(testParser.getSwitches().get("test"));
   }
 
+  @Test
+  public void getPositiveIntTarget() {
+    expectedArgs = new String[]{"--output-dir", "/path/to/output", "--csv-file",
+        "/path/to/data.csv", "--threads", "8"};
+
+    testParser = new ArgumentParserBuilder(expectedArgs).build();
+    testParser.parse();
+
+    assertEquals(Integer.valueOf(8), testParser.getPositiveIntTarget("threads", 1));
+  }
+
+  @Test
+  public void parseDaemonOptions() {
+    expectedArgs = new String[]{"-d", "/path/to/spool", "--threads", "4"};
+
+    testParser = new ArgumentParserBuilder(expectedArgs)
+        .options(ArgumentParser.daemonOptions)
+        .examples(ArgumentParser.daemonExamples)
+        .build();
+    testParser.parse();
+
+    assertEquals("/path/to/spool", testParser.getTargets().get("daemon"));
+    assertEquals(Integer.valueOf(4), testParser.getPositiveIntTarget("threads", 1));
+  }
+
+  @Test(expected = ArgumentParserException.MissingRequiredOptionException.class)
+  public void parseDaemonOptionsMissingSpool() {
+    new ArgumentParserBuilder(new String[]{"--threads", "4"})
+        .options(ArgumentParser.daemonOptions)
+        .build()
+        .parse();
+  }
+
+  @Test
+  public void parseServerOptions() {
+    expectedArgs = new String[]{"--serve", "8080", "-T", "/path/to/templates", "-f",
+        "/path/to/data.csv", "-k", "email"};
+
+    testParser = new ArgumentParserBuilder(expectedArgs)
+        .options(ArgumentParser.serverOptions)
+        .examples(ArgumentParser.serverExamples)
+        .build();
+    testParser.parse();
+
+    assertEquals("8080", testParser.getTargets().get("serve"));
+    assertEquals("/path/to/templates", testParser.getTargets().get("template-dir"));
+    assertEquals("email", testParser.getTargets().get("key-column"));
+  }
+
+  @Test(expected = ArgumentParserException.MissingRequiredOptionException.class)
+  public void parseServerOptionsMissingTemplateDir() {
+    new ArgumentParserBuilder(new String[]{"--serve", "8080"})
+        .options(ArgumentParser.serverOptions)
+        .build()
+        .parse();
+  }
+
+  @Test
+  public void getPositiveIntTargetDefault() {
+    testParser.parse();
+
+    assertEquals(Integer.valueOf(1), testParser.getPositiveIntTarget("threads", 1));
+  }
+
+  @Test(expected = ArgumentParserException.InvalidArgumentException.class)
+  public void getPositiveIntTargetThrowsException() {
+    expectedArgs = new String[]{"--output-dir", "/path/to/output", "--csv-file",
+        "/path/to/data.csv", "-t", "many"};
+
+    testParser = new ArgumentParserBuilder(expectedArgs).build();
+    testParser.parse();
+    testParser.getPositiveIntTarget("threads", 1);
+  }
+
+  @Test(expected = ArgumentParserException.InvalidArgumentException.class)
+  public void getPositiveIntTargetThrowsException2() {
+    expectedArgs = new String[]{"--output-dir", "/path/to/output", "--csv-file",
+        "/path/to/data.csv", "-t", "0"};
+
+    testParser = new ArgumentParserBuilder(expectedArgs).build();
+    testParser.parse();
+    testParser.getPositiveIntTarget("threads", 1);
+  }
+
+  @Test
+  public void getEnumTarget() {
+    expectedArgs = new String[]{"--output-dir", "/path/to/output", "--csv-file",
+        "/path/to/data.csv", "--archive", "Zip"};
+
+    testParser = new ArgumentParserBuilder(expectedArgs).build();
+    testParser.parse();
+
+    assertEquals(OutputArchive.Format.ZIP,
+        testParser.getEnumTarget("archive", OutputArchive.Format.class, null));
+  }
+
+  @Test
+  public void getEnumTargetDefault() {
+    testParser.parse();
+
+    assertNull(testParser.getEnumTarget("archive", OutputArchive.Format.class, null));
+  }
+
+  @Test(expected = ArgumentParserException.InvalidArgumentException.class)
+  public void getEnumTargetThrowsException() {
+    expectedArgs = new String[]{"--output-dir", "/path/to/output", "--csv-file",
+        "/path/to/data.csv", "-a", "rar"};
+
+    testParser = new ArgumentParserBuilder(expectedArgs).build();
+    testParser.parse();
+    testParser.getEnumTarget("archive", OutputArchive.Format.class, null);
+  }
+
+  @Test
+  public void getConvertedTarget() {
+    expectedArgs = new String[]{"--output-dir", "/path/to/output", "--csv-file",
+        "/path/to/data.csv", "--buckets", "range:500"};
+
+    testParser = new ArgumentParserBuilder(expectedArgs).build();
+    testParser.parse();
+    OutputLayout.OutputLayoutBuilder layout = new OutputLayout.OutputLayoutBuilder();
+
+    assertEquals(OutputLayout.Scheme.RANGE, testParser
+        .getConvertedTarget("buckets", layout::buckets, layout).build().getScheme());
+    assertEquals("default", testParser.getConvertedTarget("name-pattern", arg -> arg, "default"));
+  }
+
+  @Test(expected = ArgumentParserException.InvalidArgumentException.class)
+  public void getConvertedTargetThrowsException() {
+    expectedArgs = new String[]{"--output-dir", "/path/to/output", "--csv-file",
+        "/path/to/data.csv", "-n", "{template}.txt"};
+
+    testParser = new ArgumentParserBuilder(expectedArgs).build();
+    testParser.parse();
+    OutputLayout.OutputLayoutBuilder layout = new OutputLayout.OutputLayoutBuilder();
+    testParser.getConvertedTarget("name-pattern", layout::namePattern, layout);
+  }
+
   @Test
   public void getArgs() {
     assertArrayEquals(expectedArgs, testParser.getArgs());
@@ -342,7 +480,67 @@ public class ArgumentParserTest {
             + "acceptsArg=true, isArgRequired=true, dependencies=[], description='Directory path "
             + "where templates should be written.'}, Option{key=f, name='csv-file', prefixedKey='-f', "
             + "prefixedName='--csv-file', isRequired=true, acceptsArg=true, isArgRequired=true, "
-            + "dependencies=[], description='Directory path to the input CSV data file.'}]}",
+            + "dependencies=[], description='Directory path to the input CSV data file.'}, "
+            + "Option{key=s, name='stream', prefixedKey='-s', prefixedName='--stream', "
+            + "isRequired=false, acceptsArg=false, isArgRequired=false, dependencies=[], "
+            + "description='Toggle to read, populate and write one CSV row at a time.'}, "
+            + "Option{key=t, name='threads', prefixedKey='-t', prefixedName='--threads', "
+            + "isRequired=false, acceptsArg=true, isArgRequired=true, dependencies=[], "
+            + "description='Number of worker threads used to populate templates.'}, "
+            + "Option{key=m, name='mmap', prefixedKey='-m', prefixedName='--mmap', "
+            + "isRequired=false, acceptsArg=false, isArgRequired=false, dependencies=[], "
+            + "description='Toggle to stream the CSV file through a memory-mapped reader.'}, "
+            + "Option{key=a, name='archive', prefixedKey='-a', prefixedName='--archive', "
+            + "isRequired=false, acceptsArg=true, isArgRequired=true, dependencies=[], "
+            + "description='Write all templates into one archive in the output directory: "
+            + "zip, tar or concat.'}, "
+            + "Option{key=S, name='stats', prefixedKey='-S', prefixedName='--stats', "
+            + "isRequired=false, acceptsArg=false, isArgRequired=false, dependencies=[], "
+            + "description='Toggle to print the time, throughput and memory of each stage.'}, "
+            + "Option{key=j, name='stats-file', prefixedKey='-j', "
+            + "prefixedName='--stats-file', isRequired=false, acceptsArg=true, "
+            + "isArgRequired=true, dependencies=[], description='File path where the "
+            + "statistics of each stage are written as JSON.'}, "
+            + "Option{key=i, name='incremental', prefixedKey='-i', "
+            + "prefixedName='--incremental', isRequired=false, acceptsArg=false, "
+            + "isArgRequired=false, dependencies=[], description='Toggle to only rewrite "
+            + "outputs whose row or template changed since the last run.'}, "
+            + "Option{key=r, name='resume', prefixedKey='-r', prefixedName='--resume', "
+            + "isRequired=false, acceptsArg=false, isArgRequired=false, dependencies=[], "
+            + "description='Toggle to resume an interrupted run from the checkpoint in the "
+            + "output directory.'}, "
+            + "Option{key=c, name='template-cache', prefixedKey='-c', "
+            + "prefixedName='--template-cache', isRequired=false, acceptsArg=true, "
+            + "isArgRequired=true, dependencies=[], description='Directory where compiled "
+            + "templates are cached between runs.'}, "
+            + "Option{key=w, name='write-concurrency', prefixedKey='-w', "
+            + "prefixedName='--write-concurrency', isRequired=false, acceptsArg=true, "
+            + "isArgRequired=true, dependencies=[], description='Number of output files "
+            + "created and written at the same time.'}, "
+            + "Option{key=b, name='buckets', prefixedKey='-b', prefixedName='--buckets', "
+            + "isRequired=false, acceptsArg=true, isArgRequired=true, dependencies=[], "
+            + "description='How output files are spread across subdirectories: flat, "
+            + "hash:256x256 or range:10000.'}, "
+            + "Option{key=n, name='name-pattern', prefixedKey='-n', "
+            + "prefixedName='--name-pattern', isRequired=false, acceptsArg=true, "
+            + "isArgRequired=true, dependencies=[], description='Pattern of output file "
+            + "names, from {template}, {row} and {column}.'}, "
+            + "Option{key=x, name='shard', prefixedKey='-x', prefixedName='--shard', "
+            + "isRequired=false, acceptsArg=true, isArgRequired=true, dependencies=[], "
+            + "description='Only populate the rows of one of several shards, e.g. 2/8 for the "
+            + "third of eight.'}, "
+            + "Option{key=u, name='dedup', prefixedKey='-u', prefixedName='--dedup', "
+            + "isRequired=false, acceptsArg=true, isArgRequired=true, dependencies=[], "
+            + "description='Write identical outputs once, and the others as hard links or "
+            + "index entries: link or index.'}, "
+            + "Option{key=B, name='memory-budget', prefixedKey='-B', "
+            + "prefixedName='--memory-budget', isRequired=false, acceptsArg=true, "
+            + "isArgRequired=true, dependencies=[], description='Memory kept for parsed rows, "
+            + "e.g. 512m, beyond which rows are spilled to a temporary file.'}, "
+            + "Option{key=C, name='checkpoint-interval', prefixedKey='-C', "
+            + "prefixedName='--checkpoint-interval', isRequired=false, acceptsArg=true, "
+            + "isArgRequired=true, dependencies=[], description='Number of rows written "
+            + "between the checkpoints a run can be resumed from.'}]}",
         testParser.toString());
   }
 
@@ -369,7 +567,67 @@ public class ArgumentParserTest {
         + "description='Directory path where templates should be written.'}, Option{key=f, "
         + "name='csv-file', prefixedKey='-f', prefixedName='--csv-file', isRequired=true, "
         + "acceptsArg=true, isArgRequired=true, dependencies=[], "
-        + "description='Directory path to the input CSV data file.'}], "
+        + "description='Directory path to the input CSV data file.'}, "
+        + "Option{key=s, name='stream', prefixedKey='-s', prefixedName='--stream', "
+        + "isRequired=false, acceptsArg=false, isArgRequired=false, dependencies=[], "
+        + "description='Toggle to read, populate and write one CSV row at a time.'}, "
+        + "Option{key=t, name='threads', prefixedKey='-t', prefixedName='--threads', "
+        + "isRequired=false, acceptsArg=true, isArgRequired=true, dependencies=[], "
+        + "description='Number of worker threads used to populate templates.'}, "
+        + "Option{key=m, name='mmap', prefixedKey='-m', prefixedName='--mmap', "
+        + "isRequired=false, acceptsArg=false, isArgRequired=false, dependencies=[], "
+        + "description='Toggle to stream the CSV file through a memory-mapped reader.'}, "
+        + "Option{key=a, name='archive', prefixedKey='-a', prefixedName='--archive', "
+        + "isRequired=false, acceptsArg=true, isArgRequired=true, dependencies=[], "
+        + "description='Write all templates into one archive in the output directory: "
+        + "zip, tar or concat.'}, "
+        + "Option{key=S, name='stats', prefixedKey='-S', prefixedName='--stats', "
+        + "isRequired=false, acceptsArg=false, isArgRequired=false, dependencies=[], "
+        + "description='Toggle to print the time, throughput and memory of each stage.'}, "
+        + "Option{key=j, name='stats-file', prefixedKey='-j', "
+        + "prefixedName='--stats-file', isRequired=false, acceptsArg=true, "
+        + "isArgRequired=true, dependencies=[], description='File path where the "
+        + "statistics of each stage are written as JSON.'}, "
+        + "Option{key=i, name='incremental', prefixedKey='-i', "
+        + "prefixedName='--incremental', isRequired=false, acceptsArg=false, "
+        + "isArgRequired=false, dependencies=[], description='Toggle to only rewrite "
+        + "outputs whose row or template changed since the last run.'}, "
+        + "Option{key=r, name='resume', prefixedKey='-r', prefixedName='--resume', "
+        + "isRequired=false, acceptsArg=false, isArgRequired=false, dependencies=[], "
+        + "description='Toggle to resume an interrupted run from the checkpoint in the "
+        + "output directory.'}, "
+        + "Option{key=c, name='template-cache', prefixedKey='-c', "
+        + "prefixedName='--template-cache', isRequired=false, acceptsArg=true, "
+        + "isArgRequired=true, dependencies=[], description='Directory where compiled "
+        + "templates are cached between runs.'}, "
+        + "Option{key=w, name='write-concurrency', prefixedKey='-w', "
+        + "prefixedName='--write-concurrency', isRequired=false, acceptsArg=true, "
+        + "isArgRequired=true, dependencies=[], description='Number of output files "
+        + "created and written at the same time.'}, "
+        + "Option{key=b, name='buckets', prefixedKey='-b', prefixedName='--buckets', "
+        + "isRequired=false, acceptsArg=true, isArgRequired=true, dependencies=[], "
+        + "description='How output files are spread across subdirectories: flat, "
+        + "hash:256x256 or range:10000.'}, "
+        + "Option{key=n, name='name-pattern', prefixedKey='-n', "
+        + "prefixedName='--name-pattern', isRequired=false, acceptsArg=true, "
+        + "isArgRequired=true, dependencies=[], description='Pattern of output file "
+        + "names, from {template}, {row} and {column}.'}, "
+        + "Option{key=x, name='shard', prefixedKey='-x', prefixedName='--shard', "
+        + "isRequired=false, acceptsArg=true, isArgRequired=true, dependencies=[], "
+        + "description='Only populate the rows of one of several shards, e.g. 2/8 for the "
+        + "third of eight.'}, "
+        + "Option{key=u, name='dedup', prefixedKey='-u', prefixedName='--dedup', "
+        + "isRequired=false, acceptsArg=true, isArgRequired=true, dependencies=[], "
+        + "description='Write identical outputs once, and the others as hard links or "
+        + "index entries: link or index.'}, "
+        + "Option{key=B, name='memory-budget', prefixedKey='-B', "
+        + "prefixedName='--memory-budget', isRequired=false, acceptsArg=true, "
+        + "isArgRequired=true, dependencies=[], description='Memory kept for parsed rows, "
+        + "e.g. 512m, beyond which rows are spilled to a temporary file.'}, "
+        + "Option{key=C, name='checkpoint-interval', prefixedKey='-C', "
+        + "prefixedName='--checkpoint-interval', isRequired=false, acceptsArg=true, "
+        + "isArgRequired=true, dependencies=[], description='Number of rows written "
+        + "between the checkpoints a run can be resumed from.'}], "
         + "examples=[--email --email-template /path/to/template.txt --output-dir /path/to/output "
         + "--csv-file /path/to/data.csv, -l -L /path/to/letter-template.txt -o /path/to/output -f "
         + "/path/to/data.csv]}", testBuilder1.toString());
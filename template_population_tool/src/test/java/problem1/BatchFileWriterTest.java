@@ -0,0 +1,196 @@
+package problem1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchFileWriterTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path dir;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder("batch-writer").toPath();
+  }
+
+  private String read(String name) throws IOException {
+    return new String(Files.readAllBytes(dir.resolve(name)), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void writeIsBatchedUntilFlush() throws IOException {
+    BatchFileWriter writer = new BatchFileWriter();
+
+    writer.write(dir.resolve("a.txt"), "first\n");
+    writer.write(dir.resolve("b.txt"), "second\n");
+    assertFalse(Files.exists(dir.resolve("a.txt")));
+
+    writer.flush();
+    assertEquals("first\n", read("a.txt"));
+    assertEquals("second\n", read("b.txt"));
+  }
+
+  @Test
+  public void writeFlushesWhenBufferIsFull() throws IOException {
+    BatchFileWriter writer = new BatchFileWriter(16);
+
+    for (int i = 0; i < 20; i++) {
+      writer.write(dir.resolve(i + ".txt"), "document " + i + "\n");
+    }
+
+    assertTrue(Files.exists(dir.resolve("0.txt")));
+    writer.close();
+
+    for (int i = 0; i < 20; i++) {
+      assertEquals("document " + i + "\n", read(i + ".txt"));
+    }
+  }
+
+  @Test
+  public void writeDocumentLargerThanBuffer() throws IOException {
+    BatchFileWriter writer = new BatchFileWriter(8);
+    StringBuilder large = new StringBuilder();
+
+    for (int i = 0; i < 100; i++) {
+      large.append("line ").append(i).append('\n');
+    }
+
+    writer.write(dir.resolve("small.txt"), "abc");
+    writer.write(dir.resolve("large.txt"), large);
+    writer.close();
+
+    assertEquals(3 + large.length(), writer.getBytesWritten());
+    assertEquals("abc", read("small.txt"));
+    assertEquals(large.toString(), read("large.txt"));
+  }
+
+  @Test
+  public void writeEncodesUtf8() throws IOException {
+    BatchFileWriter writer = new BatchFileWriter(5);
+
+    writer.write(dir.resolve("utf8.txt"), "don’t éè");
+    writer.close();
+
+    assertEquals(12, writer.getBytesWritten());
+    assertArrayEquals("don’t éè".getBytes(StandardCharsets.UTF_8),
+        Files.readAllBytes(dir.resolve("utf8.txt")));
+  }
+
+  @Test
+  public void writeSmallestBuffer() throws IOException {
+    BatchFileWriter writer = new BatchFileWriter(BatchFileWriter.MIN_BUFFER_SIZE);
+
+    writer.write(dir.resolve("pair.txt"), "a\uD83D\uDE00b");
+    writer.close();
+
+    assertEquals(6, writer.getBytesWritten());
+    assertArrayEquals("a\uD83D\uDE00b".getBytes(StandardCharsets.UTF_8),
+        Files.readAllBytes(dir.resolve("pair.txt")));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void bufferTooSmall() {
+    new BatchFileWriter(BatchFileWriter.MIN_BUFFER_SIZE - 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void bufferTooSmallOnPool() throws IOException {
+    try (FileWriterPool pool = new FileWriterPool(1)) {
+      new BatchFileWriter(0, pool);
+    }
+  }
+
+  @Test
+  public void writeReplacesExistingFile() throws IOException {
+    Files.write(dir.resolve("old.txt"), "a much longer previous content".getBytes());
+    BatchFileWriter writer = new BatchFileWriter();
+
+    writer.write(dir.resolve("old.txt"), "new");
+    writer.close();
+
+    assertEquals("new", read("old.txt"));
+  }
+
+  @Test(expected = IOException.class)
+  public void flushMissingDirectory() throws IOException {
+    BatchFileWriter writer = new BatchFileWriter();
+
+    writer.write(dir.resolve("missing").resolve("a.txt"), "text");
+    writer.flush();
+  }
+
+  @Test
+  public void writeOnPool() throws IOException {
+    try (FileWriterPool pool = new FileWriterPool(4)) {
+      BatchFileWriter writer = new BatchFileWriter(32, pool);
+      long bytes = 0;
+
+      for (int i = 0; i < 200; i++) {
+        String document = "document " + i + "\n";
+        writer.write(dir.resolve(i + ".txt"), document);
+        bytes += document.length();
+      }
+      writer.close();
+
+      assertEquals(bytes, writer.getBytesWritten());
+      for (int i = 0; i < 200; i++) {
+        assertEquals("document " + i + "\n", read(i + ".txt"));
+      }
+    }
+  }
+
+  @Test
+  public void writeOnPoolDocumentLargerThanBuffer() throws IOException {
+    StringBuilder large = new StringBuilder();
+
+    for (int i = 0; i < 100; i++) {
+      large.append("line ").append(i).append('\n');
+    }
+
+    try (FileWriterPool pool = new FileWriterPool(2)) {
+      BatchFileWriter writer = new BatchFileWriter(8, pool);
+
+      writer.write(dir.resolve("small.txt"), "abc");
+      writer.write(dir.resolve("large.txt"), large);
+      writer.write(dir.resolve("after.txt"), "def");
+      writer.close();
+    }
+
+    assertEquals("abc", read("small.txt"));
+    assertEquals(large.toString(), read("large.txt"));
+    assertEquals("def", read("after.txt"));
+  }
+
+  @Test(expected = IOException.class)
+  public void flushOnPoolMissingDirectory() throws IOException {
+    try (FileWriterPool pool = new FileWriterPool(2)) {
+      BatchFileWriter writer = new BatchFileWriter(64, pool);
+
+      writer.write(dir.resolve("a.txt"), "text");
+      writer.write(dir.resolve("missing").resolve("b.txt"), "text");
+      writer.flush();
+    }
+  }
+
+  @Test
+  public void testToString() throws IOException {
+    BatchFileWriter writer = new BatchFileWriter(64);
+
+    writer.write(dir.resolve("a.txt"), "a");
+    assertEquals("BatchFileWriter{bufferSize=64, pendingFiles=[" + dir.resolve("a.txt") + "]}",
+        writer.toString());
+  }
+}
@@ -0,0 +1,83 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ByteBufferAppenderTest {
+
+  private ByteBuffer buffer;
+  private ByteBufferAppender appender;
+
+  @Before
+  public void setUp() throws Exception {
+    buffer = ByteBuffer.allocate(64);
+    appender = new ByteBufferAppender(buffer);
+  }
+
+  private String written() {
+    return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void appendMatchesStringEncoding() {
+    String text = "don’t été 😀 plain";
+
+    appender.append(text);
+
+    assertEquals(text.getBytes(StandardCharsets.UTF_8).length, buffer.position());
+    assertEquals(text, written());
+  }
+
+  @Test
+  public void appendRange() {
+    appender.append("Dear James,", 5, 10).append(new char[]{'a', 'é', 'b'}, 1, 2);
+
+    assertEquals("Jameséb", written());
+  }
+
+  @Test
+  public void appendSurrogatePairAcrossCalls() {
+    appender.append('\ud83d').append('\ude00');
+
+    assertEquals("😀", written());
+  }
+
+  @Test
+  public void appendLoneSurrogates() {
+    appender.append("a\ude00b\ud83dc").append('\ud83d').flush();
+
+    assertEquals("a?b?c?", written());
+  }
+
+  @Test
+  public void appendOverflowWritesNothing() {
+    appender.setBuffer(ByteBuffer.allocate(2));
+    appender.append('a');
+
+    try {
+      appender.append('’');
+    } catch (BufferOverflowException e) {
+      assertEquals(1, appender.getBuffer().position());
+      return;
+    }
+    throw new AssertionError("Expected a BufferOverflowException.");
+  }
+
+  @Test
+  public void setBufferDropsHeldSurrogate() {
+    appender.append('\ud83d');
+    appender.setBuffer(buffer).append('x');
+
+    assertEquals("x", written());
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("ByteBufferAppender{buffer=" + buffer + "}", appender.toString());
+  }
+}
@@ -2,16 +2,25 @@ package problem1;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class CSVProcessorTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   CSVProcessor testProcessor1;
   CSVProcessor testProcessor2;
   CSVProcessor testProcessor3;
@@ -91,6 +100,74 @@ public class CSVProcessorTest {
   }
 
 
+  @Test
+  public void getSupporterInfoQuotingAndShortRows() throws IOException {
+    File csv = temp.newFile("supporters.csv");
+    Files.write(csv.toPath(), ("first_name,\"address\",city\n"
+        + "James,\"6649 N Blue Gum St\nApt \"\"2\"\"\",New Orleans\n"
+        + "Josephine,\"4 B Blue Ridge Blvd\"\n").getBytes(StandardCharsets.UTF_8));
+
+    Map<String, List<String>> info = new CSVProcessor(csv.getPath()).getSupporterInfo();
+
+    assertEquals(Arrays.asList("James", "Josephine"), info.get("first_name"));
+    assertEquals(Arrays.asList("6649 N Blue Gum St\nApt \"2\"", "4 B Blue Ridge Blvd"),
+        info.get("address"));
+    assertEquals(Arrays.asList("New Orleans", ""), info.get("city"));
+  }
+
+  @Test
+  public void getRecordsProjected() throws IOException {
+    File csv = temp.newFile("supporters.csv");
+    Files.write(csv.toPath(), ("first_name,address,city,first_name\n"
+        + "James,\"6649 N Blue Gum St\",New Orleans,Jim\n"
+        + "Josephine\n").getBytes(StandardCharsets.UTF_8));
+
+    CSVProcessor processor = new CSVProcessor(csv.getPath(),
+        Arrays.asList("city", "first_name", "missing"));
+    RecordStore records = processor.getRecords();
+
+    assertEquals(Arrays.asList("first_name", "city"), records.getHeader());
+    assertEquals(2, records.size());
+    assertEquals("James", records.getField(0, 0));
+    assertEquals("New Orleans", records.getField(0, 1));
+    assertEquals("Josephine", records.getField(1, 0));
+    assertEquals("", records.getField(1, 1));
+    assertEquals(Arrays.asList("city", "first_name", "missing"), processor.getColumns());
+    assertEquals("NonprofitSupportersProcessor{filePath='" + csv.getPath()
+        + "', columns=[city, first_name, missing], size=2}", processor.toString());
+  }
+
+  @Test
+  public void getRecordsSourceStamp() throws IOException {
+    File csv = temp.newFile("supporters.csv");
+    Files.write(csv.toPath(), "first_name\nJames\n".getBytes(StandardCharsets.UTF_8));
+
+    // A file modified just before it is read is not stamped
+    assertNull(new CSVProcessor(csv.getPath()).getRecords().getSourceStamp());
+
+    long modified = System.currentTimeMillis() - 10000;
+    assertTrue(csv.setLastModified(modified));
+    Long stamp = new CSVProcessor(csv.getPath()).getRecords().getSourceStamp();
+    assertNotNull(stamp);
+    assertEquals(stamp, new CSVProcessor(csv.getPath(), Arrays.asList("first_name"), 1024)
+        .getRecords().getSourceStamp());
+
+    Files.write(csv.toPath(), "first_name\nJames\nArt\n".getBytes(StandardCharsets.UTF_8));
+    assertTrue(csv.setLastModified(modified));
+    assertNotEquals(stamp, new CSVProcessor(csv.getPath()).getRecords().getSourceStamp());
+  }
+
+  @Test
+  public void getRecordsWithMemoryBudget() throws IOException {
+    CSVProcessor processor = new CSVProcessor(validTestPath1, null, 1024);
+
+    try (SpillingRecordStore records = (SpillingRecordStore) processor.getRecords()) {
+      assertEquals(1024, processor.getMemoryBudget());
+      assertEquals(testProcessor1.getRecords(), records);
+      assertEquals(testProcessor1.getSupporterInfo(), processor.getSupporterInfo());
+    }
+    assertEquals(0, testProcessor1.getMemoryBudget());
+  }
 
   @Test
   public void testEqualsReflexivity1() {
@@ -128,15 +205,7 @@ public class CSVProcessorTest {
   @Test
   public void testToString() {
     String expected = "NonprofitSupportersProcessor{"
-        + "filePath='src/main/java/Input/WA-mammals-csv.csv', "
-        + "rawData=[\"animal_name\",\"latin_name\",\"diet\",\"habitat\", \"river otter\","
-        + "\"lupus lupus\",\"fish, snakes, and snails\",\"rivers and marshes\", \"porcupine\","
-        + "\"erethizon dorsatum\",\"saplings and leaves\",\"forested areas\", \"red squirrel\","
-        + "\"tamiasciurus hudsonicus\",\"seeds of conifers\",\"coniferous forests\"], "
-        + "supporterInfo={animal_name=[river otter, porcupine, red squirrel], "
-        + "latin_name=[lupus lupus, erethizon dorsatum, tamiasciurus hudsonicus], "
-        + "diet=[fish, snakes, and snails, saplings and leaves, seeds of conifers], "
-        + "habitat=[rivers and marshes, forested areas, coniferous forests]}}";
+        + "filePath='src/main/java/Input/WA-mammals-csv.csv', columns=null, size=3}";
     assertTrue(testProcessor2.toString().equals(expected));
   }
 }
\ No newline at end of file
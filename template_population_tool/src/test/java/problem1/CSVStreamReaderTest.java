@@ -0,0 +1,74 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CSVStreamReaderTest {
+
+  private String validTestPath;
+  private CSVStreamReader reader;
+
+  @Before
+  public void setUp() throws Exception {
+    validTestPath = "src/main/java/Input/WA-mammals-csv.csv";
+    reader = new CSVStreamReader(validTestPath);
+  }
+
+  @Test(expected = FileNotFoundException.class)
+  public void fileNotFound() throws IOException {
+    new CSVStreamReader("src/main/java/Input/non-existent-csv.csv");
+  }
+
+  @Test
+  public void getHeader() {
+    assertEquals(Arrays.asList("animal_name", "latin_name", "diet", "habitat"),
+        reader.getHeader());
+  }
+
+  @Test
+  public void next() throws IOException {
+    assertEquals(-1, reader.getRowIndex());
+
+    assertTrue(reader.next());
+    assertEquals(0, reader.getRowIndex());
+    assertEquals("river otter", reader.getField(0));
+    assertEquals("fish, snakes, and snails", reader.getField(2));
+
+    assertTrue(reader.next());
+    assertTrue(reader.next());
+    assertEquals(2, reader.getRowIndex());
+    assertEquals("coniferous forests", reader.getField(3));
+
+    assertFalse(reader.next());
+    reader.close();
+  }
+
+  @Test
+  public void project() throws IOException {
+    reader.project(Collections.singleton("diet"));
+
+    assertTrue(reader.next());
+    assertEquals("", reader.getField(0));
+    assertEquals("fish, snakes, and snails", reader.getField(2));
+    reader.close();
+  }
+
+  @Test
+  public void getFilePath() {
+    assertEquals(validTestPath, reader.getFilePath());
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("CSVStreamReader{filePath='src/main/java/Input/WA-mammals-csv.csv', "
+        + "header=[animal_name, latin_name, diet, habitat], rowIndex=-1}", reader.toString());
+  }
+}
@@ -0,0 +1,134 @@
+package problem1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import org.junit.Test;
+
+public class CSVTokenizerTest {
+
+  private CSVTokenizer tokenizer(String data) {
+    return new CSVTokenizer(new StringReader(data), true);
+  }
+
+  @Test
+  public void quotedFields() throws IOException {
+    CSVTokenizer tokenizer = tokenizer("\"a\",\"b, c\",\"d\"\n");
+
+    assertTrue(tokenizer.next());
+    assertArrayEquals(new String[]{"a", "b, c", "d"}, tokenizer.getFields());
+    assertFalse(tokenizer.next());
+  }
+
+  @Test
+  public void unquotedAndEmptyFields() throws IOException {
+    CSVTokenizer tokenizer = tokenizer("a,,\"\",d,\n");
+
+    assertTrue(tokenizer.next());
+    assertArrayEquals(new String[]{"a", "", "", "d", ""}, tokenizer.getFields());
+  }
+
+  @Test
+  public void escapedQuotes() throws IOException {
+    CSVTokenizer tokenizer = tokenizer("\"say \"\"hi\"\"\",\"\"\"\"\n");
+
+    assertTrue(tokenizer.next());
+    assertArrayEquals(new String[]{"say \"hi\"", "\""}, tokenizer.getFields());
+  }
+
+  @Test
+  public void multiLineField() throws IOException {
+    CSVTokenizer tokenizer = tokenizer("\"6649 N Blue Gum St\nApt 2\",x\r\nnext,row");
+
+    assertTrue(tokenizer.next());
+    assertArrayEquals(new String[]{"6649 N Blue Gum St\nApt 2", "x"}, tokenizer.getFields());
+    assertEquals("\"6649 N Blue Gum St\nApt 2\",x", tokenizer.getRawRecord());
+
+    assertTrue(tokenizer.next());
+    assertArrayEquals(new String[]{"next", "row"}, tokenizer.getFields());
+    assertEquals("next,row", tokenizer.getRawRecord());
+    assertFalse(tokenizer.next());
+    assertEquals(2, tokenizer.getRecordNumber());
+  }
+
+  @Test
+  public void lineEndingsAndBlankLines() throws IOException {
+    CSVTokenizer tokenizer = tokenizer("a\r\n\r\nb\rc\n\n");
+
+    assertTrue(tokenizer.next());
+    assertEquals("a", tokenizer.getField(0));
+    assertTrue(tokenizer.next());
+    assertEquals("b", tokenizer.getField(0));
+    assertTrue(tokenizer.next());
+    assertEquals("c", tokenizer.getField(0));
+    assertFalse(tokenizer.next());
+  }
+
+  @Test
+  public void appendField() throws IOException {
+    CSVTokenizer tokenizer = tokenizer("\"James\",\"Butt\"");
+    StringBuilder out = new StringBuilder();
+
+    assertTrue(tokenizer.next());
+    tokenizer.appendField(1, out);
+    tokenizer.appendField(0, out);
+    assertEquals("ButtJames", out.toString());
+    assertEquals(2, tokenizer.getFieldCount());
+  }
+
+  @Test
+  public void rawRecordNotKept() throws IOException {
+    CSVTokenizer tokenizer = new CSVTokenizer(new StringReader("a,b"));
+
+    assertTrue(tokenizer.next());
+    assertNull(tokenizer.getRawRecord());
+  }
+
+  @Test
+  public void project() throws IOException {
+    CSVTokenizer tokenizer = tokenizer("a,\"b, b\",c,d\n1,\"2\"\"\",3\n");
+    tokenizer.project(new boolean[]{false, true, true});
+
+    assertTrue(tokenizer.next());
+    assertArrayEquals(new String[]{"", "b, b", "c", ""}, tokenizer.getFields());
+    assertTrue(tokenizer.next());
+    assertArrayEquals(new String[]{"", "2\"", "3"}, tokenizer.getFields());
+    assertEquals("1,\"2\"\"\",3", tokenizer.getRawRecord());
+  }
+
+  @Test
+  public void projection() {
+    assertArrayEquals(new boolean[]{true, false, false, true},
+        CSVTokenizer.projection(Arrays.asList("a", "b", "a", "c"),
+            new HashSet<>(Arrays.asList("a", "c", "missing"))));
+    assertNull(CSVTokenizer.projection(Arrays.asList("a", "b"), null));
+  }
+
+  @Test(expected = IOException.class)
+  public void unterminatedQuote() throws IOException {
+    tokenizer("\"a,b\n").next();
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void missingField() throws IOException {
+    CSVTokenizer tokenizer = tokenizer("a,b");
+
+    tokenizer.next();
+    tokenizer.getField(2);
+  }
+
+  @Test
+  public void testToString() throws IOException {
+    CSVTokenizer tokenizer = tokenizer("a,b");
+
+    tokenizer.next();
+    assertEquals("CSVTokenizer{recordNumber=1, fields=[a, b]}", tokenizer.toString());
+  }
+}
@@ -0,0 +1,202 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompiledTemplateTest {
+
+  private List<String> header;
+  private List<String> lines;
+  private DataRow row;
+  private CompiledTemplate template;
+
+  @Before
+  public void setUp() throws Exception {
+    header = Arrays.asList("first_name", "last_name", "email");
+    lines = Arrays.asList("To:[[email]]", "Dear [[first_name]] [[last_name]],",
+        "No placeholders here.", "[[first_name]][[first_name]]");
+    String[] fields = new String[]{"James", "Butt", "jbutt@gmail.com"};
+    row = column -> fields[column];
+    template = CompiledTemplate.compile(lines);
+  }
+
+  @Test
+  public void getPlaceholders() {
+    assertEquals(Arrays.asList("email", "first_name", "last_name"), template.getPlaceholders());
+  }
+
+  @Test
+  public void getLineCount() {
+    assertEquals(4, template.getLineCount());
+  }
+
+  @Test
+  public void bind() {
+    assertFalse(template.isBound());
+    assertTrue(template.bind(header).isBound());
+  }
+
+  @Test
+  public void writeToAndReadFrom() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    template.writeTo(new DataOutputStream(bytes));
+    CompiledTemplate read = CompiledTemplate.readFrom(
+        new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertEquals(template, read);
+    assertEquals(template.bind(header), read.bind(header));
+  }
+
+  @Test(expected = IOException.class)
+  public void readFromTruncated() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    template.writeTo(new DataOutputStream(bytes));
+    CompiledTemplate.readFrom(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray(), 0, bytes.size() - 3)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void bindMissingKey() {
+    template.bind(Arrays.asList("first_name", "last_name"));
+  }
+
+  @Test
+  public void renderLine() {
+    CompiledTemplate bound = template.bind(header);
+    StringBuilder out = new StringBuilder();
+
+    bound.renderLine(1, row, out);
+    assertEquals("Dear James Butt,", out.toString());
+
+    out.setLength(0);
+    bound.renderLine(3, row, out);
+    assertEquals("JamesJames", out.toString());
+  }
+
+  @Test
+  public void render() {
+    StringBuilder out = new StringBuilder();
+
+    template.bind(header).render(row, out);
+    assertEquals("To:jbutt@gmail.com\nDear James Butt,\nNo placeholders here.\nJamesJames\n",
+        out.toString());
+  }
+
+  @Test
+  public void renderAppendable() throws IOException {
+    String expected = "To:jbutt@gmail.com\nDear James Butt,\nNo placeholders here.\nJamesJames\n";
+    CompiledTemplate bound = template.bind(header);
+    StringWriter writer = new StringWriter();
+    CharBuffer chars = CharBuffer.allocate(256);
+    ByteBuffer bytes = ByteBuffer.allocate(256);
+
+    bound.render(row, writer);
+    bound.render(row, chars);
+    bound.render(row, new ByteBufferAppender(bytes));
+
+    assertEquals(expected, writer.toString());
+    assertEquals(expected, ((CharBuffer) chars.flip()).toString());
+    assertEquals(expected, new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void renderAppendableRecordStoreRow() throws IOException {
+    RecordStore store = supporters();
+    CharBuffer chars = CharBuffer.allocate(256);
+    StringBuilder expected = new StringBuilder();
+    CompiledTemplate bound = template.bind(store.getHeader());
+
+    bound.render(store.row(1), expected);
+    bound.render(store.row(1), chars);
+
+    assertEquals(expected.toString(), ((CharBuffer) chars.flip()).toString());
+  }
+
+  @Test
+  public void renderDoesNotAllocate() throws IOException {
+    RecordStore store = supporters();
+    RecordStore.Row storeRow = store.row(0);
+    CompiledTemplate bound = template.bind(store.getHeader());
+    StringBuilder builder = new StringBuilder(256);
+    CharBuffer chars = CharBuffer.allocate(256);
+    ByteBufferAppender bytes = new ByteBufferAppender(ByteBuffer.allocateDirect(256));
+
+    // Warm up, so that classes are loaded and the buffers have grown to their final size
+    for (int i = 0; i < 20000; i++) {
+      renderEach(bound, storeRow, i, builder, chars, bytes);
+    }
+
+    long overhead = -allocatedBytes() + allocatedBytes();
+    long start = allocatedBytes();
+
+    for (int i = 0; i < 10000; i++) {
+      renderEach(bound, storeRow, i, builder, chars, bytes);
+    }
+
+    long allocated = allocatedBytes() - start - overhead;
+    assertTrue("Rendering 10000 rows allocated " + allocated + " bytes", allocated < 256);
+  }
+
+  private static void renderEach(CompiledTemplate bound, RecordStore.Row row, int i,
+      StringBuilder builder, CharBuffer chars, ByteBufferAppender bytes) throws IOException {
+    row.moveTo(i % 3);
+
+    builder.setLength(0);
+    bound.render(row, builder);
+    chars.clear();
+    bound.render(row, chars);
+    bytes.getBuffer().clear();
+    bound.render(row, bytes);
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static RecordStore supporters() {
+    Map<String, List<String>> columns = new LinkedHashMap<>();
+    columns.put("email", Arrays.asList("jbutt@gmail.com", "josephine@x.org", "art@venere.org"));
+    columns.put("first_name", Arrays.asList("James", "Jos\u00e9phine", "Art"));
+    columns.put("last_name", Arrays.asList("Butt", "Darakjy", "Venere \ud83d\ude00"));
+    return RecordStore.fromColumns(columns);
+  }
+
+  @Test
+  public void testEquals() {
+    assertEquals(template, CompiledTemplate.compile(lines));
+    assertEquals(template.bind(header), CompiledTemplate.compile(lines).bind(header));
+    assertNotEquals(template, template.bind(header));
+    assertNotEquals(template, null);
+  }
+
+  @Test
+  public void testHashCode() {
+    assertEquals(template.hashCode(), CompiledTemplate.compile(lines).hashCode());
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("CompiledTemplate{lines=4, placeholders=[email, first_name, last_name], "
+        + "columns=[2, 0, 1]}", template.bind(header).toString());
+  }
+}
@@ -0,0 +1,98 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileWriterPoolTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path dir;
+  private FileWriterPool pool;
+
+  @Before
+  public void setUp() throws Exception {
+    dir = temp.newFolder("writer-pool").toPath();
+    pool = new FileWriterPool(3);
+  }
+
+  @After
+  public void tearDown() {
+    pool.close();
+  }
+
+  private String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void write() throws IOException {
+    ByteBuffer bytes = ByteBuffer.wrap("firstsecondthird".getBytes(StandardCharsets.UTF_8));
+    List<Path> files = Arrays.asList(dir.resolve("a.txt"), dir.resolve("b.txt"),
+        dir.resolve("c.txt"));
+
+    pool.write(bytes, files, Arrays.asList(5, 11, 16)).await();
+
+    assertEquals("first", read(files.get(0)));
+    assertEquals("second", read(files.get(1)));
+    assertEquals("third", read(files.get(2)));
+    // The buffer itself is left untouched
+    assertEquals(0, bytes.position());
+  }
+
+  @Test
+  public void writeEmptyBatch() throws IOException {
+    pool.write(ByteBuffer.allocate(0), Arrays.asList(), Arrays.asList()).await();
+
+    assertEquals(0, dir.toFile().list().length);
+  }
+
+  @Test
+  public void writeReportsFailure() {
+    ByteBuffer bytes = ByteBuffer.wrap("ab".getBytes(StandardCharsets.UTF_8));
+    List<Path> files = Arrays.asList(dir.resolve("missing").resolve("a.txt"),
+        dir.resolve("b.txt"));
+
+    FileWriterPool.Batch batch = pool.write(bytes, files, Arrays.asList(1, 2));
+
+    try {
+      batch.await();
+    } catch (IOException e) {
+      // The other files of the batch are still written
+      assertTrue(Files.exists(dir.resolve("b.txt")));
+      assertFalse(Files.exists(dir.resolve("missing")));
+      return;
+    }
+    throw new AssertionError("Expected an IOException.");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void constructorInvalidConcurrency() {
+    new FileWriterPool(0);
+  }
+
+  @Test
+  public void getConcurrency() {
+    assertEquals(3, pool.getConcurrency());
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("FileWriterPool{concurrency=3}", pool.toString());
+  }
+}
@@ -0,0 +1,160 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JobCheckpointTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path outputDir;
+  private Map<String, Long> templateHashes;
+  private JobCheckpoint checkpoint;
+
+  @Before
+  public void setUp() throws Exception {
+    outputDir = temp.newFolder("checkpoint-output").toPath();
+    templateHashes = new LinkedHashMap<>();
+    templateHashes.put("email-template.txt", 0xabcL);
+    templateHashes.put("letter template.txt", 0x123L);
+    checkpoint = new JobCheckpoint(templateHashes, 10, -2L, JobCheckpoint.partition(10, 3, 2));
+  }
+
+  @Test
+  public void partition() {
+    List<JobCheckpoint.Range> ranges = JobCheckpoint.partition(10, 3, 2);
+
+    assertEquals(3, ranges.size());
+    assertEquals(0, ranges.get(0).getFrom());
+    assertEquals(4, ranges.get(0).getTo());
+    assertEquals(8, ranges.get(2).getFrom());
+    assertEquals(10, ranges.get(2).getTo());
+    assertEquals(4, ranges.get(1).getNext(1));
+    assertEquals(0, ranges.get(1).getBytes(1));
+    assertEquals(2, JobCheckpoint.partition(2, 4, 1).size());
+    assertTrue(JobCheckpoint.partition(0, 4, 1).isEmpty());
+  }
+
+  @Test
+  public void advanceAndRead() throws IOException {
+    JobCheckpoint.Range range = checkpoint.getRanges().get(1);
+    checkpoint.advance(range, 6, new long[]{20, 30}, outputDir.toString());
+
+    JobCheckpoint read = JobCheckpoint.read(outputDir.toString());
+    assertEquals(checkpoint, read);
+    assertEquals(6, read.getRanges().get(1).getNext(0));
+    assertEquals(30, read.getRanges().get(1).getBytes(1));
+    assertEquals(0, read.getRanges().get(0).getNext(0));
+    assertEquals(-2L, read.getDataHash());
+    assertEquals(Arrays.asList("template-checkpoint 1", "template email-template.txt abc",
+        "template letter template.txt 123", "rows 10 fffffffffffffffe", "range 0 4 0 0 0 0",
+        "range 4 8 6 20 6 30", "range 8 10 8 0 8 0"),
+        Files.readAllLines(outputDir.resolve(JobCheckpoint.FILE_NAME)));
+    assertFalse(Files.exists(outputDir.resolve(JobCheckpoint.FILE_NAME + ".tmp")));
+  }
+
+  @Test
+  public void advanceKeepsLaterRows() throws IOException {
+    JobCheckpoint.Range range = checkpoint.getRanges().get(0);
+    checkpoint.advance(range, 3, new long[]{9, 12}, outputDir.toString());
+    range.restart(0);
+    checkpoint.advance(range, 1, new long[]{4, 5}, outputDir.toString());
+
+    assertEquals(1, range.getNext(0));
+    assertEquals(4, range.getBytes(0));
+    assertEquals(3, range.getNext(1));
+    assertEquals(12, range.getBytes(1));
+  }
+
+  @Test
+  public void readMissing() throws IOException {
+    assertNull(JobCheckpoint.read(outputDir.toString()));
+  }
+
+  @Test(expected = IOException.class)
+  public void readInvalid() throws IOException {
+    Files.write(outputDir.resolve(JobCheckpoint.FILE_NAME),
+        "template-manifest 1\n".getBytes(StandardCharsets.UTF_8));
+    JobCheckpoint.read(outputDir.toString());
+  }
+
+  @Test(expected = IOException.class)
+  public void readInvalidRange() throws IOException {
+    Files.write(outputDir.resolve(JobCheckpoint.FILE_NAME),
+        "template-checkpoint 1\ntemplate a.txt 1\nrows 4 0\nrange 0 4 5 0\n"
+            .getBytes(StandardCharsets.UTF_8));
+    JobCheckpoint.read(outputDir.toString());
+  }
+
+  @Test(expected = IOException.class)
+  public void readMissingHash() throws IOException {
+    Files.write(outputDir.resolve(JobCheckpoint.FILE_NAME),
+        "template-checkpoint 1\nrows 4\n".getBytes(StandardCharsets.UTF_8));
+    JobCheckpoint.read(outputDir.toString());
+  }
+
+  @Test
+  public void delete() throws IOException {
+    checkpoint.write(outputDir.toString());
+    JobCheckpoint.delete(outputDir.toString());
+    JobCheckpoint.delete(outputDir.toString());
+
+    assertNull(JobCheckpoint.read(outputDir.toString()));
+  }
+
+  @Test
+  public void shardCheckpoints() throws IOException {
+    String name = JobCheckpoint.fileName(new Shard(1, 4));
+    checkpoint.advance(checkpoint.getRanges().get(0), 2, new long[]{7, 8}, outputDir.toString(),
+        name);
+
+    assertEquals(JobCheckpoint.FILE_NAME, JobCheckpoint.fileName(null));
+    assertEquals(".template-checkpoint-1-of-4", name);
+    assertNull(JobCheckpoint.read(outputDir.toString()));
+    assertEquals(2, JobCheckpoint.read(outputDir.toString(), name).getRanges().get(0).getNext(0));
+
+    JobCheckpoint.delete(outputDir.toString(), name);
+    assertNull(JobCheckpoint.read(outputDir.toString(), name));
+  }
+
+  @Test
+  public void matches() {
+    Map<String, Long> reordered = new LinkedHashMap<>();
+    reordered.put("letter template.txt", 0x123L);
+    reordered.put("email-template.txt", 0xabcL);
+    List<JobCheckpoint.Range> none = Collections.emptyList();
+
+    assertTrue(checkpoint.matches(new JobCheckpoint(templateHashes, 10, -2L, none)));
+    assertFalse(checkpoint.matches(new JobCheckpoint(reordered, 10, -2L, none)));
+    assertFalse(checkpoint.matches(new JobCheckpoint(templateHashes, 11, -2L, none)));
+    assertFalse(checkpoint.matches(new JobCheckpoint(templateHashes, 10, 5L, none)));
+    assertFalse(checkpoint.matches(null));
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("JobCheckpoint{templateHashes={email-template.txt=2748, "
+            + "letter template.txt=291}, rows=10, ranges=["
+            + "Range{from=0, to=4, next=[0, 0], bytes=[0, 0]}, "
+            + "Range{from=4, to=8, next=[4, 4], bytes=[0, 0]}, "
+            + "Range{from=8, to=10, next=[8, 8], bytes=[0, 0]}]}",
+        checkpoint.toString());
+  }
+}
@@ -0,0 +1,154 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JobDaemonTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path spoolDir;
+  private Path inputDir;
+  private Path csv;
+  private Path template;
+
+  @Before
+  public void setUp() throws Exception {
+    Path root = temp.newFolder("daemon").toPath();
+    spoolDir = root.resolve("spool");
+    inputDir = Files.createDirectory(root.resolve("input"));
+    csv = copyInput("nonprofit-supporters.csv");
+    template = copyInput("email-template.txt");
+  }
+
+  /**
+   * Copies an input file, with a modification time old enough to be trusted by the caches.
+   */
+  private Path copyInput(String name) throws IOException {
+    Path copy = Files.copy(Paths.get("src/main/java/Input", name), inputDir.resolve(name));
+    Files.setLastModifiedTime(copy, FileTime.fromMillis(0));
+    return copy;
+  }
+
+  private Path submit(String name, String... args) throws IOException {
+    Files.createDirectories(spoolDir);
+    Path temp = Files.write(spoolDir.resolve(name + ".tmp"), Arrays.asList(args));
+    return Files.move(temp, spoolDir.resolve(name + JobDaemon.JOB_EXTENSION));
+  }
+
+  private Path submitJob(String name) throws IOException {
+    Path outputDir = Files.createDirectories(inputDir.resolve(name));
+    submit(name, "--email", "--email-template", template.toString(),
+        "--output-dir", outputDir.toString(), "--csv-file", csv.toString());
+    return outputDir;
+  }
+
+  private JobDaemon newDaemon(int workers) throws IOException {
+    return new JobDaemon(spoolDir, workers, new TemplateCache(), new RecordCache());
+  }
+
+  @Test
+  public void submitPending() throws IOException {
+    JobDaemon daemon = newDaemon(1);
+    Path first = submitJob("first");
+    Path second = submitJob("second");
+
+    assertEquals(2, daemon.submitPending());
+    daemon.close();
+
+    assertEquals(500, first.toFile().list().length);
+    assertEquals(500, second.toFile().list().length);
+    assertTrue(new String(Files.readAllBytes(spoolDir.resolve("first.done")),
+        StandardCharsets.UTF_8).startsWith("stage"));
+    assertTrue(Files.exists(spoolDir.resolve("second.done")));
+    assertEquals(2, spoolDir.toFile().list().length);
+
+    // The second job reused the data and template of the first. Each job looks its template up
+    // twice, once for the columns it references and once to render it
+    assertEquals(1, daemon.getRecordCache().getMisses());
+    assertEquals(1, daemon.getRecordCache().getHits());
+    assertEquals(1, daemon.getTemplateCache().getMisses());
+    assertEquals(3, daemon.getTemplateCache().getHits());
+  }
+
+  @Test
+  public void submitPendingFailedJob() throws IOException {
+    JobDaemon daemon = newDaemon(2);
+    submit("broken", "--email", "--output-dir", inputDir.toString());
+
+    assertEquals(1, daemon.submitPending());
+    daemon.close();
+
+    List<String> failure = Files.readAllLines(spoolDir.resolve("broken.failed"));
+    assertTrue(failure.get(0).contains("MissingDependentOptionException"));
+    assertFalse(Files.exists(spoolDir.resolve("broken.running")));
+  }
+
+  @Test
+  public void resubmitsRunningJobs() throws IOException {
+    Path outputDir = submitJob("interrupted");
+    Files.move(spoolDir.resolve("interrupted.job"), spoolDir.resolve("interrupted.running"));
+
+    JobDaemon daemon = newDaemon(1);
+    assertEquals(1, daemon.submitPending());
+    assertEquals(0, daemon.submitPending());
+    daemon.close();
+
+    assertEquals(500, outputDir.toFile().list().length);
+    assertTrue(Files.exists(spoolDir.resolve("interrupted.done")));
+  }
+
+  @Test
+  public void run() throws Exception {
+    JobDaemon daemon = newDaemon(2);
+    Thread serving = new Thread(() -> {
+      try {
+        daemon.run();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+    serving.start();
+
+    Path outputDir = submitJob("watched");
+    Path done = spoolDir.resolve("watched.done");
+    for (int i = 0; i < 200 && !Files.exists(done); i++) {
+      Thread.sleep(50);
+    }
+
+    daemon.stop();
+    serving.join(10000);
+
+    assertFalse(serving.isAlive());
+    assertTrue(Files.exists(done));
+    assertEquals(500, outputDir.toFile().list().length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidWorkers() throws IOException {
+    newDaemon(0);
+  }
+
+  @Test
+  public void testToString() throws IOException {
+    assertEquals("JobDaemon{spoolDir=" + spoolDir + ", workers=1, "
+            + "templateCache=TemplateCache{capacity=64, directory=null, size=0}, "
+            + "recordCache=RecordCache{capacity=4, size=0}}",
+        newDaemon(1).toString());
+  }
+}
@@ -0,0 +1,102 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class JsonRecordsTest {
+
+  @Test
+  public void parseRecord() {
+    Map<String, String> expected = new LinkedHashMap<>();
+    expected.put("first_name", "James");
+    expected.put("zip", "70116");
+    expected.put("member", "true");
+    expected.put("phone2", "");
+
+    Map<String, String> record = JsonRecords.parseRecord(
+        " {\"first_name\": \"James\", \"zip\": 70116, \"member\": true, \"phone2\": null} ");
+
+    assertEquals(expected, record);
+    assertEquals(Arrays.asList("first_name", "zip", "member", "phone2"),
+        Arrays.asList(record.keySet().toArray()));
+  }
+
+  @Test
+  public void parseRecordEscapes() {
+    Map<String, String> record = JsonRecords.parseRecord(
+        "{\"text\": \"a \\\"quote\\\",\\nline\\u00e9\\/\"}");
+
+    assertEquals("a \"quote\",\nline\u00e9/", record.get("text"));
+  }
+
+  @Test
+  public void parseRecordEmpty() {
+    assertEquals(Collections.emptyMap(), JsonRecords.parseRecord("{}"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseRecordNested() {
+    JsonRecords.parseRecord("{\"address\": {\"city\": \"Brighton\"}}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseRecordInvalidLiteral() {
+    JsonRecords.parseRecord("{\"zip\": 0701}");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseRecordTrailingText() {
+    JsonRecords.parseRecord("{\"zip\": \"70116\"} {}");
+  }
+
+  @Test
+  public void parseRecordErrorOffset() {
+    try {
+      JsonRecords.parseRecord("{\"zip\" \"70116\"}");
+    } catch (IllegalArgumentException e) {
+      assertEquals("Expected ':' at offset 7.", e.getMessage());
+      return;
+    }
+    throw new AssertionError("Expected an IllegalArgumentException.");
+  }
+
+  @Test
+  public void parseArray() {
+    List<Object> elements = JsonRecords.parseArray(
+        "[{\"first_name\": \"James\"}, \"jbutt@gmail.com\"]");
+
+    assertEquals(Collections.singletonMap("first_name", "James"), elements.get(0));
+    assertEquals("jbutt@gmail.com", elements.get(1));
+    assertEquals(2, elements.size());
+  }
+
+  @Test
+  public void parseArrayEmpty() {
+    assertEquals(Collections.emptyList(), JsonRecords.parseArray(" [ ] "));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseArrayUnterminated() {
+    JsonRecords.parseArray("[\"jbutt@gmail.com\"");
+  }
+
+  @Test
+  public void quote() {
+    assertEquals("\"Dear \\\"James\\\",\\n\\tC:\\\\\\u0001\"",
+        JsonRecords.quote("Dear \"James\",\n\tC:\\\u0001", new StringBuilder()).toString());
+  }
+
+  @Test
+  public void quoteRoundTrip() {
+    String value = "To:jbutt@gmail.com\r\nDear \"James\" \\ Butt,\n";
+    String json = "{\"text\": " + JsonRecords.quote(value, new StringBuilder()) + "}";
+
+    assertEquals(value, JsonRecords.parseRecord(json).get("text"));
+  }
+}
@@ -0,0 +1,90 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  private LatencyHistogram histogram;
+
+  @Before
+  public void setUp() {
+    histogram = new LatencyHistogram();
+  }
+
+  @Test
+  public void getPercentileEmpty() {
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void getPercentile() {
+    for (int i = 0; i < 98; i++) {
+      histogram.record(600);
+    }
+    histogram.record(5000);
+    histogram.record(1000000);
+
+    assertEquals(100, histogram.getCount());
+    // 600ns lies in [512, 1024)
+    assertEquals(1023, histogram.getPercentile(50));
+    assertEquals(1023, histogram.getPercentile(98));
+    // 5000ns lies in [4096, 8192)
+    assertEquals(8191, histogram.getPercentile(99));
+    assertEquals((1L << 20) - 1, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void getPercentileUpperBound() {
+    histogram.record(1);
+    histogram.record(1023);
+    histogram.record(1024);
+
+    assertEquals(1, histogram.getPercentile(0));
+    assertEquals(1023, histogram.getPercentile(66));
+    assertEquals(2047, histogram.getPercentile(100));
+  }
+
+  @Test
+  public void recordNonPositive() {
+    histogram.record(0);
+    histogram.record(-5);
+
+    assertEquals(2, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(100));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getPercentileOutOfRange() {
+    histogram.getPercentile(101);
+  }
+
+  @Test
+  public void recordConcurrently() throws InterruptedException {
+    Thread[] threads = new Thread[4];
+
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        for (int j = 0; j < 10000; j++) {
+          histogram.record(j);
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(40000, histogram.getCount());
+  }
+
+  @Test
+  public void testToString() {
+    histogram.record(600);
+
+    assertEquals("LatencyHistogram{count=1, p50=1023, p99=1023}", histogram.toString());
+  }
+}
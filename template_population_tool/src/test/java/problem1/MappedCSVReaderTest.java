@@ -0,0 +1,151 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCSVReaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private String validTestPath;
+  private MappedCSVReader reader;
+
+  @Before
+  public void setUp() throws Exception {
+    validTestPath = "src/main/java/Input/WA-mammals-csv.csv";
+    reader = new MappedCSVReader(validTestPath);
+  }
+
+  private String write(String data) throws IOException {
+    File csv = temp.newFile("mapped.csv");
+    Files.write(csv.toPath(), data.getBytes(StandardCharsets.UTF_8));
+    return csv.getPath();
+  }
+
+  @Test(expected = NoSuchFileException.class)
+  public void fileNotFound() throws IOException {
+    new MappedCSVReader("src/main/java/Input/non-existent-csv.csv");
+  }
+
+  @Test
+  public void getHeader() {
+    assertEquals(Arrays.asList("animal_name", "latin_name", "diet", "habitat"),
+        reader.getHeader());
+  }
+
+  @Test
+  public void next() throws IOException {
+    assertTrue(reader.next());
+    assertEquals(0, reader.getRowIndex());
+    assertEquals("river otter", reader.getField(0));
+    assertEquals("fish, snakes, and snails", reader.getField(2));
+
+    assertTrue(reader.next());
+    assertTrue(reader.next());
+    assertEquals("coniferous forests", reader.getField(3));
+    assertEquals("", reader.getField(4));
+
+    assertFalse(reader.next());
+    reader.close();
+  }
+
+  @Test
+  public void matchesTokenizer() throws IOException {
+    String path = "src/main/java/Input/nonprofit-supporters.csv";
+    CSVStreamReader expected = new CSVStreamReader(path);
+    // A small window forces records to straddle the end of the mapping
+    MappedCSVReader mapped = new MappedCSVReader(path, 100);
+    StringBuilder out = new StringBuilder();
+
+    assertEquals(expected.getHeader(), mapped.getHeader());
+
+    while (expected.next()) {
+      assertTrue(mapped.next());
+      for (int i = 0; i < expected.getHeader().size(); i++) {
+        out.setLength(0);
+        mapped.appendField(i, out);
+        assertEquals(expected.getField(i), out.toString());
+      }
+    }
+
+    assertFalse(mapped.next());
+    expected.close();
+    mapped.close();
+  }
+
+  @Test
+  public void quotingAndEncoding() throws IOException {
+    MappedCSVReader mapped = new MappedCSVReader(
+        write("name,note\r\n\"Zoë\",\"say \"\"hi\"\"\nagain\"\r\n\r\nplain,\"\"\r\n"), 8);
+    StringBuilder out = new StringBuilder();
+
+    assertTrue(mapped.next());
+    mapped.appendField(0, out);
+    assertEquals("Zoë", out.toString());
+    assertEquals("say \"hi\"\nagain", mapped.getField(1));
+
+    assertTrue(mapped.next());
+    assertEquals("plain", mapped.getField(0));
+    assertEquals("", mapped.getField(1));
+    assertFalse(mapped.next());
+  }
+
+  @Test
+  public void quotesOutsideQuotedFieldsMatchTokenizer() throws IOException {
+    // A quote inside an unquoted field, or after a closing quote, is kept as a character
+    String path = write("item,size,note\n12\" pipe,x,ok\n\"a\"b,\"c\"\"d\",e\"\"\n"
+        + "last,\"\",\"\"\"\"\n");
+    CSVStreamReader expected = new CSVStreamReader(path);
+    MappedCSVReader mapped = new MappedCSVReader(path, 8);
+    int rows = 0;
+
+    while (expected.next()) {
+      assertTrue(mapped.next());
+      for (int i = 0; i < expected.getHeader().size(); i++) {
+        assertEquals(expected.getField(i), mapped.getField(i));
+      }
+      if (rows == 0) {
+        assertEquals("12\" pipe", mapped.getField(0));
+        assertEquals("x", mapped.getField(1));
+      }
+      rows++;
+    }
+
+    assertFalse(mapped.next());
+    assertEquals(3, rows);
+    expected.close();
+    mapped.close();
+  }
+
+  @Test
+  public void emptyFile() throws IOException {
+    MappedCSVReader mapped = new MappedCSVReader(write(""));
+
+    assertEquals(0, mapped.getHeader().size());
+    assertFalse(mapped.next());
+  }
+
+  @Test(expected = IOException.class)
+  public void unterminatedQuote() throws IOException {
+    new MappedCSVReader(write("a,b\n\"open,x\n")).next();
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("MappedCSVReader{filePath='src/main/java/Input/WA-mammals-csv.csv', "
+        + "header=[animal_name, latin_name, diet, habitat], rowIndex=-1}", reader.toString());
+  }
+}
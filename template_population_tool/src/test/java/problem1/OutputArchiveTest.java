@@ -0,0 +1,140 @@
+package problem1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutputArchiveTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path outputDir;
+
+  @Before
+  public void setUp() throws Exception {
+    outputDir = temp.newFolder("archive-output").toPath();
+  }
+
+  private static String read(ZipFile zip, ZipEntry entry) throws IOException {
+    byte[] bytes = new byte[(int) entry.getSize()];
+
+    try (DataInputStream in = new DataInputStream(zip.getInputStream(entry))) {
+      in.readFully(bytes);
+    }
+
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void addEntryZip() throws IOException {
+    OutputArchive archive = OutputArchive.open(OutputArchive.Format.ZIP, outputDir.toString());
+
+    archive.addEntry("email-template0.txt", "Dear John,\n");
+    archive.addEntry("email-template1.txt", "Don’t forget\n");
+    archive.close();
+
+    assertEquals(outputDir.resolve("templates.zip").toFile(), archive.getFile());
+
+    try (ZipFile zip = new ZipFile(archive.getFile())) {
+      assertEquals(2, zip.size());
+      assertEquals("Dear John,\n", read(zip, zip.getEntry("email-template0.txt")));
+      assertEquals("Don’t forget\n", read(zip, zip.getEntry("email-template1.txt")));
+    }
+  }
+
+  @Test
+  public void addEntryTar() throws IOException {
+    OutputArchive archive = OutputArchive.open(OutputArchive.Format.TAR, outputDir.toString());
+    StringBuilder large = new StringBuilder();
+
+    for (int i = 0; i < 200; i++) {
+      large.append("line ").append(i).append('\n');
+    }
+
+    archive.addEntry("letter-template0.txt", "short\n");
+    archive.addEntry("letter-template1.txt", large);
+    archive.close();
+
+    byte[] tar = Files.readAllBytes(archive.getFile().toPath());
+    int offset = 0;
+
+    assertEquals(0, tar.length % 512);
+
+    for (String expected : new String[]{"short\n", large.toString()}) {
+      String name = new String(tar, offset, 100, StandardCharsets.US_ASCII).trim();
+      int size = Integer.parseInt(new String(tar, offset + 124, 11, StandardCharsets.US_ASCII), 8);
+      int checksum = Integer.parseInt(
+          new String(tar, offset + 148, 6, StandardCharsets.US_ASCII), 8);
+      int sum = 0;
+
+      for (int i = 0; i < 512; i++) {
+        sum += i >= 148 && i < 156 ? ' ' : tar[offset + i] & 0xff;
+      }
+
+      assertTrue(name.startsWith("letter-template"));
+      assertEquals("ustar", new String(tar, offset + 257, 5, StandardCharsets.US_ASCII));
+      assertEquals(sum, checksum);
+      assertEquals(expected, new String(tar, offset + 512, size, StandardCharsets.UTF_8));
+      offset += 512 + (size + 511) / 512 * 512;
+    }
+
+    // The archive ends with two empty blocks
+    assertEquals(tar.length, offset + 1024);
+    assertArrayEquals(new byte[1024], Arrays.copyOfRange(tar, offset, tar.length));
+  }
+
+  @Test(expected = IOException.class)
+  public void addEntryTarNameTooLong() throws IOException {
+    try (OutputArchive archive = OutputArchive.open(OutputArchive.Format.TAR,
+        outputDir.toString())) {
+      archive.addEntry(String.join("", Collections.nCopies(101, "a")), "text");
+    }
+  }
+
+  @Test
+  public void addEntryConcat() throws IOException {
+    OutputArchive archive = OutputArchive.open(OutputArchive.Format.CONCAT,
+        outputDir.toString());
+
+    archive.addEntry("email-template0.txt", "café\n");
+    archive.addEntry("email-template1.txt", "tea\n");
+    archive.close();
+
+    File indexFile = ((OutputArchive.Concat) archive).getIndexFile();
+    assertEquals(outputDir.resolve("templates.idx").toFile(), indexFile);
+    assertEquals(outputDir.resolve("templates.txt").toFile(), archive.getFile());
+    assertEquals("café\ntea\n",
+        new String(Files.readAllBytes(archive.getFile().toPath()), StandardCharsets.UTF_8));
+    assertEquals(Arrays.asList("email-template0.txt\t0\t6", "email-template1.txt\t6\t4"),
+        Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8));
+  }
+
+  @Test(expected = IOException.class)
+  public void openMissingDirectory() throws IOException {
+    OutputArchive.open(OutputArchive.Format.ZIP, outputDir.resolve("missing").toString());
+  }
+
+  @Test
+  public void testToString() throws IOException {
+    try (OutputArchive archive = OutputArchive.open(OutputArchive.Format.ZIP,
+        outputDir.toString())) {
+      assertEquals("Zip{file=" + outputDir.resolve("templates.zip") + "}", archive.toString());
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutputDeduplicatorTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path outputDir;
+
+  @Before
+  public void setUp() throws Exception {
+    outputDir = temp.newFolder("dedup-output").toPath();
+  }
+
+  private static void write(Path file, String text) throws IOException {
+    Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String read(Path file) throws IOException {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void claim() {
+    OutputDeduplicator dedup = new OutputDeduplicator(OutputDeduplicator.Mode.INDEX);
+
+    assertNull(dedup.claim("a.txt", "Dear Jo,\n"));
+    assertNull(dedup.claim("b.txt", "Dear Al,\n"));
+    assertEquals("a.txt", dedup.claim("c.txt", new StringBuilder("Dear Jo,\n")));
+    assertEquals("b.txt", dedup.claim("d.txt", "Dear Al,\n"));
+    // Claiming the first output again does not make it a duplicate of itself
+    assertNull(dedup.claim("a.txt", "Dear Jo,\n"));
+
+    assertEquals(2, dedup.getUnique());
+    assertEquals(2, dedup.getDuplicates());
+  }
+
+  @Test
+  public void claimLargeDocuments() {
+    OutputDeduplicator dedup = new OutputDeduplicator(OutputDeduplicator.Mode.INDEX);
+    StringBuilder document = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      document.append("café ").append(i % 7);
+    }
+
+    assertNull(dedup.claim("a.txt", document));
+    assertEquals("a.txt", dedup.claim("b.txt", document.toString()));
+    // Documents longer than a chunk still differ by their last character
+    document.setCharAt(document.length() - 1, '!');
+    assertNull(dedup.claim("c.txt", document));
+  }
+
+  @Test
+  public void finishLinks() throws IOException {
+    OutputDeduplicator dedup = new OutputDeduplicator(OutputDeduplicator.Mode.LINK);
+    write(outputDir.resolve("a.txt"), "same\n");
+    write(outputDir.resolve("c.txt"), "stale\n");
+    write(outputDir.resolve(OutputDeduplicator.INDEX_FILE), "c.txt\ta.txt\n");
+
+    dedup.claim("a.txt", "same\n");
+    dedup.claim("b.txt", "same\n");
+    dedup.claim("c.txt", "same\n");
+    dedup.finish(outputDir.toString(), null);
+
+    assertTrue(Files.isSameFile(outputDir.resolve("a.txt"), outputDir.resolve("b.txt")));
+    assertTrue(Files.isSameFile(outputDir.resolve("a.txt"), outputDir.resolve("c.txt")));
+    assertEquals("same\n", read(outputDir.resolve("c.txt")));
+    assertFalse(Files.exists(outputDir.resolve(OutputDeduplicator.INDEX_FILE)));
+  }
+
+  @Test
+  public void finishIndex() throws IOException {
+    OutputDeduplicator dedup = new OutputDeduplicator(OutputDeduplicator.Mode.INDEX);
+    Shard shard = new Shard(1, 4);
+    write(outputDir.resolve("a.txt"), "same\n");
+    write(outputDir.resolve("c.txt"), "stale\n");
+
+    dedup.claim("a.txt", "same\n");
+    dedup.claim("c.txt", "same\n");
+    dedup.claim("b.txt", "same\n");
+    dedup.finish(outputDir.toString(), shard);
+
+    Map<String, String> expected = new LinkedHashMap<>();
+    expected.put("b.txt", "a.txt");
+    expected.put("c.txt", "a.txt");
+    Path index = outputDir.resolve(".template-duplicates-1-of-4");
+
+    assertEquals(".template-duplicates-1-of-4", OutputDeduplicator.indexFileName(shard));
+    assertEquals(expected, OutputDeduplicator.readIndex(index));
+    assertEquals("b.txt\ta.txt\nc.txt\ta.txt\n", read(index));
+    // The stale file of a duplicate is removed, as the index now describes it
+    assertFalse(Files.exists(outputDir.resolve("c.txt")));
+    assertEquals(2, outputDir.toFile().list().length);
+  }
+
+  @Test
+  public void finishWithoutDuplicates() throws IOException {
+    OutputDeduplicator dedup = new OutputDeduplicator(OutputDeduplicator.Mode.INDEX);
+    dedup.claim("a.txt", "one\n");
+    dedup.finish(outputDir.toString(), null);
+
+    assertEquals(Collections.emptyMap(),
+        OutputDeduplicator.readIndex(outputDir.resolve(OutputDeduplicator.INDEX_FILE)));
+  }
+
+  @Test(expected = IOException.class)
+  public void readInvalidIndex() throws IOException {
+    Path index = outputDir.resolve(OutputDeduplicator.INDEX_FILE);
+    write(index, "a.txt b.txt\n");
+    OutputDeduplicator.readIndex(index);
+  }
+
+  @Test
+  public void testToString() {
+    OutputDeduplicator dedup = new OutputDeduplicator(OutputDeduplicator.Mode.LINK);
+    dedup.claim("a.txt", "one\n");
+
+    assertEquals("OutputDeduplicator{mode=LINK, unique=1, duplicates=0}", dedup.toString());
+  }
+}
@@ -0,0 +1,226 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutputLayoutTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static RecordStore records() {
+    RecordStore records = new RecordStore(Arrays.asList("id", "email"));
+    records.addRow(new ArrayRow("7", "jo.doe@example.com"), 2);
+    records.addRow(new ArrayRow("../x", "a b"), 2);
+    return records;
+  }
+
+  @Test
+  public void defaultPatternIsFlat() {
+    assertEquals("email-template3.txt", OutputLayout.FLAT.getPath("email-template", 3, null));
+    assertEquals(OutputLayout.DEFAULT_NAME_PATTERN, OutputLayout.FLAT.getNamePattern());
+    assertFalse(OutputLayout.FLAT.usesColumns());
+    assertTrue(OutputLayout.FLAT.getDirectories().isEmpty());
+  }
+
+  @Test
+  public void columnPattern() {
+    RecordStore records = records();
+    OutputLayout layout = new OutputLayout.OutputLayoutBuilder()
+        .namePattern("{template}-{id}-{email}.eml")
+        .build();
+
+    assertEquals(new HashSet<>(Arrays.asList("id", "email")), layout.getColumns());
+    assertTrue(layout.usesColumns());
+
+    OutputLayout bound = layout.bind(records.getHeader());
+    assertEquals("letter-7-jo_doe@example_com.eml", bound.getName("letter", 0, records.row(0)));
+    // Column values can never name another directory
+    assertEquals("letter-___x-a_b.eml", bound.getName("letter", 1, records.row(1)));
+  }
+
+  @Test
+  public void claimColumnPattern() throws IOException {
+    OutputLayout bound = new OutputLayout.OutputLayoutBuilder()
+        .namePattern("{email}.txt")
+        .build()
+        .bind(Arrays.asList("id", "email"));
+    bound.claim("a_b.txt", 0);
+
+    try {
+      // "a.b" and "a_b" are both sanitized to the same name
+      bound.claim("a_b.txt", 3);
+      throw new AssertionError("Expected the second claim to fail.");
+    } catch (IOException e) {
+      assertEquals("The file-name pattern {email}.txt gives the outputs of rows 0 and 3 the same"
+          + " name, a_b.txt; add {row} to the pattern.", e.getMessage());
+    }
+
+    // A layout bound for another run starts over
+    new OutputLayout.OutputLayoutBuilder()
+        .namePattern("{email}.txt")
+        .build()
+        .bind(Arrays.asList("id", "email"))
+        .claim("a_b.txt", 3);
+  }
+
+  @Test
+  public void claimRowPattern() throws IOException {
+    OutputLayout bound = new OutputLayout.OutputLayoutBuilder()
+        .namePattern("{email}-{row}.txt")
+        .build()
+        .bind(Arrays.asList("id", "email"));
+
+    // Names with the row are unique, so they are not remembered
+    bound.claim("a-0.txt", 0);
+    bound.claim("a-0.txt", 0);
+    OutputLayout.FLAT.claim("email-template0.txt", 0);
+    OutputLayout.FLAT.claim("email-template0.txt", 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void bindMissingColumn() {
+    new OutputLayout.OutputLayoutBuilder()
+        .namePattern("{template}{missing}.txt")
+        .build()
+        .bind(records().getHeader());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void unboundColumn() {
+    new OutputLayout.OutputLayoutBuilder()
+        .namePattern("{id}.txt")
+        .build()
+        .getName("letter", 0, records().row(0));
+  }
+
+  @Test
+  public void invalidPatterns() {
+    for (String pattern : new String[]{"{template}.txt", "{row", "row}", "{}{row}", "{{row}}",
+        "a/{row}", "a\\{row}"}) {
+      try {
+        new OutputLayout.OutputLayoutBuilder().namePattern(pattern);
+        throw new AssertionError("Expected " + pattern + " to be rejected.");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void maxDirectories() {
+    OutputLayout layout = new OutputLayout.OutputLayoutBuilder().buckets("hash:1024x1024").build();
+
+    assertEquals(OutputLayout.MAX_DIRECTORIES, layout.getBucketCount());
+    // Ranges of rows have no fixed set of directories
+    new OutputLayout.OutputLayoutBuilder().buckets("range:1");
+  }
+
+  @Test
+  public void invalidBuckets() {
+    for (String buckets : new String[]{"tree", "hash:", "hash:16x0", "range:-1", "range:x",
+        "hash:65536x65536", "hash:1024x1024x2"}) {
+      try {
+        new OutputLayout.OutputLayoutBuilder().buckets(buckets);
+        throw new AssertionError("Expected " + buckets + " to be rejected.");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void hashBuckets() {
+    OutputLayout layout = new OutputLayout.OutputLayoutBuilder().buckets("hash:16x256").build();
+    List<String> directories = layout.getDirectories();
+
+    assertEquals(OutputLayout.Scheme.HASH, layout.getScheme());
+    assertEquals(16 * 256, layout.getBucketCount());
+    assertEquals(16 + 16 * 256, directories.size());
+    assertEquals("0", directories.get(0));
+    assertEquals("0/00", directories.get(16));
+    assertEquals("f/ff", directories.get(directories.size() - 1));
+
+    Set<String> used = new HashSet<>();
+    for (int i = 0; i < 1000; i++) {
+      String path = layout.getPath("email-template", i, null);
+      String directory = path.substring(0, path.lastIndexOf('/'));
+
+      assertTrue(directories.contains(directory));
+      assertEquals("email-template" + i + ".txt", path.substring(directory.length() + 1));
+      assertEquals(path, layout.getPath("email-template", i, null));
+      used.add(directory);
+    }
+    // The hash spreads consecutive rows rather than filling one bucket
+    assertTrue(used.size() > 500);
+  }
+
+  @Test
+  public void rangeBuckets() {
+    OutputLayout layout = new OutputLayout.OutputLayoutBuilder().buckets("range:100").build();
+
+    assertEquals("0/letter99.txt", layout.getPath("letter", 99, null));
+    assertEquals("1/letter100.txt", layout.getPath("letter", 100, null));
+    assertTrue(layout.getDirectories().isEmpty());
+    assertEquals(0, layout.getBucketCount());
+  }
+
+  @Test
+  public void createDirectories() throws IOException {
+    Path root = temp.newFolder("layout").toPath();
+    OutputLayout layout = new OutputLayout.OutputLayoutBuilder().buckets("hash:4x4").build();
+
+    OutputLayout.createDirectories(root, layout.getDirectories());
+    // Directories that exist already are left as they are
+    OutputLayout.createDirectories(root, Collections.singletonList("3/2"));
+
+    for (String directory : layout.getDirectories()) {
+      assertTrue(Files.isDirectory(root.resolve(directory)));
+    }
+    assertEquals(4, root.toFile().list().length);
+    assertEquals(4, root.resolve("2").toFile().list().length);
+  }
+
+  @Test
+  public void testEquals() {
+    OutputLayout layout = new OutputLayout.OutputLayoutBuilder().buckets("hash:256").build();
+
+    assertEquals(layout, new OutputLayout.OutputLayoutBuilder().buckets("HASH:256").build());
+    assertEquals(layout.hashCode(),
+        new OutputLayout.OutputLayoutBuilder().buckets("hash:256").build().hashCode());
+    assertNotEquals(layout, OutputLayout.FLAT);
+    assertEquals("OutputLayout{namePattern='{template}{row}.txt', scheme=HASH, buckets=[256]}",
+        layout.toString());
+  }
+
+  /**
+   * Class representing a row held in an array.
+   */
+  private static final class ArrayRow implements DataRow {
+
+    private final String[] fields;
+
+    private ArrayRow(String... fields) {
+      this.fields = fields;
+    }
+
+    @Override
+    public String getField(int column) {
+      return fields[column];
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class OutputManifestTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path outputDir;
+  private Map<String, Long> templateHashes;
+  private OutputManifest manifest;
+
+  @Before
+  public void setUp() throws Exception {
+    outputDir = temp.newFolder("manifest-output").toPath();
+    templateHashes = new LinkedHashMap<>();
+    templateHashes.put("email-template.txt", 0x1234L);
+    templateHashes.put("letter template.txt", -1L);
+    manifest = new OutputManifest(templateHashes, new long[]{1L, Long.MIN_VALUE, 3L});
+  }
+
+  @Test
+  public void writeAndRead() throws IOException {
+    manifest.write(outputDir.toString());
+
+    assertEquals(manifest, OutputManifest.read(outputDir.toString()));
+    assertEquals(Arrays.asList("template-manifest 1", "template email-template.txt 1234",
+        "template letter template.txt ffffffffffffffff", "rows 3", "1", "8000000000000000", "3"),
+        Files.readAllLines(outputDir.resolve(OutputManifest.FILE_NAME)));
+    assertFalse(Files.exists(outputDir.resolve(OutputManifest.FILE_NAME + ".tmp")));
+  }
+
+  @Test
+  public void writeAndReadColumns() throws IOException {
+    OutputManifest columns = new OutputManifest(templateHashes, new long[]{7L},
+        Arrays.asList("email", "first name"));
+    columns.write(outputDir.toString());
+
+    assertEquals(columns, OutputManifest.read(outputDir.toString()));
+    assertEquals(Arrays.asList("email", "first name"),
+        OutputManifest.read(outputDir.toString()).getColumns());
+    assertEquals(Arrays.asList("template-manifest 2", "template email-template.txt 1234",
+        "template letter template.txt ffffffffffffffff", "column email", "column first name",
+        "rows 1", "7"), Files.readAllLines(outputDir.resolve(OutputManifest.FILE_NAME)));
+    assertNotEquals(manifest, new OutputManifest(templateHashes,
+        new long[]{1L, Long.MIN_VALUE, 3L}, Arrays.asList("email")));
+  }
+
+  @Test
+  public void readMissing() throws IOException {
+    assertNull(OutputManifest.read(outputDir.toString()));
+  }
+
+  @Test(expected = IOException.class)
+  public void readInvalid() throws IOException {
+    Files.write(outputDir.resolve(OutputManifest.FILE_NAME),
+        "something else\n".getBytes(StandardCharsets.UTF_8));
+    OutputManifest.read(outputDir.toString());
+  }
+
+  @Test(expected = IOException.class)
+  public void readTruncated() throws IOException {
+    Files.write(outputDir.resolve(OutputManifest.FILE_NAME),
+        "template-manifest 1\ntemplate a.txt 1\nrows 2\n5\n".getBytes(StandardCharsets.UTF_8));
+    OutputManifest.read(outputDir.toString());
+  }
+
+  @Test(expected = IOException.class)
+  public void readBadHash() throws IOException {
+    Files.write(outputDir.resolve(OutputManifest.FILE_NAME),
+        "template-manifest 1\nrows 1\nxyz\n".getBytes(StandardCharsets.UTF_8));
+    OutputManifest.read(outputDir.toString());
+  }
+
+  @Test
+  public void isUnchanged() {
+    Map<String, Long> changedTemplate = new LinkedHashMap<>(templateHashes);
+    changedTemplate.put("email-template.txt", 0x4321L);
+    OutputManifest current = new OutputManifest(changedTemplate, new long[]{1L, 2L, 3L, 4L});
+
+    assertTrue(current.isUnchanged(manifest, "letter template.txt", 0));
+    assertFalse(current.isUnchanged(manifest, "letter template.txt", 1));
+    assertFalse(current.isUnchanged(manifest, "letter template.txt", 3));
+    assertFalse(current.isUnchanged(manifest, "email-template.txt", 0));
+    assertFalse(current.isUnchanged(manifest, "new-template.txt", 0));
+    assertFalse(current.isUnchanged(null, "letter template.txt", 0));
+  }
+
+  @Test
+  public void hashTemplate() {
+    assertEquals(OutputManifest.hashTemplate(Arrays.asList("To:[[email]]", "Dear")),
+        OutputManifest.hashTemplate(Arrays.asList("To:[[email]]", "Dear")));
+    assertNotEquals(OutputManifest.hashTemplate(Arrays.asList("To:[[email]]", "Dear")),
+        OutputManifest.hashTemplate(Arrays.asList("To:[[email]]Dear")));
+    assertEquals(OutputManifest.FNV_OFFSET_BASIS,
+        OutputManifest.hashTemplate(Collections.emptyList()));
+  }
+
+  @Test
+  public void getters() {
+    assertEquals(templateHashes, manifest.getTemplateHashes());
+    assertEquals(3, manifest.getRowCount());
+    assertEquals(Long.MIN_VALUE, manifest.getRowHash(1));
+    assertNull(manifest.getColumns());
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("OutputManifest{templateHashes={email-template.txt=4660, "
+        + "letter template.txt=-1}, rows=3}", manifest.toString());
+  }
+}
@@ -0,0 +1,101 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PopulationJobTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path outputDir;
+
+  @Before
+  public void setUp() throws Exception {
+    outputDir = temp.newFolder("job-output").toPath();
+  }
+
+  private PopulationJob newJob(String... extra) {
+    String[] args = new String[]{"-l", "-L", "src/main/java/Input/letter-template.txt",
+        "-o", outputDir.toString(), "-f", "src/main/java/Input/nonprofit-supporters.csv"};
+    String[] all = new String[args.length + extra.length];
+    System.arraycopy(args, 0, all, 0, args.length);
+    System.arraycopy(extra, 0, all, args.length, extra.length);
+
+    ArgumentParser parser = new ArgumentParser.ArgumentParserBuilder(all).build();
+    parser.parse();
+    return new PopulationJob(parser);
+  }
+
+  @Test
+  public void run() throws IOException {
+    RecordCache records = new RecordCache();
+    RunStats stats = newJob("-t", "2").run(new TemplateCache(), records);
+
+    assertEquals(500, outputDir.toFile().list().length);
+    assertEquals(500, stats.getRows(RunStats.Stage.PARSE));
+    assertEquals(500, stats.getRows(RunStats.Stage.WRITE));
+    assertEquals(1, records.size());
+  }
+
+  @Test
+  public void runStreaming() throws IOException {
+    RecordCache records = new RecordCache();
+    RunStats stats = newJob("--stream").run(new TemplateCache(), records);
+
+    assertEquals(500, outputDir.toFile().list().length);
+    assertEquals(500, stats.getRows(RunStats.Stage.PARSE));
+    assertEquals(0, records.size());
+  }
+
+  @Test
+  public void runWritesStatsFile() throws IOException {
+    Path json = outputDir.resolveSibling(outputDir.getFileName() + ".json");
+    newJob("--stats-file", json.toString()).run(new TemplateCache(), new RecordCache());
+
+    assertTrue(new String(Files.readAllBytes(json), StandardCharsets.UTF_8)
+        .contains("\"write\": {"));
+  }
+
+  @Test
+  public void runCheckpointInterval() throws IOException {
+    RunStats stats = newJob("--checkpoint-interval", "64").run(new TemplateCache(),
+        new RecordCache());
+
+    assertEquals(500, outputDir.toFile().list().length);
+    assertEquals(500, stats.getRows(RunStats.Stage.WRITE));
+  }
+
+  @Test(expected = ArgumentParserException.InvalidArgumentException.class)
+  public void runInvalidCheckpointInterval() throws IOException {
+    newJob("-C", "0").run(new TemplateCache(), new RecordCache());
+  }
+
+  @Test
+  public void runStreamingIncrementalRejected() throws IOException {
+    for (String[] args : new String[][]{{"--stream", "--incremental"}, {"--mmap", "--resume"}}) {
+      try {
+        newJob(args).run(new TemplateCache(), new RecordCache());
+        fail("Expected " + Arrays.toString(args) + " to be rejected.");
+      } catch (IllegalArgumentException e) {
+        assertEquals(0, outputDir.toFile().list().length);
+      }
+    }
+  }
+
+  @Test
+  public void testToString() {
+    assertTrue(newJob().toString().startsWith("PopulationJob{args=[-l, -L, "));
+  }
+}
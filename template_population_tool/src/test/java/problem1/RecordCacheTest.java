@@ -0,0 +1,132 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RecordCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path dataDir;
+  private Path csv;
+  private RecordCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    dataDir = temp.newFolder("record-cache").toPath();
+    csv = writeCsv("data.csv", "\"first_name\",\"email\"", "\"James\",\"jbutt@gmail.com\"");
+    cache = new RecordCache();
+  }
+
+  /**
+   * Writes a CSV file whose modification time is old enough to be trusted by the cache.
+   */
+  private Path writeCsv(String name, String... lines) throws IOException {
+    Path path = Files.write(dataDir.resolve(name), Arrays.asList(lines));
+    Files.setLastModifiedTime(path,
+        FileTime.fromMillis(System.currentTimeMillis() - 10 * TemplateCache.RACY_MILLIS));
+    return path;
+  }
+
+  @Test
+  public void get() throws IOException {
+    RunStats stats = new RunStats();
+    RecordStore records = cache.get(csv.toString(), stats);
+
+    assertEquals(Arrays.asList("first_name", "email"), records.getHeader());
+    assertEquals("James", records.getField(0, 0));
+    assertEquals(1, stats.getRows(RunStats.Stage.PARSE));
+    assertEquals(Files.size(csv), stats.getBytesRead(RunStats.Stage.PARSE));
+  }
+
+  @Test
+  public void getUnchanged() throws IOException {
+    RecordStore first = cache.get(csv.toString(), new RunStats());
+    RunStats stats = new RunStats();
+
+    assertSame(first, cache.get(csv.toString(), stats));
+    assertEquals(0, stats.getRows(RunStats.Stage.PARSE));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void getChanged() throws IOException {
+    RecordStore first = cache.get(csv.toString(), new RunStats());
+    writeCsv("data.csv", "\"first_name\",\"email\"", "\"Josephine\",\"josephine@x.org\"");
+    RecordStore second = cache.get(csv.toString(), new RunStats());
+
+    assertNotSame(first, second);
+    assertEquals("Josephine", second.getField(0, 0));
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void getProjected() throws IOException {
+    RecordStore emails = cache.get(csv.toString(), Collections.singleton("email"),
+        new RunStats());
+
+    assertEquals(Collections.singletonList("email"), emails.getHeader());
+    assertSame(emails, cache.get(csv.toString(), Collections.singleton("email"),
+        new RunStats()));
+
+    RecordStore all = cache.get(csv.toString(), new RunStats());
+
+    assertEquals(Arrays.asList("first_name", "email"), all.getHeader());
+    assertSame(all, cache.get(csv.toString(), Collections.singleton("first_name"),
+        new RunStats()));
+    assertEquals(2, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void getRecentlyModified() throws IOException {
+    Path recent = Files.write(dataDir.resolve("recent.csv"), Arrays.asList("\"a\"", "\"1\""));
+    cache.get(recent.toString(), new RunStats());
+    cache.get(recent.toString(), new RunStats());
+
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() throws IOException {
+    RecordCache small = new RecordCache(1);
+    Path other = writeCsv("other.csv", "\"a\"", "\"1\"");
+
+    small.get(csv.toString(), new RunStats());
+    small.get(other.toString(), new RunStats());
+    small.get(csv.toString(), new RunStats());
+
+    assertEquals(1, small.size());
+    assertEquals(3, small.getMisses());
+  }
+
+  @Test(expected = IOException.class)
+  public void getMissingFile() throws IOException {
+    cache.get(dataDir.resolve("missing.csv").toString(), new RunStats());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidCapacity() {
+    new RecordCache(0);
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("RecordCache{capacity=4, size=0}", cache.toString());
+  }
+}
@@ -0,0 +1,268 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordStoreTest {
+
+  private Map<String, List<String>> columns;
+  private RecordStore store;
+
+  @Before
+  public void setUp() throws Exception {
+    columns = new LinkedHashMap<>();
+    columns.put("first_name", new ArrayList<>(Arrays.asList("James", "Josephine", "Art")));
+    columns.put("last_name", new ArrayList<>(Arrays.asList("Butt", "", "Venere")));
+    columns.put("email", new ArrayList<>(Arrays.asList("jbutt@gmail.com", "josephine@x.org",
+        "art@venere.org")));
+    store = RecordStore.fromColumns(columns);
+  }
+
+  @Test
+  public void size() {
+    assertEquals(3, store.size());
+    assertEquals(0, new RecordStore(Arrays.asList("a", "b")).size());
+  }
+
+  @Test
+  public void getColumnIndex() {
+    assertEquals(0, store.getColumnIndex("first_name"));
+    assertEquals(2, store.getColumnIndex("email"));
+    assertEquals(-1, store.getColumnIndex("phone1"));
+  }
+
+  @Test
+  public void getField() {
+    assertEquals("James", store.getField(0, 0));
+    assertEquals("", store.getField(1, 1));
+    assertEquals("art@venere.org", store.getField(2, 2));
+  }
+
+  @Test
+  public void appendField() {
+    StringBuilder out = new StringBuilder();
+
+    store.appendField(2, 1, out);
+    store.appendField(0, 0, out);
+    assertEquals("VenereJames", out.toString());
+  }
+
+  @Test
+  public void appendFieldAppendable() throws IOException {
+    CharBuffer chars = CharBuffer.allocate(32);
+    StringWriter writer = new StringWriter();
+
+    store.appendField(2, 1, chars);
+    store.row(0).appendField(0, chars);
+    store.appendField(1, 2, writer);
+
+    assertEquals("VenereJames", ((CharBuffer) chars.flip()).toString());
+    assertEquals("josephine@x.org", writer.toString());
+  }
+
+  @Test
+  public void hashRow() {
+    Map<String, List<String>> shifted = new LinkedHashMap<>();
+    shifted.put("first_name", Arrays.asList("James", "Josephin", "Art"));
+    shifted.put("last_name", Arrays.asList("Butt", "e", "Venere"));
+    shifted.put("email", Arrays.asList("jbutt@gmail.com", "josephine@x.org", "art@venere.org"));
+    RecordStore other = RecordStore.fromColumns(shifted);
+
+    assertEquals(store.hashRow(0), RecordStore.fromColumns(columns).hashRow(0));
+    assertEquals(store.hashRow(0), other.hashRow(0));
+    assertNotEquals(store.hashRow(0), store.hashRow(2));
+    assertNotEquals(store.hashRow(1), other.hashRow(1));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void hashRowOutOfBounds() {
+    store.hashRow(3);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getFieldOutOfBounds() {
+    store.getField(3, 0);
+  }
+
+  @Test
+  public void addRowPadsAndTruncates() {
+    RecordStore padded = new RecordStore(Arrays.asList("a", "b", "c"));
+    String[] fields = new String[]{"1", "2", "3", "4"};
+
+    padded.addRow(column -> fields[column], 1);
+    padded.addRow(column -> fields[column], 4);
+
+    assertEquals("1", padded.getField(0, 0));
+    assertEquals("", padded.getField(0, 2));
+    assertEquals("3", padded.getField(1, 2));
+  }
+
+  @Test
+  public void addRowGrowsArena() {
+    RecordStore large = new RecordStore(Arrays.asList("value"));
+    char[] chars = new char[5000];
+    Arrays.fill(chars, 'x');
+    String value = new String(chars);
+
+    for (int i = 0; i < 100; i++) {
+      large.addRow(column -> value, 1);
+    }
+
+    assertEquals(100, large.size());
+    assertEquals(value, large.getField(99, 0));
+  }
+
+  @Test
+  public void dictionaryEncoding() {
+    RecordStore encoded = new RecordStore(Arrays.asList("state", "id", "mixed"));
+    RecordStore small = new RecordStore(encoded.getHeader());
+    int rows = 3 * RecordStore.DICTIONARY_MAX_VALUES;
+
+    for (int i = 0; i < rows; i++) {
+      String[] fields = new String[]{"S" + i % 50, "id" + i, i < 2000 ? "M" + i % 10 : "U" + i};
+      encoded.addRow(column -> fields[column], 3);
+      if (i < 10) {
+        small.addRow(column -> fields[column], 3);
+      }
+    }
+
+    // Only the column that keeps repeating stays encoded
+    assertTrue(encoded.isDictionaryEncoded(0));
+    assertFalse(encoded.isDictionaryEncoded(1));
+    assertFalse(encoded.isDictionaryEncoded(2));
+    assertTrue(small.isDictionaryEncoded(1));
+
+    for (int i = 0; i < rows; i += 97) {
+      assertEquals("S" + i % 50, encoded.getField(i, 0));
+      assertEquals("id" + i, encoded.getField(i, 1));
+      assertEquals(i < 2000 ? "M" + i % 10 : "U" + i, encoded.getField(i, 2));
+    }
+
+    StringBuilder out = new StringBuilder();
+    encoded.appendField(rows - 1, 0, out);
+    encoded.appendField(rows - 1, 2, out);
+    assertEquals("S" + (rows - 1) % 50 + "U" + (rows - 1), out.toString());
+
+    // The hash of a row does not depend on how its columns are stored
+    for (int i = 0; i < 10; i++) {
+      assertEquals(small.hashRow(i), encoded.hashRow(i));
+    }
+  }
+
+  @Test
+  public void dictionaryEncodingEmptyAndSimilarValues() {
+    RecordStore encoded = new RecordStore(Arrays.asList("a", "b"));
+    // "Aa" and "BB" have the same hash, so they probe the same slots of the dictionary
+    String[][] rows = new String[][]{{"", "ab"}, {"a", "b"}, {"ab", ""}, {"", "ab"}, {"Aa", "BB"},
+        {"BB", "Aa"}};
+
+    for (String[] fields : rows) {
+      encoded.addRow(column -> fields[column], 2);
+    }
+
+    for (int i = 0; i < rows.length; i++) {
+      assertEquals(rows[i][0], encoded.getField(i, 0));
+      assertEquals(rows[i][1], encoded.getField(i, 1));
+    }
+    assertEquals(encoded.hashRow(0), encoded.hashRow(3));
+    assertNotEquals(encoded.hashRow(0), encoded.hashRow(1));
+  }
+
+  @Test
+  public void hashRowColumns() {
+    RecordStore projected = new RecordStore(Arrays.asList("first_name", "email"));
+    for (int i = 0; i < 3; i++) {
+      int row = i;
+      projected.addRow(column -> store.getField(row, column * 2), 2);
+    }
+
+    // Hashing some columns of a store gives the hash of a store holding only those columns
+    for (int i = 0; i < 3; i++) {
+      assertEquals(projected.hashRow(i), store.hashRow(i, new int[]{0, 2}));
+      assertEquals(store.hashRow(i), store.hashRow(i, new int[]{0, 1, 2}));
+    }
+    assertNotEquals(store.hashRow(0, new int[]{0}), store.hashRow(0, new int[]{1}));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void hashRowColumnsOutOfBounds() {
+    store.hashRow(0, new int[]{3});
+  }
+
+  @Test
+  public void compact() {
+    RecordStore compacted = new RecordStore(Arrays.asList("state", "id"));
+
+    for (int i = 0; i < 100; i++) {
+      String[] fields = new String[]{"S" + i % 5, "id" + i};
+      compacted.addRow(column -> fields[column], 2);
+    }
+    long before = compacted.memoryBytes();
+    compacted.compact();
+
+    // Few values never leave the dictionary while loading, but compact moves unique ones
+    assertTrue(compacted.isDictionaryEncoded(0));
+    assertFalse(compacted.isDictionaryEncoded(1));
+    assertTrue(compacted.memoryBytes() < before);
+    assertEquals("S2", compacted.getField(97, 0));
+    assertEquals("id97", compacted.getField(97, 1));
+
+    // Rows can still be added once the arrays are trimmed
+    compacted.addRow(column -> column == 0 ? "S9" : "last", 2);
+    assertEquals("S9", compacted.getField(100, 0));
+    assertEquals("last", compacted.getField(100, 1));
+    assertEquals("id0", compacted.getField(0, 1));
+  }
+
+  @Test
+  public void row() {
+    RecordStore.Row row = store.row(1);
+
+    assertEquals("Josephine", row.getField(0));
+    row.moveTo(2);
+    assertEquals(2, row.getIndex());
+    assertEquals("Art", row.getField(0));
+  }
+
+  @Test
+  public void toColumnMap() {
+    assertEquals(columns, store.toColumnMap());
+  }
+
+  @Test
+  public void fromColumnsPadsShortColumns() {
+    columns.get("email").remove(2);
+
+    assertEquals("", RecordStore.fromColumns(columns).getField(2, 2));
+  }
+
+  @Test
+  public void testEquals() {
+    assertEquals(store, RecordStore.fromColumns(columns));
+    assertNotEquals(store, new RecordStore(store.getHeader()));
+    assertNotEquals(store, null);
+  }
+
+  @Test
+  public void testHashCode() {
+    assertEquals(store.hashCode(), RecordStore.fromColumns(columns).hashCode());
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("RecordStore{header=[first_name, last_name, email], size=3}", store.toString());
+  }
+}
@@ -0,0 +1,128 @@
+package problem1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RenderPipelineTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private String csvPath;
+  private Path template;
+  private Path expectedDir;
+  private Path outputDir;
+
+  @Before
+  public void setUp() throws Exception {
+    csvPath = "src/main/java/Input/nonprofit-supporters.csv";
+    template = Files.write(temp.newFile("pipeline.txt").toPath(),
+        "Dear [[first_name]] [[last_name]],\n[[email]]\n".getBytes("UTF-8"));
+    expectedDir = temp.newFolder("pipeline-expected").toPath();
+    outputDir = temp.newFolder("pipeline-output").toPath();
+    new StreamingTemplateHandler(new String[]{template.toString()}, expectedDir.toString(),
+        csvPath).writeTemplates();
+  }
+
+  private void run(RenderPipeline pipeline) throws IOException {
+    CompiledTemplate compiled = new TemplateCache().get(template.toString()).getTemplate();
+
+    try (RowReader rows = new CSVStreamReader(csvPath);
+        TemplateWriter writer = new TemplateWriter(outputDir.toString(),
+            template.getFileName().toString())) {
+      pipeline.run(rows, compiled.getPlaceholders(), new CompiledTemplate[]{compiled},
+          new TemplateWriter[]{writer});
+    }
+  }
+
+  private void assertSameOutput() throws IOException {
+    File[] expected = expectedDir.toFile().listFiles();
+    assertEquals(500, expected.length);
+    assertEquals(expected.length, outputDir.toFile().list().length);
+
+    for (File file : expected) {
+      assertArrayEquals(Files.readAllBytes(file.toPath()),
+          Files.readAllBytes(outputDir.resolve(file.getName())));
+    }
+  }
+
+  @Test
+  public void run() throws IOException {
+    RunStats stats = new RunStats();
+    run(new RenderPipeline(4, 7, 2, stats));
+
+    assertSameOutput();
+    assertEquals(500, stats.getRows(RunStats.Stage.PARSE));
+    assertEquals(500, stats.getRows(RunStats.Stage.RENDER));
+    assertEquals(500, stats.getRows(RunStats.Stage.WRITE));
+
+    List<RingBuffer.Metrics> queues = stats.getQueues();
+    assertEquals(2, queues.size());
+    assertEquals("parsed", queues.get(0).getName());
+    assertEquals("rendered", queues.get(1).getName());
+    // 500 rows in batches of 7
+    assertEquals(72, queues.get(0).getPuts());
+    assertEquals(72, queues.get(1).getPuts());
+    assertTrue(queues.get(0).getMaxDepth() <= 2);
+  }
+
+  @Test
+  public void runSlowBatchBoundsPending() throws IOException {
+    // The first batch is held back while the other renderers go on with the rows after it
+    RenderPipeline pipeline = new RenderPipeline(4, 1, 2, new RunStats()) {
+      @Override
+      void beforeRender(long sequence) {
+        if (sequence == 0) {
+          try {
+            Thread.sleep(300);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    };
+    run(pipeline);
+
+    assertSameOutput();
+    assertEquals(2 * 2 + 4, pipeline.getMaxInFlight());
+    assertTrue(pipeline.getMaxPending() > 0);
+    assertTrue(pipeline.getMaxPending() <= pipeline.getMaxInFlight());
+  }
+
+  @Test
+  public void runSingleRenderer() throws IOException {
+    run(new RenderPipeline(1, new RunStats()));
+
+    assertSameOutput();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void runMissingKey() throws IOException {
+    Files.write(template, "[[missing]]\n".getBytes("UTF-8"));
+    run(new RenderPipeline(2, new RunStats()));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void noRenderThreads() {
+    new RenderPipeline(0, new RunStats());
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("RenderPipeline{renderThreads=2, batchRows=256, "
+            + "parsed=RingBuffer{name='parsed', capacity=16, size=0, closed=false}, "
+            + "rendered=RingBuffer{name='rendered', capacity=16, size=0, closed=false}}",
+        new RenderPipeline(2, new RunStats()).toString());
+  }
+}
@@ -0,0 +1,224 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RenderServerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path templateDir;
+  private Path csv;
+  private RenderServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    Path root = temp.newFolder("server").toPath();
+    templateDir = Files.createDirectory(root.resolve("templates"));
+    Files.write(templateDir.resolve("greeting.txt"),
+        Arrays.asList("To:[[email]]", "Dear [[first_name]],"));
+    Files.write(templateDir.resolve("sender.txt"),
+        Collections.singletonList("From:[[sender]]"));
+    csv = Files.write(root.resolve("data.csv"), Arrays.asList(
+        "\"first_name\",\"email\"",
+        "\"James\",\"jbutt@gmail.com\"",
+        "\"Josephine\",\"josephine_darakjy@darakjy.org\""));
+
+    server = new RenderServer.RenderServerBuilder(templateDir.toString())
+        .csvPath(csv.toString())
+        .keyColumn("email")
+        .threads(2)
+        .build();
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    server.close();
+  }
+
+  private HttpURLConnection request(String method, String path, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(
+        "http://localhost:" + server.getPort() + path).openConnection();
+    connection.setRequestMethod(method);
+
+    if (body != null) {
+      connection.setDoOutput(true);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    return connection;
+  }
+
+  private String read(HttpURLConnection connection) throws IOException {
+    InputStream in = connection.getResponseCode() < 400
+        ? connection.getInputStream() : connection.getErrorStream();
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int read;
+
+    while ((read = in.read(buffer)) != -1) {
+      body.write(buffer, 0, read);
+    }
+    in.close();
+    return new String(body.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void renderRowByKey() throws IOException {
+    HttpURLConnection connection = request("GET",
+        "/render/greeting?key=josephine_darakjy%40darakjy.org", null);
+
+    assertEquals(200, connection.getResponseCode());
+    assertEquals("text/plain; charset=utf-8", connection.getContentType());
+    assertEquals("To:josephine_darakjy@darakjy.org\nDear Josephine,\n", read(connection));
+  }
+
+  @Test
+  public void renderRowUnknownKey() throws IOException {
+    HttpURLConnection connection = request("GET", "/render/greeting?key=nobody", null);
+
+    assertEquals(404, connection.getResponseCode());
+    assertEquals("No row has the key nobody.\n", read(connection));
+  }
+
+  @Test
+  public void renderRowUnknownTemplate() throws IOException {
+    assertEquals(404,
+        request("GET", "/render/missing?key=jbutt%40gmail.com", null).getResponseCode());
+  }
+
+  @Test
+  public void renderRowUnboundTemplate() throws IOException {
+    assertEquals(400,
+        request("GET", "/render/sender?key=jbutt%40gmail.com", null).getResponseCode());
+  }
+
+  @Test
+  public void renderRowMissingKey() throws IOException {
+    assertEquals(400, request("GET", "/render/greeting", null).getResponseCode());
+  }
+
+  @Test
+  public void renderInlineRecord() throws IOException {
+    HttpURLConnection connection = request("POST", "/render/sender",
+        "{\"sender\": \"Northeastern \\\"Supporters\\\"\"}");
+
+    assertEquals(200, connection.getResponseCode());
+    assertEquals("From:Northeastern \"Supporters\"\n", read(connection));
+  }
+
+  @Test
+  public void renderInlineRecordMissingField() throws IOException {
+    assertEquals(400,
+        request("POST", "/render/greeting", "{\"first_name\": \"James\"}").getResponseCode());
+  }
+
+  @Test
+  public void renderInlineRecordInvalidJson() throws IOException {
+    assertEquals(400,
+        request("POST", "/render/greeting", "{\"first_name\": ").getResponseCode());
+  }
+
+  @Test
+  public void renderBatch() throws IOException {
+    HttpURLConnection connection = request("POST", "/render/greeting/batch",
+        "[\"jbutt@gmail.com\", {\"email\": \"a@b.org\", \"first_name\": \"Ann\"}]");
+
+    assertEquals(200, connection.getResponseCode());
+    assertEquals("application/json; charset=utf-8", connection.getContentType());
+    assertEquals("[\"To:jbutt@gmail.com\\nDear James,\\n\","
+        + "\"To:a@b.org\\nDear Ann,\\n\"]", read(connection));
+  }
+
+  @Test
+  public void renderBatchUnknownKey() throws IOException {
+    assertEquals(404, request("POST", "/render/greeting/batch", "[\"jbutt@gmail.com\", \"x\"]")
+        .getResponseCode());
+  }
+
+  @Test
+  public void renderWrongMethod() throws IOException {
+    assertEquals(405, request("GET", "/render/greeting/batch", null).getResponseCode());
+  }
+
+  @Test
+  public void stats() throws IOException {
+    read(request("GET", "/render/greeting?key=jbutt%40gmail.com", null));
+    read(request("POST", "/render/sender", "{\"sender\": \"Northeastern\"}"));
+
+    String stats = read(request("GET", "/stats", null));
+
+    assertTrue(stats, stats.startsWith("{\"renders\": 2, \"p50Nanos\": "));
+    assertEquals(2, server.getLatencies().getCount());
+  }
+
+  @Test
+  public void renderRowDirect() {
+    StringBuilder out = new StringBuilder();
+    server.renderRow("greeting", "jbutt@gmail.com", out);
+
+    assertEquals("To:jbutt@gmail.com\nDear James,\n", out.toString());
+  }
+
+  @Test
+  public void renderRowFirstColumnByDefault() throws IOException {
+    try (RenderServer byName = new RenderServer.RenderServerBuilder(templateDir.toString())
+        .csvPath(csv.toString())
+        .build()) {
+      StringBuilder out = new StringBuilder();
+      byName.renderRow("greeting", "James", out);
+
+      assertEquals("To:jbutt@gmail.com\nDear James,\n", out.toString());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void builderUnknownKeyColumn() throws IOException {
+    new RenderServer.RenderServerBuilder(templateDir.toString())
+        .csvPath(csv.toString())
+        .keyColumn("id")
+        .build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void builderInvalidThreads() throws IOException {
+    new RenderServer.RenderServerBuilder(templateDir.toString()).threads(0).build();
+  }
+
+  @Test(expected = IOException.class)
+  public void builderMissingTemplateDir() throws IOException {
+    new RenderServer.RenderServerBuilder(templateDir.resolve("missing").toString()).build();
+  }
+
+  @Test
+  public void templateId() {
+    assertEquals("email-template", RenderServer.templateId("email-template.txt"));
+    assertEquals("notes", RenderServer.templateId("notes"));
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("RenderServer{templates=[greeting, sender], rows=2, keyColumn='email', port="
+        + server.getPort() + "}", server.toString());
+  }
+}
@@ -0,0 +1,139 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+public class RingBufferTest {
+
+  @Test
+  public void offerAndPoll() {
+    RingBuffer<String> ring = new RingBuffer<>("test", 2);
+
+    assertTrue(ring.offer("a"));
+    assertTrue(ring.offer("b"));
+    assertFalse(ring.offer("c"));
+    assertEquals(2, ring.size());
+
+    assertEquals("a", ring.poll());
+    assertTrue(ring.offer("c"));
+    assertEquals("b", ring.poll());
+    assertEquals("c", ring.poll());
+    assertNull(ring.poll());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void capacityNotPowerOfTwo() {
+    new RingBuffer<String>("test", 3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void capacityOne() {
+    new RingBuffer<String>("test", 1);
+  }
+
+  @Test
+  public void closeDrainsRemainingItems() {
+    RingBuffer<String> ring = new RingBuffer<>("test", 4);
+    ring.put("a");
+    ring.close();
+
+    assertFalse(ring.put("b"));
+    assertTrue(ring.isClosed());
+    assertEquals("a", ring.take());
+    assertNull(ring.take());
+  }
+
+  @Test
+  public void manyProducersAndConsumers() throws InterruptedException {
+    RingBuffer<Long> ring = new RingBuffer<>("test", 8);
+    AtomicLong sum = new AtomicLong();
+    AtomicLong count = new AtomicLong();
+    List<Thread> producers = new ArrayList<>();
+    List<Thread> consumers = new ArrayList<>();
+
+    for (int p = 0; p < 4; p++) {
+      producers.add(new Thread(() -> {
+        for (long i = 1; i <= 10_000; i++) {
+          ring.put(i);
+        }
+      }));
+    }
+    for (int c = 0; c < 3; c++) {
+      consumers.add(new Thread(() -> {
+        Long item;
+        while ((item = ring.take()) != null) {
+          sum.addAndGet(item);
+          count.incrementAndGet();
+        }
+      }));
+    }
+
+    producers.forEach(Thread::start);
+    consumers.forEach(Thread::start);
+    for (Thread producer : producers) {
+      producer.join();
+    }
+    ring.close();
+    for (Thread consumer : consumers) {
+      consumer.join();
+    }
+
+    assertEquals(40_000, count.get());
+    assertEquals(4 * 10_000L * 10_001 / 2, sum.get());
+    assertEquals(40_000, ring.getMetrics().getPuts());
+    assertTrue(ring.getMetrics().getMaxDepth() <= 8);
+  }
+
+  @Test
+  public void getMetrics() {
+    RingBuffer<String> ring = new RingBuffer<>("parsed", 4);
+    ring.put("a");
+    ring.put("b");
+    ring.take();
+    ring.put("c");
+
+    RingBuffer.Metrics metrics = ring.getMetrics();
+    assertEquals("parsed", metrics.getName());
+    assertEquals(4, metrics.getCapacity());
+    assertEquals(3, metrics.getPuts());
+    assertEquals(2, metrics.getMaxDepth());
+    assertEquals(5.0 / 3, metrics.getMeanDepth(), 1e-9);
+    assertEquals(0, metrics.getFullNanos());
+  }
+
+  @Test
+  public void getMetricsWaiting() throws InterruptedException {
+    RingBuffer<String> ring = new RingBuffer<>("test", 2);
+    ring.put("a");
+    ring.put("b");
+    Thread consumer = new Thread(() -> {
+      try {
+        Thread.sleep(20);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      ring.take();
+    });
+
+    consumer.start();
+    assertTrue(ring.put("c"));
+    consumer.join();
+
+    assertTrue(ring.getMetrics().getFullNanos() > 0);
+  }
+
+  @Test
+  public void testToString() {
+    RingBuffer<String> ring = new RingBuffer<>("test", 4);
+    ring.put("a");
+
+    assertEquals("RingBuffer{name='test', capacity=4, size=1, closed=false}", ring.toString());
+  }
+}
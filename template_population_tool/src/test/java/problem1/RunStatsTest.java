@@ -0,0 +1,127 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RunStatsTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private RunStats stats;
+
+  @Before
+  public void setUp() {
+    stats = new RunStats();
+  }
+
+  @Test
+  public void addStatistics() {
+    stats.addTime(RunStats.Stage.RENDER, 2_000_000_000L);
+    stats.addTime(RunStats.Stage.RENDER, 2_000_000_000L);
+    stats.addRows(RunStats.Stage.RENDER, 1000);
+    stats.addBytesRead(RunStats.Stage.PARSE, 512);
+    stats.addBytesWritten(RunStats.Stage.WRITE, 2048);
+
+    assertEquals(4_000_000_000L, stats.getNanos(RunStats.Stage.RENDER));
+    assertEquals(1000, stats.getRows(RunStats.Stage.RENDER));
+    assertEquals(250.0, stats.getRowsPerSecond(RunStats.Stage.RENDER), 1e-9);
+    assertEquals(512, stats.getBytesRead(RunStats.Stage.PARSE));
+    assertEquals(2048, stats.getBytesWritten(RunStats.Stage.WRITE));
+    assertEquals(0, stats.getBytesWritten(RunStats.Stage.PARSE));
+  }
+
+  @Test
+  public void getRowsPerSecondWithoutTime() {
+    stats.addRows(RunStats.Stage.PARSE, 10);
+
+    assertEquals(0.0, stats.getRowsPerSecond(RunStats.Stage.PARSE), 0);
+  }
+
+  @Test
+  public void recordPeakHeap() {
+    byte[][] garbage = new byte[16][];
+    for (int i = 0; i < garbage.length; i++) {
+      garbage[i] = new byte[1 << 20];
+    }
+
+    stats.recordPeakHeap(RunStats.Stage.PARSE, RunStats.Stage.WRITE);
+
+    assertTrue(garbage[15].length > 0);
+    assertTrue(stats.getPeakHeap(RunStats.Stage.PARSE) >= 16 << 20);
+    assertEquals(stats.getPeakHeap(RunStats.Stage.PARSE),
+        stats.getPeakHeap(RunStats.Stage.WRITE));
+    assertEquals(0, stats.getPeakHeap(RunStats.Stage.RENDER));
+  }
+
+  @Test
+  public void finish() throws InterruptedException {
+    stats.finish();
+    long wall = stats.getWallNanos();
+    Thread.sleep(5);
+
+    assertEquals(wall, stats.getWallNanos());
+  }
+
+  @Test
+  public void toSummary() {
+    stats.addTime(RunStats.Stage.PARSE, 1_500_000);
+    stats.addRows(RunStats.Stage.PARSE, 3);
+    String[] lines = stats.toSummary().split(System.lineSeparator());
+
+    assertEquals(5, lines.length);
+    assertTrue(lines[0].startsWith("stage"));
+    assertTrue(lines[1].matches("parse\\s+1\\.5\\s+3\\s+2000\\.0\\s+0\\s+0\\s+\\d+\\.\\d"));
+    assertTrue(lines[2].startsWith("render"));
+    assertTrue(lines[3].startsWith("write"));
+    assertTrue(lines[4].startsWith("total"));
+  }
+
+  @Test
+  public void addQueue() {
+    stats.addQueue(new RingBuffer.Metrics("parsed", 16, 10, 2.5, 4, 3_000_000, 0));
+    String[] lines = stats.toSummary().split(System.lineSeparator());
+
+    assertEquals(1, stats.getQueues().size());
+    assertEquals(7, lines.length);
+    assertTrue(lines[5].startsWith("queue"));
+    assertTrue(lines[6].matches("parsed\\s+16\\s+10\\s+2\\.5\\s+4\\s+3\\.0\\s+0\\.0"));
+    assertTrue(stats.toJson().contains("\"queues\": {\n    \"parsed\": {\"capacity\": 16, "
+        + "\"items\": 10, \"meanDepth\": 2.500, \"maxDepth\": 4, \"fullMillis\": 3.000, "
+        + "\"emptyMillis\": 0.000}\n  }\n}\n"));
+  }
+
+  @Test
+  public void writeJson() throws IOException {
+    Path file = temp.newFile("stats.json").toPath();
+    stats.addTime(RunStats.Stage.WRITE, 2_000_000);
+    stats.addRows(RunStats.Stage.WRITE, 4);
+    stats.addBytesWritten(RunStats.Stage.WRITE, 100);
+    stats.finish();
+
+    stats.writeJson(file.toString());
+    String json = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+
+    assertEquals(stats.toJson(), json);
+    assertTrue(json.startsWith("{\n  \"wallTimeMillis\": "));
+    assertTrue(json.contains("\"parse\": {\"timeMillis\": 0.000, \"rows\": 0, "));
+    assertTrue(json.contains("\"write\": {\"timeMillis\": 2.000, \"rows\": 4, "
+        + "\"rowsPerSecond\": 2000.000, \"bytesRead\": 0, \"bytesWritten\": 100, "
+        + "\"peakHeapBytes\": 0}"));
+    assertTrue(json.endsWith("}\n  }\n}\n"));
+  }
+
+  @Test(expected = IOException.class)
+  public void writeJsonMissingDirectory() throws IOException {
+    stats.writeJson(temp.newFolder("stats").toPath().resolve("missing/stats.json").toString());
+  }
+}
@@ -0,0 +1,165 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ShardManifestTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path outputDir;
+  private Map<String, Long> templateHashes;
+
+  @Before
+  public void setUp() throws Exception {
+    outputDir = temp.newFolder("shard-output").toPath();
+    templateHashes = new LinkedHashMap<>();
+    templateHashes.put("email-template.txt", 0xabcL);
+    templateHashes.put("letter template.txt", 0x123L);
+  }
+
+  private ShardManifest manifest(int index, int count, int rows, long dataHash) {
+    Shard shard = new Shard(index, count);
+    Map<String, Long> outputs = new LinkedHashMap<>();
+
+    for (String template : templateHashes.keySet()) {
+      outputs.put(template, (long) shard.countRows(rows));
+    }
+    return new ShardManifest(shard, templateHashes, rows, dataHash, outputs);
+  }
+
+  @Test
+  public void writeAndRead() throws IOException {
+    ShardManifest manifest = manifest(1, 3, 10, -5L);
+    manifest.write(outputDir.toString());
+
+    Path path = outputDir.resolve(".template-shard-1-of-3");
+    assertEquals(manifest, ShardManifest.read(path));
+    assertEquals(3L, (long) ShardManifest.read(path).getOutputs().get("letter template.txt"));
+    // The temporary file is moved into place
+    assertEquals(1, outputDir.toFile().list().length);
+  }
+
+  @Test(expected = IOException.class)
+  public void readInvalid() throws IOException {
+    Path path = outputDir.resolve(".template-shard-0-of-2");
+    Files.write(path, "template-shard 1\nshard 2/2\nrows 4 0\n".getBytes(StandardCharsets.UTF_8));
+    ShardManifest.read(path);
+  }
+
+  @Test
+  public void mergeComplete() throws IOException {
+    for (int i = 0; i < 3; i++) {
+      manifest(i, 3, 10, 7L).write(outputDir.toString());
+    }
+
+    ShardManifest.Coverage coverage = ShardManifest.merge(outputDir.toString());
+
+    assertTrue(coverage.isComplete());
+    assertEquals(3, coverage.getShards());
+    assertEquals(10, coverage.getRows());
+    assertEquals(20, coverage.getOutputs());
+    assertEquals("The 3 shards wrote all 20 outputs of 10 rows.", coverage.toString());
+  }
+
+  @Test
+  public void mergeMissingShard() throws IOException {
+    manifest(0, 3, 10, 7L).write(outputDir.toString());
+    manifest(2, 3, 10, 7L).write(outputDir.toString());
+
+    ShardManifest.Coverage coverage = ShardManifest.merge(outputDir.toString());
+
+    assertFalse(coverage.isComplete());
+    assertEquals(Collections.singletonList("Shard 1/3 has no manifest, so it did not finish."),
+        coverage.getProblems());
+  }
+
+  @Test
+  public void mergeMismatchedShards() throws IOException {
+    manifest(0, 4, 10, 7L).write(outputDir.toString());
+    manifest(1, 4, 10, 8L).write(outputDir.toString());
+    Map<String, Long> outputs = new LinkedHashMap<>();
+    outputs.put("email-template.txt", 2L);
+    new ShardManifest(new Shard(2, 4), templateHashes, 10, 7L, outputs)
+        .write(outputDir.toString());
+    new ShardManifest(new Shard(3, 4), Collections.singletonMap("email-template.txt", 0xabcL),
+        10, 7L, outputs).write(outputDir.toString());
+
+    ShardManifest.Coverage coverage = ShardManifest.merge(outputDir.toString());
+
+    assertFalse(coverage.isComplete());
+    assertEquals(Arrays.asList(
+        "Shard 1/4 was run with other data than shard 0/4.",
+        "Shard 2/4 wrote 0 of its 2 outputs of letter template.txt.",
+        "Shard 3/4 was run with other templates than shard 0/4."), coverage.getProblems());
+  }
+
+  @Test
+  public void mergeMismatchedCounts() throws IOException {
+    manifest(0, 2, 10, 7L).write(outputDir.toString());
+    manifest(1, 2, 10, 7L).write(outputDir.toString());
+    manifest(0, 4, 10, 7L).write(outputDir.toString());
+
+    ShardManifest.Coverage coverage = ShardManifest.merge(outputDir.toString());
+
+    assertFalse(coverage.isComplete());
+    assertTrue(coverage.toString().contains(" shards rather than "));
+  }
+
+  @Test
+  public void mergeWithoutManifests() throws IOException {
+    ShardManifest.Coverage coverage = ShardManifest.merge(outputDir.toString());
+
+    assertFalse(coverage.isComplete());
+    assertEquals(0, coverage.getShards());
+  }
+
+  @Test
+  public void dataHashOfUsedColumns() {
+    RecordStore full = new RecordStore(Arrays.asList("a", "b", "c"));
+    full.addRow(row("1", "x", "2"), 3);
+    full.addRow(row("3", "y", "4"), 3);
+    RecordStore projected = new RecordStore(Arrays.asList("a", "c"));
+    projected.addRow(row("1", "2"), 2);
+    projected.addRow(row("3", "4"), 2);
+
+    ShardManifest.DataHash fullHash =
+        new ShardManifest.DataHash(full.getHeader(), Arrays.asList("c", "a", "missing"));
+    ShardManifest.DataHash projectedHash =
+        new ShardManifest.DataHash(projected.getHeader(), Arrays.asList("a", "c"));
+    for (int i = 0; i < 2; i++) {
+      fullHash.add(full.row(i));
+      projectedHash.add(projected.row(i));
+    }
+
+    // Only the columns used are hashed, so a projected store has the same hash
+    assertEquals(fullHash.getValue(), projectedHash.getValue());
+    assertEquals(2, fullHash.getRows());
+
+    ShardManifest.DataHash moved = new ShardManifest.DataHash(projected.getHeader(),
+        Arrays.asList("a", "c"));
+    moved.add(row("12", ""));
+    moved.add(row("3", "4"));
+    assertNotEquals(projectedHash.getValue(), moved.getValue());
+  }
+
+  private static DataRow row(String... fields) {
+    return column -> fields[column];
+  }
+}
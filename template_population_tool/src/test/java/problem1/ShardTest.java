@@ -0,0 +1,81 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ShardTest {
+
+  @Test
+  public void parse() {
+    Shard shard = Shard.parse("2/8");
+
+    assertEquals(2, shard.getIndex());
+    assertEquals(8, shard.getCount());
+    assertEquals(shard, Shard.parse(" 2 / 8 "));
+    assertEquals("2/8", shard.toString());
+  }
+
+  @Test
+  public void parseInvalid() {
+    for (String spec : new String[]{"2", "2/", "/8", "a/8", "8/8", "-1/8", "0/0", "1/2/3"}) {
+      try {
+        Shard.parse(spec);
+        throw new AssertionError("Expected " + spec + " to be rejected.");
+      } catch (IllegalArgumentException e) {
+        // Expected
+      }
+    }
+  }
+
+  @Test
+  public void contains() {
+    Shard shard = new Shard(1, 3);
+
+    assertFalse(shard.contains(0));
+    assertTrue(shard.contains(1));
+    assertFalse(shard.contains(2));
+    assertTrue(shard.contains(4));
+    assertTrue(new Shard(0, 1).contains(12));
+  }
+
+  @Test
+  public void shardsAreDisjointAndCoverEveryRow() {
+    Shard[] shards = {new Shard(0, 3), new Shard(1, 3), new Shard(2, 3)};
+    int total = 0;
+
+    for (int row = 0; row < 100; row++) {
+      int owners = 0;
+      for (Shard shard : shards) {
+        owners += shard.contains(row) ? 1 : 0;
+      }
+      assertEquals(1, owners);
+    }
+    for (Shard shard : shards) {
+      total += shard.countRows(100);
+    }
+    assertEquals(100, total);
+  }
+
+  @Test
+  public void countRows() {
+    Shard shard = new Shard(2, 4);
+
+    assertEquals(0, shard.countRows(2));
+    assertEquals(1, shard.countRows(3));
+    assertEquals(1, shard.countRows(6));
+    assertEquals(2, shard.countRows(7));
+    assertEquals(2, shard.countRows(3, 11));
+    assertEquals(0, shard.countRows(3, 6));
+  }
+
+  @Test
+  public void testEquals() {
+    assertEquals(new Shard(1, 2), new Shard(1, 2));
+    assertEquals(new Shard(1, 2).hashCode(), new Shard(1, 2).hashCode());
+    assertNotEquals(new Shard(1, 2), new Shard(1, 3));
+  }
+}
@@ -0,0 +1,154 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpillingRecordStoreTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static final int ROWS = 3 * SpillingRecordStore.PAGE_ROWS + 100;
+
+  private List<String> header;
+  private Path spillDir;
+
+  @Before
+  public void setUp() throws Exception {
+    header = Arrays.asList("state", "id", "note");
+    spillDir = temp.newFolder("spill").toPath();
+  }
+
+  private static String[] fields(int row) {
+    return new String[]{"S" + row % 50, "id" + row, row % 7 == 0 ? "" : "café " + row % 300};
+  }
+
+  private static void fill(RecordStore store, int rows) {
+    for (int i = 0; i < rows; i++) {
+      String[] fields = fields(i);
+      store.addRow(column -> fields[column], 3);
+    }
+    store.compact();
+  }
+
+  @Test
+  public void withinBudget() throws IOException {
+    try (SpillingRecordStore store = new SpillingRecordStore(header, 1L << 30, spillDir)) {
+      fill(store, ROWS);
+
+      assertEquals(ROWS, store.size());
+      assertEquals(4, store.getPageCount());
+      assertEquals(0, store.getSpilledBytes());
+      assertEquals(0, spillDir.toFile().list().length);
+      assertEquals("id" + (ROWS - 1), store.getField(ROWS - 1, 1));
+    }
+  }
+
+  @Test
+  public void spillsAndReloads() throws IOException {
+    RecordStore memory = new RecordStore(header);
+    fill(memory, ROWS);
+
+    try (SpillingRecordStore store = new SpillingRecordStore(header, 1, spillDir)) {
+      fill(store, ROWS);
+
+      assertTrue(store.getSpilledBytes() > 0);
+
+      // Two passes in order, then rows across every page in turn
+      for (int pass = 0; pass < 2; pass++) {
+        for (int i = 0; i < ROWS; i += 101) {
+          assertEquals(memory.getField(i, 2), store.getField(i, 2));
+          assertEquals(memory.hashRow(i), store.hashRow(i));
+        }
+      }
+      for (int i = 0; i < ROWS; i += SpillingRecordStore.PAGE_ROWS - 1) {
+        StringBuilder out = new StringBuilder();
+        store.appendField(i, 0, out);
+        store.appendField(i, 1, (Appendable) out);
+        assertEquals(memory.getField(i, 0) + memory.getField(i, 1), out.toString());
+      }
+
+      assertTrue(store.getPageReads() > 0);
+      assertTrue(store.isDictionaryEncoded(0));
+      assertEquals(memory, store);
+      assertEquals(memory.hashCode(), store.hashCode());
+    }
+
+    // Closing the store deletes the temporary file
+    assertEquals(0, spillDir.toFile().list().length);
+  }
+
+  @Test
+  public void addRowsAfterCompact() throws IOException {
+    try (SpillingRecordStore store = new SpillingRecordStore(header, 1, spillDir)) {
+      fill(store, SpillingRecordStore.PAGE_ROWS + 10);
+      // The last page is sealed before it is full, then filled again
+      store.getField(0, 0);
+      store.addRow(column -> "more", 3);
+
+      assertEquals(SpillingRecordStore.PAGE_ROWS + 11, store.size());
+      assertEquals(2, store.getPageCount());
+      assertEquals("id" + (SpillingRecordStore.PAGE_ROWS + 9),
+          store.getField(SpillingRecordStore.PAGE_ROWS + 9, 1));
+      assertEquals("more", store.getField(SpillingRecordStore.PAGE_ROWS + 10, 2));
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void getFieldOutOfBounds() throws IOException {
+    try (SpillingRecordStore store = new SpillingRecordStore(header, 1, spillDir)) {
+      fill(store, 10);
+      store.getField(10, 0);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void getFieldAfterClose() throws IOException {
+    SpillingRecordStore store = new SpillingRecordStore(header, 1, spillDir);
+    fill(store, 2 * SpillingRecordStore.PAGE_ROWS);
+    store.close();
+    store.getField(0, 0);
+  }
+
+  @Test
+  public void parseBudget() {
+    assertEquals(100, SpillingRecordStore.parseBudget("100"));
+    assertEquals(64L << 10, SpillingRecordStore.parseBudget("64k"));
+    assertEquals(512L << 20, SpillingRecordStore.parseBudget(" 512M"));
+    assertEquals(2L << 30, SpillingRecordStore.parseBudget("2g"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseBudgetInvalid() {
+    SpillingRecordStore.parseBudget("lots");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void parseBudgetZero() {
+    SpillingRecordStore.parseBudget("0m");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void budgetNotPositive() {
+    new SpillingRecordStore(header, 0);
+  }
+
+  @Test
+  public void testToString() throws IOException {
+    try (SpillingRecordStore store = new SpillingRecordStore(header, 1024, spillDir)) {
+      fill(store, 3);
+
+      assertEquals("SpillingRecordStore{header=[state, id, note], size=3, memoryBudget=1024}",
+          store.toString());
+    }
+  }
+}
@@ -0,0 +1,387 @@
+package problem1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StreamingTemplateHandlerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private String csvPath;
+  private String[] templatePaths;
+  private Path outputDir;
+  private StreamingTemplateHandler handler;
+
+  @Before
+  public void setUp() throws Exception {
+    csvPath = "src/main/java/Input/nonprofit-supporters.csv";
+    templatePaths = new String[]{"src/main/java/Input/email-template.txt",
+        "src/main/java/Input/letter-template.txt"};
+    outputDir = temp.newFolder("streaming-output").toPath();
+    handler = new StreamingTemplateHandler(templatePaths, outputDir.toString(), csvPath);
+  }
+
+  @Test
+  public void writeTemplatesMatchesTemplateHandler() throws IOException {
+    Path expectedDir = temp.newFolder("expected-output").toPath();
+    Map<String, List<String>> data = new CSVProcessor(csvPath).getSupporterInfo();
+    new TemplateHandler(templatePaths, expectedDir.toString(), data).writeTemplates();
+
+    handler.writeTemplates();
+
+    File[] expected = expectedDir.toFile().listFiles();
+    assertEquals(expected.length, outputDir.toFile().list().length);
+
+    for (File file : expected) {
+      assertEquals(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8),
+          new String(Files.readAllBytes(outputDir.resolve(file.getName())),
+              StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void writeTemplatesMemoryMapped() throws IOException {
+    Path expectedDir = temp.newFolder("expected-output").toPath();
+    new StreamingTemplateHandler(templatePaths, expectedDir.toString(), csvPath).writeTemplates();
+
+    new StreamingTemplateHandler(templatePaths, outputDir.toString(), csvPath, true)
+        .writeTemplates();
+
+    File[] expected = expectedDir.toFile().listFiles();
+    assertEquals(expected.length, outputDir.toFile().list().length);
+
+    for (File file : expected) {
+      assertArrayEquals(Files.readAllBytes(file.toPath()),
+          Files.readAllBytes(outputDir.resolve(file.getName())));
+    }
+  }
+
+  @Test
+  public void writeTemplatesNonAscii() throws IOException {
+    Path inputDir = temp.newFolder("utf8-input").toPath();
+    Path csv = Files.write(inputDir.resolve("people.csv"),
+        "name,city\nJosé,São Paulo\n".getBytes(StandardCharsets.UTF_8));
+    Path template = Files.write(inputDir.resolve("note.txt"),
+        "Olá [[name]] — [[city]] 😀\n".getBytes(StandardCharsets.UTF_8));
+    String[] paths = new String[]{template.toString()};
+    byte[] expected = "Olá José — São Paulo 😀\n"
+        .getBytes(StandardCharsets.UTF_8);
+
+    // Every reader decodes its input as UTF-8, whatever the platform charset
+    Path handlerDir = temp.newFolder("utf8-handler").toPath();
+    new TemplateHandler(paths, handlerDir.toString(),
+        new CSVProcessor(csv.toString()).getRecords(), 1).writeTemplates();
+    new StreamingTemplateHandler(paths, outputDir.toString(), csv.toString()).writeTemplates();
+    Path mappedDir = temp.newFolder("utf8-mapped").toPath();
+    new StreamingTemplateHandler(paths, mappedDir.toString(), csv.toString(), true)
+        .writeTemplates();
+
+    assertArrayEquals(expected, Files.readAllBytes(handlerDir.resolve("note0.txt")));
+    assertArrayEquals(expected, Files.readAllBytes(outputDir.resolve("note0.txt")));
+    assertArrayEquals(expected, Files.readAllBytes(mappedDir.resolve("note0.txt")));
+  }
+
+  @Test
+  public void writeTemplatesWriteConcurrency() throws IOException {
+    Path expectedDir = temp.newFolder("expected-output").toPath();
+    new StreamingTemplateHandler(templatePaths, expectedDir.toString(), csvPath).writeTemplates();
+
+    RunStats stats = new RunStats();
+    new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+        outputDir.toString(), csvPath)
+        .writeConcurrency(8)
+        .stats(stats)
+        .build()
+        .writeTemplates();
+
+    File[] expected = expectedDir.toFile().listFiles();
+    assertEquals(expected.length, outputDir.toFile().list().length);
+
+    long bytes = 0;
+    for (File file : expected) {
+      assertArrayEquals(Files.readAllBytes(file.toPath()),
+          Files.readAllBytes(outputDir.resolve(file.getName())));
+      bytes += file.length();
+    }
+    assertEquals(bytes, stats.getBytesWritten(RunStats.Stage.WRITE));
+  }
+
+  @Test
+  public void writeTemplatesPipelined() throws IOException {
+    Path expectedDir = temp.newFolder("expected-output").toPath();
+    new StreamingTemplateHandler(templatePaths, expectedDir.toString(), csvPath).writeTemplates();
+
+    RunStats stats = new RunStats();
+    new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+        outputDir.toString(), csvPath)
+        .renderThreads(4)
+        .writeConcurrency(4)
+        .stats(stats)
+        .build()
+        .writeTemplates();
+
+    File[] expected = expectedDir.toFile().listFiles();
+    assertEquals(expected.length, outputDir.toFile().list().length);
+
+    for (File file : expected) {
+      assertArrayEquals(Files.readAllBytes(file.toPath()),
+          Files.readAllBytes(outputDir.resolve(file.getName())));
+    }
+    assertEquals(500, stats.getRows(RunStats.Stage.PARSE));
+    assertEquals(1000, stats.getRows(RunStats.Stage.WRITE));
+    assertEquals(2, stats.getQueues().size());
+  }
+
+  @Test
+  public void writeTemplatesPipelinedToArchive() throws IOException {
+    Path expectedDir = temp.newFolder("expected-output").toPath();
+    new StreamingTemplateHandler(templatePaths, expectedDir.toString(), csvPath, false,
+        OutputArchive.Format.CONCAT).writeTemplates();
+
+    new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+        outputDir.toString(), csvPath)
+        .memoryMapped(true)
+        .archiveFormat(OutputArchive.Format.CONCAT)
+        .renderThreads(3)
+        .build()
+        .writeTemplates();
+
+    // Batches are written in the order of their rows, so the archive is the same
+    assertArrayEquals(Files.readAllBytes(expectedDir.resolve("templates.txt")),
+        Files.readAllBytes(outputDir.resolve("templates.txt")));
+    assertArrayEquals(Files.readAllBytes(expectedDir.resolve("templates.idx")),
+        Files.readAllBytes(outputDir.resolve("templates.idx")));
+  }
+
+  @Test
+  public void writeTemplatesHashedBuckets() throws IOException {
+    Path expectedDir = temp.newFolder("expected-output").toPath();
+    new StreamingTemplateHandler(templatePaths, expectedDir.toString(), csvPath).writeTemplates();
+    OutputLayout layout = new OutputLayout.OutputLayoutBuilder().buckets("hash:8x4").build();
+
+    new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+        outputDir.toString(), csvPath)
+        .outputLayout(layout)
+        .build()
+        .writeTemplates();
+
+    assertEquals(8, outputDir.toFile().list().length);
+    for (int i = 0; i < 500; i++) {
+      for (String template : new String[]{"email-template", "letter-template"}) {
+        assertArrayEquals(Files.readAllBytes(expectedDir.resolve(template + i + ".txt")),
+            Files.readAllBytes(outputDir.resolve(layout.getPath(template, i, null))));
+      }
+    }
+  }
+
+  @Test
+  public void writeTemplatesPipelinedColumnPattern() throws IOException {
+    Path expectedDir = temp.newFolder("expected-output").toPath();
+    OutputLayout layout = new OutputLayout.OutputLayoutBuilder()
+        .namePattern("{template}-{email}.txt")
+        .build();
+    new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+        expectedDir.toString(), csvPath)
+        .outputLayout(layout)
+        .build()
+        .writeTemplates();
+
+    new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+        outputDir.toString(), csvPath)
+        .outputLayout(layout)
+        .renderThreads(3)
+        .build()
+        .writeTemplates();
+
+    File[] expected = expectedDir.toFile().listFiles();
+    assertEquals(1000, expected.length);
+    assertEquals(expected.length, outputDir.toFile().list().length);
+
+    for (File file : expected) {
+      assertArrayEquals(Files.readAllBytes(file.toPath()),
+          Files.readAllBytes(outputDir.resolve(file.getName())));
+    }
+    assertTrue(new String(Files.readAllBytes(
+        outputDir.resolve("letter-template-jbutt@gmail_com.txt")), StandardCharsets.UTF_8)
+        .contains("James"));
+  }
+
+  @Test
+  public void writeTemplatesSharded() throws IOException {
+    Path expectedDir = temp.newFolder("expected-output").toPath();
+    Path handlerDir = temp.newFolder("handler-output").toPath();
+    RecordStore records = new CSVProcessor(csvPath).getRecords();
+    new TemplateHandler(templatePaths, expectedDir.toString(), records, 1).writeTemplates();
+    new TemplateHandler.TemplateHandlerBuilder(templatePaths, handlerDir.toString(), records)
+        .shard(new Shard(1, 2))
+        .build()
+        .writeTemplates();
+
+    // The sequential and the pipelined run each write one of the shards
+    for (int i = 0; i < 2; i++) {
+      new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+          outputDir.toString(), csvPath)
+          .shard(new Shard(i, 2))
+          .renderThreads(i * 2)
+          .build()
+          .writeTemplates();
+    }
+
+    // Every handler agrees on the data and templates of the shard
+    assertEquals(ShardManifest.read(handlerDir.resolve(".template-shard-1-of-2")),
+        ShardManifest.read(outputDir.resolve(".template-shard-1-of-2")));
+    assertEquals("The 2 shards wrote all 1000 outputs of 500 rows.",
+        ShardManifest.merge(outputDir.toString()).toString());
+    assertEquals(1000 + 2, outputDir.toFile().list().length);
+
+    for (File file : expectedDir.toFile().listFiles()) {
+      assertArrayEquals(Files.readAllBytes(file.toPath()),
+          Files.readAllBytes(outputDir.resolve(file.getName())));
+    }
+  }
+
+  @Test
+  public void writeTemplatesPipelinedDeduplicated() throws IOException {
+    Path template = temp.newFolder("dedup-templates").toPath().resolve("state-letter.txt");
+    Files.write(template, "Dear supporter in [[state]],\n".getBytes(StandardCharsets.UTF_8));
+    String[] paths = new String[]{template.toString()};
+    Path expectedDir = temp.newFolder("expected-output").toPath();
+    new StreamingTemplateHandler(paths, expectedDir.toString(), csvPath).writeTemplates();
+
+    new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(paths, outputDir.toString(),
+        csvPath)
+        .renderThreads(2)
+        .deduplicate(OutputDeduplicator.Mode.INDEX)
+        .build()
+        .writeTemplates();
+
+    // The 453 rows repeating the letter of an earlier state are only listed in the index
+    Map<String, String> index = OutputDeduplicator.readIndex(
+        outputDir.resolve(OutputDeduplicator.INDEX_FILE));
+    assertEquals(500 - 47, index.size());
+    assertEquals(47 + 1, outputDir.toFile().list().length);
+
+    for (File file : expectedDir.toFile().listFiles()) {
+      String name = index.getOrDefault(file.getName(), file.getName());
+      assertArrayEquals(Files.readAllBytes(file.toPath()),
+          Files.readAllBytes(outputDir.resolve(name)));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void builderArchiveDeduplicated() {
+    new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+        outputDir.toString(), csvPath)
+        .archiveFormat(OutputArchive.Format.ZIP)
+        .deduplicate(OutputDeduplicator.Mode.LINK)
+        .build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void builderInvalidRenderThreads() {
+    new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+        outputDir.toString(), csvPath)
+        .renderThreads(-1)
+        .build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void builderInvalidWriteConcurrency() {
+    new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(templatePaths,
+        outputDir.toString(), csvPath)
+        .writeConcurrency(0)
+        .build();
+  }
+
+  @Test
+  public void writeTemplatesToArchive() throws IOException {
+    Path expectedDir = temp.newFolder("expected-output").toPath();
+    new StreamingTemplateHandler(templatePaths, expectedDir.toString(), csvPath).writeTemplates();
+
+    new StreamingTemplateHandler(templatePaths, outputDir.toString(), csvPath, false,
+        OutputArchive.Format.CONCAT).writeTemplates();
+
+    List<String> index = Files.readAllLines(outputDir.resolve("templates.idx"));
+    byte[] concatenated = Files.readAllBytes(outputDir.resolve("templates.txt"));
+    assertEquals(expectedDir.toFile().list().length, index.size());
+
+    for (String line : index) {
+      String[] entry = line.split("\t");
+      int offset = Integer.parseInt(entry[1]);
+      assertArrayEquals(Files.readAllBytes(expectedDir.resolve(entry[0])),
+          Arrays.copyOfRange(concatenated, offset, offset + Integer.parseInt(entry[2])));
+    }
+  }
+
+  @Test
+  public void writeTemplatesStats() throws IOException {
+    RunStats stats = new RunStats();
+    StreamingTemplateHandler built = new StreamingTemplateHandler.StreamingTemplateHandlerBuilder(
+        templatePaths, outputDir.toString(), csvPath).stats(stats).build();
+
+    built.writeTemplates();
+    long written = 0;
+    for (File file : outputDir.toFile().listFiles()) {
+      written += file.length();
+    }
+
+    assertEquals(stats, built.getStats());
+    assertEquals(handler, built);
+    assertEquals(500, stats.getRows(RunStats.Stage.PARSE));
+    assertEquals(1000, stats.getRows(RunStats.Stage.RENDER));
+    assertEquals(1000, stats.getRows(RunStats.Stage.WRITE));
+    assertEquals(new File(csvPath).length(), stats.getBytesRead(RunStats.Stage.PARSE));
+    assertEquals(written, stats.getBytesWritten(RunStats.Stage.WRITE));
+    assertTrue(stats.getNanos(RunStats.Stage.RENDER) > 0);
+    assertTrue(stats.getPeakHeap(RunStats.Stage.WRITE) > 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void writeTemplatesMissingKey() throws IOException {
+    new StreamingTemplateHandler(templatePaths, outputDir.toString(),
+        "src/main/java/Input/WA-mammals-csv.csv").writeTemplates();
+  }
+
+  @Test
+  public void testEquals() {
+    StreamingTemplateHandler same = new StreamingTemplateHandler(templatePaths,
+        outputDir.toString(), csvPath);
+
+    assertTrue(handler.equals(handler));
+    assertTrue(handler.equals(same));
+    assertFalse(handler.equals(null));
+    assertFalse(handler.equals(new StreamingTemplateHandler(templatePaths, "other", csvPath)));
+    assertFalse(handler.equals(new StreamingTemplateHandler(templatePaths, outputDir.toString(),
+        csvPath, true)));
+  }
+
+  @Test
+  public void testHashCode() {
+    assertEquals(handler.hashCode(),
+        new StreamingTemplateHandler(templatePaths, outputDir.toString(), csvPath).hashCode());
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("StreamingTemplateHandler{templatePaths=" + Arrays.toString(templatePaths)
+        + ", outputDir='" + outputDir + "', csvPath='" + csvPath
+        + "', memoryMapped=false, archiveFormat=null}",
+        handler.toString());
+  }
+}
@@ -0,0 +1,189 @@
+package problem1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TemplateCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path templateDir;
+  private Path cacheDir;
+  private Path email;
+  private List<String> lines;
+  private TemplateCache cache;
+
+  @Before
+  public void setUp() throws Exception {
+    templateDir = temp.newFolder("cache-templates").toPath();
+    cacheDir = templateDir.resolve("cache");
+    lines = Arrays.asList("To:[[email]]", "Dear [[first_name]],");
+    email = writeTemplate("email-template.txt", lines);
+    cache = new TemplateCache();
+  }
+
+  /**
+   * Writes a template file whose modification time is old enough to be trusted by the cache.
+   */
+  private Path writeTemplate(String name, List<String> template) throws IOException {
+    Path path = Files.write(templateDir.resolve(name), template);
+    Files.setLastModifiedTime(path,
+        FileTime.fromMillis(System.currentTimeMillis() - 10 * TemplateCache.RACY_MILLIS));
+    return path;
+  }
+
+  @Test
+  public void get() throws IOException {
+    TemplateCache.CachedTemplate template = cache.get(email.toString());
+
+    assertEquals(CompiledTemplate.compile(lines), template.getTemplate());
+    assertEquals("email-template.txt", template.getFilename());
+    assertEquals(OutputManifest.hashTemplate(lines), template.getHash());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void getUnchanged() throws IOException {
+    TemplateCache.CachedTemplate first = cache.get(email.toString());
+    TemplateCache.CachedTemplate second = cache.get(
+        templateDir.resolve("cache/../email-template.txt").toString());
+
+    assertSame(first, second);
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void getChanged() throws IOException {
+    TemplateCache.CachedTemplate first = cache.get(email.toString());
+    writeTemplate("email-template.txt", Arrays.asList("Hi [[first_name]]"));
+    TemplateCache.CachedTemplate second = cache.get(email.toString());
+
+    assertEquals(Arrays.asList("first_name"), second.getTemplate().getPlaceholders());
+    assertNotSame(first.getTemplate(), second.getTemplate());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void getTouched() throws IOException {
+    TemplateCache.CachedTemplate first = cache.get(email.toString());
+    Files.setLastModifiedTime(email,
+        FileTime.fromMillis(System.currentTimeMillis() - 5 * TemplateCache.RACY_MILLIS));
+    TemplateCache.CachedTemplate second = cache.get(email.toString());
+
+    // The file was read again, but its unchanged content was not compiled again
+    assertSame(first.getTemplate(), second.getTemplate());
+    assertEquals(2, cache.getMisses());
+    assertSame(second, cache.get(email.toString()));
+  }
+
+  @Test
+  public void getRecentlyModified() throws IOException {
+    Path recent = Files.write(templateDir.resolve("recent.txt"), lines);
+    TemplateCache.CachedTemplate first = cache.get(recent.toString());
+    TemplateCache.CachedTemplate second = cache.get(recent.toString());
+
+    // A modification time this recent may hide a later change, so the content is checked
+    assertSame(first.getTemplate(), second.getTemplate());
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void evictsLeastRecentlyUsed() throws IOException {
+    TemplateCache small = new TemplateCache(2, null);
+    Path letter = writeTemplate("letter-template.txt", lines);
+    Path other = writeTemplate("other-template.txt", lines);
+
+    small.get(email.toString());
+    small.get(letter.toString());
+    small.get(email.toString());
+    small.get(other.toString());
+    assertEquals(2, small.size());
+
+    small.get(email.toString());
+    assertEquals(2, small.getHits());
+    small.get(letter.toString());
+    assertEquals(4, small.getMisses());
+  }
+
+  @Test
+  public void persistsToDisk() throws IOException {
+    TemplateCache.CachedTemplate first =
+        new TemplateCache(TemplateCache.DEFAULT_CAPACITY, cacheDir).get(email.toString());
+    TemplateCache restarted = new TemplateCache(TemplateCache.DEFAULT_CAPACITY, cacheDir);
+    TemplateCache.CachedTemplate second = restarted.get(email.toString());
+
+    assertEquals(first, second);
+    assertEquals(1, restarted.getDiskHits());
+    assertEquals(0, restarted.getMisses());
+    assertEquals(1, cacheDir.toFile().list().length);
+
+    restarted.get(email.toString());
+    assertEquals(1, restarted.getHits());
+  }
+
+  @Test
+  public void failedDiskWriteLeavesNoTemporaryFile() throws IOException {
+    new TemplateCache(TemplateCache.DEFAULT_CAPACITY, cacheDir).get(email.toString());
+    Path entry = cacheDir.resolve(cacheDir.toFile().list()[0]);
+    // A directory that is not empty cannot be replaced by the new entry
+    Files.delete(entry);
+    Files.createDirectories(entry.resolve("blocked"));
+
+    try {
+      new TemplateCache(TemplateCache.DEFAULT_CAPACITY, cacheDir).get(email.toString());
+      fail("Expected the blocked cache entry to fail the write.");
+    } catch (IOException e) {
+      assertEquals(1, cacheDir.toFile().list().length);
+    }
+  }
+
+  @Test
+  public void ignoresCorruptDiskEntry() throws IOException {
+    new TemplateCache(TemplateCache.DEFAULT_CAPACITY, cacheDir).get(email.toString());
+    Path entry = cacheDir.resolve(cacheDir.toFile().list()[0]);
+    byte[] bytes = Files.readAllBytes(entry);
+    bytes[bytes.length / 2] ^= 1;
+    Files.write(entry, bytes);
+
+    TemplateCache restarted = new TemplateCache(TemplateCache.DEFAULT_CAPACITY, cacheDir);
+    assertEquals(CompiledTemplate.compile(lines), restarted.get(email.toString()).getTemplate());
+    assertEquals(0, restarted.getDiskHits());
+    assertEquals(1, restarted.getMisses());
+  }
+
+  @Test(expected = IOException.class)
+  public void getMissingFile() throws IOException {
+    cache.get(templateDir.resolve("missing.txt").toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void getNull() throws IOException {
+    cache.get(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidCapacity() {
+    new TemplateCache(0, null);
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("TemplateCache{capacity=64, directory=null, size=0}", cache.toString());
+  }
+}
@@ -1,17 +1,37 @@
 package problem1;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.DataInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static org.junit.Assert.*;
 
 public class TemplateHandlerTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
     private String output_dir;
 
     private String[] template_paths;
@@ -110,12 +130,705 @@ public class TemplateHandlerTest {
         templateHandlerAlt.writeTemplates();
     }
 
+    @Test
+    public void writeTemplatesInParallel() throws IOException {
+        Path serialDir = temp.newFolder("serial-output").toPath();
+        Path parallelDir = temp.newFolder("parallel-output").toPath();
+        Map<String, List<String>> supporters =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getSupporterInfo();
+        String[] paths = new String[]{"src/main/java/Input/email-template.txt",
+            "src/main/java/Input/letter-template.txt"};
+
+        new TemplateHandler(paths, serialDir.toString(), supporters).writeTemplates();
+        new TemplateHandler(paths, parallelDir.toString(), supporters, 7).writeTemplates();
+
+        File[] expected = serialDir.toFile().listFiles();
+        assertEquals(expected.length, parallelDir.toFile().list().length);
+
+        for (File file : expected) {
+            assertArrayEquals(Files.readAllBytes(file.toPath()),
+                Files.readAllBytes(parallelDir.resolve(file.getName())));
+        }
+    }
+
+    @Test
+    public void writeTemplatesWriteConcurrency() throws IOException {
+        Path serialDir = temp.newFolder("serial-output").toPath();
+        Path concurrentDir = temp.newFolder("concurrent-output").toPath();
+        RecordStore supporters =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords();
+        String[] paths = new String[]{"src/main/java/Input/email-template.txt",
+            "src/main/java/Input/letter-template.txt"};
+
+        new TemplateHandler(paths, serialDir.toString(), supporters, 1).writeTemplates();
+        new TemplateHandler.TemplateHandlerBuilder(paths, concurrentDir.toString(), supporters)
+            .workers(3)
+            .writeConcurrency(8)
+            .checkpointInterval(50)
+            .build()
+            .writeTemplates();
+
+        File[] expected = serialDir.toFile().listFiles();
+        assertEquals(expected.length, concurrentDir.toFile().list().length);
+
+        for (File file : expected) {
+            assertArrayEquals(Files.readAllBytes(file.toPath()),
+                Files.readAllBytes(concurrentDir.resolve(file.getName())));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderInvalidWriteConcurrency() {
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, output_dir,
+            RecordStore.fromColumns(data))
+            .writeConcurrency(0)
+            .build();
+    }
+
+    @Test
+    public void writeTemplatesToArchive() throws IOException {
+        Path filesDir = temp.newFolder("files-output").toPath();
+        Path archiveDir = temp.newFolder("archive-output").toPath();
+        RecordStore supporters =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords();
+        String[] paths = new String[]{"src/main/java/Input/email-template.txt",
+            "src/main/java/Input/letter-template.txt"};
+
+        new TemplateHandler(paths, filesDir.toString(), supporters, 1).writeTemplates();
+        new TemplateHandler(paths, archiveDir.toString(), supporters, 3,
+            OutputArchive.Format.ZIP).writeTemplates();
+
+        File[] expected = filesDir.toFile().listFiles();
+        assertArrayEquals(new String[]{"templates.zip"}, archiveDir.toFile().list());
+
+        try (ZipFile zip = new ZipFile(archiveDir.resolve("templates.zip").toFile())) {
+            assertEquals(expected.length, zip.size());
+
+            for (File file : expected) {
+                ZipEntry entry = zip.getEntry(file.getName());
+                byte[] bytes = new byte[(int) entry.getSize()];
+                try (DataInputStream in = new DataInputStream(zip.getInputStream(entry))) {
+                    in.readFully(bytes);
+                }
+                assertArrayEquals(Files.readAllBytes(file.toPath()), bytes);
+            }
+        }
+    }
+
+    @Test
+    public void writeTemplatesStats() throws IOException {
+        Path serialDir = temp.newFolder("serial-output").toPath();
+        Path parallelDir = temp.newFolder("parallel-output").toPath();
+        RecordStore supporters =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords();
+        String[] paths = new String[]{"src/main/java/Input/email-template.txt",
+            "src/main/java/Input/letter-template.txt"};
+        RunStats serial = new RunStats();
+        RunStats parallel = new RunStats();
+
+        new TemplateHandler.TemplateHandlerBuilder(paths, serialDir.toString(), supporters)
+            .stats(serial).build().writeTemplates();
+        new TemplateHandler.TemplateHandlerBuilder(paths, parallelDir.toString(), supporters)
+            .workers(3).stats(parallel).build().writeTemplates();
+
+        long written = 0;
+        for (File file : serialDir.toFile().listFiles()) {
+            written += file.length();
+        }
+
+        for (RunStats stats : new RunStats[]{serial, parallel}) {
+            assertEquals(1000, stats.getRows(RunStats.Stage.RENDER));
+            assertEquals(1000, stats.getRows(RunStats.Stage.WRITE));
+            assertEquals(0, stats.getRows(RunStats.Stage.PARSE));
+            assertEquals(written, stats.getBytesWritten(RunStats.Stage.WRITE));
+            assertTrue(stats.getNanos(RunStats.Stage.WRITE) > 0);
+            assertTrue(stats.getPeakHeap(RunStats.Stage.RENDER) > 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderInvalidWorkers() {
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, output_dir,
+            RecordStore.fromColumns(data)).workers(0).build();
+    }
+
+    @Test
+    public void writeTemplatesMatchesTemplateParser() throws IOException {
+        Path expectedDir = temp.newFolder("parser-output").toPath();
+        Path outputDir = temp.newFolder("handler-output").toPath();
+        RecordStore supporters =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords();
+        String[] paths = new String[]{"src/main/java/Input/email-template.txt",
+            "src/main/java/Input/letter-template.txt"};
+
+        for (String path : paths) {
+            TemplateReader templateReader = new TemplateReader(path);
+            TemplateParser templateParser =
+                new TemplateParser(templateReader.getTemplate(), supporters);
+            templateParser.populateModListHolder();
+            new TemplateWriter(templateParser.getModListHolder(), expectedDir.toString(),
+                templateReader.getFilename()).writePopulatedTemplates();
+        }
+
+        new TemplateHandler(paths, outputDir.toString(), supporters, 1).writeTemplates();
+
+        File[] expected = expectedDir.toFile().listFiles();
+        assertEquals(1000, expected.length);
+        assertEquals(expected.length, outputDir.toFile().list().length);
+
+        for (File file : expected) {
+            assertArrayEquals(Files.readAllBytes(file.toPath()),
+                Files.readAllBytes(outputDir.resolve(file.getName())));
+        }
+    }
+
+    @Test
+    public void writeTemplatesMissingKeyWritesNothing() throws IOException {
+        Path outputDir = temp.newFolder("handler-output").toPath();
+        String[] paths = new String[]{"src/main/java/Input/email-template.txt",
+            "src/main/java/Input/letter-template.txt"};
+
+        try {
+            new TemplateHandler(paths, outputDir.toString(), data).writeTemplates();
+            fail("Expected the letter template's missing keys to be reported.");
+        } catch (IllegalArgumentException e) {
+            assertEquals(0, outputDir.toFile().list().length);
+        }
+    }
+
+    @Test
+    public void writeTemplatesIncremental() throws IOException {
+        Path outputDir = temp.newFolder("incremental-output").toPath();
+        Path templateDir = temp.newFolder("incremental-templates").toPath();
+        Path email = templateDir.resolve("email-template.txt");
+        Path letter = templateDir.resolve("letter-template.txt");
+        Files.copy(Paths.get("src/main/java/Input/email-template.txt"), email);
+        Files.copy(Paths.get("src/main/java/Input/letter-template.txt"), letter);
+        String[] paths = new String[]{email.toString(), letter.toString()};
+        Map<String, List<String>> supporters =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getSupporterInfo();
+
+        RunStats first = runIncremental(paths, outputDir, supporters, 1);
+        assertEquals(1000, first.getRows(RunStats.Stage.WRITE));
+        assertEquals(1001, outputDir.toFile().list().length);
+
+        // Nothing changed, so nothing is rendered again
+        assertEquals(0, runIncremental(paths, outputDir, supporters, 3)
+            .getRows(RunStats.Stage.WRITE));
+
+        // A changed row is rendered again for every template
+        supporters.get("first_name").set(7, "Changed");
+        assertEquals(2, runIncremental(paths, outputDir, supporters, 1)
+            .getRows(RunStats.Stage.WRITE));
+        assertTrue(new String(Files.readAllBytes(outputDir.resolve("email-template7.txt")),
+            StandardCharsets.UTF_8).contains("Dear Changed "));
+
+        // A deleted output is written again
+        Files.delete(outputDir.resolve("letter-template3.txt"));
+        assertEquals(1, runIncremental(paths, outputDir, supporters, 1)
+            .getRows(RunStats.Stage.WRITE));
+        assertTrue(Files.exists(outputDir.resolve("letter-template3.txt")));
+
+        // A changed template is rendered again for every row
+        Files.write(email, Arrays.asList("To:[[email]]", "Hi [[first_name]]"));
+        assertEquals(500, runIncremental(paths, outputDir, supporters, 2)
+            .getRows(RunStats.Stage.WRITE));
+        assertEquals("To:jbutt@gmail.com\nHi James\n", new String(
+            Files.readAllBytes(outputDir.resolve("email-template0.txt")), StandardCharsets.UTF_8));
+
+        // Outputs of removed rows and templates are deleted, and the rows of the other template
+        // are compared over the columns of the previous run, so they are not rendered again
+        for (List<String> column : supporters.values()) {
+            column.subList(100, column.size()).clear();
+        }
+        assertEquals(0, runIncremental(new String[]{email.toString()}, outputDir, supporters, 1)
+            .getRows(RunStats.Stage.WRITE));
+        assertEquals(101, outputDir.toFile().list().length);
+        assertTrue(Files.exists(outputDir.resolve("email-template99.txt")));
+        assertFalse(Files.exists(outputDir.resolve("email-template100.txt")));
+        assertFalse(Files.exists(outputDir.resolve("letter-template0.txt")));
+    }
+
+    private static RunStats runIncremental(String[] paths, Path outputDir,
+        Map<String, List<String>> supporters, int workers) throws IOException {
+        RunStats stats = new RunStats();
+        new TemplateHandler.TemplateHandlerBuilder(paths, outputDir.toString(),
+            RecordStore.fromColumns(supporters))
+            .workers(workers)
+            .incremental(true)
+            .stats(stats)
+            .build()
+            .writeTemplates();
+        return stats;
+    }
+
+    @Test
+    public void writeTemplatesIncrementalProjected() throws IOException {
+        Path outputDir = temp.newFolder("incremental-output").toPath();
+        String csv = "src/main/java/Input/nonprofit-supporters.csv";
+        Map<String, List<String>> supporters = new CSVProcessor(csv).getSupporterInfo();
+        runIncremental(template_paths, outputDir, supporters, 1);
+
+        // A store parsed for only the columns the template uses hashes its rows the same way
+        RecordStore projected = new CSVProcessor(csv, new TemplateCache()
+            .get(template_paths[0]).getTemplate().getPlaceholders()).getRecords();
+        RunStats stats = new RunStats();
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, outputDir.toString(), projected)
+            .incremental(true)
+            .stats(stats)
+            .build()
+            .writeTemplates();
+        assertEquals(0, stats.getRows(RunStats.Stage.WRITE));
+
+        // Nor does a change to a column the template does not use rewrite any output
+        supporters.get("city").set(3, "Elsewhere");
+        assertEquals(0, runIncremental(template_paths, outputDir, supporters, 1)
+            .getRows(RunStats.Stage.WRITE));
+    }
+
+    @Test
+    public void writeTemplatesHashedBuckets() throws IOException {
+        Path expectedDir = temp.newFolder("handler-output").toPath();
+        Path outputDir = temp.newFolder("bucketed-output").toPath();
+        RecordStore records =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords();
+        OutputLayout layout = new OutputLayout.OutputLayoutBuilder().buckets("hash:16x16").build();
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, expectedDir.toString(), records)
+            .build()
+            .writeTemplates();
+
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, outputDir.toString(), records)
+            .workers(3)
+            .outputLayout(layout)
+            .build()
+            .writeTemplates();
+
+        assertEquals(16, outputDir.toFile().list().length);
+        for (int i = 0; i < records.size(); i++) {
+            assertArrayEquals(
+                Files.readAllBytes(expectedDir.resolve("email-template" + i + ".txt")),
+                Files.readAllBytes(outputDir.resolve(layout.getPath("email-template", i, null))));
+        }
+    }
+
+    @Test
+    public void writeTemplatesColumnPattern() throws IOException {
+        Path outputDir = temp.newFolder("named-output").toPath();
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, outputDir.toString(),
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords())
+            .outputLayout(new OutputLayout.OutputLayoutBuilder()
+                .namePattern("{template}-{email}.txt")
+                .buckets("range:100")
+                .build())
+            .build()
+            .writeTemplates();
+
+        assertEquals(5, outputDir.toFile().list().length);
+        assertTrue(new String(Files.readAllBytes(
+            outputDir.resolve("0/email-template-jbutt@gmail_com.txt")),
+            StandardCharsets.UTF_8).contains("Dear James Butt,"));
+        assertEquals(100, outputDir.resolve("4").toFile().list().length);
+    }
+
+    @Test
+    public void writeTemplatesIncrementalRangeBuckets() throws IOException {
+        Path outputDir = temp.newFolder("incremental-output").toPath();
+        Map<String, List<String>> supporters =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getSupporterInfo();
+        OutputLayout layout = new OutputLayout.OutputLayoutBuilder().buckets("range:100").build();
+
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, outputDir.toString(),
+            RecordStore.fromColumns(supporters))
+            .incremental(true)
+            .outputLayout(layout)
+            .build()
+            .writeTemplates();
+        assertTrue(Files.exists(outputDir.resolve("4/email-template499.txt")));
+
+        // Outputs of removed rows are deleted from their subdirectories
+        for (List<String> column : supporters.values()) {
+            column.subList(150, column.size()).clear();
+        }
+        RunStats stats = new RunStats();
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, outputDir.toString(),
+            RecordStore.fromColumns(supporters))
+            .incremental(true)
+            .outputLayout(layout)
+            .stats(stats)
+            .build()
+            .writeTemplates();
+
+        assertEquals(0, stats.getRows(RunStats.Stage.WRITE));
+        assertTrue(Files.exists(outputDir.resolve("1/email-template149.txt")));
+        assertFalse(Files.exists(outputDir.resolve("1/email-template150.txt")));
+        assertFalse(Files.exists(outputDir.resolve("4/email-template499.txt")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderIncrementalColumnPattern() {
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, output_dir,
+            RecordStore.fromColumns(data))
+            .incremental(true)
+            .outputLayout(new OutputLayout.OutputLayoutBuilder().namePattern("{email}.txt").build())
+            .build();
+    }
+
+    @Test
+    public void writeTemplatesColumnPatternCollision() throws IOException {
+        Path templateDir = temp.newFolder("collision-templates").toPath();
+        Path template = Files.write(templateDir.resolve("c.txt"),
+            "Hi [[name]] of [[city]]\n".getBytes(StandardCharsets.UTF_8));
+        Map<String, List<String>> columns = new LinkedHashMap<>();
+        columns.put("name", Arrays.asList("A", "B", "C"));
+        columns.put("city", Arrays.asList("Boston", "Boston", "Denver"));
+
+        for (int workers : new int[]{1, 2}) {
+            Path outputDir = temp.newFolder().toPath();
+            try {
+                new TemplateHandler.TemplateHandlerBuilder(new String[]{template.toString()},
+                    outputDir.toString(), RecordStore.fromColumns(columns))
+                    .workers(workers)
+                    .outputLayout(new OutputLayout.OutputLayoutBuilder()
+                        .namePattern("{city}.txt").build())
+                    .build()
+                    .writeTemplates();
+                fail("Expected two rows named Boston.txt to fail the run.");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" the same name, Boston.txt"));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderIncrementalArchive() {
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, output_dir,
+            RecordStore.fromColumns(data))
+            .incremental(true)
+            .archiveFormat(OutputArchive.Format.ZIP)
+            .build();
+    }
+
+    @Test
+    public void writeTemplatesResume() throws IOException {
+        Path outputDir = temp.newFolder("resume-output").toPath();
+        Path expectedDir = temp.newFolder("resume-expected").toPath();
+        String[] paths = new String[]{"src/main/java/Input/email-template.txt",
+            "src/main/java/Input/letter-template.txt"};
+        RecordStore records =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords();
+        new TemplateHandler(paths, expectedDir.toString(), records, 1).writeTemplates();
+
+        // A directory in place of an output file fails the run at the checkpoint after row 300
+        Path blocked = Files.createDirectory(outputDir.resolve("email-template250.txt"));
+        try {
+            runResume(paths, outputDir, records, 1, false);
+            fail("Expected the blocked output file to fail the run.");
+        } catch (IOException e) {
+            assertEquals(200, JobCheckpoint.read(outputDir.toString()).getRanges().get(0)
+                .getNext(1));
+        }
+
+        // A truncated output before the checkpoint restarts its template, while outputs after
+        // the checkpoint are written again regardless
+        Files.delete(blocked);
+        Files.write(outputDir.resolve("email-template10.txt"),
+            "To:".getBytes(StandardCharsets.UTF_8));
+        Files.write(outputDir.resolve("letter-template260.txt"),
+            "partial".getBytes(StandardCharsets.UTF_8));
+
+        RunStats stats = runResume(paths, outputDir, records, 3, true);
+        assertEquals(500 + 300, stats.getRows(RunStats.Stage.WRITE));
+        assertFalse(Files.exists(outputDir.resolve(JobCheckpoint.FILE_NAME)));
+        assertEquals(1000, outputDir.toFile().list().length);
+
+        for (String name : expectedDir.toFile().list()) {
+            assertEquals(name, Files.readAllLines(expectedDir.resolve(name)),
+                Files.readAllLines(outputDir.resolve(name)));
+        }
+    }
+
+    @Test
+    public void writeTemplatesResumeMismatchedCheckpoint() throws IOException {
+        Path outputDir = temp.newFolder("resume-output").toPath();
+        Map<String, Long> templates = new HashMap<>();
+        templates.put("email-template.txt", 1L);
+        new JobCheckpoint(templates, 3, 0L, JobCheckpoint.partition(3, 1, 1))
+            .write(outputDir.toString());
+
+        RunStats stats = runResume(new String[]{"src/main/java/Input/email-template.txt"},
+            outputDir, RecordStore.fromColumns(data), 1, true);
+
+        assertEquals(4, stats.getRows(RunStats.Stage.WRITE));
+        assertFalse(Files.exists(outputDir.resolve(JobCheckpoint.FILE_NAME)));
+    }
+
+    @Test
+    public void writeTemplatesResumeSourceStamp() throws IOException {
+        Path outputDir = temp.newFolder("resume-output").toPath();
+        String[] paths = new String[]{"src/main/java/Input/email-template.txt"};
+        RecordStore records =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords();
+        Path blocked = outputDir.resolve("email-template250.txt");
+
+        // The same file resumes from the checkpoint after row 200
+        records.setSourceStamp(1L);
+        Files.createDirectory(blocked);
+        try {
+            runResume(paths, outputDir, records, 1, false);
+            fail("Expected the blocked output file to fail the run.");
+        } catch (IOException e) {
+            Files.delete(blocked);
+        }
+        assertEquals(300, runResume(paths, outputDir, records, 1, true)
+            .getRows(RunStats.Stage.WRITE));
+
+        // A file with another stamp is written again from the start
+        Files.delete(blocked);
+        Files.createDirectory(blocked);
+        try {
+            runResume(paths, outputDir, records, 1, false);
+            fail("Expected the blocked output file to fail the run.");
+        } catch (IOException e) {
+            Files.delete(blocked);
+        }
+        records.setSourceStamp(2L);
+        assertEquals(500, runResume(paths, outputDir, records, 1, true)
+            .getRows(RunStats.Stage.WRITE));
+    }
+
+    private static RunStats runResume(String[] paths, Path outputDir, RecordStore records,
+        int workers, boolean resume) throws IOException {
+        RunStats stats = new RunStats();
+        new TemplateHandler.TemplateHandlerBuilder(paths, outputDir.toString(), records)
+            .workers(workers)
+            .resume(resume)
+            .checkpointInterval(100)
+            .stats(stats)
+            .build()
+            .writeTemplates();
+        return stats;
+    }
+
+    @Test
+    public void writeTemplatesSharedCache() throws IOException {
+        TemplateCache cache = new TemplateCache();
+        Path template = temp.newFolder("cache-templates").toPath().resolve("email-template.txt");
+        Files.copy(Paths.get(template_paths[0]), template);
+        Files.setLastModifiedTime(template, FileTime.fromMillis(0));
+
+        for (int run = 0; run < 2; run++) {
+            new TemplateHandler.TemplateHandlerBuilder(new String[]{template.toString()},
+                temp.newFolder().toPath().toString(),
+                RecordStore.fromColumns(data))
+                .templateCache(cache)
+                .build()
+                .writeTemplates();
+        }
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void writeTemplatesSharded() throws IOException {
+        Path expectedDir = temp.newFolder("handler-output").toPath();
+        Path outputDir = temp.newFolder("sharded-output").toPath();
+        String[] paths = new String[]{"src/main/java/Input/email-template.txt",
+            "src/main/java/Input/letter-template.txt"};
+        RecordStore records =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords();
+        new TemplateHandler(paths, expectedDir.toString(), records, 1).writeTemplates();
+
+        for (int i = 0; i < 3; i++) {
+            new TemplateHandler.TemplateHandlerBuilder(paths, outputDir.toString(), records)
+                .workers(i + 1)
+                .shard(new Shard(i, 3))
+                .build()
+                .writeTemplates();
+
+            if (i == 0) {
+                // The shard writes only its own rows, under the names of an unsharded run
+                assertEquals(2 * 167 + 1, outputDir.toFile().list().length);
+                assertTrue(Files.exists(outputDir.resolve("letter-template498.txt")));
+            }
+        }
+
+        ShardManifest manifest =
+            ShardManifest.read(outputDir.resolve(".template-shard-1-of-3"));
+        assertEquals(500, manifest.getRows());
+        assertEquals(167L, (long) manifest.getOutputs().get("letter-template.txt"));
+        assertEquals("The 3 shards wrote all 1000 outputs of 500 rows.",
+            ShardManifest.merge(outputDir.toString()).toString());
+        assertEquals(1000 + 3, outputDir.toFile().list().length);
+        for (String name : expectedDir.toFile().list()) {
+            assertEquals(name, Files.readAllLines(expectedDir.resolve(name)),
+                Files.readAllLines(outputDir.resolve(name)));
+        }
+    }
+
+    @Test
+    public void writeTemplatesShardedResume() throws IOException {
+        Path outputDir = temp.newFolder("sharded-output").toPath();
+        RecordStore records =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords();
+        Shard shard = new Shard(0, 2);
+
+        // A directory in place of an output file of the shard fails the run
+        Path blocked = Files.createDirectory(outputDir.resolve("email-template250.txt"));
+        try {
+            new TemplateHandler.TemplateHandlerBuilder(template_paths, outputDir.toString(),
+                records)
+                .shard(shard)
+                .resume(true)
+                .checkpointInterval(100)
+                .build()
+                .writeTemplates();
+            fail("Expected the blocked output file to fail the run.");
+        } catch (IOException e) {
+            assertTrue(Files.exists(outputDir.resolve(JobCheckpoint.fileName(shard))));
+            assertFalse(Files.exists(outputDir.resolve(".template-shard-0-of-2")));
+        }
+
+        Files.delete(blocked);
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, outputDir.toString(), records)
+            .shard(shard)
+            .resume(true)
+            .checkpointInterval(100)
+            .build()
+            .writeTemplates();
+
+        assertFalse(Files.exists(outputDir.resolve(JobCheckpoint.fileName(shard))));
+        assertEquals(250L, (long) ShardManifest.read(outputDir.resolve(".template-shard-0-of-2"))
+            .getOutputs().get("email-template.txt"));
+        assertEquals(250 + 1, outputDir.toFile().list().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderIncrementalShard() {
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, output_dir,
+            RecordStore.fromColumns(data))
+            .incremental(true)
+            .shard(new Shard(0, 2))
+            .build();
+    }
+
+    @Test
+    public void writeTemplatesDeduplicated() throws IOException {
+        Path templateDir = temp.newFolder("dedup-templates").toPath();
+        Path expectedDir = temp.newFolder("handler-output").toPath();
+        Path outputDir = temp.newFolder("dedup-output").toPath();
+        Path template = Files.write(templateDir.resolve("state-letter.txt"),
+            "Dear supporter in [[state]],\n".getBytes(StandardCharsets.UTF_8));
+        String[] paths = new String[]{template.toString(),
+            "src/main/java/Input/email-template.txt"};
+        RecordStore records =
+            new CSVProcessor("src/main/java/Input/nonprofit-supporters.csv").getRecords();
+        new TemplateHandler(paths, expectedDir.toString(), records, 1).writeTemplates();
+
+        RunStats stats = new RunStats();
+        new TemplateHandler.TemplateHandlerBuilder(paths, outputDir.toString(), records)
+            .workers(3)
+            .writeConcurrency(4)
+            .deduplicate(OutputDeduplicator.Mode.LINK)
+            .stats(stats)
+            .build()
+            .writeTemplates();
+
+        // Only one file is written for each of the 47 states
+        Set<Object> files = new HashSet<>();
+        for (int i = 0; i < records.size(); i++) {
+            files.add(Files.readAttributes(outputDir.resolve("state-letter" + i + ".txt"),
+                BasicFileAttributes.class).fileKey());
+        }
+        assertEquals(47, files.size());
+        assertEquals(1000, stats.getRows(RunStats.Stage.WRITE));
+        assertFalse(Files.exists(outputDir.resolve(JobCheckpoint.FILE_NAME)));
+
+        assertEquals(1000, outputDir.toFile().list().length);
+        for (String name : expectedDir.toFile().list()) {
+            assertArrayEquals(Files.readAllBytes(expectedDir.resolve(name)),
+                Files.readAllBytes(outputDir.resolve(name)));
+        }
+    }
+
+    @Test
+    public void writeTemplatesOverLinkedOutputs() throws IOException {
+        Path templateDir = temp.newFolder("dedup-templates").toPath();
+        Path outputDir = temp.newFolder("dedup-output").toPath();
+        Path template = Files.write(templateDir.resolve("c.txt"),
+            "Dear resident of [[city]]\n".getBytes(StandardCharsets.UTF_8));
+        String[] paths = new String[]{template.toString()};
+        Map<String, List<String>> columns = new LinkedHashMap<>();
+        columns.put("name", Arrays.asList("A", "B", "C"));
+        columns.put("city", Arrays.asList("Boston", "Boston", "Denver"));
+
+        new TemplateHandler.TemplateHandlerBuilder(paths, outputDir.toString(),
+            RecordStore.fromColumns(columns))
+            .deduplicate(OutputDeduplicator.Mode.LINK)
+            .build()
+            .writeTemplates();
+        assertTrue(Files.isSameFile(outputDir.resolve("c0.txt"), outputDir.resolve("c1.txt")));
+
+        // A plain rerun replaces each output rather than writing through the links
+        columns.put("city", Arrays.asList("Boston", "Chicago", "Denver"));
+        new TemplateHandler.TemplateHandlerBuilder(paths, outputDir.toString(),
+            RecordStore.fromColumns(columns))
+            .writeConcurrency(2)
+            .build()
+            .writeTemplates();
+
+        assertEquals(Collections.singletonList("Dear resident of Boston"),
+            Files.readAllLines(outputDir.resolve("c0.txt")));
+        assertEquals(Collections.singletonList("Dear resident of Chicago"),
+            Files.readAllLines(outputDir.resolve("c1.txt")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderResumeDeduplicated() {
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, output_dir,
+            RecordStore.fromColumns(data))
+            .resume(true)
+            .deduplicate(OutputDeduplicator.Mode.INDEX)
+            .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderResumeArchive() {
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, output_dir,
+            RecordStore.fromColumns(data))
+            .resume(true)
+            .archiveFormat(OutputArchive.Format.TAR)
+            .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderInvalidCheckpointInterval() {
+        new TemplateHandler.TemplateHandlerBuilder(template_paths, output_dir,
+            RecordStore.fromColumns(data))
+            .checkpointInterval(0)
+            .build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writeTemplatesInParallelMissingKey() throws IOException {
+        new TemplateHandler(template_pathsAlt, output_dir, data, 2).writeTemplates();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructorInvalidWorkers() {
+        new TemplateHandler(template_paths, output_dir, data, 0);
+    }
+
     @Test
     public void testEquals() {
         assertTrue(templateHandler.equals(templateHandler));
         assertTrue(templateHandler.equals(templateHandlerHash));
         assertFalse(templateHandler.equals(null));
         assertFalse(templateHandler.equals(data));
+        assertFalse(templateHandler.equals(
+            new TemplateHandler(template_paths, output_dir, data, 4)));
+        assertFalse(templateHandler.equals(new TemplateHandler(template_paths, output_dir,
+            RecordStore.fromColumns(data), 1, OutputArchive.Format.TAR)));
     }
 
     @Test
@@ -2,12 +2,17 @@ package problem1;
 
 import org.graalvm.compiler.lir.LIRInstruction;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -17,6 +22,9 @@ import java.util.Map;
 import static org.junit.Assert.*;
 
 public class TemplateWriterTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
     private List<List<String>> templates;
     private String dest;
     private String destAlt;
@@ -135,6 +143,81 @@ public class TemplateWriterTest {
          writer.writePopulatedTemplates();
     }
 
+    @Test
+    public void writePopulatedTemplatesUtf8() throws IOException {
+        Path out = temp.newFolder("writer-output").toPath();
+        new TemplateWriter(templates, out.toString(), filename).writePopulatedTemplates();
+
+        String first = new String(Files.readAllBytes(out.resolve("email-template0.txt")),
+            StandardCharsets.UTF_8);
+        assertTrue(first.contains("Dear John Doe,\n"));
+        assertTrue(first.contains("don\u2019t want to buy stuff"));
+        assertEquals(4, out.toFile().list().length);
+    }
+
+    @Test
+    public void writeTemplateQueued() throws IOException {
+        Path out = temp.newFolder("writer-output").toPath();
+        TemplateWriter queued = new TemplateWriter(out.toString(), filename);
+
+        queued.writeTemplate(7, "To:someone\n");
+        queued.close();
+
+        assertEquals("To:someone\n", new String(
+            Files.readAllBytes(out.resolve("email-template7.txt")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void writeTemplateRangeBuckets() throws IOException {
+        Path out = temp.newFolder("writer-output").toPath();
+        TemplateWriter ranged = new TemplateWriter(out.toString(), filename, null, null,
+            new OutputLayout.OutputLayoutBuilder().buckets("range:10").build());
+
+        ranged.writeTemplate(7, null, "a\n");
+        ranged.writeTemplate(10, null, "b\n");
+        ranged.writeTemplate(25, null, "c\n");
+        ranged.close();
+
+        assertEquals("2/email-template25.txt", ranged.getOutputName(25));
+        assertEquals("b\n", new String(
+            Files.readAllBytes(out.resolve("1/email-template10.txt")), StandardCharsets.UTF_8));
+        assertEquals(3, out.toFile().list().length);
+    }
+
+    @Test
+    public void writeTemplateDeduplicated() throws IOException {
+        Path out = temp.newFolder("writer-output").toPath();
+        OutputDeduplicator dedup = new OutputDeduplicator(OutputDeduplicator.Mode.LINK);
+        TemplateWriter deduplicated = new TemplateWriter(out.toString(), filename, null, null,
+            OutputLayout.FLAT, dedup);
+
+        deduplicated.writeTemplate(0, null, "a\n");
+        deduplicated.writeTemplate(1, null, "b\n");
+        deduplicated.writeTemplate(2, null, new StringBuilder("a\n"));
+        deduplicated.close();
+
+        // Duplicates are only materialized once every writer of the run is closed
+        assertFalse(Files.exists(out.resolve("email-template2.txt")));
+        assertEquals(4, deduplicated.getBytesWritten());
+        dedup.finish(out.toString(), null);
+
+        assertTrue(Files.isSameFile(out.resolve("email-template0.txt"),
+            out.resolve("email-template2.txt")));
+        assertEquals("a\n", new String(
+            Files.readAllBytes(out.resolve("email-template2.txt")), StandardCharsets.UTF_8));
+
+        // A file linked by an earlier run is replaced rather than rewritten in place
+        TemplateWriter rerun = new TemplateWriter(out.toString(), filename, null, null,
+            OutputLayout.FLAT, new OutputDeduplicator(OutputDeduplicator.Mode.LINK));
+        rerun.writeTemplate(2, null, "c\n");
+        rerun.close();
+
+        assertEquals("a\n", new String(
+            Files.readAllBytes(out.resolve("email-template0.txt")), StandardCharsets.UTF_8));
+        assertEquals("c\n", new String(
+            Files.readAllBytes(out.resolve("email-template2.txt")), StandardCharsets.UTF_8));
+    }
+
     @Test
     public void testEquals() {
         assertTrue(writer.equals(writer));